@@ -0,0 +1,51 @@
+package com.example.applib.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import org.redisson.client.codec.Codec;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+/**
+ * Spring Data Redis serializer writing values in the format of a Redisson codec, so a
+ * {@code RedisTemplate} and Redisson objects of the same name can share values.
+ */
+public class CodecRedisSerializer implements RedisSerializer<Object> {
+
+    private final Codec codec;
+
+    public CodecRedisSerializer(Codec codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public byte[] serialize(Object value) throws SerializationException {
+        if (value == null) {
+            return new byte[0];
+        }
+        ByteBuf buf = null;
+        try {
+            buf = codec.getValueEncoder().encode(value);
+            return ByteBufUtil.getBytes(buf);
+        } catch (Exception e) {
+            throw new SerializationException("Could not encode " + value.getClass().getName() + " with " + codec, e);
+        } finally {
+            if (buf != null) {
+                buf.release();
+            }
+        }
+    }
+
+    @Override
+    public Object deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return null;
+        }
+        try {
+            return codec.getValueDecoder().decode(Unpooled.wrappedBuffer(bytes), null);
+        } catch (Exception e) {
+            throw new SerializationException("Could not decode a value with " + codec, e);
+        }
+    }
+}
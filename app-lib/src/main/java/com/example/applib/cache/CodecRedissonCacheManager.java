@@ -0,0 +1,32 @@
+package com.example.applib.cache;
+
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+import org.redisson.api.RedissonClient;
+import org.redisson.spring.cache.CacheConfig;
+import org.redisson.spring.cache.RedissonSpringCacheManager;
+
+/**
+ * Redisson Spring cache manager encoding each cache with the codec of its name.
+ */
+public class CodecRedissonCacheManager extends RedissonSpringCacheManager {
+
+    private final RedissonClient redissonClient;
+    private final RedisCodecRegistry codecRegistry;
+
+    public CodecRedissonCacheManager(RedissonClient redissonClient, RedisCodecRegistry codecRegistry) {
+        super(redissonClient);
+        this.redissonClient = redissonClient;
+        this.codecRegistry = codecRegistry;
+    }
+
+    @Override
+    protected RMap<Object, Object> getMap(String name, CacheConfig config) {
+        return redissonClient.getMap(name, codecRegistry.getCodec(name));
+    }
+
+    @Override
+    protected RMapCache<Object, Object> getMapCache(String name, CacheConfig config) {
+        return redissonClient.getMapCache(name, codecRegistry.getCodec(name));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.applib.cache;
+
+/**
+ * Count-min sketch of 4-bit counters used as the TinyLFU admission filter.
+ *
+ * <p>Each {@code long} holds sixteen counters; every key touches four of them. Once the number of
+ * increments reaches ten times the table width all counters are halved, so the sketch keeps
+ * tracking recent popularity. Not thread-safe; callers guard it with their own lock.
+ */
+final class FrequencySketch {
+
+    private static final long[] SEEDS = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L
+    };
+
+    private static final long RESET_MASK = 0x7777777777777777L;
+
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(expectedEntries, 16) - 1) << 1;
+        this.table = new long[width];
+        this.counterMask = (width << 4) - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    /**
+     * Estimated number of recent occurrences of the hash, capped at 15
+     */
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counter = counterIndex(hash, i);
+            int count = (int) ((table[counter >>> 4] >>> ((counter & 15) << 2)) & 0xFL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    /**
+     * Record an occurrence of the hash
+     */
+    void increment(int hash) {
+        boolean added = false;
+        for (int i = 0; i < SEEDS.length; i++) {
+            int counter = counterIndex(hash, i);
+            int word = counter >>> 4;
+            int shift = (counter & 15) << 2;
+            if (((table[word] >>> shift) & 0xFL) != 0xFL) {
+                table[word] += 1L << shift;
+                added = true;
+            }
+        }
+
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions >>>= 1;
+    }
+
+    private int counterIndex(int hash, int i) {
+        long h = (hash + SEEDS[i]) * SEEDS[i];
+        h += h >>> 32;
+        return (int) h & counterMask;
+    }
+}
@@ -0,0 +1,459 @@
+package com.example.applib.cache;
+
+import com.example.applib.tenant.TenantContext;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+/**
+ * Read-through cache of whole objects on local disk, shared by every tenant of the pod.
+ *
+ * <p>Entries are keyed by tenant, bucket and object key, so a tenant is only served objects it
+ * fetched with its own credentials, and evicted in LRU order once
+ * {@code cache.objects.max-bytes} is exceeded. A {@link FrequencySketch} guards admission, so a
+ * burst of one-off reads cannot flush the frequently used objects. An entry older than
+ * {@code cache.objects.revalidate-after-seconds} is revalidated with a conditional GET on its
+ * ETag. Concurrent misses for the same object share a single GET.
+ *
+ * <p>Cached files are served straight from disk with sendfile or a file channel transfer. Every
+ * fetch writes a new file, and a replaced or evicted file is only deleted after
+ * {@code cache.objects.delete-grace-seconds}, so responses that are still reading it finish
+ * undisturbed.
+ */
+@Slf4j
+@Component
+public class LocalObjectCache {
+
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    @Value("${cache.objects.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.objects.directory:${java.io.tmpdir}/object-cache}")
+    private String directory;
+
+    @Value("${cache.objects.max-bytes:1073741824}")
+    private long maxBytes;
+
+    @Value("${cache.objects.max-object-bytes:67108864}")
+    private long maxObjectBytes;
+
+    @Value("${cache.objects.revalidate-after-seconds:60}")
+    private long revalidateAfterSeconds;
+
+    @Value("${cache.objects.delete-grace-seconds:300}")
+    private long deleteGraceSeconds;
+
+    // Access-ordered, guarded by this
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final Map<String, CompletableFuture<Entry>> loading = new ConcurrentHashMap<>();
+
+    // Objects above max-object-bytes, remembered until they are due for revalidation
+    private final Map<String, Long> oversized = new ConcurrentHashMap<>();
+
+    private final AtomicLong fileCounter = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong revalidations = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong rejections = new AtomicLong();
+    private final AtomicLong bytesServed = new AtomicLong();
+
+    private FrequencySketch sketch;
+    private long usedBytes;
+    private Path root;
+    private ScheduledExecutorService deleter;
+
+    public LocalObjectCache(ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            log.info("Local object cache is disabled");
+            return;
+        }
+
+        root = Paths.get(directory);
+        Files.createDirectories(root);
+        // The index lives in memory, so files left by a previous run are unreachable
+        try (Stream<Path> files = Files.list(root)) {
+            files.forEach(LocalObjectCache::deleteQuietly);
+        }
+
+        sketch = new FrequencySketch((int) Math.min(Integer.MAX_VALUE, Math.max(maxBytes / (64 * 1024), 1024)));
+        deleter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "object-cache-deleter");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        meterRegistryProvider.ifAvailable(this::registerMetrics);
+        log.info("Local object cache initialized in {} with {} bytes", root, maxBytes);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (deleter != null) {
+            deleter.shutdownNow();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get an object from the cache, fetching or revalidating it when needed
+     *
+     * @param bucket Bucket name
+     * @param key Object key
+     * @param fetcher Fetches the object from the store
+     * @return The cached object, or null if it is too large to be cached
+     * @throws IOException If the object cannot be fetched
+     */
+    public Entry get(String bucket, String key, Fetcher fetcher) throws IOException {
+        String cacheKey = cacheKey(bucket, key);
+        long now = System.currentTimeMillis();
+
+        Entry cached;
+        synchronized (this) {
+            sketch.increment(cacheKey.hashCode());
+            cached = entries.get(cacheKey);
+        }
+        if (cached != null && now - cached.validatedAt < revalidateAfterSeconds * 1000) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        Long oversizedAt = oversized.get(cacheKey);
+        if (oversizedAt != null && now - oversizedAt < revalidateAfterSeconds * 1000) {
+            return null;
+        }
+
+        CompletableFuture<Entry> load = new CompletableFuture<>();
+        CompletableFuture<Entry> running = loading.putIfAbsent(cacheKey, load);
+        if (running != null) {
+            // Someone else is fetching the same object
+            return await(running, cacheKey);
+        }
+
+        try {
+            Entry entry = load(cacheKey, bucket, key, cached, fetcher);
+            load.complete(entry);
+            return entry;
+        } catch (IOException | RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(cacheKey, load);
+        }
+    }
+
+    /**
+     * Drop an object for every tenant, e.g. after it was overwritten or deleted through this pod
+     */
+    public void invalidate(String bucket, String key) {
+        if (!enabled) {
+            return;
+        }
+        List<Path> removed = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                if (entry.bucket.equals(bucket) && entry.key.equals(key)) {
+                    usedBytes -= entry.size;
+                    removed.add(entry.file);
+                    iterator.remove();
+                }
+            }
+        }
+        removed.forEach(this::scheduleDelete);
+    }
+
+    /**
+     * Record bytes written to clients from cached files
+     */
+    public void recordServed(long bytes) {
+        bytesServed.addAndGet(bytes);
+    }
+
+    public synchronized long getUsedBytes() {
+        return usedBytes;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public double getHitRatio() {
+        long total = hits.get() + misses.get();
+        return total == 0 ? 0 : (double) hits.get() / total;
+    }
+
+    private static String cacheKey(String bucket, String key) {
+        String tenantId = TenantContext.getTenantId();
+        return (tenantId != null ? tenantId : "default") + ":" + bucket + "/" + key;
+    }
+
+    private Entry load(String cacheKey, String bucket, String key, Entry cached, Fetcher fetcher) throws IOException {
+        Path target = root.resolve(DigestUtils.md5DigestAsHex(cacheKey.getBytes(StandardCharsets.UTF_8))
+                + "-" + fileCounter.incrementAndGet());
+        FetchResult result;
+        try {
+            result = fetcher.fetch(key, cached != null ? cached.eTag : null, target, maxObjectBytes);
+        } catch (IOException | RuntimeException e) {
+            deleteQuietly(target);
+            throw e;
+        }
+
+        long now = System.currentTimeMillis();
+        switch (result.getStatus()) {
+            case NOT_MODIFIED:
+                revalidations.incrementAndGet();
+                hits.incrementAndGet();
+                cached.validatedAt = now;
+                return cached;
+            case TOO_LARGE:
+                misses.incrementAndGet();
+                deleteQuietly(target);
+                oversized.put(cacheKey, now);
+                if (oversized.size() > 10_000) {
+                    oversized.clear();
+                }
+                return null;
+            default:
+                misses.incrementAndGet();
+                break;
+        }
+
+        Entry entry = new Entry(bucket, key, target, result.getSize(), result.getETag(), result.getContentType(),
+                result.getContentEncoding(), result.getLastModified());
+        entry.validatedAt = now;
+        oversized.remove(cacheKey);
+
+        if (!admit(cacheKey, entry, cached)) {
+            // Served once from its own file, which is deleted after the grace period
+            rejections.incrementAndGet();
+            scheduleDelete(target);
+        }
+        return entry;
+    }
+
+    private boolean admit(String cacheKey, Entry entry, Entry replaced) {
+        Path stale = null;
+        boolean admitted;
+        List<Path> evicted = new ArrayList<>();
+
+        synchronized (this) {
+            Entry current = entries.remove(cacheKey);
+            if (current != null) {
+                usedBytes -= current.size;
+                stale = current.file;
+            }
+
+            int frequency = sketch.frequency(cacheKey.hashCode());
+            Iterator<Map.Entry<String, Entry>> lru = entries.entrySet().iterator();
+            admitted = entry.size <= maxBytes;
+            while (admitted && usedBytes + entry.size > maxBytes && lru.hasNext()) {
+                Map.Entry<String, Entry> victim = lru.next();
+                if (replaced == null && sketch.frequency(victim.getKey().hashCode()) > frequency) {
+                    // The victim is more popular than the newcomer
+                    admitted = false;
+                    break;
+                }
+                usedBytes -= victim.getValue().size;
+                evicted.add(victim.getValue().file);
+                lru.remove();
+            }
+
+            if (admitted) {
+                entries.put(cacheKey, entry);
+                usedBytes += entry.size;
+            }
+        }
+
+        if (stale != null) {
+            scheduleDelete(stale);
+        }
+        evictions.addAndGet(evicted.size());
+        evicted.forEach(this::scheduleDelete);
+        return admitted;
+    }
+
+    private Entry await(CompletableFuture<Entry> running, String cacheKey) throws IOException {
+        try {
+            Entry entry = running.get();
+            hits.incrementAndGet();
+            return entry;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for " + cacheKey);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Failed to fetch " + cacheKey, e.getCause());
+        }
+    }
+
+    private void scheduleDelete(Path file) {
+        try {
+            deleter.schedule(() -> deleteQuietly(file), deleteGraceSeconds, TimeUnit.SECONDS);
+        } catch (RuntimeException e) {
+            deleteQuietly(file);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Failed to delete cached object {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("cache.objects.size.bytes", this, LocalObjectCache::getUsedBytes).register(registry);
+        Gauge.builder("cache.objects.entries", this, LocalObjectCache::getEntryCount).register(registry);
+        Gauge.builder("cache.objects.hit.ratio", this, LocalObjectCache::getHitRatio).register(registry);
+        FunctionCounter.builder("cache.objects.gets", hits, AtomicLong::get)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.objects.gets", misses, AtomicLong::get)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.objects.revalidations", revalidations, AtomicLong::get).register(registry);
+        FunctionCounter.builder("cache.objects.evictions", evictions, AtomicLong::get).register(registry);
+        FunctionCounter.builder("cache.objects.rejections", rejections, AtomicLong::get).register(registry);
+        FunctionCounter.builder("cache.objects.served.bytes", bytesServed, AtomicLong::get).register(registry);
+    }
+
+    /**
+     * A cached object
+     */
+    @Getter
+    public static final class Entry {
+
+        private final String bucket;
+        private final String key;
+        private final Path file;
+        private final long size;
+
+        /**
+         * Entity tag, quoted
+         */
+        private final String eTag;
+
+        private final String contentType;
+
+        /**
+         * Content coding the cached bytes are compressed with, or null
+         */
+        private final String contentEncoding;
+
+        private final Instant lastModified;
+        private volatile long validatedAt;
+
+        private Entry(String bucket, String key, Path file, long size, String eTag, String contentType,
+                      String contentEncoding, Instant lastModified) {
+            this.bucket = bucket;
+            this.key = key;
+            this.file = file;
+            this.size = size;
+            this.eTag = eTag;
+            this.contentType = contentType;
+            this.contentEncoding = contentEncoding;
+            this.lastModified = lastModified;
+        }
+    }
+
+    /**
+     * Fetches an object from its store into a file
+     */
+    @FunctionalInterface
+    public interface Fetcher {
+
+        /**
+         * Write the object to the target file, unless its ETag still equals {@code ifNoneMatch}
+         * or it is larger than {@code maxBytes}
+         *
+         * @param key Object key
+         * @param ifNoneMatch ETag of the cached copy, or null
+         * @param target File to write the object to
+         * @param maxBytes Largest object to write
+         * @return What was fetched
+         * @throws java.io.FileNotFoundException If the object does not exist
+         * @throws IOException If the object cannot be fetched
+         */
+        FetchResult fetch(String key, String ifNoneMatch, Path target, long maxBytes) throws IOException;
+    }
+
+    /**
+     * Outcome of a {@link Fetcher} call
+     */
+    @Getter
+    @AllArgsConstructor(access = AccessLevel.PRIVATE)
+    public static final class FetchResult {
+
+        public enum Status {
+            FETCHED, NOT_MODIFIED, TOO_LARGE
+        }
+
+        private static final FetchResult NOT_MODIFIED = new FetchResult(Status.NOT_MODIFIED, 0, null, null, null, null);
+        private static final FetchResult TOO_LARGE = new FetchResult(Status.TOO_LARGE, 0, null, null, null, null);
+
+        private final Status status;
+        private final long size;
+        private final String eTag;
+        private final String contentType;
+        private final String contentEncoding;
+        private final Instant lastModified;
+
+        public static FetchResult fetched(long size, String eTag, String contentType, Instant lastModified) {
+            return fetched(size, eTag, contentType, null, lastModified);
+        }
+
+        public static FetchResult fetched(long size, String eTag, String contentType, String contentEncoding,
+                                          Instant lastModified) {
+            return new FetchResult(Status.FETCHED, size, eTag, contentType, contentEncoding, lastModified);
+        }
+
+        public static FetchResult notModified() {
+            return NOT_MODIFIED;
+        }
+
+        public static FetchResult tooLarge() {
+            return TOO_LARGE;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.applib.cache;
+
+import com.google.common.cache.Cache;
+import java.util.Collection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local copy of the hot entries of one Redis map or Spring cache, obtained from
+ * {@link NearCacheRegistry}.
+ *
+ * <p>Entries read from Redis are only kept if no invalidation arrived while they were read, so a
+ * value that was overwritten meanwhile on another pod is never cached.
+ */
+public class NearCache<K, V> {
+
+    private final String name;
+    private final Cache<K, V> local;
+    private final long maxTtlSeconds;
+    private final AtomicLong generation = new AtomicLong();
+
+    NearCache(String name, Cache<K, V> local, long maxTtlSeconds) {
+        this.name = name;
+        this.local = local;
+        this.maxTtlSeconds = maxTtlSeconds;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Longest time to keep a copy the cache was created with, 0 for the configured time
+     */
+    long getMaxTtlSeconds() {
+        return maxTtlSeconds;
+    }
+
+    /**
+     * Get a local copy
+     *
+     * @param key The key
+     * @return The value, or null if it is not cached on this pod
+     */
+    public V getIfPresent(Object key) {
+        return local.getIfPresent(key);
+    }
+
+    /**
+     * Get the generation to pass to {@link #putIfCurrent}, taken before reading from Redis
+     *
+     * @return The current generation
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    /**
+     * Keep a value read from Redis unless an invalidation arrived since the read started
+     *
+     * @param key The key
+     * @param value The value read
+     * @param readGeneration {@link #generation()} from before the read
+     */
+    public void putIfCurrent(K key, V value, long readGeneration) {
+        if (generation.get() != readGeneration) {
+            return;
+        }
+        local.put(key, value);
+        if (generation.get() != readGeneration) {
+            // Invalidated between the check and the put
+            local.invalidate(key);
+        }
+    }
+
+    /**
+     * Drop local copies, or all of them
+     *
+     * @param keys The keys, or null for all
+     */
+    void invalidateLocal(Collection<?> keys) {
+        generation.incrementAndGet();
+        if (keys == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidateAll(keys);
+        }
+    }
+}
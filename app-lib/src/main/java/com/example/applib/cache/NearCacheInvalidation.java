@@ -0,0 +1,28 @@
+package com.example.applib.cache;
+
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Broadcast by a pod that wrote entries, so the other pods drop their copies of them.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearCacheInvalidation implements Serializable {
+
+    /**
+     * ID of the sending pod, which has dropped its copy already
+     */
+    private String origin;
+
+    private String cache;
+
+    /**
+     * The written keys, or null if the whole cache was cleared
+     */
+    private List<Object> keys;
+}
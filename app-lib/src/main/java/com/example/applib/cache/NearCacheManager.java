@@ -0,0 +1,157 @@
+package com.example.applib.cache;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+/**
+ * Spring cache manager that reads the caches of another, Redis backed manager through
+ * {@link NearCache}s. Caches whose near cache is disabled are handed out as they are.
+ */
+public class NearCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final NearCacheRegistry nearCacheRegistry;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    public NearCacheManager(CacheManager delegate, NearCacheRegistry nearCacheRegistry) {
+        this.delegate = delegate;
+        this.nearCacheRegistry = nearCacheRegistry;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache != null) {
+            return cache;
+        }
+
+        Cache remote = delegate.getCache(name);
+        if (remote == null) {
+            return null;
+        }
+        NearCache<Object, Object> nearCache = nearCacheRegistry.getCache(name);
+        return caches.computeIfAbsent(name, key -> nearCache != null ? new NearCachedCache(remote, nearCache) : remote);
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+
+    /**
+     * A Spring cache read through a near cache. Null values are not kept on the pod.
+     */
+    private class NearCachedCache implements Cache {
+
+        private final Cache remote;
+        private final NearCache<Object, Object> nearCache;
+
+        NearCachedCache(Cache remote, NearCache<Object, Object> nearCache) {
+            this.remote = remote;
+            this.nearCache = nearCache;
+        }
+
+        @Override
+        public String getName() {
+            return remote.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return remote.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            Object value = nearCache.getIfPresent(key);
+            if (value != null) {
+                return new SimpleValueWrapper(value);
+            }
+
+            long generation = nearCache.generation();
+            ValueWrapper wrapper = remote.get(key);
+            if (wrapper != null && wrapper.get() != null) {
+                nearCache.putIfCurrent(key, wrapper.get(), generation);
+            }
+            return wrapper;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Class<T> type) {
+            Object value = nearCache.getIfPresent(key);
+            if (value != null && (type == null || type.isInstance(value))) {
+                return (T) value;
+            }
+
+            long generation = nearCache.generation();
+            T loaded = remote.get(key, type);
+            if (loaded != null) {
+                nearCache.putIfCurrent(key, loaded, generation);
+            }
+            return loaded;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            Object value = nearCache.getIfPresent(key);
+            if (value != null) {
+                return (T) value;
+            }
+
+            long generation = nearCache.generation();
+            T loaded = remote.get(key, valueLoader);
+            if (loaded != null) {
+                nearCache.putIfCurrent(key, loaded, generation);
+            }
+            return loaded;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            remote.put(key, value);
+            nearCacheRegistry.invalidate(getName(), key);
+        }
+
+        @Override
+        public ValueWrapper putIfAbsent(Object key, Object value) {
+            ValueWrapper existing = remote.putIfAbsent(key, value);
+            if (existing == null) {
+                nearCacheRegistry.invalidate(getName(), key);
+            }
+            return existing;
+        }
+
+        @Override
+        public void evict(Object key) {
+            remote.evict(key);
+            nearCacheRegistry.invalidate(getName(), key);
+        }
+
+        @Override
+        public boolean evictIfPresent(Object key) {
+            boolean evicted = remote.evictIfPresent(key);
+            nearCacheRegistry.invalidate(getName(), key);
+            return evicted;
+        }
+
+        @Override
+        public void clear() {
+            remote.clear();
+            nearCacheRegistry.invalidate(getName(), null);
+        }
+
+        @Override
+        public boolean invalidate() {
+            boolean invalidated = remote.invalidate();
+            nearCacheRegistry.invalidate(getName(), null);
+            return invalidated;
+        }
+    }
+}
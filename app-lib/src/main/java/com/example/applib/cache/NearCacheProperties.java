@@ -0,0 +1,63 @@
+package com.example.applib.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Bounds of the near caches, by cache or map name, under {@code cache.near}.
+ *
+ * <p>A name without its own entry in {@code caches} uses {@code defaults}; an entry only needs
+ * the settings that differ from them.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.near")
+public class NearCacheProperties {
+
+    private boolean enabled = true;
+
+    private Spec defaults = new Spec(true, 10_000L, 60L);
+
+    private Map<String, Spec> caches = new HashMap<>();
+
+    /**
+     * Get the settings of a cache, falling back to the defaults for those it does not set
+     *
+     * @param name Cache or map name
+     * @return The settings, all of them set
+     */
+    public Spec forName(String name) {
+        Spec spec = caches.get(name);
+        if (spec == null) {
+            return defaults;
+        }
+        return new Spec(
+                spec.getEnabled() != null ? spec.getEnabled() : defaults.getEnabled(),
+                spec.getMaxSize() != null ? spec.getMaxSize() : defaults.getMaxSize(),
+                spec.getTtlSeconds() != null ? spec.getTtlSeconds() : defaults.getTtlSeconds());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Spec {
+
+        private Boolean enabled;
+
+        /**
+         * Largest number of entries kept on each pod
+         */
+        private Long maxSize;
+
+        /**
+         * How long an entry is kept after it was read from Redis, which bounds the staleness
+         * when an invalidation is lost
+         */
+        private Long ttlSeconds;
+    }
+}
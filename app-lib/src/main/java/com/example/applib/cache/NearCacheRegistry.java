@@ -0,0 +1,204 @@
+package com.example.applib.cache;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.BaseStatusListener;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+/**
+ * Near caches in front of Redis maps and the Redis backed Spring caches.
+ *
+ * <p>Hot entries are kept on each pod in a bounded Guava cache, so reading them takes no round
+ * trip to Redis. A pod that writes an entry drops its own copy and broadcasts the key on a Redis
+ * topic, and every other pod drops its copy too. When the subscription to the topic is
+ * re-established after a lost connection all copies are dropped, as invalidations may have been
+ * missed meanwhile; {@code ttl-seconds} bounds how stale a copy can get otherwise.
+ *
+ * <p>Hits, misses, size and evictions of every near cache are published as the Micrometer
+ * {@code cache.*} meters with the tag {@code tier=near}.
+ */
+@Slf4j
+@Component
+public class NearCacheRegistry {
+
+    private static final String INVALIDATION_TOPIC = "near-cache:invalidate";
+
+    private final NearCacheProperties properties;
+    private final ObjectProvider<RedissonClient> redissonClientProvider;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    // Tells this pod's own broadcasts apart, whose copies were dropped before sending
+    private final String origin = UUID.randomUUID().toString();
+    private final Map<String, NearCache<?, ?>> caches = new ConcurrentHashMap<>();
+    private final Set<String> mapNames = ConcurrentHashMap.newKeySet();
+
+    private RTopic topic;
+    private Integer messageListenerId;
+    private Integer statusListenerId;
+
+    public NearCacheRegistry(NearCacheProperties properties,
+                             ObjectProvider<RedissonClient> redissonClientProvider,
+                             ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.properties = properties;
+        this.redissonClientProvider = redissonClientProvider;
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            log.info("Near caches are disabled");
+            return;
+        }
+
+        RedissonClient redissonClient = redissonClientProvider.getIfAvailable();
+        if (redissonClient == null) {
+            return;
+        }
+        try {
+            topic = redissonClient.getTopic(INVALIDATION_TOPIC);
+            messageListenerId = topic.addListener(NearCacheInvalidation.class, (channel, message) -> onInvalidation(message));
+            statusListenerId = topic.addListener(new BaseStatusListener() {
+                @Override
+                public void onSubscribe(String channel) {
+                    caches.values().forEach(cache -> cache.invalidateLocal(null));
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Near cache invalidations will not be received from other pods: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (topic != null && messageListenerId != null) {
+            topic.removeListener(messageListenerId);
+        }
+        if (topic != null && statusListenerId != null) {
+            topic.removeListener(statusListenerId);
+        }
+    }
+
+    /**
+     * Get the near cache of a name, creating it on first use
+     *
+     * @param name Cache or map name
+     * @return The near cache, or null if near caching is disabled for the name
+     */
+    public <K, V> NearCache<K, V> getCache(String name) {
+        return getCache(name, 0);
+    }
+
+    /**
+     * Get the near cache of a name whose entries expire in Redis, creating it on first use
+     *
+     * @param name Cache or map name
+     * @param maxTtlSeconds Longest time to keep a copy, as the entry may expire in Redis by then;
+     *                      0 to use the configured time
+     * @return The near cache, or null if near caching is disabled for the name
+     * @throws IllegalStateException If the near cache of the name was created with another TTL
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> NearCache<K, V> getCache(String name, long maxTtlSeconds) {
+        NearCacheProperties.Spec spec = properties.forName(name);
+        if (!properties.isEnabled() || !Boolean.TRUE.equals(spec.getEnabled())) {
+            return null;
+        }
+        NearCache<?, ?> cache = caches.computeIfAbsent(name, key -> create(key, spec, maxTtlSeconds));
+        if (cache.getMaxTtlSeconds() != maxTtlSeconds) {
+            throw new IllegalStateException("Near cache " + name + " is used with a TTL of "
+                    + cache.getMaxTtlSeconds() + " seconds, not " + maxTtlSeconds);
+        }
+        return (NearCache<K, V>) cache;
+    }
+
+    /**
+     * Check whether a Redis map is read through a {@link NearCachedMap}, which every write to
+     * the map must then go through
+     *
+     * @param name Map name
+     * @return Whether a near cached map of the name was created on this pod
+     */
+    public boolean isNearCachedMap(String name) {
+        return mapNames.contains(name);
+    }
+
+    void registerMap(String name) {
+        mapNames.add(name);
+    }
+
+    /**
+     * Drop the copies of a key on this pod and on all other pods. Call after writing the key to Redis.
+     *
+     * @param name Cache or map name
+     * @param key The written key, or null after clearing the whole cache
+     */
+    public void invalidate(String name, Object key) {
+        invalidateAll(name, key != null ? Collections.singletonList(key) : null);
+    }
+
+    /**
+     * Drop the copies of many keys on this pod and on all other pods, with a single broadcast.
+     * Call after writing the keys to Redis.
+     *
+     * @param name Cache or map name
+     * @param keys The written keys, or null after clearing the whole cache
+     */
+    public void invalidateAll(String name, Collection<?> keys) {
+        if (keys != null && keys.isEmpty()) {
+            return;
+        }
+        NearCache<?, ?> cache = caches.get(name);
+        if (cache != null) {
+            cache.invalidateLocal(keys);
+        }
+
+        // Other pods may hold copies even if this one never read the cache
+        if (topic == null || !Boolean.TRUE.equals(properties.forName(name).getEnabled())) {
+            return;
+        }
+        try {
+            topic.publish(new NearCacheInvalidation(origin, name, keys != null ? new ArrayList<>(keys) : null));
+        } catch (Exception e) {
+            log.warn("Failed to broadcast near cache invalidation of {} in {}: {}", keys, name, e.getMessage());
+        }
+    }
+
+    private void onInvalidation(NearCacheInvalidation invalidation) {
+        if (origin.equals(invalidation.getOrigin())) {
+            return;
+        }
+        NearCache<?, ?> cache = caches.get(invalidation.getCache());
+        if (cache != null) {
+            cache.invalidateLocal(invalidation.getKeys());
+        }
+    }
+
+    private NearCache<?, ?> create(String name, NearCacheProperties.Spec spec, long maxTtlSeconds) {
+        long ttlSeconds = maxTtlSeconds > 0 ? Math.min(spec.getTtlSeconds(), maxTtlSeconds) : spec.getTtlSeconds();
+        Cache<Object, Object> local = CacheBuilder.newBuilder()
+                .maximumSize(spec.getMaxSize())
+                .expireAfterWrite(ttlSeconds, TimeUnit.SECONDS)
+                .recordStats()
+                .build();
+        meterRegistryProvider.ifAvailable(registry -> GuavaCacheMetrics.monitor(registry, local, name, "tier", "near"));
+        log.info("Near cache {} keeps up to {} entries for {} seconds", name, spec.getMaxSize(), ttlSeconds);
+        return new NearCache<>(name, local, maxTtlSeconds);
+    }
+}
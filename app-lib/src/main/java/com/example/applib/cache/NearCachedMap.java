@@ -0,0 +1,129 @@
+package com.example.applib.cache;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.redisson.api.RMap;
+import org.redisson.api.RMapCache;
+
+/**
+ * A Redis map read through a {@link NearCache}. Writes go to Redis and then invalidate the key on
+ * every pod, so they must all be made through this class or a {@code RedisBatch}, which
+ * invalidates the same way. The plain map is not exposed, and {@code RedisUtil.getMap} refuses to
+ * hand it out once the map is read through a near cache. Absent keys are not cached.
+ */
+public class NearCachedMap<K, V> {
+
+    private final RMap<K, V> map;
+    private final NearCache<K, V> nearCache;
+    private final NearCacheRegistry nearCacheRegistry;
+    private final long ttlSeconds;
+
+    /**
+     * Read a Redis map through the near cache of its name
+     *
+     * @param map The Redis map
+     * @param nearCacheRegistry Registry providing the near cache of the map's name
+     * @param ttlSeconds Time to live of entries written to an {@link RMapCache}, 0 for none
+     * @throws IllegalStateException If the map is read through a near cache with another TTL
+     */
+    public NearCachedMap(RMap<K, V> map, NearCacheRegistry nearCacheRegistry, long ttlSeconds) {
+        this.map = map;
+        this.nearCacheRegistry = nearCacheRegistry;
+        this.ttlSeconds = ttlSeconds;
+        this.nearCache = nearCacheRegistry.getCache(map.getName(), ttlSeconds);
+        nearCacheRegistry.registerMap(map.getName());
+    }
+
+    /**
+     * Get a value, from this pod's copy if there is one
+     *
+     * @param key The key
+     * @return The value, or null if the key is absent
+     */
+    public V get(K key) {
+        if (nearCache == null) {
+            return map.get(key);
+        }
+        V value = nearCache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+
+        long generation = nearCache.generation();
+        value = map.get(key);
+        if (value != null) {
+            nearCache.putIfCurrent(key, value, generation);
+        }
+        return value;
+    }
+
+    /**
+     * Get many values, reading those not cached on this pod in one round trip
+     *
+     * @param keys The keys
+     * @return The values of the keys that are present
+     */
+    public Map<K, V> getAll(Set<K> keys) {
+        if (nearCache == null) {
+            return map.getAll(keys);
+        }
+
+        Map<K, V> values = new HashMap<>();
+        Set<K> missing = new HashSet<>();
+        for (K key : keys) {
+            V value = nearCache.getIfPresent(key);
+            if (value != null) {
+                values.put(key, value);
+            } else {
+                missing.add(key);
+            }
+        }
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        long generation = nearCache.generation();
+        Map<K, V> loaded = map.getAll(missing);
+        loaded.forEach((key, value) -> nearCache.putIfCurrent(key, value, generation));
+        values.putAll(loaded);
+        return values;
+    }
+
+    /**
+     * Write a value and drop the copies of its key on all pods
+     *
+     * @param key The key
+     * @param value The value
+     */
+    public void put(K key, V value) {
+        if (ttlSeconds > 0 && map instanceof RMapCache) {
+            ((RMapCache<K, V>) map).fastPut(key, value, ttlSeconds, TimeUnit.SECONDS);
+        } else {
+            map.fastPut(key, value);
+        }
+        nearCacheRegistry.invalidate(map.getName(), key);
+    }
+
+    /**
+     * Remove a key and drop its copies on all pods
+     *
+     * @param key The key
+     * @return Whether the key was present
+     */
+    public boolean remove(K key) {
+        boolean removed = map.fastRemove(key) > 0;
+        nearCacheRegistry.invalidate(map.getName(), key);
+        return removed;
+    }
+
+    /**
+     * Remove all keys and drop all copies on all pods
+     */
+    public void clear() {
+        map.delete();
+        nearCacheRegistry.invalidate(map.getName(), null);
+    }
+}
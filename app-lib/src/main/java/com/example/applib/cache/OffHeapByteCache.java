@@ -0,0 +1,362 @@
+package com.example.applib.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Byte-bounded cache whose values live in direct memory, so cached payloads add nothing to the
+ * Java heap the GC has to trace.
+ *
+ * <p>The capacity is split into independently locked segments. Each segment is a log-structured
+ * ring over a single direct {@link ByteBuffer}: values are appended at the head and space is
+ * reclaimed from the tail. Eviction is CLOCK-like: a tail entry that was read since it was
+ * written gets one second chance and is moved to the head. New entries must also pass a TinyLFU
+ * admission check against the entry they would evict, which keeps one-off reads from flushing
+ * hot rows. Only small index records (key, offset, length) stay on-heap.
+ */
+public class OffHeapByteCache {
+
+    private static final int AVERAGE_ENTRY_BYTES = 512;
+
+    private final Segment[] segments;
+    private final int segmentMask;
+    private final int maxEntryBytes;
+    private final long ttlMillis;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * @param maxBytes Total direct memory used for values
+     * @param segmentCount Number of segments, rounded down to a power of two
+     * @param maxEntryBytes Largest value that will be cached
+     * @param ttlMillis Time to live of an entry
+     */
+    public OffHeapByteCache(long maxBytes, int segmentCount, int maxEntryBytes, long ttlMillis) {
+        int count = Integer.highestOneBit(Math.max(1, segmentCount));
+        int segmentCapacity = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, maxBytes / count));
+
+        this.segments = new Segment[count];
+        this.segmentMask = count - 1;
+        this.maxEntryBytes = Math.min(maxEntryBytes, segmentCapacity);
+        this.ttlMillis = ttlMillis;
+
+        int expectedEntries = Math.max(16, segmentCapacity / AVERAGE_ENTRY_BYTES);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(segmentCapacity, expectedEntries, this.maxEntryBytes);
+        }
+    }
+
+    /**
+     * Get a copy of the cached value
+     *
+     * @param key Cache key
+     * @return The value, or null if absent or expired
+     */
+    public byte[] get(String key) {
+        int hash = spread(key.hashCode());
+        byte[] value = segmentFor(hash).get(key, hash, System.currentTimeMillis());
+        if (value == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return value;
+    }
+
+    /**
+     * Store a value, replacing any previous value for the key
+     *
+     * @param key Cache key
+     * @param value Value bytes
+     * @return true if the value was admitted
+     */
+    public boolean put(String key, byte[] value) {
+        int hash = spread(key.hashCode());
+        Segment segment = segmentFor(hash);
+
+        if (value.length > maxEntryBytes) {
+            segment.remove(key);
+            rejections.increment();
+            return false;
+        }
+
+        long now = System.currentTimeMillis();
+        boolean admitted = segment.put(key, hash, value, now, now + ttlMillis);
+        if (!admitted) {
+            rejections.increment();
+        }
+        return admitted;
+    }
+
+    /**
+     * Remove a value
+     *
+     * @param key Cache key
+     */
+    public void remove(String key) {
+        segmentFor(spread(key.hashCode())).remove(key);
+    }
+
+    /**
+     * Remove the values of every key starting with a prefix
+     *
+     * @param prefix Key prefix
+     */
+    public void removeByPrefix(String prefix) {
+        for (Segment segment : segments) {
+            segment.removeByPrefix(prefix);
+        }
+    }
+
+    /**
+     * Remove all values
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    public long getUsedBytes() {
+        long used = 0;
+        for (Segment segment : segments) {
+            used += segment.usedBytes();
+        }
+        return used;
+    }
+
+    public long getEntryCount() {
+        long entries = 0;
+        for (Segment segment : segments) {
+            entries += segment.size();
+        }
+        return entries;
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[hash & segmentMask];
+    }
+
+    private static int spread(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private static final class Entry {
+
+        private final String key;
+        private final int hash;
+        private final int length;
+        private final long expiresAt;
+        private int offset;
+        private boolean referenced;
+        private boolean removed;
+
+        private Entry(String key, int hash, int offset, int length, long expiresAt) {
+            this.key = key;
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final class Segment {
+
+        private final ByteBuffer slab;
+        private final ByteBuffer scratch;
+        private final int capacity;
+        private final Map<String, Entry> index = new HashMap<>();
+        private final ArrayDeque<Entry> log = new ArrayDeque<>();
+        private final FrequencySketch sketch;
+        private int head;
+        private long usedBytes;
+
+        private Segment(int capacity, int expectedEntries, int maxEntryBytes) {
+            this.capacity = capacity;
+            this.slab = ByteBuffer.allocateDirect(capacity);
+            this.scratch = ByteBuffer.allocateDirect(maxEntryBytes);
+            this.sketch = new FrequencySketch(expectedEntries);
+        }
+
+        synchronized byte[] get(String key, int hash, long now) {
+            sketch.increment(hash);
+
+            Entry entry = index.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt <= now) {
+                unlink(entry);
+                return null;
+            }
+
+            entry.referenced = true;
+            byte[] value = new byte[entry.length];
+            slab.get(entry.offset, value);
+            return value;
+        }
+
+        synchronized boolean put(String key, int hash, byte[] value, long now, long expiresAt) {
+            Entry existing = index.get(key);
+            if (existing != null) {
+                unlink(existing);
+            }
+
+            boolean admissionChecked = false;
+            int offset = allocate(value.length);
+            while (offset < 0) {
+                Entry victim = log.pollFirst();
+                if (victim == null) {
+                    return false;
+                }
+
+                if (!victim.removed) {
+                    if (victim.referenced && victim.expiresAt > now) {
+                        // Second chance: move the entry to the head instead of dropping it
+                        victim.referenced = false;
+                        if (!relocate(victim)) {
+                            evict(victim);
+                        }
+                    } else {
+                        if (!admissionChecked && victim.expiresAt > now) {
+                            admissionChecked = true;
+                            if (sketch.frequency(hash) < sketch.frequency(victim.hash)) {
+                                log.addFirst(victim);
+                                return false;
+                            }
+                        }
+                        evict(victim);
+                    }
+                }
+                offset = allocate(value.length);
+            }
+
+            slab.put(offset, value);
+            Entry entry = new Entry(key, hash, offset, value.length, expiresAt);
+            append(entry);
+            index.put(key, entry);
+            usedBytes += value.length;
+            return true;
+        }
+
+        synchronized void remove(String key) {
+            Entry entry = index.get(key);
+            if (entry != null) {
+                unlink(entry);
+            }
+        }
+
+        synchronized void removeByPrefix(String prefix) {
+            index.values().removeIf(entry -> {
+                if (!entry.key.startsWith(prefix)) {
+                    return false;
+                }
+                usedBytes -= entry.length;
+                entry.removed = true;
+                return true;
+            });
+        }
+
+        synchronized void clear() {
+            index.clear();
+            log.clear();
+            head = 0;
+            usedBytes = 0;
+        }
+
+        synchronized long usedBytes() {
+            return usedBytes;
+        }
+
+        synchronized int size() {
+            return index.size();
+        }
+
+        /**
+         * Find a contiguous free region of the given length between the head and the oldest entry
+         *
+         * @return Offset of the region, or -1 if space has to be reclaimed first
+         */
+        private int allocate(int length) {
+            if (log.isEmpty()) {
+                head = 0;
+                return length <= capacity ? 0 : -1;
+            }
+
+            int tail = log.peekFirst().offset;
+            if (head > tail) {
+                if (capacity - head >= length) {
+                    return head;
+                }
+                // Wrap around to the start of the slab
+                return tail >= length ? 0 : -1;
+            }
+            if (head < tail) {
+                return tail - head >= length ? head : -1;
+            }
+            // Head caught up with the tail: the slab is full
+            return -1;
+        }
+
+        /**
+         * Move an entry that was already taken off the log to the head. The old and new regions
+         * may overlap, so the bytes go through the scratch buffer.
+         */
+        private boolean relocate(Entry entry) {
+            int offset = allocate(entry.length);
+            if (offset < 0) {
+                return false;
+            }
+
+            scratch.put(0, slab, entry.offset, entry.length);
+            slab.put(offset, scratch, 0, entry.length);
+            entry.offset = offset;
+            append(entry);
+            return true;
+        }
+
+        private void append(Entry entry) {
+            log.addLast(entry);
+            head = entry.offset + entry.length;
+        }
+
+        private void evict(Entry entry) {
+            index.remove(entry.key);
+            usedBytes -= entry.length;
+            entry.removed = true;
+            evictions.increment();
+        }
+
+        /**
+         * Drop an entry from the index. Its bytes are reclaimed once it reaches the tail of the log.
+         */
+        private void unlink(Entry entry) {
+            index.remove(entry.key);
+            usedBytes -= entry.length;
+            entry.removed = true;
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.applib.cache;
+
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.RedisUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Cache of presigned URLs keyed by tenant, signing access key, operation, bucket, key and lifetime.
+ * A rotated access key therefore never gets URLs signed with the previous one.
+ *
+ * <p>A URL is handed out again until {@code s3.presign.cache.reuse-fraction} of its lifetime has
+ * passed, so repeated requests for the same object get the same URL, which browsers can cache,
+ * and the pod skips the SigV4 signing. URLs are shared between pods through Redis when it is
+ * available, so the URL does not depend on which pod answered.
+ */
+@Slf4j
+@Component
+public class PresignedUrlCache {
+
+    private static final String SHARED_MAP = "presigned-urls";
+
+    private final ObjectProvider<RedisUtil> redisUtilProvider;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    @Value("${s3.presign.cache.enabled:true}")
+    private boolean enabled;
+
+    @Value("${s3.presign.cache.reuse-fraction:0.5}")
+    private double reuseFraction;
+
+    @Value("${s3.presign.cache.max-entries:100000}")
+    private long maxEntries;
+
+    @Value("${s3.presign.cache.shared:true}")
+    private boolean shared;
+
+    private final AtomicLong localHits = new AtomicLong();
+    private final AtomicLong sharedHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private Cache<String, PresignedUrl> local;
+    private RMapCache<String, String> sharedUrls;
+
+    public PresignedUrlCache(ObjectProvider<RedisUtil> redisUtilProvider,
+                             ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.redisUtilProvider = redisUtilProvider;
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Presigned URL cache is disabled");
+            return;
+        }
+
+        local = CacheBuilder.newBuilder()
+                .maximumSize(maxEntries)
+                .build();
+
+        RedisUtil redisUtil = shared ? redisUtilProvider.getIfAvailable() : null;
+        if (redisUtil != null) {
+            sharedUrls = redisUtil.getExpiringMap(SHARED_MAP);
+        }
+
+        meterRegistryProvider.ifAvailable(this::registerMetrics);
+    }
+
+    /**
+     * Get a presigned URL, signing it only if no reusable one is cached
+     *
+     * @param accessKeyId Access key the signer signs with
+     * @param operation Operation the URL allows, e.g. GET or PUT
+     * @param bucket Bucket name
+     * @param key Object key
+     * @param lifetime Lifetime of newly signed URLs
+     * @param signer Signs a URL for a key, returning null on failure
+     * @return The URL, or null if signing failed
+     */
+    public URL get(String accessKeyId, String operation, String bucket, String key, Duration lifetime,
+                   Function<String, URL> signer) {
+        return getAll(accessKeyId, operation, bucket, List.of(key), lifetime, signer).get(key);
+    }
+
+    /**
+     * Get presigned URLs for many keys. Cached URLs are looked up in one round trip and the rest
+     * are signed in parallel.
+     *
+     * @param accessKeyId Access key the signer signs with
+     * @param operation Operation the URLs allow, e.g. GET or PUT
+     * @param bucket Bucket name
+     * @param keys Object keys
+     * @param lifetime Lifetime of newly signed URLs
+     * @param signer Signs a URL for a key, returning null on failure; must not depend on the caller's thread
+     * @return URL by key in the order of the keys, null where signing failed
+     */
+    public Map<String, URL> getAll(String accessKeyId, String operation, String bucket, Collection<String> keys,
+                                   Duration lifetime, Function<String, URL> signer) {
+        Map<String, URL> urls = new LinkedHashMap<>();
+        keys.forEach(key -> urls.put(key, null));
+        if (!enabled) {
+            keys.parallelStream().forEach(key -> {
+                URL url = signer.apply(key);
+                synchronized (urls) {
+                    urls.put(key, url);
+                }
+            });
+            return urls;
+        }
+
+        String prefix = cachePrefix(accessKeyId, operation, bucket, lifetime);
+        long now = System.currentTimeMillis();
+
+        List<String> missing = new ArrayList<>();
+        for (String key : urls.keySet()) {
+            PresignedUrl cached = local.getIfPresent(prefix + key);
+            if (cached != null && cached.isReusable(now, reuseFraction)) {
+                localHits.incrementAndGet();
+                urls.put(key, cached.url);
+            } else {
+                missing.add(key);
+            }
+        }
+
+        if (!missing.isEmpty() && sharedUrls != null) {
+            missing = lookupShared(prefix, missing, urls, now);
+        }
+        if (missing.isEmpty()) {
+            return urls;
+        }
+
+        // SigV4 signing is CPU bound, so large batches are spread over the common pool
+        Map<String, PresignedUrl> signed = new HashMap<>();
+        missing.parallelStream().forEach(key -> {
+            URL url = signer.apply(key);
+            if (url != null) {
+                PresignedUrl presigned = new PresignedUrl(url, now, now + lifetime.toMillis());
+                synchronized (signed) {
+                    signed.put(key, presigned);
+                }
+            }
+        });
+        misses.addAndGet(missing.size());
+
+        Map<String, String> toShare = new HashMap<>();
+        signed.forEach((key, presigned) -> {
+            urls.put(key, presigned.url);
+            local.put(prefix + key, presigned);
+            toShare.put(prefix + key, presigned.encode());
+        });
+        if (sharedUrls != null && !toShare.isEmpty()) {
+            try {
+                long reuseMillis = (long) (lifetime.toMillis() * reuseFraction);
+                sharedUrls.putAll(toShare, reuseMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.warn("Failed to share {} presigned URLs: {}", toShare.size(), e.getMessage());
+            }
+        }
+        return urls;
+    }
+
+    private List<String> lookupShared(String prefix, List<String> missing, Map<String, URL> urls, long now) {
+        Map<String, String> found;
+        try {
+            List<String> cacheKeys = missing.stream().map(key -> prefix + key).toList();
+            found = sharedUrls.getAll(new HashSet<>(cacheKeys));
+        } catch (Exception e) {
+            log.warn("Failed to look up shared presigned URLs: {}", e.getMessage());
+            return missing;
+        }
+
+        List<String> stillMissing = new ArrayList<>();
+        for (String key : missing) {
+            PresignedUrl presigned = PresignedUrl.decode(found.get(prefix + key));
+            if (presigned != null && presigned.isReusable(now, reuseFraction)) {
+                sharedHits.incrementAndGet();
+                urls.put(key, presigned.url);
+                local.put(prefix + key, presigned);
+            } else {
+                stillMissing.add(key);
+            }
+        }
+        return stillMissing;
+    }
+
+    private static String cachePrefix(String accessKeyId, String operation, String bucket, Duration lifetime) {
+        String tenantId = TenantContext.getTenantId();
+        return (tenantId != null ? tenantId : "default") + ":" + accessKeyId + ":" + operation + ":" + lifetime.toSeconds()
+                + ":" + bucket + ":";
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("s3.presign.cache.entries", local, Cache::size).register(registry);
+        FunctionCounter.builder("s3.presign.cache.gets", localHits, AtomicLong::get)
+                .tag("result", "hit").tag("tier", "local").register(registry);
+        FunctionCounter.builder("s3.presign.cache.gets", sharedHits, AtomicLong::get)
+                .tag("result", "hit").tag("tier", "shared").register(registry);
+        FunctionCounter.builder("s3.presign.cache.gets", misses, AtomicLong::get)
+                .tag("result", "miss").tag("tier", "none").register(registry);
+    }
+
+    private static final class PresignedUrl {
+
+        private final URL url;
+        private final long signedAt;
+        private final long expiresAt;
+
+        private PresignedUrl(URL url, long signedAt, long expiresAt) {
+            this.url = url;
+            this.signedAt = signedAt;
+            this.expiresAt = expiresAt;
+        }
+
+        private boolean isReusable(long now, double reuseFraction) {
+            return now < signedAt + (long) ((expiresAt - signedAt) * reuseFraction);
+        }
+
+        private String encode() {
+            return signedAt + " " + expiresAt + " " + url;
+        }
+
+        private static PresignedUrl decode(String value) {
+            if (value == null) {
+                return null;
+            }
+            String[] parts = value.split(" ", 3);
+            try {
+                return new PresignedUrl(new URL(parts[2]), Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (MalformedURLException | RuntimeException e) {
+                return null;
+            }
+        }
+    }
+}
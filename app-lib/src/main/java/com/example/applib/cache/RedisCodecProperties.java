@@ -0,0 +1,67 @@
+package com.example.applib.cache;
+
+import java.util.HashMap;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Encoding of the values of Redis maps and Spring caches, by cache or map name, under
+ * {@code cache.codec}.
+ *
+ * <p>A name without its own entry in {@code caches} uses {@code defaults}; an entry only needs
+ * the settings that differ from them. Values already stored under a name cannot be read once its
+ * format changes, so a cache should be cleared, or renamed, when its format is changed.
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "cache.codec")
+public class RedisCodecProperties {
+
+    private Spec defaults = new Spec(RedisCodecRegistry.FORMAT_DEFAULT, false, 1024);
+
+    private Map<String, Spec> caches = new HashMap<>();
+
+    /**
+     * Get the settings of a cache, falling back to the defaults for those it does not set
+     *
+     * @param name Cache or map name
+     * @return The settings, all of them set
+     */
+    public Spec forName(String name) {
+        Spec spec = caches.get(name);
+        if (spec == null) {
+            return defaults;
+        }
+        return new Spec(
+                spec.getFormat() != null ? spec.getFormat() : defaults.getFormat(),
+                spec.getLz4() != null ? spec.getLz4() : defaults.getLz4(),
+                spec.getLz4MinBytes() != null ? spec.getLz4MinBytes() : defaults.getLz4MinBytes());
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Spec {
+
+        /**
+         * One of {@code default} (the codec of the Redisson client), {@code json}, {@code smile}
+         * or {@code kryo}
+         */
+        private String format;
+
+        /**
+         * Whether to compress values with LZ4
+         */
+        private Boolean lz4;
+
+        /**
+         * Smallest encoded value that is compressed, as compressing small values costs more
+         * than it saves
+         */
+        private Integer lz4MinBytes;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.applib.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RedissonClient;
+import org.redisson.client.codec.Codec;
+import org.redisson.codec.JsonJacksonCodec;
+import org.redisson.codec.Kryo5Codec;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Codecs of Redis maps and the Redis backed Spring caches, chosen by name under
+ * {@code cache.codec}.
+ *
+ * <p>{@code json} is the readable but verbose JSON with class names of every value, {@code smile}
+ * the same in Jackson's binary JSON, and {@code kryo} a compact binary encoding of the fields.
+ * Any of them can be compressed with LZ4 once a value reaches {@code lz4-min-bytes}. Codecs are
+ * created once per name and shared, as they hold their own buffers and mappers.
+ */
+@Slf4j
+@Component
+public class RedisCodecRegistry {
+
+    public static final String FORMAT_DEFAULT = "default";
+    public static final String FORMAT_JSON = "json";
+    public static final String FORMAT_SMILE = "smile";
+    public static final String FORMAT_KRYO = "kryo";
+
+    private final RedisCodecProperties properties;
+    private final ObjectProvider<RedissonClient> redissonClientProvider;
+
+    private final Map<String, Codec> codecs = new ConcurrentHashMap<>();
+
+    public RedisCodecRegistry(RedisCodecProperties properties, ObjectProvider<RedissonClient> redissonClientProvider) {
+        this.properties = properties;
+        this.redissonClientProvider = redissonClientProvider;
+    }
+
+    /**
+     * Get the codec of a name
+     *
+     * @param name Cache or map name
+     * @return The codec
+     */
+    public Codec getCodec(String name) {
+        return codecs.computeIfAbsent(name, this::create);
+    }
+
+    /**
+     * Get a serializer of values for a {@code RedisTemplate}, which keeps Spring's JSON while the
+     * name uses the {@code default} format uncompressed
+     *
+     * @param name Name of the template's settings
+     * @return The serializer
+     */
+    public RedisSerializer<Object> getSerializer(String name) {
+        RedisCodecProperties.Spec spec = properties.forName(name);
+        if (FORMAT_DEFAULT.equals(spec.getFormat()) && !Boolean.TRUE.equals(spec.getLz4())) {
+            return new GenericJackson2JsonRedisSerializer();
+        }
+        return new CodecRedisSerializer(getCodec(name));
+    }
+
+    /**
+     * Create the codec of a format, uncompressed
+     *
+     * @param format {@code json}, {@code smile} or {@code kryo}
+     * @return A new codec
+     * @throws IllegalArgumentException if the format is unknown
+     */
+    public static Codec createCodec(String format) {
+        return switch (format) {
+            case FORMAT_JSON -> new JsonJacksonCodec(new ObjectMapper().findAndRegisterModules());
+            case FORMAT_SMILE -> new JsonJacksonCodec(new ObjectMapper(new SmileFactory()).findAndRegisterModules());
+            case FORMAT_KRYO -> new Kryo5Codec();
+            default -> throw new IllegalArgumentException("Unknown Redis codec format: " + format);
+        };
+    }
+
+    private Codec create(String name) {
+        RedisCodecProperties.Spec spec = properties.forName(name);
+        Codec codec = FORMAT_DEFAULT.equals(spec.getFormat())
+                ? redissonClientProvider.getObject().getConfig().getCodec()
+                : createCodec(spec.getFormat());
+        if (Boolean.TRUE.equals(spec.getLz4())) {
+            codec = new ThresholdLz4Codec(codec, spec.getLz4MinBytes());
+        }
+        if (properties.getCaches().containsKey(name)) {
+            log.info("Redis values of {} are encoded with {}", name, codec);
+        }
+        return codec;
+    }
+}
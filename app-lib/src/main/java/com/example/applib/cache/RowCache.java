@@ -0,0 +1,383 @@
+package com.example.applib.cache;
+
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.ByteRange;
+import com.example.applib.util.RedisUtil;
+import com.example.applib.web.JsonResultSetWriter;
+import com.example.applib.web.TabularMediaTypes;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+/**
+ * Hot-row cache for single-row reads, keyed by tenant, table and id.
+ *
+ * <p>Rows are stored already serialized in an {@link OffHeapByteCache}, so a hit can be written
+ * to the response as-is. Writers must call {@link #invalidate} (or {@link #invalidateTenant} for
+ * arbitrary SQL). Invalidations are broadcast over Redis when it is available; otherwise other
+ * pods only see the change once their copy expires after {@code cache.rows.ttl-seconds}. A row
+ * loaded while an invalidation arrived is served but not cached, as it may predate the write.
+ */
+@Slf4j
+@Component
+public class RowCache {
+
+    private static final String INVALIDATION_TOPIC = "row-cache:invalidate";
+    private static final String ROW_PREFIX_END = "#";
+    private static final String VERSION_SUFFIX = "version";
+    private static final String VERSIONED_PREFIX = "v-";
+    private static final List<MediaType> FORMATS =
+            List.of(MediaType.APPLICATION_JSON, TabularMediaTypes.SMILE, TabularMediaTypes.CBOR);
+
+    private final JsonResultSetWriter jsonResultSetWriter;
+    private final ObjectProvider<RedisUtil> redisUtilProvider;
+    private final ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    @Value("${cache.rows.enabled:true}")
+    private boolean enabled;
+
+    @Value("${cache.rows.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${cache.rows.segments:16}")
+    private int segments;
+
+    @Value("${cache.rows.max-entry-bytes:65536}")
+    private int maxEntryBytes;
+
+    @Value("${cache.rows.ttl-seconds:300}")
+    private long ttlSeconds;
+
+    // Advanced by every invalidation, so loads that overlap one are not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private OffHeapByteCache cache;
+    private RedisUtil redisUtil;
+    private Integer subscriptionId;
+
+    public RowCache(JsonResultSetWriter jsonResultSetWriter,
+                    ObjectProvider<RedisUtil> redisUtilProvider,
+                    ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.jsonResultSetWriter = jsonResultSetWriter;
+        this.redisUtilProvider = redisUtilProvider;
+        this.meterRegistryProvider = meterRegistryProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Row cache is disabled");
+            return;
+        }
+
+        cache = new OffHeapByteCache(maxBytes, segments, maxEntryBytes, ttlSeconds * 1000);
+        log.info("Row cache initialized with {} bytes of direct memory", maxBytes);
+
+        redisUtil = redisUtilProvider.getIfAvailable();
+        if (redisUtil != null) {
+            try {
+                subscriptionId = redisUtil.subscribe(INVALIDATION_TOPIC, String.class, this::evictLocal);
+            } catch (Exception e) {
+                log.warn("Row cache invalidations will not be received from other pods: {}", e.getMessage());
+            }
+        }
+
+        meterRegistryProvider.ifAvailable(this::registerMetrics);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (redisUtil != null && subscriptionId != null) {
+            redisUtil.unsubscribe(INVALIDATION_TOPIC, subscriptionId);
+        }
+    }
+
+    /**
+     * Get a row serialized in the given format together with its version, loading both on a miss.
+     * They are cached as one entry, so a body is never paired with the version of another.
+     *
+     * @param table Table name
+     * @param id Row ID
+     * @param mediaType JSON, Smile or CBOR
+     * @param loader Loads the row and its version, returning null if the row does not exist
+     * @return Serialized row and its version, or null if the row does not exist
+     */
+    public VersionedBody getOrLoad(String table, String id, MediaType mediaType, Supplier<VersionedRow> loader) {
+        ObjectMapper mapper = jsonResultSetWriter.getObjectMapper(mediaType);
+        String key = keyPrefix(TenantContext.getTenantId(), table, id) + VERSIONED_PREFIX + mediaType.getSubtype();
+
+        if (cache != null) {
+            byte[] cached = cache.get(key);
+            if (cached != null) {
+                return VersionedBody.decode(cached);
+            }
+        }
+
+        long readGeneration = generation.get();
+        VersionedRow row = loader.get();
+        if (row == null) {
+            return null;
+        }
+
+        try {
+            VersionedBody body = new VersionedBody(row.getVersion(), mapper.writeValueAsBytes(row.getRow()));
+            if (cache != null && generation.get() == readGeneration) {
+                cache.put(key, body.encode());
+                if (generation.get() != readGeneration) {
+                    // Invalidated between the check and the put
+                    cache.remove(key);
+                }
+            }
+            return body;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize row " + table + ":" + id, e);
+        }
+    }
+
+    /**
+     * Get a cached row as a map without loading it
+     *
+     * @param table Table name
+     * @param id Row ID
+     * @return The row if it is cached
+     */
+    public Optional<Map<String, Object>> peekRow(String table, String id) {
+        if (cache == null) {
+            return Optional.empty();
+        }
+
+        byte[] bytes = cache.get(key(TenantContext.getTenantId(), table, id, MediaType.APPLICATION_JSON));
+        if (bytes == null) {
+            return Optional.empty();
+        }
+
+        try {
+            return Optional.of(jsonResultSetWriter.getObjectMapper(MediaType.APPLICATION_JSON)
+                    .readValue(bytes, new TypeReference<Map<String, Object>>() { }));
+        } catch (IOException e) {
+            log.warn("Dropping unreadable cached row {}:{}: {}", table, id, e.getMessage());
+            evictLocal(keyPrefix(TenantContext.getTenantId(), table, id));
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Cache a row fetched elsewhere, e.g. from another service, together with its version
+     *
+     * @param table Table name
+     * @param id Row ID
+     * @param row The row
+     * @param version ETag of the row, quoted if it is not already, may be null
+     */
+    public void putRow(String table, String id, Map<String, Object> row, String version) {
+        if (cache == null) {
+            return;
+        }
+
+        String tenantId = TenantContext.getTenantId();
+        try {
+            cache.put(key(tenantId, table, id, MediaType.APPLICATION_JSON),
+                    jsonResultSetWriter.getObjectMapper(MediaType.APPLICATION_JSON).writeValueAsBytes(row));
+            if (version != null) {
+                cache.put(keyPrefix(tenantId, table, id) + VERSION_SUFFIX,
+                        ByteRange.quoteETag(version).getBytes(StandardCharsets.UTF_8));
+            } else {
+                cache.remove(keyPrefix(tenantId, table, id) + VERSION_SUFFIX);
+            }
+        } catch (JsonProcessingException e) {
+            log.warn("Not caching row {}:{}: {}", table, id, e.getMessage());
+        }
+    }
+
+    /**
+     * Get the cached version of a row. Versions are always kept as quoted entity tags, so the
+     * value can be sent as If-None-Match as-is.
+     *
+     * @param table Table name
+     * @param id Row ID
+     * @return The quoted ETag, or null if not cached
+     */
+    public String getVersion(String table, String id) {
+        if (cache == null) {
+            return null;
+        }
+        byte[] bytes = cache.get(keyPrefix(TenantContext.getTenantId(), table, id) + VERSION_SUFFIX);
+        return bytes != null ? new String(bytes, StandardCharsets.UTF_8) : null;
+    }
+
+    /**
+     * Cache the version of a row. Dropped together with the row on invalidation.
+     *
+     * @param table Table name
+     * @param id Row ID
+     * @param version ETag of the row, quoted if it is not already
+     */
+    public void putVersion(String table, String id, String version) {
+        if (cache != null) {
+            cache.put(keyPrefix(TenantContext.getTenantId(), table, id) + VERSION_SUFFIX,
+                    ByteRange.quoteETag(version).getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Whether invalidations reach this pod from other pods, i.e. cached rows can be trusted
+     * without revalidating them against their source
+     */
+    public boolean isInvalidationShared() {
+        return cache != null && subscriptionId != null;
+    }
+
+    /**
+     * Invalidate a row of the current tenant on this pod and, through Redis, on all other pods
+     *
+     * @param table Table name
+     * @param id Row ID
+     */
+    public void invalidate(String table, String id) {
+        String prefix = keyPrefix(TenantContext.getTenantId(), table, id);
+        evictLocal(prefix);
+        broadcast(prefix);
+    }
+
+    /**
+     * Invalidate every cached row of a tenant, e.g. after an update whose affected rows are unknown
+     *
+     * @param tenantId Tenant ID, null for the default tenant
+     */
+    public void invalidateTenant(String tenantId) {
+        String prefix = tenantPrefix(tenantId);
+        evictLocal(prefix);
+        broadcast(prefix);
+    }
+
+    private void evictLocal(String prefix) {
+        generation.incrementAndGet();
+        if (cache == null) {
+            return;
+        }
+        if (!prefix.endsWith(ROW_PREFIX_END)) {
+            cache.removeByPrefix(prefix);
+            return;
+        }
+        for (MediaType format : FORMATS) {
+            cache.remove(prefix + format.getSubtype());
+            cache.remove(prefix + VERSIONED_PREFIX + format.getSubtype());
+        }
+        cache.remove(prefix + VERSION_SUFFIX);
+    }
+
+    private void broadcast(String message) {
+        if (cache == null || redisUtil == null) {
+            return;
+        }
+        try {
+            redisUtil.publish(INVALIDATION_TOPIC, message);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast row cache invalidation {}: {}", message, e.getMessage());
+        }
+    }
+
+    private void registerMetrics(MeterRegistry registry) {
+        Gauge.builder("cache.rows.size.bytes", cache, OffHeapByteCache::getUsedBytes).register(registry);
+        Gauge.builder("cache.rows.entries", cache, OffHeapByteCache::getEntryCount).register(registry);
+        FunctionCounter.builder("cache.rows.gets", cache, OffHeapByteCache::getHitCount)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("cache.rows.gets", cache, OffHeapByteCache::getMissCount)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("cache.rows.evictions", cache, OffHeapByteCache::getEvictionCount).register(registry);
+        FunctionCounter.builder("cache.rows.rejections", cache, OffHeapByteCache::getRejectionCount).register(registry);
+    }
+
+    /**
+     * A row as loaded from its source, with the version it was read at
+     */
+    public static final class VersionedRow {
+
+        private final String version;
+        private final Map<String, Object> row;
+
+        public VersionedRow(String version, Map<String, Object> row) {
+            this.version = version;
+            this.row = row;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public Map<String, Object> getRow() {
+            return row;
+        }
+    }
+
+    /**
+     * A serialized row with the version it was read at. Cached as the length of the version,
+     * the version and the body.
+     */
+    public static final class VersionedBody {
+
+        private final String version;
+        private final byte[] body;
+
+        public VersionedBody(String version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+
+        public String getVersion() {
+            return version;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        private byte[] encode() {
+            byte[] versionBytes = version.getBytes(StandardCharsets.UTF_8);
+            return ByteBuffer.allocate(Integer.BYTES + versionBytes.length + body.length)
+                    .putInt(versionBytes.length)
+                    .put(versionBytes)
+                    .put(body)
+                    .array();
+        }
+
+        private static VersionedBody decode(byte[] bytes) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            byte[] versionBytes = new byte[buffer.getInt()];
+            buffer.get(versionBytes);
+            byte[] body = new byte[buffer.remaining()];
+            buffer.get(body);
+            return new VersionedBody(new String(versionBytes, StandardCharsets.UTF_8), body);
+        }
+    }
+
+    private static String key(String tenantId, String table, String id, MediaType mediaType) {
+        return keyPrefix(tenantId, table, id) + mediaType.getSubtype();
+    }
+
+    private static String keyPrefix(String tenantId, String table, String id) {
+        return tenantPrefix(tenantId) + table + ":" + id + ROW_PREFIX_END;
+    }
+
+    private static String tenantPrefix(String tenantId) {
+        return (tenantId != null ? tenantId : "default") + ":";
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.applib.cache;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+import org.redisson.client.codec.BaseCodec;
+import org.redisson.client.codec.Codec;
+import org.redisson.client.handler.State;
+import org.redisson.client.protocol.Decoder;
+import org.redisson.client.protocol.Encoder;
+
+/**
+ * Redisson codec that compresses the values encoded by another codec with LZ4, once they reach a
+ * size worth compressing.
+ *
+ * <p>Every value starts with a flag byte telling whether it was compressed, followed by the
+ * original length if it was. Values that LZ4 would not make smaller are stored as they are. Map
+ * keys are left to the other codec uncompressed, as they are short and looked up by their bytes.
+ */
+public class ThresholdLz4Codec extends BaseCodec {
+
+    private static final byte RAW = 0;
+    private static final byte LZ4 = 1;
+    private static final int HEADER_LENGTH = 1 + Integer.BYTES;
+
+    private static final LZ4Factory FACTORY = LZ4Factory.fastestInstance();
+
+    private final Codec innerCodec;
+    private final int minBytes;
+    private final LZ4Compressor compressor = FACTORY.fastCompressor();
+    private final LZ4FastDecompressor decompressor = FACTORY.fastDecompressor();
+
+    private final Encoder encoder = new Encoder() {
+        @Override
+        public ByteBuf encode(Object in) throws IOException {
+            ByteBuf raw = innerCodec.getValueEncoder().encode(in);
+            try {
+                int length = raw.readableBytes();
+                if (length >= minBytes) {
+                    ByteBuf compressed = compress(raw, length);
+                    if (compressed != null) {
+                        return compressed;
+                    }
+                }
+                ByteBuf out = ByteBufAllocator.DEFAULT.buffer(1 + length);
+                out.writeByte(RAW);
+                out.writeBytes(raw);
+                return out;
+            } finally {
+                raw.release();
+            }
+        }
+    };
+
+    private final Decoder<Object> decoder = new Decoder<Object>() {
+        @Override
+        public Object decode(ByteBuf buf, State state) throws IOException {
+            byte flag = buf.readByte();
+            if (flag == RAW) {
+                return innerCodec.getValueDecoder().decode(buf, state);
+            }
+            if (flag != LZ4) {
+                throw new IOException("Unknown compression flag " + flag);
+            }
+
+            int length = buf.readInt();
+            ByteBuf out = ByteBufAllocator.DEFAULT.buffer(length);
+            try {
+                ByteBuffer src = buf.nioBuffer();
+                ByteBuffer dest = out.nioBuffer(0, length);
+                int read = decompressor.decompress(src, src.position(), dest, dest.position(), length);
+                buf.skipBytes(read);
+                out.writerIndex(length);
+                return innerCodec.getValueDecoder().decode(out, state);
+            } finally {
+                out.release();
+            }
+        }
+    };
+
+    /**
+     * Compress the values of a codec
+     *
+     * @param innerCodec The codec encoding the values
+     * @param minBytes Smallest encoded value to compress
+     */
+    public ThresholdLz4Codec(Codec innerCodec, int minBytes) {
+        this.innerCodec = innerCodec;
+        this.minBytes = minBytes;
+    }
+
+    public ThresholdLz4Codec(ClassLoader classLoader, ThresholdLz4Codec codec) throws ReflectiveOperationException {
+        this(copy(classLoader, codec.innerCodec), codec.minBytes);
+    }
+
+    @Override
+    public Decoder<Object> getValueDecoder() {
+        return decoder;
+    }
+
+    @Override
+    public Encoder getValueEncoder() {
+        return encoder;
+    }
+
+    @Override
+    public Decoder<Object> getMapKeyDecoder() {
+        return innerCodec.getMapKeyDecoder();
+    }
+
+    @Override
+    public Encoder getMapKeyEncoder() {
+        return innerCodec.getMapKeyEncoder();
+    }
+
+    @Override
+    public ClassLoader getClassLoader() {
+        return innerCodec.getClassLoader();
+    }
+
+    private ByteBuf compress(ByteBuf raw, int length) {
+        int maxLength = compressor.maxCompressedLength(length);
+        ByteBuf out = ByteBufAllocator.DEFAULT.buffer(HEADER_LENGTH + maxLength);
+        out.writeByte(LZ4);
+        out.writeInt(length);
+
+        ByteBuffer src = raw.nioBuffer();
+        ByteBuffer dest = out.nioBuffer(HEADER_LENGTH, maxLength);
+        int compressedLength = compressor.compress(src, src.position(), length, dest, dest.position(), maxLength);
+        if (HEADER_LENGTH + compressedLength >= 1 + length) {
+            out.release();
+            return null;
+        }
+        out.writerIndex(HEADER_LENGTH + compressedLength);
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        return "lz4(" + innerCodec + ", min " + minBytes + " bytes)";
+    }
+}
@@ -0,0 +1,169 @@
+package com.example.applib.cache;
+
+import com.example.applib.util.ByteRange;
+import com.example.applib.web.JsonResultSetWriter;
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.WebRequest;
+
+/**
+ * Serves single rows with HTTP validators derived from the PostgreSQL row version.
+ *
+ * <p>The version is the row's {@code xmin}, which changes on every update. It is surfaced as the
+ * {@code ETag}, and as {@code Last-Modified} when {@code rows.versioning.commit-timestamps} is on
+ * (requires {@code track_commit_timestamp = on}). Conditional requests are answered from the
+ * version cached in {@link RowCache} or from a version-only query, without fetching or
+ * serializing the row.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class VersionedRowService {
+
+    private static final String VERSION_COLUMN = "_row_version";
+    private static final String MODIFIED_COLUMN = "_row_modified";
+
+    private final RowCache rowCache;
+    private final JsonResultSetWriter jsonResultSetWriter;
+
+    @Value("${rows.versioning.commit-timestamps:false}")
+    private boolean commitTimestamps;
+
+    /**
+     * Get a row by ID honouring If-None-Match and If-Modified-Since
+     *
+     * @param jdbcTemplate Template of the database holding the table
+     * @param table Table name, must not come from user input
+     * @param id Row ID
+     * @param request Current request
+     * @return The row, 404, or null once a 304 has been written to the response
+     */
+    public ResponseEntity<byte[]> getRow(JdbcTemplate jdbcTemplate, String table, String id, WebRequest request) {
+        MediaType mediaType = jsonResultSetWriter.resolveMediaType(request.getHeader(HttpHeaders.ACCEPT));
+
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                || request.getHeader(HttpHeaders.IF_MODIFIED_SINCE) != null) {
+            RowVersion version = getVersion(jdbcTemplate, table, id);
+            if (version == null) {
+                return ResponseEntity.notFound().build();
+            }
+            // checkNotModified sets the 304 status and validators itself
+            if (request.checkNotModified(version.etag(mediaType), version.lastModified)) {
+                return null;
+            }
+        }
+
+        RowCache.VersionedBody row = rowCache.getOrLoad(table, id, mediaType, () -> loadRow(jdbcTemplate, table, id));
+        if (row == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        // The version cached with the body, so the ETag always describes the bytes served
+        RowVersion version = RowVersion.parse(row.getVersion());
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(mediaType)
+                .varyBy(HttpHeaders.ACCEPT)
+                .eTag(version.etag(mediaType));
+        if (version.lastModified > 0) {
+            response.lastModified(version.lastModified);
+        }
+        return response.body(row.getBody());
+    }
+
+    private RowCache.VersionedRow loadRow(JdbcTemplate jdbcTemplate, String table, String id) {
+        String sql = "SELECT t.*, " + versionColumns() + " FROM " + table + " t WHERE t.id = ?";
+        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, id);
+        if (results.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Object> row = results.get(0);
+        String version = toVersion(row).toString();
+        rowCache.putVersion(table, id, version);
+        row.remove(VERSION_COLUMN);
+        row.remove(MODIFIED_COLUMN);
+        return new RowCache.VersionedRow(version, row);
+    }
+
+    private RowVersion getVersion(JdbcTemplate jdbcTemplate, String table, String id) {
+        String cached = rowCache.getVersion(table, id);
+        if (cached != null) {
+            return RowVersion.parse(cached);
+        }
+
+        String sql = "SELECT " + versionColumns() + " FROM " + table + " t WHERE t.id = ?";
+        List<Map<String, Object>> results = jdbcTemplate.queryForList(sql, id);
+        if (results.isEmpty()) {
+            return null;
+        }
+
+        RowVersion version = toVersion(results.get(0));
+        rowCache.putVersion(table, id, version.toString());
+        return version;
+    }
+
+    private String versionColumns() {
+        String columns = "t.xmin::text AS " + VERSION_COLUMN;
+        if (commitTimestamps) {
+            columns += ", pg_xact_commit_timestamp(t.xmin) AS " + MODIFIED_COLUMN;
+        }
+        return columns;
+    }
+
+    private RowVersion toVersion(Map<String, Object> row) {
+        Object modified = row.get(MODIFIED_COLUMN);
+        long lastModified = modified instanceof Timestamp timestamp ? timestamp.getTime() : -1;
+        return new RowVersion(String.valueOf(row.get(VERSION_COLUMN)), lastModified);
+    }
+
+    /**
+     * Row version as kept in the row cache: the quoted entity tag {@code "xmin"} or
+     * {@code "xmin@commitMillis"}, the same form {@link RowCache#putRow} stores for other services
+     */
+    private static final class RowVersion {
+
+        private final String xmin;
+        private final long lastModified;
+
+        private RowVersion(String xmin, long lastModified) {
+            this.xmin = xmin;
+            this.lastModified = lastModified;
+        }
+
+        private static RowVersion parse(String etag) {
+            String value = etag.length() > 1 && etag.startsWith("\"") && etag.endsWith("\"")
+                    ? etag.substring(1, etag.length() - 1)
+                    : etag;
+            int separator = value.indexOf('@');
+            if (separator < 0) {
+                return new RowVersion(value, -1);
+            }
+            try {
+                return new RowVersion(value.substring(0, separator), Long.parseLong(value.substring(separator + 1)));
+            } catch (NumberFormatException e) {
+                return new RowVersion(value, -1);
+            }
+        }
+
+        /**
+         * Strong ETag per representation, since JSON, Smile and CBOR bodies differ
+         */
+        private String etag(MediaType mediaType) {
+            return "\"" + xmin + "-" + mediaType.getSubtype() + "\"";
+        }
+
+        @Override
+        public String toString() {
+            return ByteRange.quoteETag(lastModified > 0 ? xmin + "@" + lastModified : xmin);
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.applib.cdc;
+
+import com.example.applib.tenant.MasterTenant;
+import com.example.applib.tenant.MasterTenantRepository;
+import com.example.applib.util.KafkaUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+
+/**
+ * Streams changes of all active tenant databases into Kafka via PostgreSQL logical replication.
+ *
+ * <p>Tenants are grouped by database host and each host gets a single worker thread with a
+ * single replication connection. A host with one tenant keeps its stream open; on a host with
+ * several tenants the worker rotates through their slots, staying on a tenant until it is idle
+ * or its slice ends. Slots keep their position while not being read, so nothing is missed.
+ *
+ * <p>Only one consumer can read a slot at a time. When several pods enable CDC, the first one
+ * to attach to a slot streams it and the others retry until it lets go.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "cdc.enabled", havingValue = "true")
+public class CdcService {
+
+    private final MasterTenantRepository masterTenantRepository;
+    private final KafkaUtil kafkaUtil;
+    private final CdcSettings settings;
+
+    private final Map<String, HostWorker> workers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService scheduler;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cdc-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refresh, 0, settings.getRefreshIntervalMillis(), TimeUnit.MILLISECONDS);
+        log.info("Change data capture started, publishing to topic {}", settings.getTopic());
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        workers.values().forEach(HostWorker::stop);
+        workers.clear();
+    }
+
+    /**
+     * Pick up added, removed and deactivated tenants
+     */
+    public void refresh() {
+        try {
+            List<MasterTenant> active = masterTenantRepository.findAll().stream()
+                    .filter(MasterTenant::isActive)
+                    .filter(tenant -> tenant.getUrl() != null && tenant.getUrl().startsWith("jdbc:postgresql:"))
+                    .toList();
+            Set<String> colliding = findSlotCollisions(active);
+            Map<String, List<MasterTenant>> tenantsByHost = active.stream()
+                    .filter(tenant -> !colliding.contains(tenant.getTenantId()))
+                    .collect(Collectors.groupingBy(tenant -> host(tenant.getUrl())));
+
+            tenantsByHost.forEach((host, tenants) -> {
+                List<TenantReplicationStream> streams = tenants.stream()
+                        .map(tenant -> new TenantReplicationStream(tenant, kafkaUtil, settings))
+                        .toList();
+                workers.computeIfAbsent(host, HostWorker::new).setStreams(streams);
+            });
+
+            workers.keySet().removeIf(host -> {
+                if (tenantsByHost.containsKey(host)) {
+                    return false;
+                }
+                workers.get(host).stop();
+                return true;
+            });
+        } catch (Exception e) {
+            log.error("Failed to refresh CDC tenants", e);
+        }
+    }
+
+    /**
+     * Drop the replication slot of a tenant. Call this after removing or deactivating a tenant,
+     * otherwise its database retains WAL for the abandoned slot.
+     *
+     * @param tenantId The tenant ID
+     * @throws SQLException If the slot cannot be dropped, e.g. because it is still being read
+     */
+    public void dropSlot(String tenantId) throws SQLException {
+        MasterTenant tenant = masterTenantRepository.findByTenantId(tenantId)
+                .orElseThrow(() -> new IllegalArgumentException("Tenant not found: " + tenantId));
+        new TenantReplicationStream(tenant, kafkaUtil, settings).dropSlot();
+    }
+
+    /**
+     * Tenant IDs being streamed, by database host
+     *
+     * @return Map of host to tenant IDs
+     */
+    public Map<String, List<String>> getStreamedTenants() {
+        return workers.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, entry -> entry.getValue().getTenantIds()));
+    }
+
+    /**
+     * Find tenants whose IDs map to the same replication slot, which would consume each other's
+     * changes. They are not streamed until one of them is renamed.
+     */
+    private Set<String> findSlotCollisions(List<MasterTenant> tenants) {
+        Set<String> colliding = new HashSet<>();
+        tenants.stream()
+                .map(MasterTenant::getTenantId)
+                .distinct()
+                .collect(Collectors.groupingBy(settings::slotName))
+                .forEach((slotName, tenantIds) -> {
+                    if (tenantIds.size() > 1) {
+                        log.error("Tenants {} map to the same replication slot {} and are not streamed", tenantIds, slotName);
+                        colliding.addAll(tenantIds);
+                    }
+                });
+        return colliding;
+    }
+
+    /**
+     * Host part of a JDBC URL, e.g. {@code db1:5432} for {@code jdbc:postgresql://db1:5432/tenant}
+     */
+    private static String host(String url) {
+        int start = url.indexOf("//");
+        if (start < 0) {
+            return url;
+        }
+        int end = url.indexOf('/', start + 2);
+        return end < 0 ? url.substring(start + 2) : url.substring(start + 2, end);
+    }
+
+    private final class HostWorker implements Runnable {
+
+        private final String host;
+        private final Thread thread;
+        private volatile List<TenantReplicationStream> streams = List.of();
+        private volatile boolean active = true;
+
+        private HostWorker(String host) {
+            this.host = host;
+            this.thread = new Thread(this, "cdc-" + host);
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        private void setStreams(List<TenantReplicationStream> streams) {
+            // Keep the current list, and any exclusive session on it, while the tenants are the same
+            if (!getTenantIds().equals(streams.stream().map(TenantReplicationStream::getTenantId).toList())) {
+                this.streams = streams;
+            }
+        }
+
+        private List<String> getTenantIds() {
+            return streams.stream().map(TenantReplicationStream::getTenantId).toList();
+        }
+
+        private void stop() {
+            active = false;
+            thread.interrupt();
+        }
+
+        @Override
+        public void run() {
+            while (isActive()) {
+                List<TenantReplicationStream> current = streams;
+                if (current.isEmpty()) {
+                    pause(settings.getRefreshIntervalMillis());
+                    continue;
+                }
+
+                boolean exclusive = current.size() == 1;
+                for (TenantReplicationStream stream : new ArrayList<>(current)) {
+                    if (!isActive()) {
+                        break;
+                    }
+                    try {
+                        // An exclusive session yields as soon as the tenant list of the host changes
+                        stream.run(exclusive, () -> isActive() && (!exclusive || streams == current));
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        log.error("Replication of tenant {} on host {} failed: {}",
+                                stream.getTenantId(), host, e.getMessage(), e);
+                        pause(settings.getRetryDelayMillis());
+                    }
+                }
+            }
+            log.info("CDC worker for host {} stopped", host);
+        }
+
+        private boolean isActive() {
+            return running && active && !Thread.currentThread().isInterrupted();
+        }
+
+        private void pause(long millis) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.applib.cdc;
+
+import com.google.common.hash.Hashing;
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.regex.Pattern;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Settings of the change-data-capture subsystem.
+ */
+@Getter
+@Component
+@ConditionalOnProperty(name = "cdc.enabled", havingValue = "true")
+public class CdcSettings {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+    private static final int MAX_IDENTIFIER_LENGTH = 63;
+    private static final int SLOT_HASH_LENGTH = 8;
+
+    @Value("${cdc.topic:tenant-changes}")
+    private String topic;
+
+    @Value("${cdc.publication:cdc_publication}")
+    private String publication;
+
+    @Value("${cdc.create-publication:true}")
+    private boolean createPublication;
+
+    @Value("${cdc.slot-prefix:cdc_}")
+    private String slotPrefix;
+
+    @Value("${cdc.batch-size:500}")
+    private int batchSize;
+
+    @Value("${cdc.flush-interval-ms:1000}")
+    private long flushIntervalMillis;
+
+    @Value("${cdc.send-timeout-seconds:30}")
+    private long sendTimeoutSeconds;
+
+    @Value("${cdc.status-interval-seconds:10}")
+    private int statusIntervalSeconds;
+
+    @Value("${cdc.poll-interval-ms:50}")
+    private long pollIntervalMillis;
+
+    @Value("${cdc.idle-ms:1000}")
+    private long idleMillis;
+
+    @Value("${cdc.tenant-slice-ms:10000}")
+    private long tenantSliceMillis;
+
+    @Value("${cdc.retry-delay-ms:5000}")
+    private long retryDelayMillis;
+
+    @Value("${cdc.refresh-interval-ms:60000}")
+    private long refreshIntervalMillis;
+
+    @PostConstruct
+    public void validate() {
+        // Both names end up in SQL and replication commands
+        if (!IDENTIFIER.matcher(publication).matches()) {
+            throw new IllegalStateException("Invalid cdc.publication: " + publication);
+        }
+        if (!IDENTIFIER.matcher(slotPrefix).matches()
+                || slotPrefix.length() > MAX_IDENTIFIER_LENGTH - SLOT_HASH_LENGTH - 2) {
+            throw new IllegalStateException("Invalid cdc.slot-prefix: " + slotPrefix);
+        }
+    }
+
+    /**
+     * Replication slot name of a tenant, a valid PostgreSQL identifier. The tenant ID is reduced
+     * to identifier characters and truncated for readability, so a hash of the exact ID is
+     * appended to keep the names of different tenants apart.
+     *
+     * @param tenantId The tenant ID
+     * @return The slot name
+     */
+    public String slotName(String tenantId) {
+        String hash = Hashing.sha256().hashString(tenantId, StandardCharsets.UTF_8).toString()
+                .substring(0, SLOT_HASH_LENGTH);
+        String readable = tenantId.toLowerCase(Locale.ROOT).replaceAll("[^a-z0-9_]", "_");
+        int maxReadable = MAX_IDENTIFIER_LENGTH - slotPrefix.length() - SLOT_HASH_LENGTH - 1;
+        if (readable.length() > maxReadable) {
+            readable = readable.substring(0, maxReadable);
+        }
+        return slotPrefix + readable + "_" + hash;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.applib.cdc;
+
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A row change decoded from a tenant database's logical replication stream.
+ *
+ * <p>Events are published keyed by tenant ID, so all changes of a tenant land on one partition
+ * in commit order. Delivery is at-least-once: after a restart, events since the last
+ * checkpointed LSN are published again and can be deduplicated on {@code lsn} and
+ * {@code sequence}.
+ */
+@Data
+@NoArgsConstructor
+public class ChangeEvent {
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE, TRUNCATE
+    }
+
+    private String tenantId;
+    private Operation operation;
+    private String schema;
+    private String table;
+
+    /**
+     * Transaction ID and commit LSN of the transaction the change belongs to
+     */
+    private long xid;
+    private String lsn;
+    private long commitTimestamp;
+
+    /**
+     * Position of the change within its transaction
+     */
+    private int sequence;
+
+    /**
+     * Replica identity columns of the row, when they are known
+     */
+    private Map<String, Object> key;
+
+    /**
+     * Old row (for UPDATE/DELETE with REPLICA IDENTITY FULL) and new row (for INSERT/UPDATE).
+     * Unchanged TOAST values are not sent by the server and are left out of the new row.
+     */
+    private Map<String, Object> before;
+    private Map<String, Object> after;
+
+    /**
+     * Truncated tables as schema.table, for TRUNCATE only
+     */
+    private List<String> tables;
+}
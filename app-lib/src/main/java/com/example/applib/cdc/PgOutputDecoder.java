@@ -0,0 +1,264 @@
+package com.example.applib.cdc;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.replication.LogSequenceNumber;
+
+/**
+ * Decoder for the {@code pgoutput} logical replication protocol, version 1.
+ *
+ * <p>Relation messages are cached so that row messages can be mapped to column names. Column
+ * values arrive in text format and are converted to Java types for the common scalar types;
+ * everything else is kept as the server's text representation. One decoder serves one
+ * replication stream and is not thread-safe.
+ */
+@Slf4j
+class PgOutputDecoder {
+
+    /**
+     * Microseconds between the Unix epoch and the PostgreSQL epoch (2000-01-01)
+     */
+    private static final long PG_EPOCH_OFFSET_MICROS = 946_684_800_000_000L;
+
+    private static final int BOOL_OID = 16;
+    private static final int INT8_OID = 20;
+    private static final int INT2_OID = 21;
+    private static final int INT4_OID = 23;
+    private static final int OID_OID = 26;
+    private static final int FLOAT4_OID = 700;
+    private static final int FLOAT8_OID = 701;
+    private static final int NUMERIC_OID = 1700;
+
+    private final String tenantId;
+    private final Map<Integer, Relation> relations = new HashMap<>();
+
+    private long xid;
+    private String commitLsn;
+    private long commitTimestamp;
+    private int sequence;
+    private LogSequenceNumber commitEndLsn;
+
+    PgOutputDecoder(String tenantId) {
+        this.tenantId = tenantId;
+    }
+
+    /**
+     * Decode one replication message
+     *
+     * @param buffer Message as returned by the replication stream
+     * @param sink Receives the row changes contained in the message
+     * @return true if the message committed a transaction, see {@link #getCommitEndLsn()}
+     */
+    boolean decode(ByteBuffer buffer, Consumer<ChangeEvent> sink) {
+        char type = (char) buffer.get();
+        switch (type) {
+            case 'B' -> {
+                commitLsn = LogSequenceNumber.valueOf(buffer.getLong()).asString();
+                commitTimestamp = toEpochMillis(buffer.getLong());
+                xid = Integer.toUnsignedLong(buffer.getInt());
+                sequence = 0;
+            }
+            case 'C' -> {
+                buffer.get();
+                buffer.getLong();
+                commitEndLsn = LogSequenceNumber.valueOf(buffer.getLong());
+                return true;
+            }
+            case 'R' -> readRelation(buffer);
+            case 'I' -> {
+                Relation relation = relation(buffer.getInt());
+                buffer.get();
+                ChangeEvent event = newEvent(ChangeEvent.Operation.INSERT, relation);
+                event.setAfter(readTuple(buffer, relation));
+                event.setKey(relation.key(event.getAfter()));
+                sink.accept(event);
+            }
+            case 'U' -> {
+                Relation relation = relation(buffer.getInt());
+                ChangeEvent event = newEvent(ChangeEvent.Operation.UPDATE, relation);
+                char tupleType = (char) buffer.get();
+                Map<String, Object> old = null;
+                if (tupleType == 'K' || tupleType == 'O') {
+                    old = readTuple(buffer, relation);
+                    if (tupleType == 'O') {
+                        event.setBefore(old);
+                    }
+                    buffer.get();
+                }
+                event.setAfter(readTuple(buffer, relation));
+                event.setKey(relation.key(old != null ? old : event.getAfter()));
+                sink.accept(event);
+            }
+            case 'D' -> {
+                Relation relation = relation(buffer.getInt());
+                ChangeEvent event = newEvent(ChangeEvent.Operation.DELETE, relation);
+                char tupleType = (char) buffer.get();
+                Map<String, Object> old = readTuple(buffer, relation);
+                if (tupleType == 'O') {
+                    event.setBefore(old);
+                }
+                event.setKey(relation.key(old));
+                sink.accept(event);
+            }
+            case 'T' -> {
+                int count = buffer.getInt();
+                buffer.get();
+                List<String> tables = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    Relation relation = relation(buffer.getInt());
+                    tables.add(relation.schema + "." + relation.table);
+                }
+                ChangeEvent event = newEvent(ChangeEvent.Operation.TRUNCATE, null);
+                event.setTables(tables);
+                sink.accept(event);
+            }
+            case 'O', 'Y', 'M' -> {
+                // Origin, type and logical decoding messages carry nothing we publish
+            }
+            default -> log.debug("Skipping unknown pgoutput message type {} for tenant {}", type, tenantId);
+        }
+        return false;
+    }
+
+    /**
+     * End LSN of the transaction committed by the last commit message. Confirming it tells the
+     * server that everything up to and including that transaction has been consumed.
+     */
+    LogSequenceNumber getCommitEndLsn() {
+        return commitEndLsn;
+    }
+
+    private ChangeEvent newEvent(ChangeEvent.Operation operation, Relation relation) {
+        ChangeEvent event = new ChangeEvent();
+        event.setTenantId(tenantId);
+        event.setOperation(operation);
+        if (relation != null) {
+            event.setSchema(relation.schema);
+            event.setTable(relation.table);
+        }
+        event.setXid(xid);
+        event.setLsn(commitLsn);
+        event.setCommitTimestamp(commitTimestamp);
+        event.setSequence(sequence++);
+        return event;
+    }
+
+    private void readRelation(ByteBuffer buffer) {
+        int id = buffer.getInt();
+        String schema = readString(buffer);
+        String table = readString(buffer);
+        buffer.get();
+        int columnCount = buffer.getShort();
+
+        Relation relation = new Relation(schema, table, columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            relation.keys[i] = (buffer.get() & 1) != 0;
+            relation.names[i] = readString(buffer);
+            relation.types[i] = buffer.getInt();
+            buffer.getInt();
+        }
+        relations.put(id, relation);
+    }
+
+    private Relation relation(int id) {
+        Relation relation = relations.get(id);
+        if (relation == null) {
+            // The server always sends the relation before the first row change that uses it
+            throw new IllegalStateException("Row change for unknown relation " + id);
+        }
+        return relation;
+    }
+
+    private Map<String, Object> readTuple(ByteBuffer buffer, Relation relation) {
+        int columnCount = buffer.getShort();
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < columnCount; i++) {
+            char kind = (char) buffer.get();
+            switch (kind) {
+                case 'n' -> row.put(relation.names[i], null);
+                case 'u' -> {
+                    // Unchanged TOAST value, not sent by the server
+                }
+                case 't' -> row.put(relation.names[i], toValue(relation.types[i], readText(buffer)));
+                case 'b' -> {
+                    byte[] value = new byte[buffer.getInt()];
+                    buffer.get(value);
+                    row.put(relation.names[i], value);
+                }
+                default -> throw new IllegalStateException("Unknown tuple column kind " + kind);
+            }
+        }
+        return row;
+    }
+
+    private static Object toValue(int typeOid, String text) {
+        try {
+            return switch (typeOid) {
+                case BOOL_OID -> "t".equals(text);
+                case INT2_OID, INT4_OID -> Integer.valueOf(text);
+                case INT8_OID, OID_OID -> Long.valueOf(text);
+                case FLOAT4_OID, FLOAT8_OID -> Double.valueOf(text);
+                case NUMERIC_OID -> new BigDecimal(text);
+                default -> text;
+            };
+        } catch (NumberFormatException e) {
+            // NaN and Infinity are valid numerics but not BigDecimals
+            return text;
+        }
+    }
+
+    private static String readText(ByteBuffer buffer) {
+        byte[] value = new byte[buffer.getInt()];
+        buffer.get(value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int start = buffer.position();
+        while (buffer.get() != 0) {
+            // Scan to the terminating zero byte
+        }
+        byte[] value = new byte[buffer.position() - start - 1];
+        buffer.get(start, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static long toEpochMillis(long pgMicros) {
+        return (pgMicros + PG_EPOCH_OFFSET_MICROS) / 1000;
+    }
+
+    private static final class Relation {
+
+        private final String schema;
+        private final String table;
+        private final String[] names;
+        private final int[] types;
+        private final boolean[] keys;
+
+        private Relation(String schema, String table, int columnCount) {
+            this.schema = schema;
+            this.table = table;
+            this.names = new String[columnCount];
+            this.types = new int[columnCount];
+            this.keys = new boolean[columnCount];
+        }
+
+        private Map<String, Object> key(Map<String, Object> row) {
+            Map<String, Object> key = new LinkedHashMap<>();
+            for (int i = 0; i < names.length; i++) {
+                if (keys[i] && row.containsKey(names[i])) {
+                    key.put(names[i], row.get(names[i]));
+                }
+            }
+            return key;
+        }
+    }
+}
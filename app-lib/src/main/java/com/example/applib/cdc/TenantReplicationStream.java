@@ -0,0 +1,227 @@
+package com.example.applib.cdc;
+
+import com.example.applib.tenant.MasterTenant;
+import com.example.applib.util.KafkaUtil;
+import java.nio.ByteBuffer;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGProperty;
+import org.postgresql.replication.LogSequenceNumber;
+import org.postgresql.replication.PGReplicationStream;
+
+/**
+ * Consumes the logical replication slot of one tenant database and publishes its changes.
+ *
+ * <p>Changes are sent as they are decoded and the slot position is only confirmed once every
+ * send up to a commit has been acknowledged by Kafka. A failure therefore never loses changes:
+ * the next session resumes from the last confirmed LSN and republishes the rest.
+ */
+@Slf4j
+class TenantReplicationStream {
+
+    private final MasterTenant tenant;
+    private final KafkaUtil kafkaUtil;
+    private final CdcSettings settings;
+    private final String slotName;
+
+    TenantReplicationStream(MasterTenant tenant, KafkaUtil kafkaUtil, CdcSettings settings) {
+        this.tenant = tenant;
+        this.kafkaUtil = kafkaUtil;
+        this.settings = settings;
+        this.slotName = settings.slotName(tenant.getTenantId());
+    }
+
+    String getTenantId() {
+        return tenant.getTenantId();
+    }
+
+    /**
+     * Stream changes until the session should end
+     *
+     * @param exclusive Whether this is the only tenant on its host; the session then only ends
+     *                  when stopped instead of yielding the connection once idle or after its slice
+     * @param running Checked between messages, false stops the session
+     * @throws Exception If the connection, decoding or publishing fails
+     */
+    void run(boolean exclusive, BooleanSupplier running) throws Exception {
+        try (Connection connection = openReplicationConnection()) {
+            ensurePublication(connection);
+            ensureSlot(connection);
+
+            PGReplicationStream stream = connection.unwrap(PGConnection.class)
+                    .getReplicationAPI()
+                    .replicationStream()
+                    .logical()
+                    .withSlotName(slotName)
+                    .withSlotOption("proto_version", 1)
+                    .withSlotOption("publication_names", settings.getPublication())
+                    .withStatusInterval(settings.getStatusIntervalSeconds(), TimeUnit.SECONDS)
+                    .start();
+
+            try {
+                consume(stream, exclusive, running);
+            } finally {
+                stream.close();
+            }
+        }
+    }
+
+    /**
+     * Drop the tenant's replication slot, e.g. when the tenant is deactivated. Without this the
+     * server retains WAL for the slot forever.
+     *
+     * @throws SQLException If the slot cannot be dropped
+     */
+    void dropSlot() throws SQLException {
+        try (Connection connection = openReplicationConnection()) {
+            if (slotExists(connection)) {
+                connection.unwrap(PGConnection.class).getReplicationAPI().dropReplicationSlot(slotName);
+                log.info("Dropped replication slot {} of tenant {}", slotName, getTenantId());
+            }
+        }
+    }
+
+    private void consume(PGReplicationStream stream, boolean exclusive, BooleanSupplier running) throws Exception {
+        PgOutputDecoder decoder = new PgOutputDecoder(getTenantId());
+        List<CompletableFuture<?>> pending = new ArrayList<>();
+        LogSequenceNumber uncheckpointed = null;
+        long sessionEnd = System.currentTimeMillis() + settings.getTenantSliceMillis();
+        long lastMessage = System.currentTimeMillis();
+        long lastCheckpoint = lastMessage;
+
+        while (running.getAsBoolean()) {
+            ByteBuffer message = stream.readPending();
+            long now = System.currentTimeMillis();
+
+            if (message == null) {
+                if (uncheckpointed != null && now - lastCheckpoint >= settings.getFlushIntervalMillis()) {
+                    checkpoint(stream, pending, uncheckpointed);
+                    uncheckpointed = null;
+                    lastCheckpoint = now;
+                }
+                if (!exclusive && uncheckpointed == null
+                        && (now - lastMessage >= settings.getIdleMillis() || now >= sessionEnd)) {
+                    break;
+                }
+                TimeUnit.MILLISECONDS.sleep(settings.getPollIntervalMillis());
+                continue;
+            }
+
+            lastMessage = now;
+            boolean committed = decoder.decode(message,
+                    event -> pending.add(kafkaUtil.sendAsync(settings.getTopic(), getTenantId(), event)));
+            if (!committed) {
+                continue;
+            }
+
+            uncheckpointed = decoder.getCommitEndLsn();
+            if (pending.size() >= settings.getBatchSize()
+                    || now - lastCheckpoint >= settings.getFlushIntervalMillis()
+                    || (!exclusive && now >= sessionEnd)) {
+                checkpoint(stream, pending, uncheckpointed);
+                uncheckpointed = null;
+                lastCheckpoint = now;
+                if (!exclusive && now >= sessionEnd) {
+                    break;
+                }
+            }
+        }
+
+        if (uncheckpointed != null) {
+            checkpoint(stream, pending, uncheckpointed);
+        }
+    }
+
+    /**
+     * Wait for all outstanding sends, then confirm the LSN to the server
+     */
+    private void checkpoint(PGReplicationStream stream, List<CompletableFuture<?>> pending, LogSequenceNumber lsn)
+            throws Exception {
+        if (!pending.isEmpty()) {
+            try {
+                CompletableFuture.allOf(pending.toArray(CompletableFuture[]::new))
+                        .get(settings.getSendTimeoutSeconds(), TimeUnit.SECONDS);
+            } catch (ExecutionException | TimeoutException e) {
+                throw new IllegalStateException("Failed to publish changes of tenant " + getTenantId()
+                        + " up to " + lsn.asString(), e);
+            }
+            log.debug("Published {} changes of tenant {} up to {}", pending.size(), getTenantId(), lsn.asString());
+            pending.clear();
+        }
+
+        stream.setAppliedLSN(lsn);
+        stream.setFlushedLSN(lsn);
+        stream.forceUpdateStatus();
+    }
+
+    private Connection openReplicationConnection() throws SQLException {
+        Properties properties = new Properties();
+        PGProperty.USER.set(properties, tenant.getUsername());
+        PGProperty.PASSWORD.set(properties, tenant.getPassword());
+        PGProperty.ASSUME_MIN_SERVER_VERSION.set(properties, "10");
+        PGProperty.REPLICATION.set(properties, "database");
+        PGProperty.PREFER_QUERY_MODE.set(properties, "simple");
+        PGProperty.APPLICATION_NAME.set(properties, "cdc-" + getTenantId());
+        return DriverManager.getConnection(tenant.getUrl(), properties);
+    }
+
+    private void ensurePublication(Connection connection) throws SQLException {
+        try (PreparedStatement statement =
+                     connection.prepareStatement("SELECT 1 FROM pg_publication WHERE pubname = ?")) {
+            statement.setString(1, settings.getPublication());
+            try (ResultSet rs = statement.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+        }
+
+        if (!settings.isCreatePublication()) {
+            throw new IllegalStateException("Publication " + settings.getPublication()
+                    + " does not exist in the database of tenant " + getTenantId());
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE PUBLICATION " + settings.getPublication() + " FOR ALL TABLES");
+            log.info("Created publication {} for tenant {}", settings.getPublication(), getTenantId());
+        }
+    }
+
+    private void ensureSlot(Connection connection) throws SQLException {
+        if (slotExists(connection)) {
+            return;
+        }
+
+        connection.unwrap(PGConnection.class)
+                .getReplicationAPI()
+                .createReplicationSlot()
+                .logical()
+                .withSlotName(slotName)
+                .withOutputPlugin("pgoutput")
+                .make();
+        log.info("Created replication slot {} for tenant {}", slotName, getTenantId());
+    }
+
+    private boolean slotExists(Connection connection) throws SQLException {
+        try (PreparedStatement statement =
+                     connection.prepareStatement("SELECT 1 FROM pg_replication_slots WHERE slot_name = ?")) {
+            statement.setString(1, slotName);
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+}
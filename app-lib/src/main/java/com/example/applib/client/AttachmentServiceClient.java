@@ -1,8 +1,11 @@
 package com.example.applib.client;
 
+import com.example.applib.web.TabularMediaTypes;
+import feign.Response;
 import java.util.List;
 import java.util.Map;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -17,6 +20,19 @@ public interface AttachmentServiceClient {
     @GetMapping("/api/attachments")
     ResponseEntity<List<Map<String, Object>>> getAllAttachments();
 
+    /**
+     * Get all attachments in a negotiated format, e.g. {@link TabularMediaTypes#SMILE_VALUE} or
+     * {@link TabularMediaTypes#CBOR_VALUE}.
+     */
+    @GetMapping("/api/attachments")
+    ResponseEntity<List<Map<String, Object>>> getAllAttachments(@RequestHeader(HttpHeaders.ACCEPT) String accept);
+
+    /**
+     * Get all attachments as an Arrow IPC stream. The caller must close the response.
+     */
+    @GetMapping(value = "/api/attachments", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    Response getAllAttachmentsAsArrow();
+
     @PostMapping(value = "/api/attachments", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     ResponseEntity<Map<String, Object>> uploadAttachment(
             @RequestPart("file") MultipartFile file,
@@ -1,13 +1,17 @@
 package com.example.applib.client;
 
+import com.example.applib.web.TabularMediaTypes;
+import feign.Response;
 import java.util.List;
 import java.util.Map;
 import org.springframework.cloud.openfeign.FeignClient;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 
 @FeignClient(name = "data-service", url = "${services.data.url:http://data-service}")
 public interface DataServiceClient {
@@ -15,9 +19,31 @@ public interface DataServiceClient {
     @GetMapping("/api/data/{id}")
     ResponseEntity<Map<String, Object>> getDataById(@PathVariable("id") String id);
 
+    /**
+     * Revalidate a data record. A 304 surfaces as a {@code FeignException} with status 304.
+     */
+    @GetMapping("/api/data/{id}")
+    ResponseEntity<Map<String, Object>> getDataById(
+            @PathVariable("id") String id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch);
+
     @GetMapping("/api/data")
     ResponseEntity<List<Map<String, Object>>> getAllData();
 
+    /**
+     * Get all data in a negotiated format, e.g. {@link TabularMediaTypes#SMILE_VALUE} or
+     * {@link TabularMediaTypes#CBOR_VALUE}, to cut serialization cost on large results.
+     */
+    @GetMapping("/api/data")
+    ResponseEntity<List<Map<String, Object>>> getAllData(@RequestHeader(HttpHeaders.ACCEPT) String accept);
+
+    /**
+     * Get all data as an Arrow IPC stream. The caller reads the body with an
+     * {@code ArrowStreamReader} and must close the response.
+     */
+    @GetMapping(value = "/api/data", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    Response getAllDataAsArrow();
+
     @PostMapping("/api/data")
     ResponseEntity<Map<String, Object>> createData(@RequestBody Map<String, Object> data);
 }
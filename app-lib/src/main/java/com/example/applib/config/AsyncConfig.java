@@ -31,6 +31,15 @@ public class AsyncConfig implements AsyncConfigurer {
     @Value("${async.await-termination-seconds:60}")
     private int awaitTerminationSeconds;
 
+    @Value("${async.query-jobs.core-pool-size:4}")
+    private int queryJobCorePoolSize;
+
+    @Value("${async.query-jobs.max-pool-size:8}")
+    private int queryJobMaxPoolSize;
+
+    @Value("${async.query-jobs.queue-capacity:50}")
+    private int queryJobQueueCapacity;
+
     @Override
     @Bean(name = "taskExecutor")
     public Executor getAsyncExecutor() {
@@ -88,6 +97,23 @@ public class AsyncConfig implements AsyncConfigurer {
         return executor;
     }
 
+    /**
+     * Bounded executor for long-running query jobs. Rejects instead of running on the
+     * caller so that a saturated pool never falls back to blocking a request thread.
+     */
+    @Bean(name = "queryJobExecutor")
+    public ThreadPoolTaskExecutor queryJobExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(queryJobCorePoolSize);
+        executor.setMaxPoolSize(queryJobMaxPoolSize);
+        executor.setQueueCapacity(queryJobQueueCapacity);
+        executor.setThreadNamePrefix("query-job-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+
     @Override
     public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
         return (ex, method, params) -> {
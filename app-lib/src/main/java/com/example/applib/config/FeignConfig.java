@@ -50,6 +50,11 @@ public class FeignConfig {
 
         @Override
         public Exception decode(String methodKey, feign.Response response) {
+            if (response.status() == 304) {
+                // Conditional request answered with Not Modified, handled by the caller
+                return defaultErrorDecoder.decode(methodKey, response);
+            }
+
             log.error("Error in Feign client call: {} - Status: {}", methodKey, response.status());
 
             // You can customize error handling based on response status or body
@@ -1,11 +1,14 @@
 package com.example.applib.config;
 
+import com.example.applib.cache.CodecRedissonCacheManager;
+import com.example.applib.cache.NearCacheManager;
+import com.example.applib.cache.NearCacheRegistry;
+import com.example.applib.cache.RedisCodecRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.redisson.Redisson;
 import org.redisson.api.RedissonClient;
 import org.redisson.config.Config;
-import org.redisson.spring.cache.RedissonSpringCacheManager;
 import org.redisson.spring.data.connection.RedissonConnectionFactory;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.cache.CacheManager;
@@ -14,7 +17,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.data.redis.listener.RedisMessageListenerContainer;
-import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
 /**
@@ -59,26 +62,31 @@ public class RedisConfig {
     }
 
     /**
-     * Creates a Redis template for Redis operations.
+     * Creates a Redis template for Redis operations, encoding values as configured for
+     * {@code redis-template} under {@code cache.codec.caches}.
      */
     @Bean
-    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory) {
+    public RedisTemplate<String, Object> redisTemplate(RedisConnectionFactory connectionFactory,
+                                                       RedisCodecRegistry codecRegistry) {
+        RedisSerializer<Object> valueSerializer = codecRegistry.getSerializer("redis-template");
         RedisTemplate<String, Object> template = new RedisTemplate<>();
         template.setConnectionFactory(connectionFactory);
         template.setKeySerializer(new StringRedisSerializer());
-        template.setValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setValueSerializer(valueSerializer);
         template.setHashKeySerializer(new StringRedisSerializer());
-        template.setHashValueSerializer(new GenericJackson2JsonRedisSerializer());
+        template.setHashValueSerializer(valueSerializer);
         template.afterPropertiesSet();
         return template;
     }
 
     /**
-     * Creates a cache manager using Redisson.
+     * Creates a cache manager using Redisson, encoding each cache with the codec of its name and
+     * read through near caches on each pod.
      */
     @Bean
-    public CacheManager cacheManager(RedissonClient redissonClient) {
-        return new RedissonSpringCacheManager(redissonClient);
+    public CacheManager cacheManager(RedissonClient redissonClient, NearCacheRegistry nearCacheRegistry,
+                                     RedisCodecRegistry codecRegistry) {
+        return new NearCacheManager(new CodecRedissonCacheManager(redissonClient, codecRegistry), nearCacheRegistry);
     }
 
     /**
@@ -0,0 +1,362 @@
+package com.example.applib.config;
+
+import com.example.applib.entity.TurboS3Config;
+import com.example.applib.repository.TurboS3ConfigRepository;
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.transfer.TransferEngine;
+import com.example.applib.util.RedisUtil;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+
+/**
+ * Tenant-aware registry of S3 configurations and clients.
+ *
+ * <p>The {@link TurboS3Config} of each tenant is cached for {@code s3.registry.config-ttl-seconds}
+ * and dropped early by {@link #invalidate}, which is broadcast over Redis when it is available. A
+ * load that fails is not cached, unless an earlier configuration can be kept instead.
+ * Clients are shared by every tenant using the same region and credentials, so those tenants also
+ * share one connection pool. A client set is closed once no tenant refers to it any more.
+ */
+@Slf4j
+@Component
+public class S3ClientRegistry {
+
+    private static final String INVALIDATION_TOPIC = "s3-config:invalidate";
+    private static final String INVALIDATE_ALL = "*";
+    private static final String DEFAULT_TENANT = "default";
+    private static final long CLOSE_DELAY_SECONDS = 60;
+    private static final TenantEntry EMPTY = new TenantEntry(null, null);
+
+    private final TurboS3ConfigRepository s3ConfigRepository;
+    private final ObjectProvider<TransferEngine> transferEngineProvider;
+    private final ObjectProvider<RedisUtil> redisUtilProvider;
+
+    @Value("${s3.registry.config-ttl-seconds:300}")
+    private long configTtlSeconds;
+
+    private final Map<String, TenantEntry> tenants = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<TenantEntry>> loading = new ConcurrentHashMap<>();
+
+    // Guarded by itself
+    private final Map<String, Clients> clientsByCredentials = new HashMap<>();
+
+    private RedisUtil redisUtil;
+    private Integer subscriptionId;
+
+    public S3ClientRegistry(TurboS3ConfigRepository s3ConfigRepository,
+                            ObjectProvider<TransferEngine> transferEngineProvider,
+                            ObjectProvider<RedisUtil> redisUtilProvider) {
+        this.s3ConfigRepository = s3ConfigRepository;
+        this.transferEngineProvider = transferEngineProvider;
+        this.redisUtilProvider = redisUtilProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        redisUtil = redisUtilProvider.getIfAvailable();
+        if (redisUtil != null) {
+            try {
+                subscriptionId = redisUtil.subscribe(INVALIDATION_TOPIC, String.class, this::evictLocal);
+            } catch (Exception e) {
+                log.warn("S3 configuration changes will not be received from other pods: {}", e.getMessage());
+            }
+        }
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (redisUtil != null && subscriptionId != null) {
+            redisUtil.unsubscribe(INVALIDATION_TOPIC, subscriptionId);
+        }
+        tenants.clear();
+        synchronized (clientsByCredentials) {
+            clientsByCredentials.values().forEach(Clients::close);
+            clientsByCredentials.clear();
+        }
+    }
+
+    /**
+     * Get the S3 configuration of the current tenant
+     *
+     * @return S3 configuration, or null if the tenant has none
+     */
+    public TurboS3Config getConfig() {
+        return entry().config;
+    }
+
+    /**
+     * Get the S3 client of the current tenant
+     *
+     * @return S3 client, or null if the tenant has no S3 configuration
+     */
+    public S3Client getClient() {
+        Clients clients = entry().clients;
+        return clients != null ? clients.getClient() : null;
+    }
+
+    /**
+     * Get the S3 presigner of the current tenant
+     *
+     * @return S3 presigner, or null if the tenant has no S3 configuration
+     */
+    public S3Presigner getPresigner() {
+        Clients clients = entry().clients;
+        return clients != null ? clients.getPresigner() : null;
+    }
+
+    /**
+     * Get the async S3 client used for parallel transfers of the current tenant
+     *
+     * @return Async S3 client, or null if the tenant has no S3 configuration
+     */
+    public S3AsyncClient getAsyncClient() {
+        Clients clients = entry().clients;
+        return clients != null ? clients.getAsyncClient() : null;
+    }
+
+    /**
+     * Drop the cached configuration of a tenant on every pod, e.g. after it was changed
+     *
+     * @param tenantId Tenant ID, or null for the default tenant
+     */
+    public void invalidate(String tenantId) {
+        String key = tenantId != null ? tenantId : DEFAULT_TENANT;
+        evictLocal(key);
+        broadcast(key);
+    }
+
+    /**
+     * Drop the cached configuration of every tenant on every pod
+     */
+    public void invalidateAll() {
+        evictLocal(INVALIDATE_ALL);
+        broadcast(INVALIDATE_ALL);
+    }
+
+    private TenantEntry entry() {
+        String tenantId = TenantContext.getTenantId();
+        String key = tenantId != null ? tenantId : DEFAULT_TENANT;
+
+        TenantEntry entry = tenants.get(key);
+        if (entry != null && !entry.isExpired(System.currentTimeMillis(), configTtlSeconds)) {
+            return entry;
+        }
+
+        // A burst of requests of the same tenant shares one query, which runs outside any map lock
+        CompletableFuture<TenantEntry> load = new CompletableFuture<>();
+        CompletableFuture<TenantEntry> running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            entry = tenants.get(key);
+            TenantEntry loaded = entry != null && !entry.isExpired(System.currentTimeMillis(), configTtlSeconds)
+                    ? entry
+                    : load(key, entry);
+            load.complete(loaded);
+            return loaded;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    private static TenantEntry await(CompletableFuture<TenantEntry> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException ? runtimeException : e;
+        }
+    }
+
+    private TenantEntry load(String tenantId, TenantEntry previous) {
+        TurboS3Config config = null;
+        try {
+            List<TurboS3Config> configs = s3ConfigRepository.findAll();
+            if (!configs.isEmpty()) {
+                config = configs.get(0);
+            } else {
+                log.warn("No S3 configuration found for tenant: {}", tenantId);
+            }
+        } catch (Exception e) {
+            if (previous == null) {
+                // Not cached, so the next request tries again
+                log.error("Error retrieving S3 configuration for tenant: {}", tenantId, e);
+                return EMPTY;
+            }
+            // Keep serving the last known configuration while the database is unavailable
+            log.warn("Failed to reload S3 configuration for tenant {}, keeping the cached one: {}",
+                    tenantId, e.getMessage());
+            config = previous.config;
+        }
+
+        TenantEntry loaded = new TenantEntry(config, config != null ? acquire(config) : null);
+        TenantEntry replaced = tenants.put(tenantId, loaded);
+        if (replaced != null && replaced.clients != null) {
+            release(replaced.clients);
+        }
+        return loaded;
+    }
+
+    private void evictLocal(String tenantId) {
+        if (INVALIDATE_ALL.equals(tenantId)) {
+            tenants.keySet().forEach(this::evictLocal);
+            return;
+        }
+        TenantEntry removed = tenants.remove(tenantId);
+        if (removed != null && removed.clients != null) {
+            release(removed.clients);
+        }
+    }
+
+    private void broadcast(String message) {
+        if (redisUtil == null) {
+            return;
+        }
+        try {
+            redisUtil.publish(INVALIDATION_TOPIC, message);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast S3 configuration invalidation {}: {}", message, e.getMessage());
+        }
+    }
+
+    private Clients acquire(TurboS3Config config) {
+        String key = config.getRegion() + ":" + config.getAwsAccessKeyId() + ":"
+                + DigestUtils.md5DigestAsHex(String.valueOf(config.getAwsSecretAccessKey()).getBytes(StandardCharsets.UTF_8));
+        synchronized (clientsByCredentials) {
+            Clients clients = clientsByCredentials.computeIfAbsent(key, k -> new Clients(k, config));
+            clients.references++;
+            return clients;
+        }
+    }
+
+    private void release(Clients clients) {
+        synchronized (clientsByCredentials) {
+            if (--clients.references > 0) {
+                return;
+            }
+            clientsByCredentials.remove(clients.key, clients);
+        }
+        // Requests that picked up these clients just before the change may still be using them
+        CompletableFuture.delayedExecutor(CLOSE_DELAY_SECONDS, TimeUnit.SECONDS).execute(clients::close);
+    }
+
+    private static final class TenantEntry {
+
+        private final TurboS3Config config;
+        private final Clients clients;
+        private final long loadedAt = System.currentTimeMillis();
+
+        private TenantEntry(TurboS3Config config, Clients clients) {
+            this.config = config;
+            this.clients = clients;
+        }
+
+        private boolean isExpired(long now, long ttlSeconds) {
+            return now - loadedAt >= ttlSeconds * 1000;
+        }
+    }
+
+    /**
+     * Clients for one region and set of credentials, created on first use
+     */
+    private final class Clients {
+
+        private final String key;
+        private final Region region;
+        private final StaticCredentialsProvider credentialsProvider;
+
+        // Guarded by clientsByCredentials
+        private int references;
+
+        private S3Client client;
+        private S3Presigner presigner;
+        private S3AsyncClient asyncClient;
+        private boolean closed;
+
+        private Clients(String key, TurboS3Config config) {
+            this.key = key;
+            this.region = Region.of(config.getRegion());
+            this.credentialsProvider = StaticCredentialsProvider.create(AwsBasicCredentials.create(
+                    config.getAwsAccessKeyId(),
+                    config.getAwsSecretAccessKey()
+            ));
+        }
+
+        private synchronized S3Client getClient() {
+            if (client == null) {
+                ensureOpen();
+                client = S3Client.builder()
+                        .region(region)
+                        .credentialsProvider(credentialsProvider)
+                        .build();
+            }
+            return client;
+        }
+
+        private synchronized S3Presigner getPresigner() {
+            if (presigner == null) {
+                ensureOpen();
+                presigner = S3Presigner.builder()
+                        .region(region)
+                        .credentialsProvider(credentialsProvider)
+                        .build();
+            }
+            return presigner;
+        }
+
+        private synchronized S3AsyncClient getAsyncClient() {
+            if (asyncClient == null) {
+                ensureOpen();
+                TransferEngine transferEngine = transferEngineProvider.getIfAvailable();
+                if (transferEngine == null) {
+                    throw new IllegalStateException("Parallel transfers are not available in this application");
+                }
+                asyncClient = transferEngine.createClient(region.id(), credentialsProvider, null);
+            }
+            return asyncClient;
+        }
+
+        private void ensureOpen() {
+            if (closed) {
+                // A caller held on to clients of a configuration that was replaced meanwhile
+                throw new IllegalStateException("S3 clients for " + region + " were closed after a configuration change");
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            if (client != null) {
+                client.close();
+            }
+            if (presigner != null) {
+                presigner.close();
+            }
+            if (asyncClient != null) {
+                asyncClient.close();
+            }
+            log.info("Closed S3 clients for {}", region);
+        }
+    }
+}
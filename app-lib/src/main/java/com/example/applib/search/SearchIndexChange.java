@@ -0,0 +1,31 @@
+package com.example.applib.search;
+
+import java.io.Serializable;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Broadcast by a pod that indexed or removed a row, so the other pods apply the same change to
+ * their local index.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchIndexChange implements Serializable {
+
+    /**
+     * ID of the sending pod, which has applied the change already
+     */
+    private String origin;
+
+    private String tenantId;
+    private String table;
+    private String id;
+
+    /**
+     * Column values of the row, or null if the row was removed
+     */
+    private Map<String, Object> row;
+}
@@ -0,0 +1,507 @@
+package com.example.applib.search;
+
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.RedisUtil;
+import com.example.applib.web.ResultSetQuery;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.standard.StandardAnalyzer;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.queryparser.simple.SimpleQueryParser;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.store.MMapDirectory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ColumnMapRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Embedded full-text index over tenant rows, one Lucene index per tenant on local disk.
+ *
+ * <p>Write paths call {@link #index} and {@link #delete}; the changes become searchable within
+ * {@code search.refresh-interval-ms} and durable at the next periodic commit. Lucene merges
+ * segments in the background and deleted documents are expunged on a schedule. All string and
+ * scalar columns of a row are indexed into one analyzed field; only the row ID is stored, so
+ * callers load the rows themselves.
+ *
+ * <p>Each pod keeps its own index. {@link #index} and {@link #delete} are broadcast over Redis when
+ * it is available, so the other pods apply them too; otherwise they, like changes made directly
+ * in the database, are only picked up by {@link #rebuild}, which streams the table through a
+ * cursor and only updates the index of the pod it runs on. Rebuilds of the same table are
+ * serialized, and the generation of the last rebuild is kept in the index commit, so writes after
+ * a restart are tagged with it instead of starting over.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SearchIndexService {
+
+    private static final String FIELD_KEY = "_key";
+    private static final String FIELD_TABLE = "_table";
+    private static final String FIELD_GENERATION = "_gen";
+    private static final String FIELD_ID = "_id";
+    private static final String FIELD_ALL = "_all";
+    private static final String INITIAL_GENERATION = "0";
+    private static final String GENERATION_COMMIT_PREFIX = "generation.";
+    private static final String CHANGE_TOPIC = "search-index:change";
+
+    private final Analyzer analyzer = new StandardAnalyzer();
+    private final Map<String, TenantIndex> indexes = new ConcurrentHashMap<>();
+    private final String origin = UUID.randomUUID().toString();
+    private final ObjectProvider<RedisUtil> redisUtilProvider;
+    private ScheduledExecutorService maintenance;
+    private RedisUtil redisUtil;
+    private Integer subscriptionId;
+
+    @Value("${search.enabled:true}")
+    private boolean enabled;
+
+    @Value("${search.index-directory:${java.io.tmpdir}/search-index/${spring.application.name:app}}")
+    private String indexDirectory;
+
+    @Value("${search.ram-buffer-mb:32}")
+    private double ramBufferMb;
+
+    @Value("${search.refresh-interval-ms:1000}")
+    private long refreshIntervalMillis;
+
+    @Value("${search.commit-interval-ms:30000}")
+    private long commitIntervalMillis;
+
+    @Value("${search.merge-interval-ms:3600000}")
+    private long mergeIntervalMillis;
+
+    @Value("${search.max-window:10000}")
+    private int maxWindow;
+
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            log.info("Search index is disabled");
+            return;
+        }
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "search-index-maintenance");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(() -> forEachIndex(TenantIndex::refresh),
+                refreshIntervalMillis, refreshIntervalMillis, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(() -> forEachIndex(TenantIndex::commit),
+                commitIntervalMillis, commitIntervalMillis, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(() -> forEachIndex(TenantIndex::expungeDeletes),
+                mergeIntervalMillis, mergeIntervalMillis, TimeUnit.MILLISECONDS);
+
+        redisUtil = redisUtilProvider.getIfAvailable();
+        if (redisUtil != null) {
+            try {
+                subscriptionId = redisUtil.subscribe(CHANGE_TOPIC, SearchIndexChange.class, this::applyChange);
+            } catch (Exception e) {
+                log.warn("Search index changes will not be received from other pods: {}", e.getMessage());
+            }
+        }
+        log.info("Search index initialized in {}", indexDirectory);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (redisUtil != null && subscriptionId != null) {
+            redisUtil.unsubscribe(CHANGE_TOPIC, subscriptionId);
+        }
+        if (maintenance != null) {
+            maintenance.shutdownNow();
+        }
+        indexes.values().forEach(TenantIndex::close);
+        indexes.clear();
+    }
+
+    /**
+     * Add or replace a row of the current tenant. Failures are logged, never thrown, so indexing
+     * cannot fail the write that triggered it.
+     *
+     * @param table Table name
+     * @param id Row ID
+     * @param row Column values of the row
+     */
+    public void index(String table, String id, Map<String, Object> row) {
+        if (!enabled) {
+            return;
+        }
+        String tenantId = tenantKey();
+        try {
+            TenantIndex index = getIndex(tenantId);
+            index.writer.updateDocument(keyTerm(table, id), toDocument(table, id, row, index.generation(table)));
+        } catch (Exception e) {
+            log.warn("Failed to index {}:{} for tenant {}: {}", table, id, tenantId, e.getMessage());
+            return;
+        }
+        broadcast(new SearchIndexChange(origin, tenantId, table, id, new LinkedHashMap<>(row)));
+    }
+
+    /**
+     * Remove a row of the current tenant. Failures are logged, never thrown.
+     *
+     * @param table Table name
+     * @param id Row ID
+     */
+    public void delete(String table, String id) {
+        if (!enabled) {
+            return;
+        }
+        String tenantId = tenantKey();
+        try {
+            getIndex(tenantId).writer.deleteDocuments(keyTerm(table, id));
+        } catch (Exception e) {
+            log.warn("Failed to remove {}:{} from the index of tenant {}: {}", table, id, tenantId, e.getMessage());
+            return;
+        }
+        broadcast(new SearchIndexChange(origin, tenantId, table, id, null));
+    }
+
+    /**
+     * Search rows of a table of the current tenant, best matches first
+     *
+     * @param table Table name
+     * @param text Query in simple query syntax: terms, "phrases", prefix*, -exclusions, a | b
+     * @param offset Number of hits to skip
+     * @param limit Maximum number of hits to return
+     * @return One page of hits; offsets beyond {@code search.max-window} return no hits
+     * @throws IOException If the index cannot be read
+     */
+    public SearchResult search(String table, String text, int offset, int limit) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Search index is disabled");
+        }
+
+        SimpleQueryParser parser = new SimpleQueryParser(analyzer, FIELD_ALL);
+        parser.setDefaultOperator(BooleanClause.Occur.MUST);
+        Query parsed = parser.parse(text);
+        if (parsed == null) {
+            // Only stop words or operators
+            return new SearchResult(0, true, List.of());
+        }
+
+        Query query = new BooleanQuery.Builder()
+                .add(parsed, BooleanClause.Occur.MUST)
+                .add(new TermQuery(new Term(FIELD_TABLE, table)), BooleanClause.Occur.FILTER)
+                .build();
+
+        int window = (int) Math.min((long) offset + limit, maxWindow);
+        SearcherManager searcherManager = getIndex(tenantKey()).searcherManager;
+        IndexSearcher searcher = searcherManager.acquire();
+        try {
+            TopDocs topDocs = searcher.search(query, Math.max(window, 1));
+            List<SearchResult.Hit> hits = new ArrayList<>();
+            for (int i = offset; i < Math.min(window, topDocs.scoreDocs.length); i++) {
+                ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+                Document document = searcher.storedFields().document(scoreDoc.doc, Set.of(FIELD_ID));
+                hits.add(new SearchResult.Hit(document.get(FIELD_ID), scoreDoc.score));
+            }
+            return new SearchResult(topDocs.totalHits.value,
+                    topDocs.totalHits.relation == TotalHits.Relation.EQUAL_TO, hits);
+        } finally {
+            searcherManager.release(searcher);
+        }
+    }
+
+    /**
+     * Load the rows of a page of hits, keeping the ranking. Hits whose row no longer exists are
+     * skipped and dropped from the index.
+     *
+     * @param jdbcTemplate Template of the database holding the table
+     * @param table Table name, must not come from user input
+     * @param result Page of hits
+     * @return One entry per hit with its id, score and row
+     */
+    public List<Map<String, Object>> loadHits(JdbcTemplate jdbcTemplate, String table, SearchResult result) {
+        if (result.getHits().isEmpty()) {
+            return List.of();
+        }
+
+        List<String> ids = result.getHits().stream().map(SearchResult.Hit::getId).toList();
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        Map<String, Map<String, Object>> rowsById = new HashMap<>();
+        for (Map<String, Object> row : jdbcTemplate.queryForList(
+                "SELECT * FROM " + table + " WHERE id IN (" + placeholders + ")", ids.toArray())) {
+            rowsById.put(String.valueOf(row.get("id")), row);
+        }
+
+        List<Map<String, Object>> hits = new ArrayList<>();
+        for (SearchResult.Hit hit : result.getHits()) {
+            Map<String, Object> row = rowsById.get(hit.getId());
+            if (row == null) {
+                delete(table, hit.getId());
+                continue;
+            }
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("id", hit.getId());
+            entry.put("score", hit.getScore());
+            entry.put("row", row);
+            hits.add(entry);
+        }
+        return hits;
+    }
+
+    /**
+     * Re-index a table of the current tenant from the database. Rows are streamed, so memory use
+     * does not depend on the table size. Rows that no longer exist are dropped at the end, and
+     * searches keep returning the previous results until then. A rebuild of a table that is
+     * already being rebuilt waits for the running one to finish.
+     *
+     * @param table Table name
+     * @param query Query selecting all rows of the table, including an {@code id} column
+     * @return Number of rows indexed
+     * @throws IOException If the index cannot be written
+     */
+    public long rebuild(String table, ResultSetQuery query) throws IOException {
+        if (!enabled) {
+            throw new IllegalStateException("Search index is disabled");
+        }
+
+        TenantIndex index = getIndex(tenantKey());
+        ReentrantLock lock = index.rebuildLocks.computeIfAbsent(table, key -> new ReentrantLock());
+        lock.lock();
+        try {
+            return rebuild(index, table, query);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private long rebuild(TenantIndex index, String table, ResultSetQuery query) throws IOException {
+        String generation = index.nextGeneration(table);
+        ColumnMapRowMapper rowMapper = new ColumnMapRowMapper();
+        long[] count = new long[1];
+
+        try {
+            query.execute(rs -> {
+                while (rs.next()) {
+                    Map<String, Object> row = rowMapper.mapRow(rs, (int) count[0]);
+                    Object id = row.get("id");
+                    if (id == null) {
+                        continue;
+                    }
+                    try {
+                        index.writer.updateDocument(keyTerm(table, id.toString()),
+                                toDocument(table, id.toString(), row, generation));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    count[0]++;
+                }
+                return null;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Everything of this table not touched by the rebuild or written since is stale. The commit
+        // also persists the new generation.
+        index.writer.deleteDocuments(new BooleanQuery.Builder()
+                .add(new TermQuery(new Term(FIELD_TABLE, table)), BooleanClause.Occur.FILTER)
+                .add(new TermQuery(new Term(FIELD_GENERATION, generation)), BooleanClause.Occur.MUST_NOT)
+                .build());
+        index.writer.commit();
+        index.searcherManager.maybeRefresh();
+
+        log.info("Rebuilt search index of {} for tenant {} with {} rows", table, TenantContext.getTenantId(), count[0]);
+        return count[0];
+    }
+
+    private Document toDocument(String table, String id, Map<String, Object> row, String generation) {
+        Document document = new Document();
+        document.add(new StringField(FIELD_KEY, table + ":" + id, Field.Store.NO));
+        document.add(new StringField(FIELD_TABLE, table, Field.Store.NO));
+        document.add(new StringField(FIELD_GENERATION, generation, Field.Store.NO));
+        document.add(new StoredField(FIELD_ID, id));
+        for (Object value : row.values()) {
+            if (value != null && !(value instanceof byte[])) {
+                document.add(new TextField(FIELD_ALL, value.toString(), Field.Store.NO));
+            }
+        }
+        return document;
+    }
+
+    private static Term keyTerm(String table, String id) {
+        return new Term(FIELD_KEY, table + ":" + id);
+    }
+
+    private void applyChange(SearchIndexChange change) {
+        if (origin.equals(change.getOrigin())) {
+            return;
+        }
+        try {
+            TenantIndex index = getIndex(change.getTenantId());
+            Term key = keyTerm(change.getTable(), change.getId());
+            if (change.getRow() == null) {
+                index.writer.deleteDocuments(key);
+            } else {
+                index.writer.updateDocument(key, toDocument(change.getTable(), change.getId(), change.getRow(),
+                        index.generation(change.getTable())));
+            }
+        } catch (Exception e) {
+            log.warn("Failed to apply search index change of {}:{} for tenant {}: {}",
+                    change.getTable(), change.getId(), change.getTenantId(), e.getMessage());
+        }
+    }
+
+    private void broadcast(SearchIndexChange change) {
+        if (redisUtil == null) {
+            return;
+        }
+        try {
+            redisUtil.publish(CHANGE_TOPIC, change);
+        } catch (Exception e) {
+            log.warn("Failed to broadcast search index change of {}:{}: {}",
+                    change.getTable(), change.getId(), e.getMessage());
+        }
+    }
+
+    private static String tenantKey() {
+        return TenantContext.getTenantId() != null ? TenantContext.getTenantId() : "default";
+    }
+
+    private TenantIndex getIndex(String tenantId) throws IOException {
+        try {
+            return indexes.computeIfAbsent(tenantId, key -> {
+                try {
+                    return new TenantIndex(Paths.get(indexDirectory, key.replaceAll("[^A-Za-z0-9_.-]", "_")));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void forEachIndex(IndexTask task) {
+        indexes.forEach((tenantId, index) -> {
+            try {
+                task.run(index);
+            } catch (Exception e) {
+                log.error("Search index maintenance failed for tenant {}: {}", tenantId, e.getMessage());
+            }
+        });
+    }
+
+    @FunctionalInterface
+    private interface IndexTask {
+        void run(TenantIndex index) throws IOException;
+    }
+
+    private final class TenantIndex {
+
+        private final MMapDirectory directory;
+        private final IndexWriter writer;
+        private final SearcherManager searcherManager;
+        private final Map<String, String> generations = new ConcurrentHashMap<>();
+        private final Map<String, ReentrantLock> rebuildLocks = new ConcurrentHashMap<>();
+
+        private TenantIndex(Path path) throws IOException {
+            Files.createDirectories(path);
+            this.directory = new MMapDirectory(path);
+
+            IndexWriterConfig config = new IndexWriterConfig(analyzer);
+            config.setOpenMode(IndexWriterConfig.OpenMode.CREATE_OR_APPEND);
+            config.setRAMBufferSizeMB(ramBufferMb);
+            config.setMergePolicy(new TieredMergePolicy());
+            config.setCommitOnClose(true);
+            this.writer = new IndexWriter(directory, config);
+            this.searcherManager = new SearcherManager(writer, null);
+
+            // Generations of the last committed rebuilds
+            Iterable<Map.Entry<String, String>> commitData = writer.getLiveCommitData();
+            if (commitData != null) {
+                for (Map.Entry<String, String> entry : commitData) {
+                    if (entry.getKey().startsWith(GENERATION_COMMIT_PREFIX)) {
+                        generations.put(entry.getKey().substring(GENERATION_COMMIT_PREFIX.length()), entry.getValue());
+                    }
+                }
+            }
+        }
+
+        private String generation(String table) {
+            return generations.getOrDefault(table, INITIAL_GENERATION);
+        }
+
+        /**
+         * Start a new generation of a table, strictly above the previous one even across restarts
+         */
+        private String nextGeneration(String table) {
+            long previous = Long.parseLong(generation(table));
+            String generation = Long.toString(Math.max(previous + 1, System.currentTimeMillis()));
+            generations.put(table, generation);
+
+            Map<String, String> commitData = new HashMap<>();
+            generations.forEach((key, value) -> commitData.put(GENERATION_COMMIT_PREFIX + key, value));
+            writer.setLiveCommitData(commitData.entrySet());
+            return generation;
+        }
+
+        private void refresh() throws IOException {
+            searcherManager.maybeRefresh();
+        }
+
+        private void commit() throws IOException {
+            if (writer.hasUncommittedChanges()) {
+                writer.commit();
+            }
+        }
+
+        private void expungeDeletes() throws IOException {
+            if (writer.hasDeletions()) {
+                writer.forceMergeDeletes(false);
+            }
+        }
+
+        private void close() {
+            try {
+                searcherManager.close();
+                writer.close();
+                directory.close();
+            } catch (IOException e) {
+                log.warn("Failed to close search index in {}: {}", directory.getDirectory(), e.getMessage());
+            }
+        }
+    }
+}
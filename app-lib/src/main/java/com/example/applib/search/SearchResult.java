@@ -0,0 +1,31 @@
+package com.example.applib.search;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * One page of ranked search hits.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SearchResult {
+
+    /**
+     * Number of matching rows; a lower bound when {@code totalHitsExact} is false
+     */
+    private long totalHits;
+    private boolean totalHitsExact;
+    private List<Hit> hits;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Hit {
+
+        private String id;
+        private float score;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.applib.service;
 
+import com.example.applib.cache.RowCache;
 import com.example.applib.client.AttachmentServiceClient;
 import com.example.applib.client.DataServiceClient;
 import com.example.applib.client.UserManagementServiceClient;
@@ -21,6 +22,43 @@ public class InterServiceCommunicationService {
     private final DataServiceClient dataServiceClient;
     private final AttachmentServiceClient attachmentServiceClient;
     private final UserManagementServiceClient userManagementServiceClient;
+    private final RowCache rowCache;
+
+    /**
+     * Get a data record by ID. A cached copy is returned as-is while invalidations are shared
+     * through Redis; otherwise it is revalidated with If-None-Match, so an unchanged record costs
+     * a 304 instead of a full transfer.
+     *
+     * @param id Data record ID
+     * @return The data record if it exists
+     */
+    public Optional<Map<String, Object>> getDataById(String id) {
+        Optional<Map<String, Object>> cached = rowCache.peekRow("data", id);
+        if (cached.isPresent() && rowCache.isInvalidationShared()) {
+            return cached;
+        }
+
+        String etag = cached.isPresent() ? rowCache.getVersion("data", id) : null;
+        try {
+            ResponseEntity<Map<String, Object>> response = dataServiceClient.getDataById(id, etag);
+            Map<String, Object> data = response.getBody();
+            if (!response.getStatusCode().is2xxSuccessful() || data == null) {
+                return Optional.empty();
+            }
+
+            rowCache.putRow("data", id, data, response.getHeaders().getETag());
+            return Optional.of(data);
+        } catch (FeignException e) {
+            if (e.status() == 304 && cached.isPresent()) {
+                return cached;
+            }
+            if (e.status() == 404) {
+                return Optional.empty();
+            }
+            log.error("Error fetching data with ID {}: {}", id, e.getMessage());
+            return Optional.empty();
+        }
+    }
 
     public Optional<Map<String, Object>> getUserData(String userId) {
         try {
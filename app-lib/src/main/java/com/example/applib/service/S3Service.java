@@ -1,7 +1,9 @@
 package com.example.applib.service;
 
+import com.example.applib.config.S3ClientRegistry;
 import com.example.applib.entity.TurboS3Config;
 import com.example.applib.repository.TurboS3ConfigRepository;
+import com.example.applib.tenant.TenantContext;
 import io.minio.MinioClient;
 import java.util.List;
 import java.util.Optional;
@@ -25,6 +27,7 @@ import software.amazon.awssdk.services.s3.S3Client;
 public class S3Service {
 
     private final TurboS3ConfigRepository turboS3ConfigRepository;
+    private final S3ClientRegistry s3ClientRegistry;
 
     @Value("${aws.s3.enabled:true}")
     private boolean awsS3Enabled;
@@ -41,14 +44,19 @@ public class S3Service {
     }
 
     public TurboS3Config createConfig(TurboS3Config config) {
-        return turboS3ConfigRepository.save(config);
+        TurboS3Config saved = turboS3ConfigRepository.save(config);
+        s3ClientRegistry.invalidate(TenantContext.getTenantId());
+        return saved;
     }
 
     public Optional<TurboS3Config> updateConfig(Long id, TurboS3Config config) {
         return turboS3ConfigRepository.findById(id)
                 .map(existingConfig -> {
                     config.setId(id);
-                    return turboS3ConfigRepository.save(config);
+                    TurboS3Config saved = turboS3ConfigRepository.save(config);
+                    // Drop cached clients built from the old credentials
+                    s3ClientRegistry.invalidate(TenantContext.getTenantId());
+                    return saved;
                 });
     }
 
@@ -56,6 +64,7 @@ public class S3Service {
         return turboS3ConfigRepository.findById(id)
                 .map(config -> {
                     turboS3ConfigRepository.delete(config);
+                    s3ClientRegistry.invalidate(TenantContext.getTenantId());
                     return true;
                 })
                 .orElse(false);
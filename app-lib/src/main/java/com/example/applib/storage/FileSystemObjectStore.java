@@ -0,0 +1,260 @@
+package com.example.applib.storage;
+
+import com.example.applib.config.S3ClientRegistry;
+import com.example.applib.entity.TurboS3Config;
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.ByteRange;
+import com.example.applib.util.S3DeleteResult;
+import com.example.applib.util.StoredObject;
+import jakarta.annotation.PostConstruct;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.UserDefinedFileAttributeView;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Object store in a local directory, for running and benchmarking without any external service.
+ *
+ * <p>Each tenant's objects live under {@code storage.filesystem.root}/&lt;bucket&gt;/&lt;key&gt;, where
+ * the bucket is the one of the tenant's {@code TurboS3Config}, falling back to the tenant ID.
+ * Writes go through a {@link FileChannel} into a temporary file that is renamed into place, so
+ * readers never see a partial object. Reads hand the file to {@link StoredObject#ofFile}, which
+ * lets the container send it with sendfile instead of copying it through the JVM.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "filesystem")
+public class FileSystemObjectStore implements ObjectStore {
+
+    private static final String TEMP_PREFIX = ".upload-";
+    private static final String CONTENT_TYPE_ATTRIBUTE = "content-type";
+    private static final String DEFAULT_BUCKET = "default";
+    private static final long TRANSFER_CHUNK_BYTES = 8 * 1024 * 1024;
+
+    private final ObjectProvider<S3ClientRegistry> s3ClientRegistryProvider;
+
+    @Value("${storage.filesystem.root:${java.io.tmpdir}/object-store}")
+    private String root;
+
+    private Path rootPath;
+
+    public FileSystemObjectStore(ObjectProvider<S3ClientRegistry> s3ClientRegistryProvider) {
+        this.s3ClientRegistryProvider = s3ClientRegistryProvider;
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        rootPath = Paths.get(root).toAbsolutePath().normalize();
+        Files.createDirectories(rootPath);
+        log.info("Storing objects in {}", rootPath);
+    }
+
+    @Override
+    public String getBackend() {
+        return "filesystem";
+    }
+
+    @Override
+    public ObjectInfo put(String key, String contentType, InputStream data, Function<String, String> existingKeyLookup)
+            throws IOException {
+        Path target = resolve(key);
+        Files.createDirectories(target.getParent());
+        // In the target's directory, so the rename into place is atomic
+        Path temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, ".tmp");
+
+        try {
+            MessageDigest sha256 = sha256();
+            long size = 0;
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+                 ReadableByteChannel source = Channels.newChannel(new DigestInputStream(data, sha256))) {
+                long transferred;
+                while ((transferred = channel.transferFrom(source, size, TRANSFER_CHUNK_BYTES)) > 0) {
+                    size += transferred;
+                }
+            }
+            String checksum = HexFormat.of().formatHex(sha256.digest());
+
+            String existingKey = existingKeyLookup != null ? existingKeyLookup.apply(checksum) : null;
+            if (existingKey != null) {
+                Files.deleteIfExists(temp);
+                return new ObjectInfo(existingKey, size, null, null, checksum, true);
+            }
+
+            if (contentType != null) {
+                writeContentType(temp, contentType);
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            BasicFileAttributes attributes = Files.readAttributes(target, BasicFileAttributes.class);
+            return new ObjectInfo(key, size, eTag(attributes), attributes.lastModifiedTime().toInstant(),
+                    checksum, false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    @Override
+    public StoredObject open(String key, ByteRange range, String ifRange) throws IOException {
+        Path path = resolve(key);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("Object not found: " + key);
+        }
+        if (!attributes.isRegularFile()) {
+            throw new FileNotFoundException("Object not found: " + key);
+        }
+
+        return StoredObject.ofFile(key, path, attributes.size(), readContentType(path), eTag(attributes),
+                attributes.lastModifiedTime().toInstant(), range, ifRange);
+    }
+
+    @Override
+    public Map<String, Boolean> exist(Collection<String> keys) throws IOException {
+        Map<String, Boolean> exists = new LinkedHashMap<>();
+        for (String key : keys) {
+            exists.put(key, Files.isRegularFile(resolve(key)));
+        }
+        return exists;
+    }
+
+    @Override
+    public S3DeleteResult delete(Collection<String> keys) throws IOException {
+        Map<String, String> errors = new LinkedHashMap<>();
+        int deleted = 0;
+        for (String key : keys.stream().distinct().toList()) {
+            try {
+                Files.deleteIfExists(resolve(key));
+                deleted++;
+            } catch (IOException e) {
+                errors.put(key, e.getMessage());
+            }
+        }
+        return new S3DeleteResult(deleted, errors);
+    }
+
+    @Override
+    public Stream<ObjectInfo> list(String prefix) throws IOException {
+        Path bucketPath = bucketPath();
+        // Only walk the directory the prefix points into
+        int slash = prefix.lastIndexOf('/');
+        Path start = slash > 0 ? resolve(prefix.substring(0, slash)) : bucketPath;
+        if (!Files.isDirectory(start)) {
+            return Stream.empty();
+        }
+
+        // Resolved up front, the stream may be consumed on another thread without a tenant
+        return Files.walk(start)
+                .filter(path -> !path.getFileName().toString().startsWith(TEMP_PREFIX))
+                .filter(Files::isRegularFile)
+                .filter(path -> toKey(bucketPath, path).startsWith(prefix))
+                .map(path -> {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+                        return new ObjectInfo(toKey(bucketPath, path), attributes.size(), eTag(attributes),
+                                attributes.lastModifiedTime().toInstant());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+    }
+
+    private static String toKey(Path bucketPath, Path path) {
+        return bucketPath.relativize(path).toString().replace(path.getFileSystem().getSeparator(), "/");
+    }
+
+    private Path resolve(String key) throws IOException {
+        Path bucketPath = bucketPath();
+        Path path = bucketPath.resolve(key).normalize();
+        if (key.isEmpty() || !path.startsWith(bucketPath) || path.equals(bucketPath)) {
+            throw new IOException("Invalid object key: " + key);
+        }
+        return path;
+    }
+
+    private Path bucketPath() {
+        String bucket = null;
+        S3ClientRegistry registry = s3ClientRegistryProvider.getIfAvailable();
+        if (registry != null) {
+            TurboS3Config config = registry.getConfig();
+            bucket = config != null ? config.getBucketName() : null;
+        }
+        if (bucket == null) {
+            bucket = TenantContext.getTenantId() != null ? TenantContext.getTenantId() : DEFAULT_BUCKET;
+        }
+        return rootPath.resolve(bucket);
+    }
+
+    private static void writeContentType(Path path, String contentType) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        if (view == null) {
+            return;
+        }
+        try {
+            view.write(CONTENT_TYPE_ATTRIBUTE, StandardCharsets.UTF_8.encode(contentType));
+        } catch (IOException | UnsupportedOperationException e) {
+            // Not every file system keeps extended attributes; the type is then guessed on read
+            log.debug("Cannot store the content type of {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static String readContentType(Path path) {
+        UserDefinedFileAttributeView view = Files.getFileAttributeView(path, UserDefinedFileAttributeView.class);
+        try {
+            if (view != null && view.list().contains(CONTENT_TYPE_ATTRIBUTE)) {
+                ByteBuffer buffer = ByteBuffer.allocate(view.size(CONTENT_TYPE_ATTRIBUTE));
+                view.read(CONTENT_TYPE_ATTRIBUTE, buffer);
+                return new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+            }
+            return Files.probeContentType(path);
+        } catch (IOException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Entity tag from the modification time and size, as static file servers derive it
+     */
+    private static String eTag(BasicFileAttributes attributes) {
+        Instant modified = attributes.lastModifiedTime().toInstant();
+        return "\"" + Long.toHexString(modified.toEpochMilli()) + "-" + Long.toHexString(attributes.size()) + "\"";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
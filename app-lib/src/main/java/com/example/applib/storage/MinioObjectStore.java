@@ -0,0 +1,104 @@
+package com.example.applib.storage;
+
+import com.example.applib.util.ByteRange;
+import com.example.applib.util.MinioUtil;
+import com.example.applib.util.S3DeleteResult;
+import com.example.applib.util.StoredObject;
+import com.google.common.io.CountingInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Object store on a MinIO server, see {@link MinioUtil}. MinIO cannot abort a streamed PUT once
+ * it has started, so data found to be a duplicate at the end is deleted again after it was stored.
+ * Like {@link MinioUtil} it is only available with the {@code local} profile; selecting it
+ * elsewhere stops the application at startup.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "storage.backend", havingValue = "minio")
+public class MinioObjectStore implements ObjectStore {
+
+    private final MinioUtil minioUtil;
+
+    public MinioObjectStore(ObjectProvider<MinioUtil> minioUtilProvider) {
+        MinioUtil util = minioUtilProvider.getIfAvailable();
+        if (util == null) {
+            throw new IllegalStateException("storage.backend=minio needs the Minio client, which is only created "
+                    + "with the local profile and minio.enabled=true; use storage.backend=s3 or filesystem instead");
+        }
+        this.minioUtil = util;
+    }
+
+    @Override
+    public String getBackend() {
+        return "minio";
+    }
+
+    @Override
+    public ObjectInfo put(String key, String contentType, InputStream data, Function<String, String> existingKeyLookup)
+            throws IOException {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        CountingInputStream counted = new CountingInputStream(new DigestInputStream(data, sha256));
+        String eTag = minioUtil.uploadStream(key, contentType, counted);
+        String checksum = HexFormat.of().formatHex(sha256.digest());
+
+        String existingKey = existingKeyLookup != null ? existingKeyLookup.apply(checksum) : null;
+        if (existingKey != null) {
+            log.debug("Deleting {}, same content as {}", key, existingKey);
+            minioUtil.deleteFile(key);
+            return new ObjectInfo(existingKey, counted.getCount(), null, null, checksum, true);
+        }
+        return new ObjectInfo(key, counted.getCount(), eTag, null, checksum, false);
+    }
+
+    @Override
+    public StoredObject open(String key, ByteRange range, String ifRange) throws IOException {
+        return minioUtil.openObject(key, range, ifRange);
+    }
+
+    @Override
+    public Map<String, Boolean> exist(Collection<String> keys) throws IOException {
+        Map<String, Boolean> exists = new LinkedHashMap<>();
+        for (String key : keys) {
+            exists.put(key, minioUtil.doesObjectExist(key));
+        }
+        return exists;
+    }
+
+    @Override
+    public S3DeleteResult delete(Collection<String> keys) throws IOException {
+        try {
+            Map<String, String> errors = minioUtil.deleteFiles(keys);
+            return new S3DeleteResult((int) keys.stream().distinct().count() - errors.size(), errors);
+        } catch (RuntimeException e) {
+            throw new IOException("Failed to delete files from Minio: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public Stream<ObjectInfo> list(String prefix) {
+        return minioUtil.listObjects(prefix).map(item -> new ObjectInfo(item.objectName(), item.size(),
+                ByteRange.quoteETag(item.etag()),
+                item.lastModified() != null ? item.lastModified().toInstant() : null));
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.applib.storage;
+
+import java.time.Instant;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * A stored object as listed or written by an {@link ObjectStore}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ObjectInfo {
+
+    private String key;
+    private long size;
+
+    /**
+     * Entity tag, quoted; may be null
+     */
+    private String eTag;
+
+    private Instant lastModified;
+
+    /**
+     * Hex encoded SHA-256 of the content, set when it was computed during a write
+     */
+    private String sha256;
+
+    /**
+     * Whether a write reused an existing object with the same content, whose key is {@link #key}
+     */
+    private boolean deduplicated;
+
+    public ObjectInfo(String key, long size, String eTag, Instant lastModified) {
+        this(key, size, eTag, lastModified, null, false);
+    }
+}
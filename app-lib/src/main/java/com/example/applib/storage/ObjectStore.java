@@ -0,0 +1,124 @@
+package com.example.applib.storage;
+
+import com.example.applib.util.ByteRange;
+import com.example.applib.util.RangeNotSatisfiableException;
+import com.example.applib.util.S3DeleteResult;
+import com.example.applib.util.StoredObject;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Object storage of the current tenant, independent of where the objects live.
+ *
+ * <p>The backend is chosen with {@code storage.backend}: {@code s3} (the default) stores in the
+ * tenant's bucket from {@code TurboS3Config}, {@code minio} in a MinIO server and
+ * {@code filesystem} in a local directory, which needs no external service at all. Every backend
+ * streams writes without buffering them whole, serves byte ranges with If-Range, and handles
+ * batches of keys in as few round trips as it can.
+ */
+public interface ObjectStore {
+
+    /**
+     * Name of the backend, as set in {@code storage.backend}
+     *
+     * @return Backend name
+     */
+    String getBackend();
+
+    /**
+     * Store a stream of unknown length under a key, replacing any object stored there
+     *
+     * @param key Object key
+     * @param contentType Content type, may be null
+     * @param data Data to store, not closed
+     * @return The stored object
+     * @throws IOException If reading or storing fails; nothing is left under the key then
+     */
+    default ObjectInfo put(String key, String contentType, InputStream data) throws IOException {
+        return put(key, contentType, data, null);
+    }
+
+    /**
+     * Store a stream unless an object with the same content already exists. The SHA-256 is
+     * computed while the data streams through and handed to the lookup at the end.
+     *
+     * @param key Object key used if the data is stored
+     * @param contentType Content type, may be null
+     * @param data Data to store, not closed
+     * @param existingKeyLookup Maps the hex encoded SHA-256 of the data to the key of an existing
+     *                          object with the same content, or to null to store the data; may be null
+     * @return The stored object, or the existing one when the data was deduplicated
+     * @throws IOException If reading or storing fails; nothing is left under the key then
+     */
+    ObjectInfo put(String key, String contentType, InputStream data, Function<String, String> existingKeyLookup)
+            throws IOException;
+
+    /**
+     * Open an object, or a byte range of it
+     *
+     * @param key Object key
+     * @param range Requested range, or null for the whole object
+     * @param ifRange If-Range header value; when it does not match the whole object is returned
+     * @return The open object; the caller must close it
+     * @throws FileNotFoundException If the object does not exist
+     * @throws RangeNotSatisfiableException If the range lies outside the object
+     * @throws IOException If the object cannot be read
+     */
+    StoredObject open(String key, ByteRange range, String ifRange) throws IOException;
+
+    /**
+     * Check which of many objects exist
+     *
+     * @param keys Object keys
+     * @return Whether each object exists, in the order of the keys
+     * @throws IOException If the check fails
+     */
+    Map<String, Boolean> exist(Collection<String> keys) throws IOException;
+
+    /**
+     * Check if an object exists
+     *
+     * @param key Object key
+     * @return Whether the object exists
+     * @throws IOException If the check fails
+     */
+    default boolean exists(String key) throws IOException {
+        return exist(List.of(key)).get(key);
+    }
+
+    /**
+     * Delete many objects; keys that do not exist count as deleted
+     *
+     * @param keys Object keys
+     * @return Number of deleted keys and the error of each key that could not be deleted
+     * @throws IOException If the store cannot be reached
+     */
+    S3DeleteResult delete(Collection<String> keys) throws IOException;
+
+    /**
+     * Delete an object; a key that does not exist counts as deleted
+     *
+     * @param key Object key
+     * @return Whether the object is gone
+     * @throws IOException If the store cannot be reached
+     */
+    default boolean delete(String key) throws IOException {
+        return delete(List.of(key)).getErrors().isEmpty();
+    }
+
+    /**
+     * List the objects under a prefix lazily; the order depends on the backend
+     *
+     * @param prefix Key prefix, empty for all objects
+     * @return Stream of objects, to be closed; listing errors surface as {@link UncheckedIOException}
+     * @throws IOException If the listing cannot be started
+     */
+    Stream<ObjectInfo> list(String prefix) throws IOException;
+}
@@ -0,0 +1,61 @@
+package com.example.applib.storage;
+
+import com.example.applib.util.ByteRange;
+import com.example.applib.util.S3DeleteResult;
+import com.example.applib.util.S3UploadResult;
+import com.example.applib.util.S3Util;
+import com.example.applib.util.StoredObject;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * Object store on the current tenant's S3 bucket, see {@link S3Util}.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "storage.backend", havingValue = "s3", matchIfMissing = true)
+public class S3ObjectStore implements ObjectStore {
+
+    private final S3Util s3Util;
+
+    @Override
+    public String getBackend() {
+        return "s3";
+    }
+
+    @Override
+    public ObjectInfo put(String key, String contentType, InputStream data, Function<String, String> existingKeyLookup)
+            throws IOException {
+        S3UploadResult result = s3Util.uploadStream(key, contentType, data, existingKeyLookup);
+        return new ObjectInfo(result.getKey(), result.getSize(), result.getETag(), null,
+                result.getSha256(), result.isDeduplicated());
+    }
+
+    @Override
+    public StoredObject open(String key, ByteRange range, String ifRange) throws IOException {
+        return s3Util.openObject(key, range, ifRange);
+    }
+
+    @Override
+    public Map<String, Boolean> exist(Collection<String> keys) throws IOException {
+        return s3Util.doObjectsExist(keys);
+    }
+
+    @Override
+    public S3DeleteResult delete(Collection<String> keys) throws IOException {
+        return s3Util.deleteObjects(keys);
+    }
+
+    @Override
+    public Stream<ObjectInfo> list(String prefix) throws IOException {
+        return s3Util.listObjects(prefix)
+                .map(object -> new ObjectInfo(object.key(), object.size(), object.eTag(), object.lastModified()));
+    }
+}
@@ -1,12 +1,15 @@
 package com.example.applib.tenant;
 
+import com.example.applib.util.CursorQueryCallback;
 import java.util.List;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Service;
 
@@ -21,6 +24,9 @@ public class TenantJdbcService {
     @Qualifier("tenantJdbcTemplate")
     private final JdbcTemplate jdbcTemplate;
 
+    @Value("${jdbc.stream-fetch-size:1000}")
+    private int streamFetchSize;
+
     /**
      * Executes a SQL query and returns a list of maps representing the result set.
      *
@@ -60,6 +66,27 @@ public class TenantJdbcService {
         }
     }
 
+    /**
+     * Executes a SQL query through a server-side cursor and hands the result set to an extractor,
+     * so rows are neither materialized nor buffered by the driver.
+     *
+     * @param tenantId The tenant ID to execute the query for
+     * @param sql The SQL query to execute
+     * @param extractor The extractor consuming the result set
+     * @return The result of the extractor
+     */
+    public <T> T streamQuery(String tenantId, String sql, ResultSetExtractor<T> extractor) {
+        try {
+            TenantContext.setTenantId(tenantId);
+            return jdbcTemplate.execute(new CursorQueryCallback<>(sql, streamFetchSize, null, extractor));
+        } catch (DataAccessException e) {
+            log.error("Error executing query for tenant {}: {}", tenantId, e.getMessage(), e);
+            throw e;
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
     /**
      * Executes a SQL query and returns a single object.
      *
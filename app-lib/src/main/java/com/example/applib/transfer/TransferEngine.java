@@ -0,0 +1,529 @@
+package com.example.applib.transfer;
+
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.CompressionCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.RateLimiter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsCredentialsProvider;
+import software.amazon.awssdk.core.FileRequestBodyConfiguration;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.http.nio.netty.NettyNioAsyncHttpClient;
+import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.S3AsyncClientBuilder;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Moves large objects between local files and S3-compatible storage with parallel part
+ * uploads and parallel ranged GETs.
+ *
+ * <p>Each transfer keeps up to {@code transfer.max-concurrency} parts in flight on an
+ * {@link S3AsyncClient}. Before a part is started, its bytes are taken from the tenant's rate
+ * limiter, which caps the combined bandwidth of all transfers of a tenant on this pod at
+ * {@code transfer.tenant-bytes-per-second} (overridable per tenant). The transfer state is
+ * written to {@code transfer.state-directory} after every part, so a paused or failed transfer
+ * can be resumed, also after a restart, without repeating finished parts.
+ *
+ * <p>The SDK Transfer Manager and the CRT client are not used: neither can throttle a tenant or
+ * persist progress per part in a form that survives a pod restart.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransferEngine {
+
+    private static final String STATE_SUFFIX = ".json";
+    private static final String DOWNLOADED = "";
+
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<String, RateLimiter> tenantLimiters = new ConcurrentHashMap<>();
+    private final Map<String, TransferHandle> activeTransfers = new ConcurrentHashMap<>();
+    private ExecutorService dispatcher;
+
+    @Value("${transfer.part-size-bytes:16777216}")
+    private long partSize;
+
+    @Value("${transfer.max-concurrency:8}")
+    private int maxConcurrency;
+
+    @Value("${transfer.max-active-transfers:16}")
+    private int maxActiveTransfers;
+
+    // Also carries non-blocking downloads and uploads; 0 sizes the pool for parallel transfers only
+    @Value("${transfer.max-connections:0}")
+    private int maxConnections;
+
+    @Value("${transfer.multipart-threshold-bytes:33554432}")
+    private long multipartThreshold;
+
+    @Value("${transfer.tenant-bytes-per-second:0}")
+    private long tenantBytesPerSecond;
+
+    @Value("#{${transfer.tenant-bytes-per-second-overrides:{:}}}")
+    private Map<String, Long> tenantBytesPerSecondOverrides;
+
+    @Value("${transfer.state-directory:${java.io.tmpdir}/transfers}")
+    private String stateDirectory;
+
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(Paths.get(stateDirectory));
+
+        AtomicInteger threadCount = new AtomicInteger();
+        // One thread per active transfer schedules its parts; the parts themselves run on the SDK's event loop
+        dispatcher = new ThreadPoolExecutor(maxActiveTransfers, maxActiveTransfers, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "transfer-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        ((ThreadPoolExecutor) dispatcher).allowCoreThreadTimeOut(true);
+    }
+
+    @PreDestroy
+    public void destroy() {
+        // Paused transfers keep their state and can be resumed by the next instance
+        activeTransfers.values().forEach(TransferHandle::pause);
+        dispatcher.shutdown();
+    }
+
+    /**
+     * Create an async client sized for parallel part transfers and non-blocking object access
+     *
+     * @param region Region of the bucket
+     * @param credentialsProvider Credentials
+     * @param endpoint Endpoint of an S3-compatible store such as MinIO, or null for AWS
+     * @return A new client, to be cached by the caller
+     */
+    public S3AsyncClient createClient(String region, AwsCredentialsProvider credentialsProvider, URI endpoint) {
+        S3AsyncClientBuilder builder = S3AsyncClient.builder()
+                .region(Region.of(region))
+                .credentialsProvider(credentialsProvider)
+                .httpClientBuilder(NettyNioAsyncHttpClient.builder()
+                        .maxConcurrency(maxConnections > 0 ? maxConnections : maxConcurrency * maxActiveTransfers)
+                        .connectionAcquisitionTimeout(Duration.ofMinutes(2)));
+        if (endpoint != null) {
+            builder.endpointOverride(endpoint).forcePathStyle(true);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Whether a file is large enough for a parallel multipart upload to pay off
+     *
+     * @param size File size in bytes
+     * @return true if {@link #upload} should be used instead of a single PUT
+     */
+    public boolean isMultipart(long size) {
+        return size >= multipartThreshold;
+    }
+
+    /**
+     * Upload a local file in parallel parts
+     *
+     * @param client Async client for the bucket
+     * @param bucket Bucket name
+     * @param key Object key
+     * @param source File to upload
+     * @return Handle of the running transfer
+     * @throws IOException If the file cannot be read
+     */
+    public TransferHandle upload(S3AsyncClient client, String bucket, String key, Path source) throws IOException {
+        TransferState state = newState(TransferState.Direction.UPLOAD, bucket, key, source);
+        state.setTotalBytes(Files.size(source));
+        return start(client, state);
+    }
+
+    /**
+     * Download an object to a local file with parallel ranged GETs
+     *
+     * @param client Async client for the bucket
+     * @param bucket Bucket name
+     * @param key Object key
+     * @param destination File to write, created or overwritten
+     * @return Handle of the running transfer
+     */
+    public TransferHandle download(S3AsyncClient client, String bucket, String key, Path destination) {
+        return start(client, newState(TransferState.Direction.DOWNLOAD, bucket, key, destination));
+    }
+
+    /**
+     * Resume a paused or failed transfer from its saved state
+     *
+     * @param client Async client for the bucket of the transfer
+     * @param transferId Transfer ID
+     * @return Handle of the resumed transfer
+     * @throws IOException If no resumable state exists for the ID
+     */
+    public TransferHandle resume(S3AsyncClient client, String transferId) throws IOException {
+        if (activeTransfers.containsKey(transferId)) {
+            throw new IllegalStateException("Transfer " + transferId + " is still running");
+        }
+        TransferState state = getState(transferId)
+                .orElseThrow(() -> new IOException("No resumable transfer " + transferId));
+        state.setStatus(TransferState.Status.IN_PROGRESS);
+        state.setError(null);
+        return start(client, state);
+    }
+
+    /**
+     * Get the saved state of a transfer
+     *
+     * @param transferId Transfer ID
+     * @return The state, if the transfer is running, paused or failed
+     */
+    public Optional<TransferState> getState(String transferId) {
+        TransferHandle active = activeTransfers.get(transferId);
+        if (active != null) {
+            return Optional.of(active.getState());
+        }
+
+        Path file = statePath(transferId);
+        if (!Files.exists(file)) {
+            return Optional.empty();
+        }
+        try {
+            return Optional.of(objectMapper.readValue(file.toFile(), TransferState.class));
+        } catch (IOException e) {
+            log.warn("Unreadable transfer state {}: {}", file, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private TransferState newState(TransferState.Direction direction, String bucket, String key, Path path) {
+        TransferState state = new TransferState();
+        state.setId(UUID.randomUUID().toString());
+        state.setTenantId(TenantContext.getTenantId());
+        state.setDirection(direction);
+        state.setStatus(TransferState.Status.IN_PROGRESS);
+        state.setBucket(bucket);
+        state.setKey(key);
+        state.setPath(path.toAbsolutePath().toString());
+        state.setPartSize(partSize);
+        return state;
+    }
+
+    private TransferHandle start(S3AsyncClient client, TransferState state) {
+        TransferHandle handle = new TransferHandle(state);
+        activeTransfers.put(state.getId(), handle);
+        dispatcher.execute(() -> run(client, handle));
+        return handle;
+    }
+
+    private void run(S3AsyncClient client, TransferHandle handle) {
+        TransferState state = handle.getState();
+        try {
+            if (state.getDirection() == TransferState.Direction.UPLOAD) {
+                runUpload(client, handle);
+            } else {
+                runDownload(client, handle);
+            }
+
+            if (handle.isCancelRequested()) {
+                cancel(client, state);
+            } else if (!isFinished(handle)) {
+                state.setStatus(TransferState.Status.PAUSED);
+                saveState(state);
+            } else {
+                state.setStatus(TransferState.Status.COMPLETED);
+                Files.deleteIfExists(statePath(state.getId()));
+            }
+            publishProgress(state);
+            handle.getCompletion().complete(state);
+        } catch (Exception e) {
+            Throwable cause = e instanceof UncheckedIOException ? e.getCause() : e;
+            log.error("Transfer {} of {}/{} failed: {}", state.getId(), state.getBucket(), state.getKey(), cause.getMessage());
+            state.setStatus(TransferState.Status.FAILED);
+            state.setError(cause.getMessage());
+            saveQuietly(state);
+            publishProgress(state);
+            handle.getCompletion().completeExceptionally(cause);
+        } finally {
+            activeTransfers.remove(state.getId());
+        }
+    }
+
+    private void runUpload(S3AsyncClient client, TransferHandle handle) throws Exception {
+        TransferState state = handle.getState();
+        Path source = Paths.get(state.getPath());
+        if (Files.size(source) != state.getTotalBytes()) {
+            throw new IOException("File " + source + " changed since the upload started");
+        }
+
+        if (state.getUploadId() == null) {
+            state.setUploadId(client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(state.getBucket())
+                    .key(state.getKey())
+                    .build()).join().uploadId());
+            saveState(state);
+        }
+
+        runParts(handle, partNumber -> {
+            long length = state.partLength(partNumber);
+            AsyncRequestBody body = AsyncRequestBody.fromFile(FileRequestBodyConfiguration.builder()
+                    .path(source)
+                    .position(state.partOffset(partNumber))
+                    .numBytesToRead(length)
+                    .build());
+            return client.uploadPart(UploadPartRequest.builder()
+                            .bucket(state.getBucket())
+                            .key(state.getKey())
+                            .uploadId(state.getUploadId())
+                            .partNumber(partNumber)
+                            .contentLength(length)
+                            .build(), body)
+                    .thenApply(response -> response.eTag());
+        });
+
+        if (isFinished(handle)) {
+            List<CompletedPart> parts = new ArrayList<>();
+            state.getCompletedParts().forEach((partNumber, eTag) ->
+                    parts.add(CompletedPart.builder().partNumber(partNumber).eTag(eTag).build()));
+            state.setETag(client.completeMultipartUpload(CompleteMultipartUploadRequest.builder()
+                    .bucket(state.getBucket())
+                    .key(state.getKey())
+                    .uploadId(state.getUploadId())
+                    .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                    .build()).join().eTag());
+        }
+    }
+
+    private void runDownload(S3AsyncClient client, TransferHandle handle) throws Exception {
+        TransferState state = handle.getState();
+        if (state.getETag() == null) {
+            HeadObjectResponse head = client.headObject(HeadObjectRequest.builder()
+                    .bucket(state.getBucket())
+                    .key(state.getKey())
+                    .build()).join();
+            state.setTotalBytes(head.contentLength());
+            state.setETag(head.eTag());
+            state.setContentEncoding(head.hasMetadata() ? head.metadata().get(CompressionCodec.METADATA_KEY) : null);
+            saveState(state);
+        }
+
+        Path destination = Paths.get(state.getPath());
+        try (FileChannel channel = FileChannel.open(destination,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            runParts(handle, partNumber -> {
+                long offset = state.partOffset(partNumber);
+                long length = state.partLength(partNumber);
+                if (length == 0) {
+                    return CompletableFuture.completedFuture(DOWNLOADED);
+                }
+                GetObjectRequest request = GetObjectRequest.builder()
+                        .bucket(state.getBucket())
+                        .key(state.getKey())
+                        .range("bytes=" + offset + "-" + (offset + length - 1))
+                        .ifMatch(state.getETag())
+                        .build();
+                return client.getObject(request, AsyncResponseTransformer.toPublisher())
+                        .thenCompose(publisher -> {
+                            long[] position = {offset};
+                            return publisher.subscribe(buffer -> write(channel, buffer, position));
+                        })
+                        .thenApply(ignored -> DOWNLOADED);
+            });
+
+            if (isFinished(handle)) {
+                channel.truncate(state.getTotalBytes());
+                channel.force(true);
+            }
+        }
+
+        if (isFinished(handle) && state.getContentEncoding() != null) {
+            decode(destination, state);
+        }
+    }
+
+    /**
+     * Decompress a downloaded object that is stored compressed. The parts are ranges of the stored
+     * bytes, which only make sense before decompressing.
+     */
+    private static void decode(Path file, TransferState state) throws IOException {
+        CompressionCodec codec = CompressionCodec.forEncoding(state.getContentEncoding());
+        if (codec == null) {
+            throw new IOException("Unknown encoding " + state.getContentEncoding() + " of " + state.getKey());
+        }
+
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), ".decode-", ".tmp");
+        try (InputStream stored = Files.newInputStream(file); InputStream inputStream = codec.decode(stored)) {
+            Files.copy(inputStream, temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        log.debug("Decompressed {} downloaded from {}", file, state.getKey());
+    }
+
+    private static boolean isFinished(TransferHandle handle) {
+        return !handle.isCancelRequested()
+                && handle.getState().getCompletedParts().size() == handle.getState().getPartCount();
+    }
+
+    /**
+     * Run the missing parts with bounded concurrency and the tenant's bandwidth limit
+     */
+    private void runParts(TransferHandle handle, PartTransfer partTransfer) throws Exception {
+        TransferState state = handle.getState();
+        RateLimiter limiter = limiterFor(state.getTenantId());
+        Semaphore inFlight = new Semaphore(maxConcurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<CompletableFuture<?>> futures = new ArrayList<>();
+
+        for (int partNumber = 1; partNumber <= state.getPartCount(); partNumber++) {
+            if (state.getCompletedParts().containsKey(partNumber)) {
+                continue;
+            }
+            inFlight.acquire();
+            if (handle.isPauseRequested() || failure.get() != null) {
+                inFlight.release();
+                break;
+            }
+
+            if (limiter != null) {
+                // One permit per byte, taken in int-sized steps for parts over 2 GiB
+                long remaining = Math.max(1, state.partLength(partNumber));
+                while (remaining > 0) {
+                    int permits = (int) Math.min(remaining, Integer.MAX_VALUE);
+                    limiter.acquire(permits);
+                    remaining -= permits;
+                }
+            }
+
+            int part = partNumber;
+            futures.add(partTransfer.start(part).whenComplete((marker, error) -> {
+                inFlight.release();
+                if (error != null) {
+                    failure.compareAndSet(null, error);
+                    return;
+                }
+                state.getCompletedParts().put(part, marker);
+                saveQuietly(state);
+                publishProgress(state);
+            }));
+        }
+
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).exceptionally(error -> null).join();
+        if (failure.get() != null) {
+            Throwable error = failure.get() instanceof CompletionException completion && completion.getCause() != null
+                    ? completion.getCause() : failure.get();
+            throw error instanceof Exception exception ? exception : new IOException(error);
+        }
+    }
+
+    private void cancel(S3AsyncClient client, TransferState state) throws IOException {
+        if (state.getDirection() == TransferState.Direction.UPLOAD && state.getUploadId() != null) {
+            client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(state.getBucket())
+                    .key(state.getKey())
+                    .uploadId(state.getUploadId())
+                    .build()).join();
+        }
+        state.setStatus(TransferState.Status.CANCELLED);
+        Files.deleteIfExists(statePath(state.getId()));
+    }
+
+    private RateLimiter limiterFor(String tenantId) {
+        String tenant = tenantId != null ? tenantId : "default";
+        long limit = tenantBytesPerSecondOverrides.getOrDefault(tenant, tenantBytesPerSecond);
+        if (limit <= 0) {
+            return null;
+        }
+        return tenantLimiters.computeIfAbsent(tenant, key -> RateLimiter.create(limit));
+    }
+
+    private void write(FileChannel channel, ByteBuffer buffer, long[] position) {
+        try {
+            while (buffer.hasRemaining()) {
+                position[0] += channel.write(buffer, position[0]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void publishProgress(TransferState state) {
+        try {
+            eventPublisher.publishEvent(new TransferProgressEvent(state.getId(), state.getTenantId(),
+                    state.getDirection(), state.getStatus(), state.getBucket(), state.getKey(),
+                    state.getTransferredBytes(), state.getTotalBytes()));
+        } catch (Exception e) {
+            log.warn("Transfer progress listener failed: {}", e.getMessage());
+        }
+    }
+
+    private void saveState(TransferState state) throws IOException {
+        // Parts complete concurrently; write a consistent snapshot and swap it in atomically
+        synchronized (state) {
+            Path file = statePath(state.getId());
+            Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+            objectMapper.writeValue(temp.toFile(), state);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        }
+    }
+
+    private void saveQuietly(TransferState state) {
+        try {
+            saveState(state);
+        } catch (IOException e) {
+            log.warn("Failed to save state of transfer {}: {}", state.getId(), e.getMessage());
+        }
+    }
+
+    private Path statePath(String transferId) {
+        if (!transferId.matches("[A-Za-z0-9-]+")) {
+            throw new IllegalArgumentException("Invalid transfer ID: " + transferId);
+        }
+        return Paths.get(stateDirectory, transferId + STATE_SUFFIX);
+    }
+
+    @FunctionalInterface
+    private interface PartTransfer {
+        CompletableFuture<String> start(int partNumber);
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.applib.transfer;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * A running transfer.
+ */
+public class TransferHandle {
+
+    private final TransferState state;
+    private final CompletableFuture<TransferState> completion = new CompletableFuture<>();
+    private volatile boolean pauseRequested;
+    private volatile boolean cancelRequested;
+
+    TransferHandle(TransferState state) {
+        this.state = state;
+    }
+
+    public String getId() {
+        return state.getId();
+    }
+
+    /**
+     * Live state of the transfer; completed parts are updated as they finish
+     */
+    public TransferState getState() {
+        return state;
+    }
+
+    /**
+     * Completes with the final state once the transfer completes or is paused, and exceptionally
+     * when it fails. A failed transfer keeps its state and can be resumed.
+     */
+    public CompletableFuture<TransferState> getCompletion() {
+        return completion;
+    }
+
+    /**
+     * Stop starting new parts. Parts in flight finish and the state is kept for
+     * {@link TransferEngine#resume}.
+     */
+    public void pause() {
+        pauseRequested = true;
+    }
+
+    /**
+     * Stop the transfer and discard its state; an incomplete multipart upload is aborted
+     */
+    public void cancel() {
+        cancelRequested = true;
+        pauseRequested = true;
+    }
+
+    /**
+     * Wait for the transfer to finish
+     *
+     * @return The final state
+     * @throws IOException If the transfer failed
+     */
+    public TransferState await() throws IOException {
+        try {
+            return completion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for transfer " + getId());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            throw new IOException("Transfer " + getId() + " of " + state.getKey() + " failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    boolean isPauseRequested() {
+        return pauseRequested;
+    }
+
+    boolean isCancelRequested() {
+        return cancelRequested;
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.applib.transfer;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Published through the application event publisher whenever a part of a transfer completes and
+ * when a transfer finishes. Listeners run on SDK callback threads and must return quickly.
+ */
+@Data
+@AllArgsConstructor
+public class TransferProgressEvent {
+
+    private String transferId;
+    private String tenantId;
+    private TransferState.Direction direction;
+    private TransferState.Status status;
+    private String bucket;
+    private String key;
+    private long transferredBytes;
+    private long totalBytes;
+}
@@ -0,0 +1,78 @@
+package com.example.applib.transfer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Persistent state of a multipart transfer, saved after every part so the transfer can be
+ * resumed after a pause, a failure or a restart.
+ */
+@Data
+@NoArgsConstructor
+public class TransferState {
+
+    public enum Direction {
+        UPLOAD, DOWNLOAD
+    }
+
+    public enum Status {
+        IN_PROGRESS, PAUSED, COMPLETED, FAILED, CANCELLED
+    }
+
+    private String id;
+    private String tenantId;
+    private Direction direction;
+    private Status status;
+    private String bucket;
+    private String key;
+
+    /**
+     * Local source or destination file
+     */
+    private String path;
+
+    private long partSize;
+    private long totalBytes = -1;
+
+    /**
+     * Multipart upload ID for uploads, object ETag for downloads; ranged GETs are conditional on
+     * it so a resumed download fails instead of mixing two versions of the object
+     */
+    private String uploadId;
+    private String eTag;
+
+    /**
+     * Content coding a downloaded object is stored with, see
+     * {@link com.example.applib.util.CompressionCodec}; the file is decoded once every part arrived
+     */
+    private String contentEncoding;
+
+    /**
+     * ETag of every uploaded part, or an empty marker for downloaded parts, by part number
+     */
+    private Map<Integer, String> completedParts = new ConcurrentSkipListMap<>();
+
+    private String error;
+
+    public int getPartCount() {
+        return totalBytes <= 0 ? 1 : (int) ((totalBytes + partSize - 1) / partSize);
+    }
+
+    public long getTransferredBytes() {
+        long transferred = 0;
+        for (Integer partNumber : completedParts.keySet()) {
+            transferred += partLength(partNumber);
+        }
+        return transferred;
+    }
+
+    long partOffset(int partNumber) {
+        return (partNumber - 1) * partSize;
+    }
+
+    long partLength(int partNumber) {
+        return Math.max(0, Math.min(partSize, totalBytes - partOffset(partNumber)));
+    }
+}
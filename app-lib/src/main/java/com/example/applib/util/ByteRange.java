@@ -0,0 +1,147 @@
+package com.example.applib.util;
+
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * A single byte range from an HTTP {@code Range} header: {@code bytes=first-last},
+ * {@code bytes=first-} or the suffix form {@code bytes=-length}.
+ */
+public final class ByteRange {
+
+    private static final String UNIT = "bytes=";
+
+    // -1 when not given
+    private final long first;
+    private final long last;
+
+    private ByteRange(long first, long last) {
+        this.first = first;
+        this.last = last;
+    }
+
+    /**
+     * Parse a Range header. Multiple ranges are not supported; like a malformed header they are
+     * ignored so the whole object is served, which RFC 9110 allows.
+     *
+     * @param header The Range header value, may be null
+     * @return The range, or null to serve the whole object
+     */
+    public static ByteRange parse(String header) {
+        if (header == null || !header.regionMatches(true, 0, UNIT, 0, UNIT.length())) {
+            return null;
+        }
+        String spec = header.substring(UNIT.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0 || spec.indexOf(',') >= 0) {
+            return null;
+        }
+
+        try {
+            String firstPart = spec.substring(0, dash).trim();
+            String lastPart = spec.substring(dash + 1).trim();
+            long first = firstPart.isEmpty() ? -1 : Long.parseLong(firstPart);
+            long last = lastPart.isEmpty() ? -1 : Long.parseLong(lastPart);
+
+            if (first < 0 && last <= 0) {
+                // "bytes=-" or "bytes=-0"
+                return null;
+            }
+            if (first >= 0 && last >= 0 && last < first) {
+                return null;
+            }
+            return new ByteRange(first, last);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Whether an If-Range validator allows a partial response for an object with the given
+     * validators. Weak entity tags never match.
+     *
+     * @param ifRange The If-Range header value, may be null
+     * @param eTag The object's entity tag, quoted
+     * @param lastModified The object's last modification time
+     * @return True if the range may be served
+     */
+    public static boolean ifRangeMatches(String ifRange, String eTag, Instant lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (isEntityTag(ifRange)) {
+            return !ifRange.startsWith("W/") && ifRange.equals(eTag);
+        }
+        Instant date = parseHttpDate(ifRange);
+        return date != null && lastModified != null && date.getEpochSecond() == lastModified.getEpochSecond();
+    }
+
+    /**
+     * Whether an If-Range value is an entity tag rather than an HTTP date
+     */
+    public static boolean isEntityTag(String ifRange) {
+        return ifRange.startsWith("\"") || ifRange.startsWith("W/");
+    }
+
+    /**
+     * Parse an HTTP date
+     *
+     * @param value The date in RFC 1123 format
+     * @return The instant, or null if the value is not a valid date
+     */
+    public static Instant parseHttpDate(String value) {
+        try {
+            return ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Quote an entity tag that was returned without quotes
+     */
+    public static String quoteETag(String eTag) {
+        if (eTag == null || eTag.startsWith("\"") || eTag.startsWith("W/")) {
+            return eTag;
+        }
+        return "\"" + eTag + "\"";
+    }
+
+    /**
+     * Whether the range overlaps an object of the given size
+     */
+    public boolean isSatisfiable(long size) {
+        if (first < 0) {
+            return size > 0;
+        }
+        return first < size;
+    }
+
+    /**
+     * First byte of the range, for a satisfiable range
+     */
+    public long getFirst(long size) {
+        return first < 0 ? Math.max(0, size - last) : first;
+    }
+
+    /**
+     * Last byte of the range, inclusive, for a satisfiable range
+     */
+    public long getLast(long size) {
+        return first < 0 || last < 0 ? size - 1 : Math.min(last, size - 1);
+    }
+
+    /**
+     * Header value for a ranged GET
+     */
+    public String toHeaderValue() {
+        return UNIT + (first < 0 ? "" : first) + "-" + (last < 0 ? "" : last);
+    }
+
+    @Override
+    public String toString() {
+        return toHeaderValue();
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.applib.util;
+
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compression an object can be stored with. The name of each codec is its HTTP content coding,
+ * so a stored body can be sent to clients that accept that coding as it is.
+ */
+public enum CompressionCodec {
+
+    GZIP("gzip") {
+        @Override
+        public OutputStream encode(OutputStream outputStream, int level) throws IOException {
+            return new GZIPOutputStream(outputStream, BUFFER_BYTES) {
+                {
+                    def.setLevel(level);
+                }
+            };
+        }
+
+        @Override
+        public InputStream decode(InputStream inputStream) throws IOException {
+            return new GZIPInputStream(inputStream, BUFFER_BYTES);
+        }
+    },
+
+    ZSTD("zstd") {
+        @Override
+        public OutputStream encode(OutputStream outputStream, int level) throws IOException {
+            return new ZstdOutputStream(outputStream).setLevel(level);
+        }
+
+        @Override
+        public InputStream decode(InputStream inputStream) throws IOException {
+            return new ZstdInputStream(inputStream);
+        }
+    };
+
+    /**
+     * User metadata key holding the codec of a compressed object, next to its Content-Encoding
+     */
+    public static final String METADATA_KEY = "stored-encoding";
+
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final String encoding;
+
+    CompressionCodec(String encoding) {
+        this.encoding = encoding;
+    }
+
+    /**
+     * Get the HTTP content coding of this codec
+     *
+     * @return Content coding, e.g. gzip
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Wrap a stream so that what is written to it is compressed; closing the wrapper finishes the
+     * compressed data and closes the stream
+     *
+     * @param outputStream Stream receiving the compressed data
+     * @param level Compression level of the codec
+     * @return The compressing stream
+     * @throws IOException If the compressor cannot be set up
+     */
+    public abstract OutputStream encode(OutputStream outputStream, int level) throws IOException;
+
+    /**
+     * Wrap a stream of compressed data so that it reads decompressed
+     *
+     * @param inputStream Compressed data
+     * @return The decompressing stream
+     * @throws IOException If the data does not start like data of this codec
+     */
+    public abstract InputStream decode(InputStream inputStream) throws IOException;
+
+    /**
+     * Find the codec of a content coding
+     *
+     * @param encoding Content coding, may be null
+     * @return The codec, or null if there is none for the coding
+     */
+    public static CompressionCodec forEncoding(String encoding) {
+        if (encoding == null) {
+            return null;
+        }
+        for (CompressionCodec codec : values()) {
+            if (codec.encoding.equalsIgnoreCase(encoding.trim())) {
+                return codec;
+            }
+        }
+        return null;
+    }
+}
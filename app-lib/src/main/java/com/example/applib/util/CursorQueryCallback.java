@@ -0,0 +1,63 @@
+package com.example.applib.util;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.function.Consumer;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+/**
+ * Runs a query through a server-side cursor so the driver fetches rows in chunks of
+ * {@code fetchSize} instead of buffering the whole result set in memory.
+ *
+ * <p>Usage: {@code jdbcTemplate.execute(new CursorQueryCallback<>(sql, 1000, null, extractor))}
+ */
+public class CursorQueryCallback<T> implements ConnectionCallback<T> {
+
+    private final String sql;
+    private final int fetchSize;
+    private final Consumer<Statement> statementConsumer;
+    private final ResultSetExtractor<T> extractor;
+
+    /**
+     * @param sql SQL query
+     * @param fetchSize Number of rows fetched per round trip
+     * @param statementConsumer Receives the statement before execution, e.g. to cancel it later; may be null
+     * @param extractor Consumes the result set
+     */
+    public CursorQueryCallback(String sql, int fetchSize, Consumer<Statement> statementConsumer,
+                               ResultSetExtractor<T> extractor) {
+        this.sql = sql;
+        this.fetchSize = fetchSize;
+        this.statementConsumer = statementConsumer;
+        this.extractor = extractor;
+    }
+
+    @Override
+    public T doInConnection(Connection con) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        // The PostgreSQL driver only honours the fetch size when auto-commit is off
+        con.setAutoCommit(false);
+        try (PreparedStatement ps = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            ps.setFetchSize(fetchSize);
+            if (statementConsumer != null) {
+                statementConsumer.accept(ps);
+            }
+
+            T result;
+            try (ResultSet rs = ps.executeQuery()) {
+                result = extractor.extractData(rs);
+            }
+            con.commit();
+            return result;
+        } catch (RuntimeException | SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+}
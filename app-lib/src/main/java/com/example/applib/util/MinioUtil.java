@@ -1,22 +1,44 @@
 package com.example.applib.util;
 
+import com.example.applib.cache.LocalObjectCache;
+import com.example.applib.config.S3ClientRegistry;
+import com.example.applib.entity.TurboS3Config;
+import com.example.applib.transfer.TransferEngine;
 import io.minio.*;
 import io.minio.errors.*;
 import io.minio.http.Method;
+import io.minio.messages.DeleteError;
+import io.minio.messages.DeleteObject;
 import io.minio.messages.Item;
+import jakarta.annotation.PreDestroy;
 import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
-import java.util.ArrayList;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
+import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
+import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 
 @Slf4j
 @Component
@@ -25,13 +47,39 @@ import org.springframework.stereotype.Component;
 @ConditionalOnProperty(name = "minio.enabled", havingValue = "true", matchIfMissing = true)
 public class MinioUtil {
 
+    private static final long STREAM_PART_SIZE = 10L * 1024 * 1024;
+
     private final MinioClient minioClient;
+    private final TransferEngine transferEngine;
+    private final LocalObjectCache objectCache;
+    private final ObjectProvider<S3ClientRegistry> s3ClientRegistryProvider;
 
     @Value("${minio.bucket}")
-    private String bucket;
+    private String defaultBucket;
+
+    // Use the bucket of the tenant's S3 configuration, as S3Util does, instead of minio.bucket
+    @Value("${minio.tenant-buckets:false}")
+    private boolean tenantBuckets;
+
+    @Value("${minio.endpoint}")
+    private String endpoint;
+
+    @Value("${minio.access-key}")
+    private String accessKey;
+
+    @Value("${minio.secret-key}")
+    private String secretKey;
+
+    // Region signed into requests of the transfer client; Minio checks it against its own
+    @Value("${minio.region:${aws.region:us-east-1}}")
+    private String region;
+
+    // Async S3 client pointed at Minio for parallel transfers, created on first use
+    private volatile S3AsyncClient transferClient;
 
     /**
-     * Upload a file to Minio
+     * Upload a file to Minio. Objects in Minio are always stored raw: {@link StorageCompression}
+     * only applies to S3, and {@link #openObject} does not decode.
      *
      * @param objectName The object name
      * @param content The file content as byte array
@@ -42,7 +90,7 @@ public class MinioUtil {
     public String uploadFile(String objectName, byte[] content, String contentType, Map<String, String> metadata) {
         try {
             PutObjectArgs.Builder builder = PutObjectArgs.builder()
-                    .bucket(bucket)
+                    .bucket(bucket())
                     .object(objectName)
                     .contentType(contentType)
                     .stream(new ByteArrayInputStream(content), content.length, -1);
@@ -52,6 +100,201 @@ public class MinioUtil {
             }
 
             minioClient.putObject(builder.build());
+            objectCache.invalidate(bucket(), objectName);
+            log.info("Successfully uploaded file to Minio: {}", objectName);
+            return objectName;
+        } catch (Exception e) {
+            log.error("Error uploading file to Minio: {}", objectName, e);
+            throw new RuntimeException("Failed to upload file to Minio", e);
+        }
+    }
+
+    /**
+     * Upload a stream of unknown length to Minio in parts, without buffering it as a whole. Like
+     * {@link #uploadFile}, it stores the data raw.
+     *
+     * @param objectName The object name
+     * @param contentType The content type (MIME type), may be null
+     * @param inputStream The data, not closed
+     * @return ETag of the stored object, quoted
+     * @throws IOException If reading or uploading fails
+     */
+    public String uploadStream(String objectName, String contentType, InputStream inputStream) throws IOException {
+        try {
+            PutObjectArgs.Builder builder = PutObjectArgs.builder()
+                    .bucket(bucket())
+                    .object(objectName)
+                    .stream(inputStream, -1, STREAM_PART_SIZE);
+            if (contentType != null) {
+                builder.contentType(contentType);
+            }
+
+            ObjectWriteResponse response = minioClient.putObject(builder.build());
+            objectCache.invalidate(bucket(), objectName);
+            log.info("Successfully streamed file to Minio: {}", objectName);
+            return ByteRange.quoteETag(response.etag());
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error uploading file to Minio: {}", objectName, e);
+            throw new IOException("Failed to upload file to Minio: " + objectName, e);
+        }
+    }
+
+    /**
+     * Check if an object exists in Minio
+     *
+     * @param objectName The object name
+     * @return true if the object exists
+     * @throws IOException If Minio cannot be reached
+     */
+    public boolean doesObjectExist(String objectName) throws IOException {
+        try {
+            minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucket())
+                    .object(objectName)
+                    .build());
+            return true;
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                return false;
+            }
+            throw new IOException("Failed to check object in Minio: " + objectName, e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Failed to check object in Minio: " + objectName, e);
+        }
+    }
+
+    /**
+     * Open an object, or a byte range of it, for streaming to a client without loading it into
+     * memory. The body is read with the ETag from the stat call as a precondition, so a range
+     * never mixes two versions of the object. Objects small enough for the
+     * {@link LocalObjectCache} are served from local disk.
+     *
+     * @param objectName The object name
+     * @param range Requested range, or null for the whole object
+     * @param ifRange If-Range header value, may be null
+     * @return The open object; the caller must close it
+     * @throws FileNotFoundException If the object does not exist
+     * @throws RangeNotSatisfiableException If the range lies outside the object
+     * @throws IOException If the object cannot be read
+     */
+    public StoredObject openObject(String objectName, ByteRange range, String ifRange) throws IOException {
+        if (objectCache.isEnabled()) {
+            LocalObjectCache.Entry entry = objectCache.get(bucket(), objectName, this::fetchToFile);
+            if (entry != null) {
+                StoredObject object = StoredObject.ofFile(objectName, entry.getFile(), entry.getSize(),
+                        entry.getContentType(), entry.getETag(), entry.getLastModified(), range, ifRange);
+                objectCache.recordServed(object.getContentLength());
+                return object;
+            }
+        }
+
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucket())
+                    .object(objectName)
+                    .build());
+            String eTag = ByteRange.quoteETag(stat.etag());
+            Instant lastModified = stat.lastModified() != null ? stat.lastModified().toInstant() : null;
+            long size = stat.size();
+
+            if (range != null && !ByteRange.ifRangeMatches(ifRange, eTag, lastModified)) {
+                range = null;
+            }
+            if (range != null && !range.isSatisfiable(size)) {
+                throw new RangeNotSatisfiableException(objectName, range, size);
+            }
+            long first = range != null ? range.getFirst(size) : 0;
+            long last = range != null ? range.getLast(size) : size - 1;
+
+            GetObjectArgs.Builder args = GetObjectArgs.builder()
+                    .bucket(bucket())
+                    .object(objectName)
+                    .matchETag(stat.etag());
+            if (range != null) {
+                args.offset(first).length(last - first + 1);
+            }
+
+            return StoredObject.builder()
+                    .key(objectName)
+                    .contentType(stat.contentType())
+                    .eTag(eTag)
+                    .lastModified(lastModified)
+                    .totalLength(size)
+                    .first(first)
+                    .last(last)
+                    .partial(range != null)
+                    .body(minioClient.getObject(args.build()))
+                    .build();
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                throw new FileNotFoundException("Object not found in Minio: " + objectName);
+            }
+            log.error("Error reading object from Minio: {}", objectName, e);
+            throw new IOException("Failed to read object from Minio: " + objectName, e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error reading object from Minio: {}", objectName, e);
+            throw new IOException("Failed to read object from Minio: " + objectName, e);
+        }
+    }
+
+    /**
+     * Download an object into a cache file unless it is unchanged or too large
+     */
+    private LocalObjectCache.FetchResult fetchToFile(String objectName, String ifNoneMatch, Path target, long maxBytes)
+            throws IOException {
+        try {
+            StatObjectResponse stat = minioClient.statObject(StatObjectArgs.builder()
+                    .bucket(bucket())
+                    .object(objectName)
+                    .build());
+            String eTag = ByteRange.quoteETag(stat.etag());
+            if (eTag.equals(ifNoneMatch)) {
+                return LocalObjectCache.FetchResult.notModified();
+            }
+            if (stat.size() > maxBytes) {
+                return LocalObjectCache.FetchResult.tooLarge();
+            }
+
+            try (InputStream stream = minioClient.getObject(GetObjectArgs.builder()
+                    .bucket(bucket())
+                    .object(objectName)
+                    .matchETag(stat.etag())
+                    .build())) {
+                Files.copy(stream, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return LocalObjectCache.FetchResult.fetched(stat.size(), eTag, stat.contentType(),
+                    stat.lastModified() != null ? stat.lastModified().toInstant() : null);
+        } catch (ErrorResponseException e) {
+            if ("NoSuchKey".equals(e.errorResponse().code())) {
+                throw new FileNotFoundException("Object not found in Minio: " + objectName);
+            }
+            log.error("Error reading object from Minio: {}", objectName, e);
+            throw new IOException("Failed to read object from Minio: " + objectName, e);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Error reading object from Minio: {}", objectName, e);
+            throw new IOException("Failed to read object from Minio: " + objectName, e);
+        }
+    }
+
+    /**
+     * Upload a large local file to Minio using parallel multipart uploads
+     *
+     * @param objectName The object name
+     * @param source The local file
+     * @return The object name
+     */
+    public String uploadLargeFile(String objectName, Path source) {
+        try {
+            transferEngine.upload(getTransferClient(), bucket(), objectName, source).await();
+            objectCache.invalidate(bucket(), objectName);
             log.info("Successfully uploaded file to Minio: {}", objectName);
             return objectName;
         } catch (Exception e) {
@@ -60,6 +303,22 @@ public class MinioUtil {
         }
     }
 
+    /**
+     * Download a large object from Minio to a local file using parallel ranged GETs
+     *
+     * @param objectName The object name
+     * @param destination The local file
+     */
+    public void downloadLargeFile(String objectName, Path destination) {
+        try {
+            transferEngine.download(getTransferClient(), bucket(), objectName, destination).await();
+            log.info("Successfully downloaded file from Minio: {}", objectName);
+        } catch (Exception e) {
+            log.error("Error downloading file from Minio: {}", objectName, e);
+            throw new RuntimeException("Failed to download file from Minio", e);
+        }
+    }
+
     /**
      * Download a file from Minio
      *
@@ -69,7 +328,7 @@ public class MinioUtil {
     public byte[] downloadFile(String objectName) {
         try {
             GetObjectArgs getObjectArgs = GetObjectArgs.builder()
-                    .bucket(bucket)
+                    .bucket(bucket())
                     .object(objectName)
                     .build();
 
@@ -91,7 +350,7 @@ public class MinioUtil {
     public InputStream streamFile(String objectName) {
         try {
             GetObjectArgs getObjectArgs = GetObjectArgs.builder()
-                    .bucket(bucket)
+                    .bucket(bucket())
                     .object(objectName)
                     .build();
 
@@ -110,11 +369,12 @@ public class MinioUtil {
     public void deleteFile(String objectName) {
         try {
             RemoveObjectArgs removeObjectArgs = RemoveObjectArgs.builder()
-                    .bucket(bucket)
+                    .bucket(bucket())
                     .object(objectName)
                     .build();
 
             minioClient.removeObject(removeObjectArgs);
+            objectCache.invalidate(bucket(), objectName);
             log.info("Successfully deleted file from Minio: {}", objectName);
         } catch (Exception e) {
             log.error("Error deleting file from Minio: {}", objectName, e);
@@ -129,26 +389,67 @@ public class MinioUtil {
      * @return List of object names
      */
     public List<String> listFiles(String prefix) {
-        try {
-            ListObjectsArgs listObjectsArgs = ListObjectsArgs.builder()
-                    .bucket(bucket)
-                    .prefix(prefix)
-                    .recursive(true)
-                    .build();
+        try (Stream<Item> items = listObjects(prefix)) {
+            return items.map(Item::objectName).toList();
+        } catch (Exception e) {
+            log.error("Error listing files from Minio with prefix: {}", prefix, e);
+            throw new RuntimeException("Failed to list files from Minio", e);
+        }
+    }
 
-            Iterable<Result<Item>> results = minioClient.listObjects(listObjectsArgs);
-            List<String> objectNames = new ArrayList<>();
+    /**
+     * List the objects under a prefix lazily. Pages are fetched as the stream is consumed, so
+     * large prefixes are never held in memory as a whole.
+     *
+     * @param prefix The prefix
+     * @return Stream of objects; listing errors surface as {@link UncheckedIOException}
+     */
+    public Stream<Item> listObjects(String prefix) {
+        Iterable<Result<Item>> results = minioClient.listObjects(ListObjectsArgs.builder()
+                .bucket(bucket())
+                .prefix(prefix)
+                .recursive(true)
+                .build());
 
-            for (Result<Item> result : results) {
-                Item item = result.get();
-                objectNames.add(item.objectName());
+        return StreamSupport.stream(results.spliterator(), false).map(result -> {
+            try {
+                return result.get();
+            } catch (Exception e) {
+                throw new UncheckedIOException(new IOException("Failed to list files from Minio: " + e.getMessage(), e));
             }
+        });
+    }
 
-            return objectNames;
-        } catch (Exception e) {
-            log.error("Error listing files from Minio with prefix: {}", prefix, e);
-            throw new RuntimeException("Failed to list files from Minio", e);
+    /**
+     * Delete many files with multi-object delete requests
+     *
+     * @param objectNames The object names
+     * @return Error message by object name for the objects that could not be deleted
+     */
+    public Map<String, String> deleteFiles(Collection<String> objectNames) {
+        List<String> names = objectNames.stream().distinct().toList();
+        List<DeleteObject> objects = names.stream().map(DeleteObject::new).toList();
+        Map<String, String> errors = new LinkedHashMap<>();
+
+        // The client batches the objects into requests of 1000 as the results are consumed
+        Iterable<Result<DeleteError>> results = minioClient.removeObjects(RemoveObjectsArgs.builder()
+                .bucket(bucket())
+                .objects(objects)
+                .build());
+        for (Result<DeleteError> result : results) {
+            try {
+                DeleteError error = result.get();
+                errors.put(error.objectName(), error.code() + ": " + error.message());
+            } catch (Exception e) {
+                log.error("Error deleting files from Minio", e);
+                throw new RuntimeException("Failed to delete files from Minio", e);
+            }
         }
+
+        String bucketName = bucket();
+        names.forEach(name -> objectCache.invalidate(bucketName, name));
+        log.info("Deleted {} of {} files from Minio", names.size() - errors.size(), names.size());
+        return errors;
     }
 
     /**
@@ -161,7 +462,7 @@ public class MinioUtil {
     public String generatePresignedUrl(String objectName, int expirationInMinutes) {
         try {
             GetPresignedObjectUrlArgs getPresignedObjectUrlArgs = GetPresignedObjectUrlArgs.builder()
-                    .bucket(bucket)
+                    .bucket(bucket())
                     .object(objectName)
                     .method(Method.GET)
                     .expiry(expirationInMinutes, TimeUnit.MINUTES)
@@ -187,7 +488,7 @@ public class MinioUtil {
             Map<String, String> reqParams = Map.of("Content-Type", contentType);
 
             GetPresignedObjectUrlArgs getPresignedObjectUrlArgs = GetPresignedObjectUrlArgs.builder()
-                    .bucket(bucket)
+                    .bucket(bucket())
                     .object(objectName)
                     .method(Method.PUT)
                     .expiry(expirationInMinutes, TimeUnit.MINUTES)
@@ -200,4 +501,41 @@ public class MinioUtil {
             throw new RuntimeException("Failed to generate presigned upload URL", e);
         }
     }
+
+    /**
+     * Bucket of the current tenant
+     */
+    private String bucket() {
+        if (!tenantBuckets) {
+            return defaultBucket;
+        }
+        S3ClientRegistry registry = s3ClientRegistryProvider.getIfAvailable();
+        TurboS3Config config = registry != null ? registry.getConfig() : null;
+        return config != null && config.getBucketName() != null ? config.getBucketName() : defaultBucket;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (transferClient != null) {
+            transferClient.close();
+        }
+    }
+
+    private S3AsyncClient getTransferClient() {
+        S3AsyncClient client = transferClient;
+        if (client == null) {
+            synchronized (this) {
+                client = transferClient;
+                if (client == null) {
+                    client = transferEngine.createClient(
+                            region,
+                            StaticCredentialsProvider.create(AwsBasicCredentials.create(accessKey, secretKey)),
+                            URI.create(endpoint)
+                    );
+                    transferClient = client;
+                }
+            }
+        }
+        return client;
+    }
 }
@@ -0,0 +1,18 @@
+package com.example.applib.util;
+
+import java.io.IOException;
+import lombok.Getter;
+
+/**
+ * Thrown when a requested byte range lies entirely outside the object
+ */
+@Getter
+public class RangeNotSatisfiableException extends IOException {
+
+    private final long totalLength;
+
+    public RangeNotSatisfiableException(String key, ByteRange range, long totalLength) {
+        super("Range " + range + " is outside " + key + " of " + totalLength + " bytes");
+        this.totalLength = totalLength;
+    }
+}
@@ -0,0 +1,233 @@
+package com.example.applib.util;
+
+import com.example.applib.cache.NearCacheRegistry;
+import com.example.applib.cache.RedisCodecRegistry;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.BatchResult;
+import org.redisson.api.RBatch;
+import org.redisson.api.RFuture;
+
+/**
+ * Redis operations queued to be sent together, created by {@link RedisUtil#createBatch}.
+ *
+ * <p>Nothing is sent until {@link #execute()}, which writes all queued commands in one pipeline
+ * and waits for all replies, so a batch costs a single round trip however many commands it holds.
+ * The futures returned while queueing complete once the batch has been executed. An atomic batch
+ * is wrapped in MULTI/EXEC, so other clients see all of its writes or none.
+ *
+ * <p>The map entries and keys a batch writes or deletes are dropped from the near caches, on this
+ * pod and the others, once it has been executed, whether or not it succeeded.
+ */
+@Slf4j
+public class RedisBatch {
+
+    private final RBatch batch;
+    private final RedisCodecRegistry codecRegistry;
+    private final NearCacheRegistry nearCacheRegistry;
+    // Keys written per map, a null key standing for the whole map
+    private final Map<String, Set<Object>> written = new LinkedHashMap<>();
+    private int size;
+
+    RedisBatch(RBatch batch, RedisCodecRegistry codecRegistry, NearCacheRegistry nearCacheRegistry) {
+        this.batch = batch;
+        this.codecRegistry = codecRegistry;
+        this.nearCacheRegistry = nearCacheRegistry;
+    }
+
+    /**
+     * Queue reading a map entry
+     *
+     * @param mapName The map name
+     * @param key The key
+     * @return The value, or null if the key is absent, once executed
+     */
+    public <K, V> RFuture<V> mapGet(String mapName, K key) {
+        size++;
+        return batch.<K, V>getMap(mapName, codecRegistry.getCodec(mapName)).getAsync(key);
+    }
+
+    /**
+     * Queue reading many entries of a map
+     *
+     * @param mapName The map name
+     * @param keys The keys
+     * @return The values of the keys that are present, once executed
+     */
+    public <K, V> RFuture<Map<K, V>> mapGetAll(String mapName, Set<K> keys) {
+        size++;
+        return batch.<K, V>getMap(mapName, codecRegistry.getCodec(mapName)).getAllAsync(keys);
+    }
+
+    /**
+     * Queue writing a map entry
+     *
+     * @param mapName The map name
+     * @param key The key
+     * @param value The value
+     * @return Whether the key was new, once executed
+     */
+    public <K, V> RFuture<Boolean> mapPut(String mapName, K key, V value) {
+        size++;
+        written(mapName).add(key);
+        return batch.<K, V>getMap(mapName, codecRegistry.getCodec(mapName)).fastPutAsync(key, value);
+    }
+
+    /**
+     * Queue writing many entries of a map
+     *
+     * @param mapName The map name
+     * @param entries The entries
+     * @return Completes once executed
+     */
+    public <K, V> RFuture<Void> mapPutAll(String mapName, Map<? extends K, ? extends V> entries) {
+        size++;
+        written(mapName).addAll(entries.keySet());
+        return batch.<K, V>getMap(mapName, codecRegistry.getCodec(mapName)).putAllAsync(entries);
+    }
+
+    /**
+     * Queue removing a map entry
+     *
+     * @param mapName The map name
+     * @param key The key
+     * @return Number of removed keys, once executed
+     */
+    public <K> RFuture<Long> mapRemove(String mapName, K key) {
+        size++;
+        written(mapName).add(key);
+        return batch.<K, Object>getMap(mapName, codecRegistry.getCodec(mapName)).fastRemoveAsync(key);
+    }
+
+    /**
+     * Queue reading a value
+     *
+     * @param name The key of the value
+     * @return The value, or null if it does not exist, once executed
+     */
+    public <V> RFuture<V> get(String name) {
+        size++;
+        return batch.<V>getBucket(name).getAsync();
+    }
+
+    /**
+     * Queue writing a value
+     *
+     * @param name The key of the value
+     * @param value The value
+     * @param ttl The TTL in seconds, 0 to keep it until it is deleted
+     * @return Completes once executed
+     */
+    public <V> RFuture<Void> set(String name, V value, long ttl) {
+        size++;
+        return ttl > 0
+                ? batch.<V>getBucket(name).setAsync(value, ttl, TimeUnit.SECONDS)
+                : batch.<V>getBucket(name).setAsync(value);
+    }
+
+    /**
+     * Queue adding a message to a queue, as read by {@link RedisUtil#takeFromQueue}
+     *
+     * @param queueName The queue name
+     * @param message The message to add
+     * @return Whether it was added, once executed
+     */
+    public <T> RFuture<Boolean> addToQueue(String queueName, T message) {
+        size++;
+        return batch.<T>getBlockingQueue(queueName).addAsync(message);
+    }
+
+    /**
+     * Queue adding many messages to a queue, in their order
+     *
+     * @param queueName The queue name
+     * @param messages The messages to add
+     * @return Whether the queue changed, once executed
+     */
+    public <T> RFuture<Boolean> addAllToQueue(String queueName, Collection<? extends T> messages) {
+        size++;
+        return batch.<T>getBlockingQueue(queueName).addAllAsync(messages);
+    }
+
+    /**
+     * Queue publishing a message to a topic
+     *
+     * @param topic The topic name
+     * @param message The message to publish
+     * @return The number of subscribers that received the message, once executed
+     */
+    public RFuture<Long> publish(String topic, Object message) {
+        size++;
+        return batch.getTopic(topic).publishAsync(message);
+    }
+
+    /**
+     * Queue setting the time to live of a key of any type
+     *
+     * @param name The key
+     * @param ttl The TTL in seconds
+     * @return Whether the key exists, once executed
+     */
+    public RFuture<Boolean> expire(String name, long ttl) {
+        size++;
+        return batch.getBucket(name).expireAsync(Duration.ofSeconds(ttl));
+    }
+
+    /**
+     * Queue deleting keys of any type
+     *
+     * @param names The keys
+     * @return Number of deleted keys, once executed
+     */
+    public RFuture<Long> delete(String... names) {
+        size++;
+        for (String name : names) {
+            written(name).add(null);
+        }
+        return batch.getKeys().deleteAsync(names);
+    }
+
+    /**
+     * Get the number of queued commands
+     *
+     * @return The number of commands
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Send all queued commands in one pipeline and wait for their replies
+     *
+     * @return The replies in the order the commands were queued
+     */
+    public BatchResult<?> execute() {
+        try {
+            return batch.execute();
+        } catch (Exception e) {
+            log.error("Error executing Redis batch of {} commands", size, e);
+            throw new RuntimeException("Failed to execute Redis batch", e);
+        } finally {
+            // Some writes may have been applied even if the batch failed
+            invalidateNearCaches();
+        }
+    }
+
+    private Set<Object> written(String name) {
+        return written.computeIfAbsent(name, key -> new HashSet<>());
+    }
+
+    private void invalidateNearCaches() {
+        // One broadcast per map, whatever the number of keys written to it
+        for (Map.Entry<String, Set<Object>> entry : written.entrySet()) {
+            nearCacheRegistry.invalidateAll(entry.getKey(), entry.getValue().contains(null) ? null : entry.getValue());
+        }
+        written.clear();
+    }
+}
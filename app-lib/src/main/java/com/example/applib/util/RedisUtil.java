@@ -1,5 +1,11 @@
 package com.example.applib.util;
 
+import com.example.applib.cache.NearCacheRegistry;
+import com.example.applib.cache.NearCachedMap;
+import com.example.applib.cache.RedisCodecRegistry;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
@@ -16,6 +22,8 @@ import org.springframework.stereotype.Component;
 public class RedisUtil {
 
     private final RedissonClient redissonClient;
+    private final NearCacheRegistry nearCacheRegistry;
+    private final RedisCodecRegistry codecRegistry;
 
     @Value("${spring.data.redis.lock.wait-time:10}")
     private int lockWaitTime;
@@ -40,6 +48,26 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * Publish many messages to a Redis topic in one round trip
+     *
+     * @param topic The topic name
+     * @param messages The messages to publish, in order
+     * @return The total number of deliveries to subscribers
+     */
+    public long publishAll(String topic, Collection<?> messages) {
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        RedisBatch batch = createBatch(false);
+        List<RFuture<Long>> receivers = new ArrayList<>(messages.size());
+        for (Object message : messages) {
+            receivers.add(batch.publish(topic, message));
+        }
+        batch.execute();
+        return receivers.stream().mapToLong(RFuture::getNow).sum();
+    }
+
     /**
      * Subscribe to a Redis topic
      *
@@ -90,6 +118,25 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * Add many messages to a Redis queue, in their order, with a single command
+     *
+     * @param queueName The queue name
+     * @param messages The messages to add
+     */
+    public <T> void addAllToQueue(String queueName, Collection<? extends T> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        try {
+            RBlockingQueue<T> queue = redissonClient.getBlockingQueue(queueName);
+            queue.addAll(messages);
+        } catch (Exception e) {
+            log.error("Error adding {} messages to Redis queue: {}", messages.size(), queueName, e);
+            throw new RuntimeException("Failed to add messages to Redis queue", e);
+        }
+    }
+
     /**
      * Take a message from a Redis queue (blocking operation)
      *
@@ -124,6 +171,19 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * Create a batch of operations that are sent in one pipelined round trip when executed
+     *
+     * @param atomic Whether to execute the batch as a MULTI/EXEC transaction
+     * @return The batch
+     */
+    public RedisBatch createBatch(boolean atomic) {
+        BatchOptions options = BatchOptions.defaults().executionMode(atomic
+                ? BatchOptions.ExecutionMode.IN_MEMORY_ATOMIC
+                : BatchOptions.ExecutionMode.IN_MEMORY);
+        return new RedisBatch(redissonClient.createBatch(options), codecRegistry, nearCacheRegistry);
+    }
+
     /**
      * Acquire a distributed lock
      *
@@ -207,13 +267,15 @@ public class RedisUtil {
     }
 
     /**
-     * Get a distributed map
+     * Get a distributed map, encoded with the {@code cache.codec} settings of its name
      *
      * @param name The map name
      * @return The map
+     * @throws IllegalStateException If the map is read through a near cache
      */
     public <K, V> RMap<K, V> getMap(String name) {
-        return redissonClient.getMap(name);
+        checkNotNearCached(name);
+        return redissonClient.getMap(name, codecRegistry.getCodec(name));
     }
 
     /**
@@ -222,10 +284,54 @@ public class RedisUtil {
      * @param name The map name
      * @param ttl The TTL in seconds
      * @return The map
+     * @throws IllegalStateException If the map is read through a near cache
      */
     public <K, V> RMapCache<K, V> getMapCache(String name, long ttl) {
-        RMapCache<K, V> map = redissonClient.getMapCache(name);
+        checkNotNearCached(name);
+        RMapCache<K, V> map = redissonClient.getMapCache(name, codecRegistry.getCodec(name));
         map.setMaxSize(1000); // Limit cache size
         return map;
     }
+
+    /**
+     * Get a distributed map read through a near cache on this pod, for hot keys read far more
+     * often than written. Bounded by the {@code cache.near} settings of its name.
+     *
+     * @param name The map name
+     * @return The map
+     */
+    public <K, V> NearCachedMap<K, V> getNearCachedMap(String name) {
+        return new NearCachedMap<>(redissonClient.getMap(name, codecRegistry.getCodec(name)), nearCacheRegistry, 0);
+    }
+
+    /**
+     * Get a distributed map with TTL read through a near cache on this pod. Copies are kept no
+     * longer than the TTL.
+     *
+     * @param name The map name
+     * @param ttl The TTL in seconds of written entries
+     * @return The map
+     */
+    public <K, V> NearCachedMap<K, V> getNearCachedMapCache(String name, long ttl) {
+        return new NearCachedMap<>(redissonClient.getMapCache(name, codecRegistry.getCodec(name)), nearCacheRegistry, ttl);
+    }
+
+    /**
+     * Get a distributed map whose entries expire individually, without a size limit
+     *
+     * @param name The map name
+     * @return The map
+     * @throws IllegalStateException If the map is read through a near cache
+     */
+    public <K, V> RMapCache<K, V> getExpiringMap(String name) {
+        checkNotNearCached(name);
+        return redissonClient.getMapCache(name, codecRegistry.getCodec(name));
+    }
+
+    // Writes to the plain map would not reach the near caches of the other pods
+    private void checkNotNearCached(String name) {
+        if (nearCacheRegistry.isNearCachedMap(name)) {
+            throw new IllegalStateException("Map " + name + " is read through a near cache, use getNearCachedMap");
+        }
+    }
 }
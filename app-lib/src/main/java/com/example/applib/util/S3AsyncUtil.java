@@ -0,0 +1,192 @@
+package com.example.applib.util;
+
+import com.example.applib.cache.LocalObjectCache;
+import com.example.applib.config.S3ClientRegistry;
+import com.example.applib.entity.TurboS3Config;
+import com.example.applib.web.ObjectResponses;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.stereotype.Component;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.*;
+
+/**
+ * Non-blocking counterpart of {@link S3Util}. Every call returns at once with a future that is
+ * completed on the SDK's event loop, and object bodies are exposed as a
+ * {@link Publisher Publisher&lt;ByteBuffer&gt;} that is read only as fast as it is consumed, so a
+ * transfer holds no thread while it waits for S3 or the client.
+ *
+ * <p>The tenant is resolved when a method is called, on the caller's thread; callbacks run
+ * without a tenant context. Failures complete the future with the same exceptions the
+ * blocking methods throw, e.g. {@link FileNotFoundException} for a missing object.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class S3AsyncUtil {
+
+    private final S3ClientRegistry s3ClientRegistry;
+    private final LocalObjectCache objectCache;
+
+    /**
+     * Open an object, or a byte range of it, without blocking
+     *
+     * @param keyName S3 object key
+     * @param range Requested range, or null for the whole object
+     * @param ifRange If-Range header value, may be null
+     * @return The open object, whose body is a publisher that must be subscribed to
+     */
+    public CompletableFuture<StoredObject> openObject(String keyName, ByteRange range, String ifRange) {
+        TurboS3Config s3Config = s3ClientRegistry.getConfig();
+        if (s3Config == null) {
+            return CompletableFuture.failedFuture(new IOException("No S3 configuration found"));
+        }
+        return openObject(s3Config.getBucketName(), keyName, range, ifRange);
+    }
+
+    /**
+     * Open an object, or a byte range of it, from a specific bucket without blocking
+     *
+     * @param bucketName Bucket name
+     * @param keyName S3 object key
+     * @param range Requested range, or null for the whole object
+     * @param ifRange If-Range header value, may be null
+     * @return The open object, whose body is a publisher that must be subscribed to
+     */
+    public CompletableFuture<StoredObject> openObject(String bucketName, String keyName, ByteRange range,
+                                                      String ifRange) {
+        S3AsyncClient client;
+        try {
+            client = getClient();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName);
+        boolean ranged = range != null && S3Util.applyIfRange(request, ifRange);
+
+        GetObjectRequest wholeObject = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName)
+                .build();
+        CompletableFuture<StoredObject> object;
+        if (ranged) {
+            object = getObject(client, keyName, request.range(range.toHeaderValue()).build())
+                    .thenCompose(partial -> {
+                        if (partial.getContentEncoding() == null) {
+                            return CompletableFuture.completedFuture(partial);
+                        }
+                        // A range of compressed bytes means nothing to the client, send all of it
+                        ObjectResponses.discard(partial);
+                        return getObject(client, keyName, wholeObject);
+                    })
+                    .exceptionallyCompose(e -> {
+                        if (statusCode(e) != 412) {
+                            return CompletableFuture.failedFuture(e);
+                        }
+                        // If-Range did not match: the client's copy is stale, send all of it
+                        log.debug("If-Range {} no longer matches {}", ifRange, keyName);
+                        return getObject(client, keyName, wholeObject);
+                    });
+        } else {
+            object = getObject(client, keyName, wholeObject);
+        }
+
+        return object.exceptionallyCompose(e -> {
+            Throwable cause = unwrap(e);
+            if (cause instanceof NoSuchKeyException) {
+                return CompletableFuture.failedFuture(new FileNotFoundException("Object not found in S3: " + keyName));
+            }
+            if (statusCode(cause) == 416) {
+                return client.headObject(HeadObjectRequest.builder().bucket(bucketName).key(keyName).build())
+                        .thenCompose(head -> CompletableFuture.failedFuture(
+                                new RangeNotSatisfiableException(keyName, range, head.contentLength())));
+            }
+            log.error("Error reading object from S3: {}", keyName, cause);
+            return CompletableFuture.failedFuture(new IOException("Error reading object from S3: " + cause.getMessage(), cause));
+        });
+    }
+
+    /**
+     * Check if an object exists without blocking
+     *
+     * @param keyName S3 object key
+     * @return Whether the object exists
+     */
+    public CompletableFuture<Boolean> doesObjectExist(String keyName) {
+        TurboS3Config s3Config = s3ClientRegistry.getConfig();
+        S3AsyncClient client;
+        try {
+            client = getClient();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return client.headObject(HeadObjectRequest.builder()
+                        .bucket(s3Config.getBucketName())
+                        .key(keyName)
+                        .build())
+                .thenApply(head -> true)
+                .exceptionallyCompose(e -> unwrap(e) instanceof NoSuchKeyException || statusCode(e) == 404
+                        ? CompletableFuture.completedFuture(false)
+                        : CompletableFuture.failedFuture(unwrap(e)));
+    }
+
+    /**
+     * Delete an object without blocking
+     *
+     * @param keyName S3 object key
+     * @return Completed once the object is deleted
+     */
+    public CompletableFuture<Void> deleteObject(String keyName) {
+        TurboS3Config s3Config = s3ClientRegistry.getConfig();
+        S3AsyncClient client;
+        try {
+            client = getClient();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        String bucketName = s3Config.getBucketName();
+        return client.deleteObject(DeleteObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(keyName)
+                        .build())
+                .thenAccept(response -> objectCache.invalidate(bucketName, keyName));
+    }
+
+    private CompletableFuture<StoredObject> getObject(S3AsyncClient client, String keyName, GetObjectRequest request) {
+        return client.getObject(request, AsyncResponseTransformer.toPublisher())
+                .thenApply(publisher -> S3Util.storedObject(keyName, publisher.response())
+                        .publisher(publisher)
+                        .build());
+    }
+
+    private S3AsyncClient getClient() throws IOException {
+        if (s3ClientRegistry.getConfig() == null) {
+            throw new IOException("No S3 configuration found");
+        }
+        S3AsyncClient client = s3ClientRegistry.getAsyncClient();
+        if (client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
+        return client;
+    }
+
+    private static Throwable unwrap(Throwable e) {
+        return e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+    }
+
+    private static int statusCode(Throwable e) {
+        Throwable cause = unwrap(e);
+        return cause instanceof S3Exception ? ((S3Exception) cause).statusCode() : 0;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.applib.util;
+
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of a bulk delete.
+ */
+@Data
+@AllArgsConstructor
+public class S3DeleteResult {
+
+    private int deleted;
+
+    /**
+     * Error message by key for the keys that could not be deleted
+     */
+    private Map<String, String> errors;
+}
@@ -0,0 +1,403 @@
+package com.example.applib.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.Function;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.ChecksumAlgorithm;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+/**
+ * Output stream that uploads to S3 in fixed-size parts while the data is being written.
+ *
+ * <p>Nothing touches the local disk. Memory is bounded by {@code (maxInFlightParts + 1) * partSize}:
+ * writers block while that many part buffers are in use. Each part carries a CRC32 checksum that
+ * S3 verifies, and a SHA-256 of the whole object is computed on the fly. Data that fits in one
+ * part is sent with a single PUT instead of a multipart upload.
+ *
+ * <p>Call {@link #complete()} once everything has been written. Closing the stream without
+ * completing it, e.g. because writing failed, aborts the upload so no orphaned parts are left.
+ * {@link #complete(Function)} skips storing the data when an object with the same SHA-256 already
+ * exists: data that fits in one part is then never sent, and a multipart upload is aborted
+ * instead of completed.
+ *
+ * <p>With a {@link CompressionCodec} the data is compressed before it is split into parts and the
+ * object is stored with the codec's Content-Encoding and a {@link CompressionCodec#METADATA_KEY}
+ * flag. Size and SHA-256 remain those of the data as written, so deduplication is not affected.
+ */
+@Slf4j
+public class S3MultipartOutputStream extends OutputStream {
+
+    public static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    private final S3Client s3Client;
+    private final String bucket;
+    private final String key;
+    private final String contentType;
+    private final String contentEncoding;
+    private final Map<String, String> metadata;
+    private final int partSize;
+    private final int maxBuffers;
+    private final Executor executor;
+
+    private final BlockingQueue<byte[]> freeBuffers = new LinkedBlockingQueue<>();
+    private final List<CompletableFuture<CompletedPart>> parts = new ArrayList<>();
+    private final MessageDigest sha256;
+
+    // Compresses into the part buffers, null when the data is stored as it is
+    private final OutputStream encoder;
+
+    private int allocatedBuffers;
+    private byte[] buffer;
+    private int position;
+    private long size;
+    private String uploadId;
+    private boolean completed;
+    private boolean closed;
+
+    S3MultipartOutputStream(S3Client s3Client, String bucket, String key, String contentType,
+                            int partSize, int maxInFlightParts, Executor executor) {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+        this.contentEncoding = null;
+        this.metadata = Map.of();
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.maxBuffers = Math.max(maxInFlightParts, 1) + 1;
+        this.executor = executor;
+        this.sha256 = newSha256();
+        this.encoder = null;
+    }
+
+    S3MultipartOutputStream(S3Client s3Client, String bucket, String key, String contentType,
+                            CompressionCodec codec, int compressionLevel,
+                            int partSize, int maxInFlightParts, Executor executor) throws IOException {
+        this.s3Client = s3Client;
+        this.bucket = bucket;
+        this.key = key;
+        this.contentType = contentType;
+        this.contentEncoding = codec.getEncoding();
+        this.metadata = Map.of(CompressionCodec.METADATA_KEY, codec.getEncoding());
+        this.partSize = Math.max(partSize, MIN_PART_SIZE);
+        this.maxBuffers = Math.max(maxInFlightParts, 1) + 1;
+        this.executor = executor;
+        this.sha256 = newSha256();
+        this.encoder = codec.encode(new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] bytes, int offset, int length) throws IOException {
+                // What the codec flushes while an unfinished upload is closed is dropped
+                if (!closed) {
+                    store(bytes, offset, length);
+                }
+            }
+        }, compressionLevel);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        ensureOpen();
+        sha256.update(bytes, offset, length);
+        size += length;
+
+        if (encoder != null) {
+            encoder.write(bytes, offset, length);
+        } else {
+            store(bytes, offset, length);
+        }
+    }
+
+    private void store(byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            if (buffer == null) {
+                buffer = takeBuffer();
+            }
+            int chunk = Math.min(length, partSize - position);
+            System.arraycopy(bytes, offset, buffer, position, chunk);
+            position += chunk;
+            offset += chunk;
+            length -= chunk;
+
+            if (position == partSize) {
+                uploadPart();
+            }
+        }
+    }
+
+    /**
+     * Upload the remaining data and complete the upload
+     *
+     * @return The uploaded object
+     * @throws IOException If any part or the completion fails; the upload is aborted on close
+     */
+    public S3UploadResult complete() throws IOException {
+        return complete(null);
+    }
+
+    /**
+     * Complete the upload unless an object with the same content already exists
+     *
+     * @param existingKeyLookup Maps the hex encoded SHA-256 of the data to the key of an existing
+     *                          object with the same content, or to null to store the data; may be null
+     * @return The uploaded object, or the existing one when the data was deduplicated
+     * @throws IOException If any part or the completion fails; the upload is aborted on close
+     */
+    public S3UploadResult complete(Function<String, String> existingKeyLookup) throws IOException {
+        ensureOpen();
+        if (encoder != null) {
+            // Writes the rest of the compressed data into the part buffers
+            encoder.close();
+        }
+
+        String checksum = HexFormat.of().formatHex(sha256.digest());
+        String existingKey = existingKeyLookup != null ? existingKeyLookup.apply(checksum) : null;
+        if (existingKey != null) {
+            abort();
+            completed = true;
+            releaseBuffers();
+            log.debug("Skipped upload of {} bytes to {}/{}, same content as {}", size, bucket, key, existingKey);
+            return new S3UploadResult(bucket, existingKey, null, size, checksum, 0, true);
+        }
+
+        String eTag;
+        if (uploadId == null) {
+            // Everything fit into one buffer
+            int length = position;
+            byte[] data = buffer != null ? buffer : new byte[0];
+            PutObjectResponse response = s3Client.putObject(PutObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .contentType(contentType)
+                            .contentEncoding(contentEncoding)
+                            .metadata(metadata)
+                            .contentLength((long) length)
+                            .checksumCRC32(crc32(data, length))
+                            .build(),
+                    RequestBody.fromInputStream(new ByteArrayInputStream(data, 0, length), length));
+            eTag = response.eTag();
+        } else {
+            if (position > 0) {
+                uploadPart();
+            }
+            List<CompletedPart> completedParts = awaitParts();
+            CompleteMultipartUploadResponse response = s3Client.completeMultipartUpload(
+                    CompleteMultipartUploadRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .uploadId(uploadId)
+                            .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                            .build());
+            eTag = response.eTag();
+        }
+
+        completed = true;
+        releaseBuffers();
+        log.debug("Uploaded {} bytes to {}/{} in {} parts", size, bucket, key, Math.max(parts.size(), 1));
+        return new S3UploadResult(bucket, key, eTag, size, checksum, Math.max(parts.size(), 1), false);
+    }
+
+    /**
+     * Abort the upload unless it was completed
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        if (!completed) {
+            if (encoder != null) {
+                closeEncoder();
+            }
+            abort();
+        }
+        releaseBuffers();
+    }
+
+    private void closeEncoder() {
+        try {
+            // Frees the codec's native memory
+            encoder.close();
+        } catch (IOException e) {
+            log.debug("Error closing the encoder of {}/{}: {}", bucket, key, e.getMessage());
+        }
+    }
+
+    private void abort() {
+        if (uploadId == null) {
+            return;
+        }
+        // Parts still in flight would survive an abort issued before they finish
+        for (CompletableFuture<CompletedPart> part : parts) {
+            try {
+                part.join();
+            } catch (CompletionException e) {
+                // Already failed, nothing to wait for
+            }
+        }
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .uploadId(uploadId)
+                    .build());
+            log.info("Aborted multipart upload of {}/{}", bucket, key);
+        } catch (Exception e) {
+            log.error("Failed to abort multipart upload {} of {}/{}", uploadId, bucket, key, e);
+        }
+    }
+
+    private void uploadPart() throws IOException {
+        if (uploadId == null) {
+            uploadId = s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(bucket)
+                    .key(key)
+                    .contentType(contentType)
+                    .contentEncoding(contentEncoding)
+                    .metadata(metadata)
+                    .checksumAlgorithm(ChecksumAlgorithm.CRC32)
+                    .build()).uploadId();
+        }
+        if (parts.size() == MAX_PARTS) {
+            throw new IOException("Upload of " + key + " exceeds " + MAX_PARTS + " parts of " + partSize + " bytes");
+        }
+        failFast();
+
+        int partNumber = parts.size() + 1;
+        byte[] data = buffer;
+        int length = position;
+        String checksum = crc32(data, length);
+        buffer = null;
+        position = 0;
+
+        parts.add(CompletableFuture.supplyAsync(() -> {
+            try {
+                UploadPartResponse response = s3Client.uploadPart(UploadPartRequest.builder()
+                                .bucket(bucket)
+                                .key(key)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .contentLength((long) length)
+                                .checksumCRC32(checksum)
+                                .build(),
+                        RequestBody.fromInputStream(new ByteArrayInputStream(data, 0, length), length));
+                return CompletedPart.builder()
+                        .partNumber(partNumber)
+                        .eTag(response.eTag())
+                        .checksumCRC32(checksum)
+                        .build();
+            } finally {
+                freeBuffers.offer(data);
+            }
+        }, executor));
+    }
+
+    private List<CompletedPart> awaitParts() throws IOException {
+        List<CompletedPart> completedParts = new ArrayList<>(parts.size());
+        for (CompletableFuture<CompletedPart> part : parts) {
+            try {
+                completedParts.add(part.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while uploading " + key);
+            } catch (ExecutionException e) {
+                throw new IOException("Failed to upload part of " + key + ": " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return completedParts;
+    }
+
+    /**
+     * Stop writing as soon as any part has failed instead of streaming the rest for nothing
+     */
+    private void failFast() throws IOException {
+        for (CompletableFuture<CompletedPart> part : parts) {
+            if (part.isCompletedExceptionally()) {
+                awaitParts();
+            }
+        }
+    }
+
+    private byte[] takeBuffer() throws IOException {
+        byte[] free = freeBuffers.poll();
+        if (free != null) {
+            return free;
+        }
+        if (allocatedBuffers < maxBuffers) {
+            allocatedBuffers++;
+            return new byte[partSize];
+        }
+        try {
+            // All buffers are in flight: wait for a part to finish
+            return freeBuffers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while uploading " + key);
+        }
+    }
+
+    private void releaseBuffers() {
+        buffer = null;
+        freeBuffers.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed || completed) {
+            throw new IOException("Upload of " + key + " is already finished");
+        }
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String crc32(byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        return Base64.getEncoder().encodeToString(ByteBuffer.allocate(4).putInt((int) crc.getValue()).array());
+    }
+}
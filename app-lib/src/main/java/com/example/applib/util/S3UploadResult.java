@@ -0,0 +1,33 @@
+package com.example.applib.util;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * Outcome of a streamed upload to S3.
+ */
+@Data
+@AllArgsConstructor
+public class S3UploadResult {
+
+    private String bucket;
+    private String key;
+    private String eTag;
+    private long size;
+
+    /**
+     * Hex encoded SHA-256 of the uploaded bytes
+     */
+    private String sha256;
+
+    /**
+     * Number of parts, 1 for uploads small enough for a single PUT and 0 when nothing was stored
+     */
+    private int partCount;
+
+    /**
+     * Whether an existing object with the same content was reused instead of storing the data,
+     * in which case {@link #key} is the key of that object
+     */
+    private boolean deduplicated;
+}
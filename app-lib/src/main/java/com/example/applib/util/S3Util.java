@@ -1,25 +1,57 @@
 package com.example.applib.util;
 
+import com.example.applib.cache.LocalObjectCache;
+import com.example.applib.cache.PresignedUrlCache;
+import com.example.applib.config.S3ClientRegistry;
 import com.example.applib.entity.TurboS3Config;
-import com.example.applib.repository.TurboS3ConfigRepository;
+import com.example.applib.transfer.TransferEngine;
+import com.example.applib.transfer.TransferHandle;
+import com.google.common.collect.Lists;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.io.IOUtils;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
-import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.core.ResponseInputStream;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
-import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.model.*;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -27,122 +59,335 @@ import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignReques
 import software.amazon.awssdk.services.s3.presigner.model.PresignedGetObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PresignedPutObjectRequest;
 import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.UploadPartPresignRequest;
 
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class S3Util {
 
-    private final TurboS3ConfigRepository s3ConfigRepository;
+    private static final int MAX_KEYS_PER_DELETE = 1000;
+    private static final DateTimeFormatter SIGV4_DATE =
+            DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'").withZone(ZoneOffset.UTC);
 
-    // Cache S3 clients by configuration ID
-    private final Map<Long, S3Client> s3ClientCache = new ConcurrentHashMap<>();
+    private final S3ClientRegistry s3ClientRegistry;
+    private final TransferEngine transferEngine;
+    private final LocalObjectCache objectCache;
+    private final PresignedUrlCache presignedUrlCache;
+    private final StorageCompression storageCompression;
 
-    // Cache S3 presigners by configuration ID
-    private final Map<Long, S3Presigner> s3PresignerCache = new ConcurrentHashMap<>();
+    @Value("${s3.bulk.list-page-cost:12}")
+    private int listPageCost;
+
+    @Value("${s3.bulk.max-in-flight-heads:64}")
+    private int maxInFlightHeads;
+
+    @Value("${s3.multipart.part-size-bytes:8388608}")
+    private int multipartPartSize;
+
+    @Value("${s3.multipart.max-in-flight-parts:2}")
+    private int multipartMaxInFlightParts;
+
+    @Value("${s3.multipart.upload-threads:8}")
+    private int multipartUploadThreads;
+
+    // Uploads parts of streamed uploads; each stream bounds its own parts in flight
+    private ExecutorService partUploadExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(multipartUploadThreads, multipartUploadThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "s3-part-upload-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        partUploadExecutor = executor;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        partUploadExecutor.shutdown();
+    }
 
-    /**
-     * Get the S3 configuration
-     *
-     * @return S3 configuration
-     */
     private TurboS3Config getS3Config() {
-        List<TurboS3Config> configs = s3ConfigRepository.findAll();
-        if (configs.isEmpty()) {
-            log.warn("No S3 configuration found");
-            return null;
-        }
-        return configs.get(0);
+        return s3ClientRegistry.getConfig();
+    }
+
+    private S3Client getS3Client() {
+        return s3ClientRegistry.getClient();
+    }
+
+    private S3Presigner getS3Presigner() {
+        return s3ClientRegistry.getPresigner();
     }
 
     /**
-     * Get an S3 client for the current configuration
+     * Download a file from S3
      *
-     * @return S3 client
+     * @param keyName S3 object key
+     * @param filePath Local file path to save the downloaded file
+     * @throws IOException If an I/O error occurs
      */
-    private S3Client getS3Client() {
+    public void downloadFile(String keyName, String filePath) throws IOException {
         TurboS3Config s3Config = getS3Config();
         if (s3Config == null) {
-            log.warn("No S3 configuration found");
-            return null;
-        }
-
-        // Check cache first
-        if (s3ClientCache.containsKey(s3Config.getId())) {
-            return s3ClientCache.get(s3Config.getId());
+            throw new IOException("No S3 configuration found");
         }
 
         try {
-            // Create AWS credentials
-            AwsBasicCredentials credentials = AwsBasicCredentials.create(
-                    s3Config.getAwsAccessKeyId(),
-                    s3Config.getAwsSecretAccessKey()
-            );
-
-            // Create S3 client
-            S3Client s3Client = S3Client.builder()
-                    .region(Region.of(s3Config.getRegion()))
-                    .credentialsProvider(StaticCredentialsProvider.create(credentials))
-                    .build();
+            log.info("Downloading object from S3: {} to local file: {}", keyName, filePath);
 
-            // Cache the client
-            s3ClientCache.put(s3Config.getId(), s3Client);
+            // Create parent directories if they don't exist
+            Path path = Paths.get(filePath);
+            File parentDir = path.toFile().getParentFile();
+            if (parentDir != null && !parentDir.exists()) {
+                parentDir.mkdirs();
+            }
 
-            return s3Client;
-        } catch (Exception e) {
-            log.error("Error creating S3 client", e);
-            return null;
+            HeadObjectResponse head = getS3Client().headObject(HeadObjectRequest.builder()
+                    .bucket(s3Config.getBucketName())
+                    .key(keyName)
+                    .build());
+            CompressionCodec codec = head.hasMetadata()
+                    ? CompressionCodec.forEncoding(head.metadata().get(CompressionCodec.METADATA_KEY))
+                    : null;
+
+            if (transferEngine.isMultipart(head.contentLength())) {
+                // Parallel ranged GETs straight into the file, decompressed by the engine once complete
+                transferEngine.download(s3ClientRegistry.getAsyncClient(), s3Config.getBucketName(), keyName, path)
+                        .await();
+            } else {
+                // A single GET, decompressed on the way to the file
+                GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+                        .bucket(s3Config.getBucketName())
+                        .key(keyName)
+                        .ifMatch(head.eTag())
+                        .build();
+                try (InputStream stored = getS3Client().getObject(getObjectRequest);
+                     InputStream inputStream = codec != null ? codec.decode(stored) : stored) {
+                    Files.copy(inputStream, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            }
+
+            log.info("File downloaded successfully");
+        } catch (SdkException e) {
+            log.error("Error downloading file from S3", e);
+            throw new IOException("Error downloading file from S3: " + e.getMessage(), e);
+        } catch (IOException e) {
+            log.error("Error downloading file from S3", e);
+            throw e;
         }
     }
 
     /**
-     * Get an S3 presigner for the current configuration
+     * Open an object, or a byte range of it, for streaming to a client. A range is fetched with a
+     * ranged GET. An If-Range validator is turned into an If-Match or If-Unmodified-Since
+     * condition on that GET, and when it no longer matches the whole object is returned instead.
+     * Objects small enough for the {@link LocalObjectCache} are served from local disk.
      *
-     * @return S3 presigner
+     * @param keyName S3 object key
+     * @param range Requested range, or null for the whole object
+     * @param ifRange If-Range header value, may be null
+     * @return The open object; the caller must close it
+     * @throws FileNotFoundException If the object does not exist
+     * @throws RangeNotSatisfiableException If the range lies outside the object
+     * @throws IOException If the object cannot be read
      */
-    private S3Presigner getS3Presigner() {
+    public StoredObject openObject(String keyName, ByteRange range, String ifRange) throws IOException {
         TurboS3Config s3Config = getS3Config();
         if (s3Config == null) {
-            log.warn("No S3 configuration found");
-            return null;
+            throw new IOException("No S3 configuration found");
         }
+        return openObject(s3Config.getBucketName(), keyName, range, ifRange);
+    }
 
-        // Check cache first
-        if (s3PresignerCache.containsKey(s3Config.getId())) {
-            return s3PresignerCache.get(s3Config.getId());
+    /**
+     * Open an object, or a byte range of it, from a specific bucket such as the schema or image
+     * bucket of the current configuration
+     *
+     * @param bucketName Bucket name
+     * @param keyName S3 object key
+     * @param range Requested range, or null for the whole object
+     * @param ifRange If-Range header value, may be null
+     * @return The open object; the caller must close it
+     * @throws FileNotFoundException If the object does not exist
+     * @throws RangeNotSatisfiableException If the range lies outside the object
+     * @throws IOException If the object cannot be read
+     */
+    public StoredObject openObject(String bucketName, String keyName, ByteRange range, String ifRange)
+            throws IOException {
+        S3Client s3Client = getS3Client();
+        if (s3Client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
+
+        if (objectCache.isEnabled()) {
+            LocalObjectCache.Entry entry = objectCache.get(bucketName, keyName,
+                    (key, ifNoneMatch, target, maxBytes) -> fetchToFile(s3Client, bucketName, key, ifNoneMatch, target, maxBytes));
+            if (entry != null) {
+                StoredObject object = entry.getContentEncoding() != null
+                        ? StoredObject.ofEncodedFile(keyName, entry.getFile(), entry.getSize(), entry.getContentType(),
+                                entry.getContentEncoding(), entry.getETag(), entry.getLastModified())
+                        : StoredObject.ofFile(keyName, entry.getFile(), entry.getSize(), entry.getContentType(),
+                                entry.getETag(), entry.getLastModified(), range, ifRange);
+                objectCache.recordServed(object.getContentLength());
+                return object;
+            }
         }
 
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName);
+        boolean ranged = range != null && applyIfRange(request, ifRange);
+
         try {
-            // Create AWS credentials
-            AwsBasicCredentials credentials = AwsBasicCredentials.create(
-                    s3Config.getAwsAccessKeyId(),
-                    s3Config.getAwsSecretAccessKey()
-            );
-
-            // Create S3 presigner
-            S3Presigner s3Presigner = S3Presigner.builder()
-                    .region(Region.of(s3Config.getRegion()))
-                    .credentialsProvider(StaticCredentialsProvider.create(credentials))
-                    .build();
+            if (ranged) {
+                try {
+                    ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(
+                            request.range(range.toHeaderValue()).build());
+                    if (contentEncoding(stream.response()) == null) {
+                        return storedObject(keyName, stream.response()).body(stream).build();
+                    }
+                    // A range of compressed bytes means nothing to the client, send all of it
+                    stream.abort();
+                    log.debug("Ignoring range of compressed object {}", keyName);
+                } catch (S3Exception e) {
+                    if (e.statusCode() != 412) {
+                        throw e;
+                    }
+                    // If-Range did not match: the client's copy is stale, send all of it
+                    log.debug("If-Range {} no longer matches {}", ifRange, keyName);
+                }
+            }
+            ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(GetObjectRequest.builder()
+                    .bucket(bucketName)
+                    .key(keyName)
+                    .build());
+            return storedObject(keyName, stream.response()).body(stream).build();
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException("Object not found in S3: " + keyName);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 416) {
+                long size = s3Client.headObject(HeadObjectRequest.builder()
+                        .bucket(bucketName)
+                        .key(keyName)
+                        .build()).contentLength();
+                throw new RangeNotSatisfiableException(keyName, range, size);
+            }
+            log.error("Error reading object from S3: {}", keyName, e);
+            throw new IOException("Error reading object from S3: " + e.getMessage(), e);
+        }
+    }
 
-            // Cache the presigner
-            s3PresignerCache.put(s3Config.getId(), s3Presigner);
+    /**
+     * Download an object into a cache file unless it is unchanged or too large
+     */
+    private LocalObjectCache.FetchResult fetchToFile(S3Client s3Client, String bucketName, String keyName,
+                                                     String ifNoneMatch, Path target, long maxBytes) throws IOException {
+        GetObjectRequest.Builder request = GetObjectRequest.builder()
+                .bucket(bucketName)
+                .key(keyName);
+        if (ifNoneMatch != null) {
+            request.ifNoneMatch(ifNoneMatch);
+        }
 
-            return s3Presigner;
-        } catch (Exception e) {
-            log.error("Error creating S3 presigner", e);
-            return null;
+        try (ResponseInputStream<GetObjectResponse> stream = s3Client.getObject(request.build())) {
+            GetObjectResponse response = stream.response();
+            if (response.contentLength() > maxBytes) {
+                // Don't drain the body just to reuse the connection
+                stream.abort();
+                return LocalObjectCache.FetchResult.tooLarge();
+            }
+            Files.copy(stream, target, StandardCopyOption.REPLACE_EXISTING);
+            return LocalObjectCache.FetchResult.fetched(response.contentLength(), response.eTag(),
+                    response.contentType(), contentEncoding(response), response.lastModified());
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException("Object not found in S3: " + keyName);
+        } catch (S3Exception e) {
+            if (e.statusCode() == 304) {
+                return LocalObjectCache.FetchResult.notModified();
+            }
+            log.error("Error reading object from S3: {}", keyName, e);
+            throw new IOException("Error reading object from S3: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Download a file from S3
+     * Turn an If-Range validator into a condition on a ranged GET, so S3 answers 412 instead of
+     * the range once the object changed
+     *
+     * @param request The ranged GET
+     * @param ifRange If-Range header value, may be null
+     * @return Whether the GET may still be ranged; a weak or unparseable validator never matches
+     */
+    static boolean applyIfRange(GetObjectRequest.Builder request, String ifRange) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ByteRange.isEntityTag(ifRange)) {
+            // Weak tags never match, so a weak If-Range always gets the whole object
+            request.ifMatch(ifRange);
+            return !ifRange.startsWith("W/");
+        }
+        Instant date = ByteRange.parseHttpDate(ifRange);
+        request.ifUnmodifiedSince(date);
+        return date != null;
+    }
+
+    /**
+     * Describe the object or range a GET returned; the caller adds the body
      *
      * @param keyName S3 object key
-     * @param filePath Local file path to save the downloaded file
+     * @param response Response of the GET
+     * @return Builder with everything but the body set
+     */
+    static StoredObject.StoredObjectBuilder storedObject(String keyName, GetObjectResponse response) {
+        long contentLength = response.contentLength();
+        long first = 0;
+        long total = contentLength;
+
+        // "bytes first-last/total"
+        String contentRange = response.contentRange();
+        if (contentRange != null) {
+            int dash = contentRange.indexOf('-');
+            int slash = contentRange.indexOf('/');
+            first = Long.parseLong(contentRange.substring(contentRange.indexOf(' ') + 1, dash).trim());
+            total = Long.parseLong(contentRange.substring(slash + 1).trim());
+        }
+
+        return StoredObject.builder()
+                .key(keyName)
+                .contentType(response.contentType())
+                .eTag(response.eTag())
+                .lastModified(response.lastModified())
+                .totalLength(total)
+                .first(first)
+                .last(first + contentLength - 1)
+                .partial(contentRange != null)
+                .contentEncoding(contentEncoding(response));
+    }
+
+    /**
+     * Get the encoding an object was compressed with by {@link StorageCompression}
+     *
+     * @param response Response of a GET or HEAD of the object
+     * @return Content coding, or null when the object is stored as it is
+     */
+    static String contentEncoding(GetObjectResponse response) {
+        return response.hasMetadata() ? response.metadata().get(CompressionCodec.METADATA_KEY) : null;
+    }
+
+    /**
+     * Upload a file to S3
+     *
+     * @param filePath Local file path to upload
+     * @param keyName S3 object key
      * @throws IOException If an I/O error occurs
      */
-    public void downloadFile(String keyName, String filePath) throws IOException {
+    public void uploadFile(String filePath, String keyName) throws IOException {
         TurboS3Config s3Config = getS3Config();
         if (s3Config == null) {
             throw new IOException("No S3 configuration found");
@@ -154,35 +399,103 @@ public class S3Util {
         }
 
         try {
-            log.info("Downloading object from S3: {} to local file: {}", keyName, filePath);
+            log.info("Uploading file to S3: {} with key: {}", filePath, keyName);
 
-            // Create GetObjectRequest
-            GetObjectRequest getObjectRequest = GetObjectRequest.builder()
+            Path path = Paths.get(filePath);
+            String contentType = Files.probeContentType(path);
+            if (storageCompression.codecFor(contentType) != null) {
+                // Compressed while streaming, as the size after compression is not known up front
+                try (InputStream inputStream = Files.newInputStream(path)) {
+                    uploadStream(keyName, contentType, inputStream);
+                }
+                return;
+            }
+
+            if (transferEngine.isMultipart(Files.size(path))) {
+                // Large file: parallel multipart upload
+                transferEngine.upload(s3ClientRegistry.getAsyncClient(), s3Config.getBucketName(), keyName, path).await();
+                objectCache.invalidate(s3Config.getBucketName(), keyName);
+                log.info("File uploaded successfully");
+                return;
+            }
+
+            // Create PutObjectRequest
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
                     .bucket(s3Config.getBucketName())
                     .key(keyName)
                     .build();
 
-            // Get object from S3
-            ResponseInputStream<GetObjectResponse> s3Object = s3Client.getObject(getObjectRequest);
-
-            // Save the file
-            saveFile(s3Object, filePath);
+            // Upload file to S3
+            s3Client.putObject(putObjectRequest, RequestBody.fromFile(new File(filePath)));
+            objectCache.invalidate(s3Config.getBucketName(), keyName);
 
-            log.info("File downloaded successfully");
+            log.info("File uploaded successfully");
         } catch (S3Exception e) {
-            log.error("Error downloading file from S3", e);
-            throw new IOException("Error downloading file from S3: " + e.getMessage(), e);
+            log.error("Error uploading file to S3", e);
+            throw new IOException("Error uploading file to S3: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Upload a file to S3
+     * Start a parallel multipart upload that can be paused, resumed and observed through
+     * {@link com.example.applib.transfer.TransferProgressEvent}s
      *
      * @param filePath Local file path to upload
      * @param keyName S3 object key
-     * @throws IOException If an I/O error occurs
+     * @return Handle of the running transfer
+     * @throws IOException If no S3 configuration exists or the file cannot be read
      */
-    public void uploadFile(String filePath, String keyName) throws IOException {
+    public TransferHandle startUpload(String filePath, String keyName) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+        return transferEngine.upload(s3ClientRegistry.getAsyncClient(), s3Config.getBucketName(), keyName, Paths.get(filePath));
+    }
+
+    /**
+     * Start a parallel ranged download that can be paused, resumed and observed. A compressed
+     * object is decompressed before the transfer completes.
+     *
+     * @param keyName S3 object key
+     * @param filePath Local file path to save the downloaded file
+     * @return Handle of the running transfer
+     * @throws IOException If no S3 configuration exists
+     */
+    public TransferHandle startDownload(String keyName, String filePath) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+        return transferEngine.download(s3ClientRegistry.getAsyncClient(), s3Config.getBucketName(), keyName, Paths.get(filePath));
+    }
+
+    /**
+     * Resume a paused or failed transfer started through this class
+     *
+     * @param transferId Transfer ID
+     * @return Handle of the resumed transfer
+     * @throws IOException If no S3 configuration or no resumable state exists
+     */
+    public TransferHandle resumeTransfer(String transferId) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+        return transferEngine.resume(s3ClientRegistry.getAsyncClient(), transferId);
+    }
+
+    /**
+     * Open a stream that uploads to S3 in parts as it is written, without a temporary file.
+     * Call {@link S3MultipartOutputStream#complete()} when done; closing an incomplete stream
+     * aborts the upload. Content types chosen by {@link StorageCompression} are compressed.
+     *
+     * @param keyName S3 object key
+     * @param contentType Content type of the object, may be null
+     * @return Upload stream
+     * @throws IOException If no S3 client is available
+     */
+    public S3MultipartOutputStream openUploadStream(String keyName, String contentType) throws IOException {
         TurboS3Config s3Config = getS3Config();
         if (s3Config == null) {
             throw new IOException("No S3 configuration found");
@@ -193,55 +506,172 @@ public class S3Util {
             throw new IOException("Failed to create S3 client");
         }
 
-        try {
-            log.info("Uploading file to S3: {} with key: {}", filePath, keyName);
+        CompressionCodec codec = storageCompression.codecFor(contentType);
+        if (codec != null) {
+            return new S3MultipartOutputStream(s3Client, s3Config.getBucketName(), keyName, contentType,
+                    codec, storageCompression.getLevel(), multipartPartSize, multipartMaxInFlightParts,
+                    partUploadExecutor);
+        }
+        return new S3MultipartOutputStream(s3Client, s3Config.getBucketName(), keyName, contentType,
+                multipartPartSize, multipartMaxInFlightParts, partUploadExecutor);
+    }
 
-            // Create PutObjectRequest
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
-                    .bucket(s3Config.getBucketName())
-                    .key(keyName)
-                    .build();
+    /**
+     * Upload an input stream of unknown length to S3 without buffering it on disk
+     *
+     * @param keyName S3 object key
+     * @param contentType Content type of the object, may be null
+     * @param inputStream Data to upload, not closed
+     * @return The uploaded object
+     * @throws IOException If reading or uploading fails; a partial upload is aborted
+     */
+    public S3UploadResult uploadStream(String keyName, String contentType, InputStream inputStream) throws IOException {
+        return uploadStream(keyName, contentType, inputStream, null);
+    }
 
-            // Upload file to S3
-            s3Client.putObject(putObjectRequest, RequestBody.fromFile(new File(filePath)));
+    /**
+     * Upload an input stream of unknown length to S3 unless an object with the same content
+     * already exists. The SHA-256 is computed while the data streams through, so duplicates are
+     * only recognized at the end: data that fits in one part is then never sent and a multipart
+     * upload is aborted instead of completed.
+     *
+     * @param keyName S3 object key used if the data is stored
+     * @param contentType Content type of the object, may be null
+     * @param inputStream Data to upload, not closed
+     * @param existingKeyLookup Maps the hex encoded SHA-256 of the data to the key of an existing
+     *                          object with the same content, or to null to store the data
+     * @return The uploaded object, or the existing one when the data was deduplicated
+     * @throws IOException If reading or uploading fails; a partial upload is aborted
+     */
+    public S3UploadResult uploadStream(String keyName, String contentType, InputStream inputStream,
+                                       Function<String, String> existingKeyLookup) throws IOException {
+        log.info("Streaming upload to S3 with key: {}", keyName);
 
-            log.info("File uploaded successfully");
+        try (S3MultipartOutputStream outputStream = openUploadStream(keyName, contentType)) {
+            inputStream.transferTo(outputStream);
+            S3UploadResult result = outputStream.complete(existingKeyLookup);
+            if (result.isDeduplicated()) {
+                log.info("Skipped upload of {} bytes to S3, same content as key: {}", result.getSize(), result.getKey());
+                return result;
+            }
+            objectCache.invalidate(result.getBucket(), keyName);
+            log.info("Streamed {} bytes to S3 with key: {}", result.getSize(), keyName);
+            return result;
         } catch (S3Exception e) {
-            log.error("Error uploading file to S3", e);
+            log.error("Error streaming upload to S3", e);
             throw new IOException("Error uploading file to S3: " + e.getMessage(), e);
         }
     }
 
     /**
-     * Generate a pre-signed URL for downloading an object from S3
+     * Generate a pre-signed URL for downloading an object from S3. A cached URL is returned
+     * while it is fresh enough.
      *
      * @param keyName S3 object key
      * @param expirationMinutes URL expiration time in minutes
      * @return Pre-signed URL
      */
     public URL generatePresignedDownloadUrl(String keyName, int expirationMinutes) {
+        return generatePresignedDownloadUrls(List.of(keyName), expirationMinutes).get(keyName);
+    }
+
+    /**
+     * Generate pre-signed download URLs for many objects at once
+     *
+     * @param keyNames S3 object keys
+     * @param expirationMinutes URL expiration time in minutes
+     * @return Pre-signed URL by key, null where signing failed; empty if S3 is not configured
+     */
+    public Map<String, URL> generatePresignedDownloadUrls(Collection<String> keyNames, int expirationMinutes) {
+        return presign("GET", keyNames, expirationMinutes);
+    }
+
+    /**
+     * Generate a pre-signed URL for uploading an object to S3. A cached URL is returned while it
+     * is fresh enough.
+     *
+     * @param keyName S3 object key
+     * @param expirationMinutes URL expiration time in minutes
+     * @return Pre-signed URL
+     */
+    public URL generatePresignedUploadUrl(String keyName, int expirationMinutes) {
+        return generatePresignedUploadUrls(List.of(keyName), expirationMinutes).get(keyName);
+    }
+
+    /**
+     * Generate pre-signed upload URLs for many objects at once
+     *
+     * @param keyNames S3 object keys
+     * @param expirationMinutes URL expiration time in minutes
+     * @return Pre-signed URL by key, null where signing failed; empty if S3 is not configured
+     */
+    public Map<String, URL> generatePresignedUploadUrls(Collection<String> keyNames, int expirationMinutes) {
+        return presign("PUT", keyNames, expirationMinutes);
+    }
+
+    private Map<String, URL> presign(String operation, Collection<String> keyNames, int expirationMinutes) {
         TurboS3Config s3Config = getS3Config();
         if (s3Config == null) {
             log.warn("No S3 configuration found");
-            return null;
+            return Map.of();
         }
 
         S3Presigner presigner = getS3Presigner();
         if (presigner == null) {
             log.warn("Failed to create S3 presigner");
+            return Map.of();
+        }
+
+        String bucket = s3Config.getBucketName();
+        Duration lifetime = Duration.ofMinutes(expirationMinutes);
+        return presignedUrlCache.getAll(s3Config.getAwsAccessKeyId(), operation, bucket, keyNames, lifetime,
+                "PUT".equals(operation)
+                        ? key -> presignPut(presigner, bucket, key, lifetime)
+                        : key -> presignGet(presigner, bucket, key, lifetime));
+    }
+
+    /**
+     * Read when a presigned URL expires from its signature parameters. A URL reused from the
+     * presigned URL cache expires sooner than the lifetime it was asked for.
+     *
+     * @param url Pre-signed URL
+     * @return Expiry time, or null if the URL carries no SigV4 date and expiry
+     */
+    public static Instant presignedUrlExpiry(URL url) {
+        String query = url.getQuery();
+        if (query == null) {
             return null;
         }
+        String date = null;
+        String expires = null;
+        for (String parameter : query.split("&")) {
+            if (parameter.startsWith("X-Amz-Date=")) {
+                date = parameter.substring("X-Amz-Date=".length());
+            } else if (parameter.startsWith("X-Amz-Expires=")) {
+                expires = parameter.substring("X-Amz-Expires=".length());
+            }
+        }
+        if (date == null || expires == null) {
+            return null;
+        }
+        try {
+            return SIGV4_DATE.parse(date, Instant::from).plusSeconds(Long.parseLong(expires));
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
 
+    private static URL presignGet(S3Presigner presigner, String bucket, String keyName, Duration lifetime) {
         try {
             // Create GetObjectRequest
             GetObjectRequest getObjectRequest = GetObjectRequest.builder()
-                    .bucket(s3Config.getBucketName())
+                    .bucket(bucket)
                     .key(keyName)
                     .build();
 
             // Create GetObjectPresignRequest
             GetObjectPresignRequest presignRequest = GetObjectPresignRequest.builder()
-                    .signatureDuration(Duration.ofMinutes(expirationMinutes))
+                    .signatureDuration(lifetime)
                     .getObjectRequest(getObjectRequest)
                     .build();
 
@@ -255,46 +685,306 @@ public class S3Util {
         }
     }
 
+    private static URL presignPut(S3Presigner presigner, String bucket, String keyName, Duration lifetime) {
+        try {
+            // Create PutObjectRequest
+            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+                    .bucket(bucket)
+                    .key(keyName)
+                    .build();
+
+            // Create PutObjectPresignRequest
+            PutObjectPresignRequest presignRequest = PutObjectPresignRequest.builder()
+                    .signatureDuration(lifetime)
+                    .putObjectRequest(putObjectRequest)
+                    .build();
+
+            // Generate pre-signed URL
+            PresignedPutObjectRequest presignedRequest = presigner.presignPutObject(presignRequest);
+
+            return presignedRequest.url();
+        } catch (Exception e) {
+            log.error("Error generating pre-signed upload URL", e);
+            return null;
+        }
+    }
+
+    /**
+     * Start a multipart upload whose parts are sent by the client to presigned part URLs, so the
+     * data does not pass through this service
+     *
+     * @param keyName S3 object key
+     * @param contentType Content type of the object, may be null
+     * @return Upload ID
+     * @throws IOException If the upload cannot be started
+     */
+    public String createMultipartUpload(String keyName, String contentType) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+
+        S3Client s3Client = getS3Client();
+        if (s3Client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
+
+        try {
+            return s3Client.createMultipartUpload(CreateMultipartUploadRequest.builder()
+                    .bucket(s3Config.getBucketName())
+                    .key(keyName)
+                    .contentType(contentType)
+                    .build()).uploadId();
+        } catch (S3Exception e) {
+            log.error("Error starting multipart upload of {}", keyName, e);
+            throw new IOException("Error starting multipart upload: " + e.getMessage(), e);
+        }
+    }
+
     /**
-     * Generate a pre-signed URL for uploading an object to S3
+     * Generate pre-signed URLs for uploading parts of a multipart upload
      *
      * @param keyName S3 object key
+     * @param uploadId Upload ID
+     * @param partNumbers Part numbers, from 1 to 10000
      * @param expirationMinutes URL expiration time in minutes
-     * @return Pre-signed URL
+     * @return Pre-signed URL by part number
+     * @throws IOException If S3 is not configured or signing fails
      */
-    public URL generatePresignedUploadUrl(String keyName, int expirationMinutes) {
+    public Map<Integer, URL> generatePresignedPartUrls(String keyName, String uploadId, Collection<Integer> partNumbers,
+                                                       int expirationMinutes) throws IOException {
         TurboS3Config s3Config = getS3Config();
         if (s3Config == null) {
-            log.warn("No S3 configuration found");
-            return null;
+            throw new IOException("No S3 configuration found");
         }
 
         S3Presigner presigner = getS3Presigner();
         if (presigner == null) {
-            log.warn("Failed to create S3 presigner");
-            return null;
+            throw new IOException("Failed to create S3 presigner");
         }
 
+        // Part URLs are unique to the upload, so unlike object URLs they are not cached
+        Duration lifetime = Duration.ofMinutes(expirationMinutes);
+        Map<Integer, URL> urls = new LinkedHashMap<>();
         try {
-            // Create PutObjectRequest
-            PutObjectRequest putObjectRequest = PutObjectRequest.builder()
+            for (Integer partNumber : partNumbers) {
+                urls.put(partNumber, presigner.presignUploadPart(UploadPartPresignRequest.builder()
+                        .signatureDuration(lifetime)
+                        .uploadPartRequest(UploadPartRequest.builder()
+                                .bucket(s3Config.getBucketName())
+                                .key(keyName)
+                                .uploadId(uploadId)
+                                .partNumber(partNumber)
+                                .build())
+                        .build()).url());
+            }
+        } catch (Exception e) {
+            log.error("Error generating pre-signed part URLs for {}", keyName, e);
+            throw new IOException("Error generating pre-signed part URLs: " + e.getMessage(), e);
+        }
+        return urls;
+    }
+
+    /**
+     * Upload one part of a multipart upload from a stream of known length. Parts may be uploaded
+     * in any order and in parallel; uploading a part number again replaces that part.
+     *
+     * @param keyName S3 object key
+     * @param uploadId Upload ID
+     * @param partNumber Part number, from 1 to 10000
+     * @param inputStream Data of the part, not closed
+     * @param contentLength Number of bytes to read; all parts but the last need at least 5 MiB
+     * @return ETag of the part
+     * @throws IOException If reading or uploading the part fails
+     */
+    public String uploadPart(String keyName, String uploadId, int partNumber, InputStream inputStream,
+                             long contentLength) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+
+        S3Client s3Client = getS3Client();
+        if (s3Client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
+
+        try {
+            return s3Client.uploadPart(UploadPartRequest.builder()
+                            .bucket(s3Config.getBucketName())
+                            .key(keyName)
+                            .uploadId(uploadId)
+                            .partNumber(partNumber)
+                            .contentLength(contentLength)
+                            .build(),
+                    RequestBody.fromInputStream(inputStream, contentLength)).eTag();
+        } catch (SdkException e) {
+            // Also thrown when the stream ends early or fails
+            log.error("Error uploading part {} of {}", partNumber, keyName, e);
+            throw new IOException("Error uploading part " + partNumber + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Complete a multipart upload with every part S3 has received for it. The parts are listed
+     * from S3, so clients need not report part ETags.
+     *
+     * @param keyName S3 object key
+     * @param uploadId Upload ID
+     * @return The uploaded object; its SHA-256 is not known
+     * @throws IOException If no part was uploaded or completing fails
+     */
+    public S3UploadResult completeMultipartUpload(String keyName, String uploadId) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+
+        S3Client s3Client = getS3Client();
+        if (s3Client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
+
+        String bucket = s3Config.getBucketName();
+        try {
+            List<CompletedPart> completedParts = new ArrayList<>();
+            long size = 0;
+            for (Part part : s3Client.listPartsPaginator(ListPartsRequest.builder()
+                    .bucket(bucket)
+                    .key(keyName)
+                    .uploadId(uploadId)
+                    .build()).parts()) {
+                completedParts.add(CompletedPart.builder()
+                        .partNumber(part.partNumber())
+                        .eTag(part.eTag())
+                        .build());
+                size += part.size();
+            }
+            return completeMultipartUpload(s3Client, bucket, keyName, uploadId, completedParts, size);
+        } catch (S3Exception e) {
+            log.error("Error completing multipart upload of {}", keyName, e);
+            throw new IOException("Error completing multipart upload: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * List the parts S3 has received for a multipart upload
+     *
+     * @param keyName S3 object key
+     * @param uploadId Upload ID
+     * @return The parts in the order of their numbers
+     * @throws IOException If listing fails
+     */
+    public List<Part> listParts(String keyName, String uploadId) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+
+        S3Client s3Client = getS3Client();
+        if (s3Client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
+
+        try {
+            List<Part> parts = new ArrayList<>();
+            s3Client.listPartsPaginator(ListPartsRequest.builder()
                     .bucket(s3Config.getBucketName())
                     .key(keyName)
-                    .build();
+                    .uploadId(uploadId)
+                    .build()).parts().forEach(parts::add);
+            return parts;
+        } catch (S3Exception e) {
+            log.error("Error listing parts of multipart upload of {}", keyName, e);
+            throw new IOException("Error listing parts of multipart upload: " + e.getMessage(), e);
+        }
+    }
 
-            // Create PutObjectPresignRequest
-            PutObjectPresignRequest presignRequest = PutObjectPresignRequest.builder()
-                    .signatureDuration(Duration.ofMinutes(expirationMinutes))
-                    .putObjectRequest(putObjectRequest)
-                    .build();
+    /**
+     * Complete a multipart upload with parts whose ETags the caller kept track of, which saves
+     * listing the parts from S3
+     *
+     * @param keyName S3 object key
+     * @param uploadId Upload ID
+     * @param partETags ETag by part number; the parts are put together in the order of their numbers
+     * @param size Size of the object, as the parts add up to
+     * @return The uploaded object; its SHA-256 is not known
+     * @throws IOException If no part was uploaded or completing fails
+     */
+    public S3UploadResult completeMultipartUpload(String keyName, String uploadId, Map<Integer, String> partETags,
+                                                  long size) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
 
-            // Generate pre-signed URL
-            PresignedPutObjectRequest presignedRequest = presigner.presignPutObject(presignRequest);
+        S3Client s3Client = getS3Client();
+        if (s3Client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
 
-            return presignedRequest.url();
-        } catch (Exception e) {
-            log.error("Error generating pre-signed upload URL", e);
-            return null;
+        List<CompletedPart> completedParts = new TreeMap<>(partETags).entrySet().stream()
+                .map(part -> CompletedPart.builder()
+                        .partNumber(part.getKey())
+                        .eTag(part.getValue())
+                        .build())
+                .toList();
+        try {
+            return completeMultipartUpload(s3Client, s3Config.getBucketName(), keyName, uploadId, completedParts, size);
+        } catch (S3Exception e) {
+            log.error("Error completing multipart upload of {}", keyName, e);
+            throw new IOException("Error completing multipart upload: " + e.getMessage(), e);
+        }
+    }
+
+    private S3UploadResult completeMultipartUpload(S3Client s3Client, String bucket, String keyName, String uploadId,
+                                                   List<CompletedPart> completedParts, long size) throws IOException {
+        if (completedParts.isEmpty()) {
+            throw new IOException("No parts were uploaded for " + keyName);
+        }
+
+        CompleteMultipartUploadResponse response = s3Client.completeMultipartUpload(
+                CompleteMultipartUploadRequest.builder()
+                        .bucket(bucket)
+                        .key(keyName)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(completedParts).build())
+                        .build());
+        objectCache.invalidate(bucket, keyName);
+        log.info("Completed multipart upload of {} bytes in {} parts to key: {}", size, completedParts.size(), keyName);
+        return new S3UploadResult(bucket, keyName, response.eTag(), size, null, completedParts.size(), false);
+    }
+
+    /**
+     * Abort a multipart upload and discard the parts uploaded so far
+     *
+     * @param keyName S3 object key
+     * @param uploadId Upload ID
+     * @throws IOException If aborting fails
+     */
+    public void abortMultipartUpload(String keyName, String uploadId) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+
+        S3Client s3Client = getS3Client();
+        if (s3Client == null) {
+            throw new IOException("Failed to create S3 client");
+        }
+
+        try {
+            s3Client.abortMultipartUpload(AbortMultipartUploadRequest.builder()
+                    .bucket(s3Config.getBucketName())
+                    .key(keyName)
+                    .uploadId(uploadId)
+                    .build());
+            log.info("Aborted multipart upload of {}", keyName);
+        } catch (NoSuchUploadException e) {
+            log.debug("Multipart upload of {} was already finished", keyName);
+        } catch (S3Exception e) {
+            log.error("Error aborting multipart upload of {}", keyName, e);
+            throw new IOException("Error aborting multipart upload: " + e.getMessage(), e);
         }
     }
 
@@ -337,6 +1027,195 @@ public class S3Util {
         }
     }
 
+    /**
+     * Check which of many objects exist. Keys are sorted and, when enough of them are asked for,
+     * answered by listing their common prefix with ListObjectsV2, where one page covers 1000
+     * keys. The listing stops after {@code keys / s3.bulk.list-page-cost} pages; any keys it did
+     * not reach are checked with parallel HEAD requests.
+     *
+     * @param keyNames S3 object keys
+     * @return Whether each key exists
+     * @throws IOException If no S3 configuration exists or a request fails
+     */
+    public Map<String, Boolean> doObjectsExist(Collection<String> keyNames) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+        S3Client s3Client = getS3Client();
+        String bucket = s3Config.getBucketName();
+
+        Map<String, Boolean> exists = new LinkedHashMap<>();
+        keyNames.forEach(key -> exists.put(key, false));
+        TreeSet<String> keys = new TreeSet<>(exists.keySet());
+        if (keys.isEmpty()) {
+            return exists;
+        }
+
+        String lastListed = null;
+        boolean covered = false;
+        int pageBudget = keys.size() / Math.max(listPageCost, 1);
+        try {
+            if (pageBudget > 0) {
+                String first = keys.first();
+                ListObjectsV2Request.Builder request = ListObjectsV2Request.builder()
+                        .bucket(bucket)
+                        .prefix(commonPrefix(first, keys.last()))
+                        // Any proper prefix of the first key sorts before it
+                        .startAfter(first.isEmpty() ? null : first.substring(0, first.length() - 1));
+
+                String continuationToken = null;
+                for (int page = 0; page < pageBudget && !covered; page++) {
+                    ListObjectsV2Response response = s3Client.listObjectsV2(
+                            request.continuationToken(continuationToken).build());
+                    for (S3Object object : response.contents()) {
+                        if (keys.contains(object.key())) {
+                            exists.put(object.key(), true);
+                        }
+                        lastListed = object.key();
+                    }
+                    continuationToken = response.nextContinuationToken();
+                    covered = !Boolean.TRUE.equals(response.isTruncated())
+                            || (lastListed != null && lastListed.compareTo(keys.last()) >= 0);
+                }
+            }
+        } catch (S3Exception e) {
+            log.error("Error listing objects in S3", e);
+            throw new IOException("Error listing objects in S3: " + e.getMessage(), e);
+        }
+
+        if (!covered) {
+            SortedSet<String> remaining = lastListed == null ? keys : keys.tailSet(lastListed, false);
+            headObjects(bucket, remaining, exists);
+        }
+        return exists;
+    }
+
+    private void headObjects(String bucket, Collection<String> keys, Map<String, Boolean> exists) throws IOException {
+        S3AsyncClient client = s3ClientRegistry.getAsyncClient();
+        // Bounded like the parts of a transfer, so a large batch neither floods the connection pool nor memory
+        Semaphore inFlight = new Semaphore(maxInFlightHeads);
+        AtomicBoolean failed = new AtomicBoolean();
+        Map<String, CompletableFuture<Boolean>> heads = new LinkedHashMap<>();
+        for (String key : keys) {
+            try {
+                inFlight.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while checking if objects exist in S3");
+            }
+            if (failed.get()) {
+                // Stop sending once one check failed, its error is thrown below
+                inFlight.release();
+                break;
+            }
+            heads.put(key, client.headObject(HeadObjectRequest.builder()
+                            .bucket(bucket)
+                            .key(key)
+                            .build())
+                    .handle((response, error) -> {
+                        inFlight.release();
+                        if (error == null) {
+                            return true;
+                        }
+                        Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                        if (cause instanceof S3Exception s3Exception && s3Exception.statusCode() == 404) {
+                            return false;
+                        }
+                        failed.set(true);
+                        throw new CompletionException(cause);
+                    }));
+        }
+
+        for (Map.Entry<String, CompletableFuture<Boolean>> head : heads.entrySet()) {
+            try {
+                exists.put(head.getKey(), head.getValue().join());
+            } catch (CompletionException e) {
+                log.error("Error checking if object exists in S3: {}", head.getKey(), e.getCause());
+                throw new IOException("Error checking if object exists in S3: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+    }
+
+    private static String commonPrefix(String first, String last) {
+        int length = Math.min(first.length(), last.length());
+        int i = 0;
+        while (i < length && first.charAt(i) == last.charAt(i)) {
+            i++;
+        }
+        return first.substring(0, i);
+    }
+
+    /**
+     * List the objects under a prefix lazily. Pages are requested as the stream is consumed, so a
+     * large prefix is never held in memory as a whole. The stream does not depend on the
+     * caller's tenant context once it is created.
+     *
+     * @param prefix Key prefix, may be empty
+     * @return Stream of objects
+     * @throws IOException If no S3 configuration exists
+     */
+    public Stream<S3Object> listObjects(String prefix) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+
+        return getS3Client().listObjectsV2Paginator(ListObjectsV2Request.builder()
+                        .bucket(s3Config.getBucketName())
+                        .prefix(prefix)
+                        .build())
+                .contents()
+                .stream();
+    }
+
+    /**
+     * Delete many objects with DeleteObjects requests of up to 1000 keys, sent in parallel
+     *
+     * @param keyNames S3 object keys
+     * @return Number of deleted objects and the errors of the others
+     * @throws IOException If no S3 configuration exists
+     */
+    public S3DeleteResult deleteObjects(Collection<String> keyNames) throws IOException {
+        TurboS3Config s3Config = getS3Config();
+        if (s3Config == null) {
+            throw new IOException("No S3 configuration found");
+        }
+        S3AsyncClient client = s3ClientRegistry.getAsyncClient();
+        String bucket = s3Config.getBucketName();
+
+        List<String> keys = List.copyOf(new LinkedHashSet<>(keyNames));
+        List<List<String>> chunks = Lists.partition(keys, MAX_KEYS_PER_DELETE);
+        List<CompletableFuture<DeleteObjectsResponse>> requests = new ArrayList<>(chunks.size());
+        for (List<String> chunk : chunks) {
+            requests.add(client.deleteObjects(DeleteObjectsRequest.builder()
+                    .bucket(bucket)
+                    .delete(Delete.builder()
+                            // Only report failures
+                            .quiet(true)
+                            .objects(chunk.stream().map(key -> ObjectIdentifier.builder().key(key).build()).toList())
+                            .build())
+                    .build()));
+        }
+
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (int i = 0; i < chunks.size(); i++) {
+            try {
+                for (S3Error error : requests.get(i).join().errors()) {
+                    errors.put(error.key(), error.code() + ": " + error.message());
+                }
+            } catch (CompletionException e) {
+                log.error("Error deleting {} objects from S3", chunks.get(i).size(), e.getCause());
+                String message = e.getCause().getMessage();
+                chunks.get(i).forEach(key -> errors.put(key, message));
+            }
+        }
+
+        keys.stream().filter(key -> !errors.containsKey(key)).forEach(key -> objectCache.invalidate(bucket, key));
+        log.info("Deleted {} of {} objects from S3", keys.size() - errors.size(), keys.size());
+        return new S3DeleteResult(keys.size() - errors.size(), errors);
+    }
+
     /**
      * Delete an object from S3
      *
@@ -365,6 +1244,7 @@ public class S3Util {
 
             // Delete object
             s3Client.deleteObject(deleteObjectRequest);
+            objectCache.invalidate(s3Config.getBucketName(), keyName);
 
             return true;
         } catch (Exception e) {
@@ -372,28 +1252,4 @@ public class S3Util {
             return false;
         }
     }
-
-    /**
-     * Save an input stream to a file
-     *
-     * @param inputStream Input stream to save
-     * @param filePath Local file path to save the input stream
-     * @throws IOException If an I/O error occurs
-     */
-    private void saveFile(InputStream inputStream, String filePath) throws IOException {
-        File file = new File(filePath);
-
-        // Create parent directories if they don't exist
-        File parentDir = file.getParentFile();
-        if (parentDir != null && !parentDir.exists()) {
-            parentDir.mkdirs();
-        }
-
-        // Save the file
-        try (FileOutputStream outputStream = new FileOutputStream(file)) {
-            IOUtils.copy(inputStream, outputStream);
-        } finally {
-            inputStream.close();
-        }
-    }
 }
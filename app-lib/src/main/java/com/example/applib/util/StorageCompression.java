@@ -0,0 +1,84 @@
+package com.example.applib.util;
+
+import jakarta.annotation.PostConstruct;
+import java.util.List;
+import java.util.Locale;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decides which stored objects are compressed, by content type.
+ *
+ * <p>Off unless {@code storage.compression.enabled} is set. Text formats such as CSV, JSON and
+ * XML shrink several times, while most other formats are compressed already, so only the types in
+ * {@code storage.compression.content-types} are compressed; a type ending in {@code /*} matches
+ * the whole family. Objects are compressed while they stream to the store and flagged in their
+ * metadata, so objects stored before compression was enabled are still read as they are.
+ *
+ * <p>The codec defaults to gzip: presigned GET URLs hand the stored bytes to clients with their
+ * Content-Encoding, and every HTTP client decodes gzip, while zstd needs a recent one.
+ */
+@Slf4j
+@Component
+public class StorageCompression {
+
+    @Value("${storage.compression.enabled:false}")
+    private boolean enabled;
+
+    @Value("${storage.compression.codec:gzip}")
+    private String codecName;
+
+    @Value("${storage.compression.level:3}")
+    private int level;
+
+    @Value("${storage.compression.content-types:text/*,application/json,application/x-ndjson,application/xml,"
+            + "application/csv,application/javascript,application/yaml,application/sql,image/svg+xml}")
+    private List<String> contentTypes;
+
+    private CompressionCodec codec;
+
+    @PostConstruct
+    public void init() {
+        codec = CompressionCodec.forEncoding(codecName);
+        if (codec == null) {
+            throw new IllegalStateException("Unknown storage.compression.codec: " + codecName);
+        }
+        if (enabled) {
+            log.info("Compressing stored objects of types {} with {} level {}", contentTypes, codec.getEncoding(), level);
+        }
+    }
+
+    /**
+     * Get the codec to store an object of a content type with
+     *
+     * @param contentType Content type, may be null
+     * @return The codec, or null to store the object as it is
+     */
+    public CompressionCodec codecFor(String contentType) {
+        if (!enabled || contentType == null) {
+            return null;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        int semicolon = type.indexOf(';');
+        if (semicolon >= 0) {
+            type = type.substring(0, semicolon);
+        }
+        type = type.trim();
+
+        if (type.endsWith("+json") || type.endsWith("+xml")) {
+            return codec;
+        }
+        for (String candidate : contentTypes) {
+            String pattern = candidate.trim().toLowerCase(Locale.ROOT);
+            if (pattern.endsWith("/*") ? type.startsWith(pattern.substring(0, pattern.length() - 1)) : type.equals(pattern)) {
+                return codec;
+            }
+        }
+        return null;
+    }
+
+    public int getLevel() {
+        return level;
+    }
+}
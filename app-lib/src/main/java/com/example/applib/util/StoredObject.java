@@ -0,0 +1,145 @@
+package com.example.applib.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Instant;
+import lombok.Builder;
+import lombok.Getter;
+import org.reactivestreams.Publisher;
+
+/**
+ * An open object, or a byte range of it, ready to be written to a client. The body is either a
+ * stream from the object store, a publisher of its bytes for non-blocking writes, or a local
+ * file, which can be sent without copying it through the JVM.
+ */
+@Getter
+@Builder
+public class StoredObject implements Closeable {
+
+    private final String key;
+    private final String contentType;
+
+    /**
+     * Content coding the body is compressed with, see {@link CompressionCodec}, or null. Ranges
+     * do not apply to such objects, the body is always the whole stored object.
+     */
+    private final String contentEncoding;
+
+    /**
+     * Entity tag, quoted
+     */
+    private final String eTag;
+
+    private final Instant lastModified;
+
+    /**
+     * Size of the whole object
+     */
+    private final long totalLength;
+
+    /**
+     * First and last byte of the body within the object, inclusive
+     */
+    private final long first;
+    private final long last;
+
+    /**
+     * Whether the body is a range rather than the whole object
+     */
+    private final boolean partial;
+
+    /**
+     * Stream positioned at {@link #first}, or null when the body is a file
+     */
+    private final InputStream body;
+
+    /**
+     * Publisher of the body from {@link #first}, or null when the body is a stream or file.
+     * It must be subscribed to exactly once, also when the body is not needed, to release the
+     * connection it holds.
+     */
+    private final Publisher<ByteBuffer> publisher;
+
+    /**
+     * Local file holding the whole object, or null when the body is a stream
+     */
+    private final Path file;
+
+    /**
+     * Open a range of a local file holding a whole object
+     *
+     * @param key Object key
+     * @param file The file
+     * @param size Size of the object
+     * @param contentType Content type
+     * @param eTag Entity tag, quoted
+     * @param lastModified Last modification time
+     * @param range Requested range, or null for the whole object
+     * @param ifRange If-Range header value; when it does not match the whole object is returned
+     * @return The object
+     * @throws RangeNotSatisfiableException If the range lies outside the object
+     */
+    public static StoredObject ofFile(String key, Path file, long size, String contentType, String eTag,
+                                      Instant lastModified, ByteRange range, String ifRange)
+            throws RangeNotSatisfiableException {
+        if (range != null && !ByteRange.ifRangeMatches(ifRange, eTag, lastModified)) {
+            range = null;
+        }
+        if (range != null && !range.isSatisfiable(size)) {
+            throw new RangeNotSatisfiableException(key, range, size);
+        }
+
+        return StoredObject.builder()
+                .key(key)
+                .contentType(contentType)
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .totalLength(size)
+                .first(range != null ? range.getFirst(size) : 0)
+                .last(range != null ? range.getLast(size) : size - 1)
+                .partial(range != null)
+                .file(file)
+                .build();
+    }
+
+    /**
+     * Open a local file holding a whole object that is stored compressed
+     *
+     * @param key Object key
+     * @param file The file
+     * @param size Size of the stored object
+     * @param contentType Content type
+     * @param contentEncoding Content coding of the stored object
+     * @param eTag Entity tag, quoted
+     * @param lastModified Last modification time
+     * @return The object
+     */
+    public static StoredObject ofEncodedFile(String key, Path file, long size, String contentType,
+                                             String contentEncoding, String eTag, Instant lastModified) {
+        return StoredObject.builder()
+                .key(key)
+                .contentType(contentType)
+                .contentEncoding(contentEncoding)
+                .eTag(eTag)
+                .lastModified(lastModified)
+                .totalLength(size)
+                .first(0)
+                .last(size - 1)
+                .file(file)
+                .build();
+    }
+
+    public long getContentLength() {
+        return last - first + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (body != null) {
+            body.close();
+        }
+    }
+}
@@ -0,0 +1,254 @@
+package com.example.applib.web;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.List;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.MimeTypeUtils;
+import org.springframework.util.StreamUtils;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Writes a JDBC result set straight to the response as a JSON (or Smile/CBOR) array of objects.
+ *
+ * <p>Tokens are generated directly from the result set with type-specific fast paths, so rows are
+ * never collected into a {@code List<Map>}. The output has the same shape as
+ * {@code JdbcTemplate.queryForList} serialized by Jackson. The generator is flushed every
+ * {@code tabular.json.flush-rows} rows so the client starts receiving data immediately.
+ */
+@Component
+public class JsonResultSetWriter {
+
+    private static final List<MediaType> SUPPORTED_MEDIA_TYPES =
+            List.of(MediaType.APPLICATION_JSON, TabularMediaTypes.SMILE, TabularMediaTypes.CBOR);
+
+    private final ObjectMapper objectMapper;
+    private final ObjectMapper smileMapper;
+    private final ObjectMapper cborMapper;
+
+    @Value("${tabular.json.flush-rows:500}")
+    private int flushRows;
+
+    public JsonResultSetWriter(ObjectMapper objectMapper,
+                               MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter,
+                               MappingJackson2CborHttpMessageConverter cborHttpMessageConverter) {
+        this.objectMapper = objectMapper;
+        this.smileMapper = smileHttpMessageConverter.getObjectMapper();
+        this.cborMapper = cborHttpMessageConverter.getObjectMapper();
+    }
+
+    /**
+     * Pick the response format from an Accept header
+     *
+     * @param accept Accept header value, may be null
+     * @return JSON, Smile or CBOR; JSON when no Accept header is sent
+     * @throws ResponseStatusException 406 if the header accepts none of them, or cannot be parsed
+     */
+    public MediaType resolveMediaType(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE, "Invalid Accept header: " + accept);
+        }
+        MimeTypeUtils.sortBySpecificity(accepted);
+        for (MediaType mediaType : accepted) {
+            for (MediaType supported : SUPPORTED_MEDIA_TYPES) {
+                if (mediaType.includes(supported)) {
+                    return supported;
+                }
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.NOT_ACCEPTABLE,
+                "Acceptable representations: " + SUPPORTED_MEDIA_TYPES);
+    }
+
+    /**
+     * Create a response body that runs the query and streams its result set
+     *
+     * @param query Query to run once the response is being written
+     * @param mediaType JSON, Smile or CBOR
+     * @return Streaming response body
+     */
+    public StreamingResponseBody stream(ResultSetQuery query, MediaType mediaType) {
+        ObjectMapper mapper = getObjectMapper(mediaType);
+        return ResultSetStreams.stream(query, (rs, outputStream) -> write(rs, outputStream, mapper));
+    }
+
+    /**
+     * Create a streaming response for the query in the format requested by the Accept header
+     *
+     * @param query Query to run once the response is being written
+     * @param accept Accept header value, may be null
+     * @return Response with the negotiated content type
+     */
+    public ResponseEntity<StreamingResponseBody> toResponse(ResultSetQuery query, String accept) {
+        MediaType mediaType = resolveMediaType(accept);
+        return ResponseEntity.ok()
+                .contentType(mediaType)
+                .body(stream(query, mediaType));
+    }
+
+    /**
+     * Write the remaining rows of a result set as an array of objects
+     *
+     * @param rs Result set positioned before the first row
+     * @param outputStream Output stream, left open
+     * @param mediaType JSON, Smile or CBOR
+     * @return Number of rows written
+     * @throws SQLException If the result set cannot be read
+     * @throws IOException If an I/O error occurs
+     */
+    public long write(ResultSet rs, OutputStream outputStream, MediaType mediaType) throws SQLException, IOException {
+        return write(rs, outputStream, getObjectMapper(mediaType));
+    }
+
+    private long write(ResultSet rs, OutputStream outputStream, ObjectMapper mapper) throws SQLException, IOException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        int columnCount = metaData.getColumnCount();
+        SerializedString[] names = new SerializedString[columnCount];
+        int[] types = new int[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = new SerializedString(JdbcUtils.lookupColumnName(metaData, i + 1));
+            types[i] = metaData.getColumnType(i + 1);
+        }
+
+        long rows = 0;
+        try (JsonGenerator generator = mapper.createGenerator(StreamUtils.nonClosing(outputStream))) {
+            generator.writeStartArray();
+            while (rs.next()) {
+                generator.writeStartObject();
+                for (int i = 0; i < columnCount; i++) {
+                    generator.writeFieldName(names[i]);
+                    writeValue(generator, rs, i + 1, types[i]);
+                }
+                generator.writeEndObject();
+
+                if (++rows % flushRows == 0) {
+                    generator.flush();
+                }
+            }
+            generator.writeEndArray();
+        }
+
+        outputStream.flush();
+        return rows;
+    }
+
+    private void writeValue(JsonGenerator generator, ResultSet rs, int index, int sqlType)
+            throws SQLException, IOException {
+        switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> {
+                int value = rs.getInt(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.BIGINT -> {
+                long value = rs.getLong(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.REAL -> {
+                float value = rs.getFloat(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.FLOAT, Types.DOUBLE -> {
+                double value = rs.getDouble(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.NUMERIC, Types.DECIMAL -> {
+                BigDecimal value = rs.getBigDecimal(index);
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeNumber(value);
+                }
+            }
+            case Types.BOOLEAN -> {
+                boolean value = rs.getBoolean(index);
+                if (rs.wasNull()) {
+                    generator.writeNull();
+                } else {
+                    generator.writeBoolean(value);
+                }
+            }
+            case Types.CHAR, Types.VARCHAR, Types.LONGVARCHAR, Types.NCHAR, Types.NVARCHAR, Types.LONGNVARCHAR -> {
+                String value = rs.getString(index);
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeString(value);
+                }
+            }
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY -> {
+                byte[] value = rs.getBytes(index);
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeBinary(value);
+                }
+            }
+            default -> {
+                // Dates, timestamps, BIT, driver objects: defer to the mapper so formatting
+                // matches what the Map-based endpoints produced
+                Object value = JdbcUtils.getResultSetValue(rs, index);
+                if (value == null) {
+                    generator.writeNull();
+                } else {
+                    generator.writeObject(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the mapper used for a response format
+     *
+     * @param mediaType JSON, Smile or CBOR
+     * @return Object mapper, the JSON one for anything else
+     */
+    public ObjectMapper getObjectMapper(MediaType mediaType) {
+        if (TabularMediaTypes.SMILE.isCompatibleWith(mediaType)) {
+            return smileMapper;
+        }
+        if (TabularMediaTypes.CBOR.isCompatibleWith(mediaType)) {
+            return cborMapper;
+        }
+        return objectMapper;
+    }
+}
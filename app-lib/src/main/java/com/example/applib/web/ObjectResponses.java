@@ -0,0 +1,250 @@
+package com.example.applib.web;
+
+import com.example.applib.util.CompressionCodec;
+import com.example.applib.util.StoredObject;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.Locale;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+
+/**
+ * Writes stored objects to servlet responses with the headers needed for ranged and resumed
+ * downloads.
+ */
+@Slf4j
+public final class ObjectResponses {
+
+    // Tomcat's sendfile request attributes, honoured by the NIO connector
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private ObjectResponses() {
+    }
+
+    /**
+     * Write an object as a 200 or, for a range, a 206 response. A stream body is copied as it is
+     * read from the store; a file body is handed to the container's sendfile when available and
+     * otherwise transferred through a file channel.
+     *
+     * <p>A compressed object is sent as it is stored, with its Content-Encoding, when the client
+     * accepts that coding. Otherwise it is decompressed while it is written, without a length and
+     * with a weak ETag, as the bytes differ from the stored ones.
+     *
+     * @param object The object to write; the caller closes it
+     * @param request The current request
+     * @param response The response to write to
+     * @throws IOException If reading the object or writing the response fails
+     */
+    public static void write(StoredObject object, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        if (object.getContentEncoding() != null && !acceptsEncoding(object, request)) {
+            writeDecoded(object, response);
+            return;
+        }
+        writeHeaders(object, response);
+
+        if (object.getContentLength() == 0) {
+            return;
+        }
+        if (object.getFile() != null) {
+            writeFile(object.getFile(), object.getFirst(), object.getContentLength(), request, response);
+        } else {
+            try (InputStream body = object.getBody()) {
+                body.transferTo(response.getOutputStream());
+            }
+        }
+    }
+
+    /**
+     * Write an object whose body is a publisher without blocking. The body is written with a
+     * {@link jakarta.servlet.WriteListener}, requesting the next buffer from the publisher only
+     * once the previous one has been accepted by the connection, so neither side is buffered
+     * and no thread waits for a slow client. The async context is completed when done.
+     *
+     * <p>A compressed object is always sent as it is stored, so it may only be written here if
+     * {@link #acceptsEncoding} holds; otherwise use {@link #write}, which decompresses it.
+     *
+     * @param object The object to write, with a publisher body
+     * @param asyncContext Async context of the current request
+     */
+    public static void writeAsync(StoredObject object, AsyncContext asyncContext) {
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        PublisherResponseWriter writer;
+        try {
+            writeHeaders(object, response);
+            writer = new PublisherResponseWriter(asyncContext, response.getOutputStream(), object.getKey());
+        } catch (IOException | RuntimeException e) {
+            log.warn("Error writing {}: {}", object.getKey(), e.getMessage());
+            object.getPublisher().subscribe(PublisherResponseWriter.discarding());
+            asyncContext.complete();
+            return;
+        }
+
+        if (object.getContentLength() == 0) {
+            object.getPublisher().subscribe(PublisherResponseWriter.discarding());
+            asyncContext.complete();
+            return;
+        }
+        writer.start(object.getPublisher());
+    }
+
+    /**
+     * Release an object with a publisher body that is not going to be written
+     *
+     * @param object The object
+     */
+    public static void discard(StoredObject object) {
+        if (object.getPublisher() != null) {
+            object.getPublisher().subscribe(PublisherResponseWriter.discarding());
+        }
+    }
+
+    /**
+     * Check whether the client accepts the coding an object is stored with, so it can be sent as it is
+     *
+     * @param object The object
+     * @param request The current request
+     * @return Whether the object is stored uncompressed or the request's Accept-Encoding allows its coding
+     */
+    public static boolean acceptsEncoding(StoredObject object, HttpServletRequest request) {
+        String encoding = object.getContentEncoding();
+        if (encoding == null) {
+            return true;
+        }
+
+        boolean wildcard = false;
+        Enumeration<String> headers = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (headers != null && headers.hasMoreElements()) {
+            for (String token : headers.nextElement().split(",")) {
+                String[] parts = token.split(";");
+                String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+                boolean refused = false;
+                for (int i = 1; i < parts.length; i++) {
+                    String parameter = parts[i].trim();
+                    if (parameter.startsWith("q=")) {
+                        try {
+                            refused = Double.parseDouble(parameter.substring(2)) <= 0;
+                        } catch (NumberFormatException e) {
+                            refused = true;
+                        }
+                    }
+                }
+                if (coding.equals(encoding)) {
+                    return !refused;
+                }
+                if (coding.equals("*")) {
+                    wildcard = !refused;
+                }
+            }
+        }
+        return wildcard;
+    }
+
+    private static void writeDecoded(StoredObject object, HttpServletResponse response) throws IOException {
+        CompressionCodec codec = CompressionCodec.forEncoding(object.getContentEncoding());
+        if (codec == null) {
+            throw new IOException("Unknown encoding " + object.getContentEncoding() + " of " + object.getKey());
+        }
+
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        if (object.getETag() != null) {
+            response.setHeader(HttpHeaders.ETAG, object.getETag().startsWith("W/") ? object.getETag() : "W/" + object.getETag());
+        }
+        if (object.getLastModified() != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, object.getLastModified().toEpochMilli());
+        }
+        response.setContentType(object.getContentType() != null
+                ? object.getContentType()
+                : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setStatus(HttpStatus.OK.value());
+
+        try (InputStream stored = object.getFile() != null ? Files.newInputStream(object.getFile()) : object.getBody();
+             InputStream body = codec.decode(stored)) {
+            body.transferTo(response.getOutputStream());
+        }
+    }
+
+    private static void writeHeaders(StoredObject object, HttpServletResponse response) {
+        if (object.getContentEncoding() != null) {
+            // Ranges of the stored bytes would be of little use to clients, so they are not offered
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, object.getContentEncoding());
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "none");
+        } else {
+            response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        }
+        if (object.getETag() != null) {
+            response.setHeader(HttpHeaders.ETAG, object.getETag());
+        }
+        if (object.getLastModified() != null) {
+            response.setDateHeader(HttpHeaders.LAST_MODIFIED, object.getLastModified().toEpochMilli());
+        }
+        response.setContentType(object.getContentType() != null
+                ? object.getContentType()
+                : MediaType.APPLICATION_OCTET_STREAM_VALUE);
+
+        if (object.isPartial()) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE,
+                    "bytes " + object.getFirst() + "-" + object.getLast() + "/" + object.getTotalLength());
+        } else {
+            response.setStatus(HttpStatus.OK.value());
+        }
+        response.setContentLengthLong(object.getContentLength());
+    }
+
+    /**
+     * Write a 416 response for a range outside the object
+     *
+     * @param response The response to write to
+     * @param totalLength Size of the whole object
+     */
+    public static void writeRangeNotSatisfiable(HttpServletResponse response, long totalLength) {
+        response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + totalLength);
+        response.setContentLengthLong(0);
+    }
+
+    private static void writeFile(Path file, long position, long length,
+                                  HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            // The connector sends the file with sendfile(2) after the handler returns
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, position);
+            request.setAttribute(SENDFILE_END, position + length);
+            return;
+        }
+
+        OutputStream outputStream = response.getOutputStream();
+        WritableByteChannel target = Channels.newChannel(outputStream);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long remaining = length;
+            while (remaining > 0) {
+                long transferred = channel.transferTo(position, remaining, target);
+                if (transferred <= 0) {
+                    throw new IOException("Unexpected end of " + file + " at " + position);
+                }
+                position += transferred;
+                remaining -= transferred;
+            }
+        }
+        log.debug("Transferred {} bytes of {}", length, file);
+    }
+}
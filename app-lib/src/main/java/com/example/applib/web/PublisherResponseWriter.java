@@ -0,0 +1,225 @@
+package com.example.applib.web;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+/**
+ * Copies a publisher of buffers to a servlet response with non-blocking I/O.
+ *
+ * <p>One buffer is requested at a time, and the next one only after the connection took the
+ * previous one, so a slow client slows the publisher down instead of filling the heap. Writes
+ * happen on whichever thread delivers a buffer or signals that the connection is writable again.
+ */
+@Slf4j
+final class PublisherResponseWriter implements Subscriber<ByteBuffer> {
+
+    private static final int COPY_CHUNK_BYTES = 64 * 1024;
+
+    private final AsyncContext asyncContext;
+    private final ServletOutputStream outputStream;
+    private final String name;
+
+    // Guarded by this
+    private Subscription subscription;
+    private ByteBuffer pending;
+    private byte[] copyBuffer;
+    private boolean upstreamDone;
+    private boolean finished;
+
+    PublisherResponseWriter(AsyncContext asyncContext, ServletOutputStream outputStream, String name) {
+        this.asyncContext = asyncContext;
+        this.outputStream = outputStream;
+        this.name = name;
+    }
+
+    /**
+     * Get a subscriber that cancels right away, to release a body that is not written
+     *
+     * @return The subscriber
+     */
+    static Subscriber<ByteBuffer> discarding() {
+        return new Subscriber<>() {
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.cancel();
+            }
+
+            @Override
+            public void onNext(ByteBuffer buffer) {
+            }
+
+            @Override
+            public void onError(Throwable error) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        };
+    }
+
+    /**
+     * Start copying; the async context is completed once the publisher is done or either side failed
+     *
+     * @param publisher The body to write
+     */
+    void start(Publisher<ByteBuffer> publisher) {
+        asyncContext.addListener(new AsyncListener() {
+            @Override
+            public void onComplete(AsyncEvent event) {
+            }
+
+            @Override
+            public void onTimeout(AsyncEvent event) {
+                fail("timed out", null);
+            }
+
+            @Override
+            public void onError(AsyncEvent event) {
+                fail("failed", event.getThrowable());
+            }
+
+            @Override
+            public void onStartAsync(AsyncEvent event) {
+            }
+        });
+        outputStream.setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() {
+                drain();
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                // Usually the client went away mid-download
+                fail("was not written", error);
+            }
+        });
+        publisher.subscribe(this);
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        synchronized (this) {
+            if (finished) {
+                subscription.cancel();
+                return;
+            }
+            this.subscription = subscription;
+        }
+        subscription.request(1);
+    }
+
+    @Override
+    public void onNext(ByteBuffer buffer) {
+        synchronized (this) {
+            pending = buffer;
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        // The headers may already be out, so the client only sees a response shorter than announced
+        log.warn("Error reading {} from the store: {}", name, error.getMessage());
+        synchronized (this) {
+            subscription = null;
+        }
+        fail("was not read", null);
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    private void drain() {
+        Subscription toRequest = null;
+        Subscription toCancel = null;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            try {
+                while (pending != null && outputStream.isReady()) {
+                    write(pending);
+                    if (!pending.hasRemaining()) {
+                        pending = null;
+                        toRequest = upstreamDone ? null : subscription;
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Error writing {}: {}", name, e.getMessage());
+                toRequest = null;
+                toCancel = subscription;
+                finish();
+            }
+            if (!finished && pending == null && upstreamDone) {
+                finish();
+            }
+        }
+        // Outside the lock, the publisher may deliver the next buffer on this thread
+        if (toRequest != null) {
+            toRequest.request(1);
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        if (buffer.hasArray()) {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+            return;
+        }
+        if (copyBuffer == null) {
+            copyBuffer = new byte[COPY_CHUNK_BYTES];
+        }
+        int length = Math.min(buffer.remaining(), copyBuffer.length);
+        buffer.get(copyBuffer, 0, length);
+        outputStream.write(copyBuffer, 0, length);
+    }
+
+    private void fail(String what, Throwable error) {
+        Subscription toCancel;
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            toCancel = subscription;
+            finish();
+        }
+        if (error != null) {
+            log.warn("Response for {} {}: {}", name, what, error.getMessage());
+        } else {
+            log.warn("Response for {} {}", name, what);
+        }
+        if (toCancel != null) {
+            toCancel.cancel();
+        }
+    }
+
+    // Called with the lock held
+    private void finish() {
+        finished = true;
+        pending = null;
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // The container already completed the request, e.g. after a timeout
+        }
+    }
+}
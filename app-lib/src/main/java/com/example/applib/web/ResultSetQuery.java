@@ -0,0 +1,13 @@
+package com.example.applib.web;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+/**
+ * Runs a query and hands its result set to the given extractor, e.g.
+ * {@code extractor -> jdbcTemplate.query(sql, extractor)}.
+ */
+@FunctionalInterface
+public interface ResultSetQuery {
+
+    void execute(ResultSetExtractor<Void> extractor);
+}
@@ -0,0 +1,59 @@
+package com.example.applib.web;
+
+import com.example.applib.tenant.TenantContext;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Glue between a {@link ResultSetQuery} and a {@link StreamingResponseBody} shared by the
+ * result set writers.
+ */
+@Slf4j
+final class ResultSetStreams {
+
+    private ResultSetStreams() {
+    }
+
+    /**
+     * Create a response body that runs the query and writes its result set with the given writer.
+     * The body is written on an MVC async thread, so the caller's tenant is carried over explicitly.
+     */
+    static StreamingResponseBody stream(ResultSetQuery query, ResultSetBodyWriter writer) {
+        String tenantId = TenantContext.getTenantId();
+
+        return outputStream -> {
+            TenantContext.setTenantId(tenantId);
+            try {
+                query.execute(rs -> {
+                    try {
+                        long rows = writer.write(rs, outputStream);
+                        log.debug("Streamed {} rows for tenant: {}", rows, tenantId);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                });
+            } catch (UncheckedIOException e) {
+                // Usually the client went away mid-stream
+                log.warn("Error writing query result for tenant {}: {}", tenantId, e.getMessage());
+                throw e.getCause();
+            } catch (RuntimeException e) {
+                log.error("Error streaming query result for tenant: {}", tenantId, e);
+                throw e;
+            } finally {
+                TenantContext.clear();
+            }
+        };
+    }
+
+    @FunctionalInterface
+    interface ResultSetBodyWriter {
+
+        long write(ResultSet rs, OutputStream outputStream) throws SQLException, IOException;
+    }
+}
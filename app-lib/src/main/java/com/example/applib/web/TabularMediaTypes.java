@@ -0,0 +1,27 @@
+package com.example.applib.web;
+
+import org.springframework.http.MediaType;
+
+/**
+ * Media types supported by the tabular (query result) endpoints in addition to JSON.
+ */
+public final class TabularMediaTypes {
+
+    public static final String SMILE_VALUE = "application/x-jackson-smile";
+
+    public static final MediaType SMILE = MediaType.valueOf(SMILE_VALUE);
+
+    public static final String CBOR_VALUE = MediaType.APPLICATION_CBOR_VALUE;
+
+    public static final MediaType CBOR = MediaType.APPLICATION_CBOR;
+
+    /**
+     * Apache Arrow IPC streaming format.
+     */
+    public static final String ARROW_STREAM_VALUE = "application/vnd.apache.arrow.stream";
+
+    public static final MediaType ARROW_STREAM = MediaType.valueOf(ARROW_STREAM_VALUE);
+
+    private TabularMediaTypes() {
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.applib.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.redisson.api.RTopic;
+import org.redisson.api.RedissonClient;
+import org.redisson.api.listener.MessageListener;
+import org.springframework.beans.factory.ObjectProvider;
+
+class NearCacheRegistryTest {
+
+    private final NearCacheProperties properties = new NearCacheProperties();
+
+    @Test
+    void returnsSameCacheForName() {
+        NearCacheRegistry registry = registry(null);
+
+        assertSame(registry.getCache("users"), registry.getCache("users"));
+    }
+
+    @Test
+    void returnsNullForDisabledName() {
+        properties.getCaches().put("uncached", new NearCacheProperties.Spec(false, null, null));
+        NearCacheRegistry registry = registry(null);
+
+        assertNull(registry.getCache("uncached"));
+    }
+
+    @Test
+    void rejectsConflictingTtl() {
+        NearCacheRegistry registry = registry(null);
+        registry.getCache("sessions", 30);
+
+        assertThrows(IllegalStateException.class, () -> registry.getCache("sessions"));
+        assertThrows(IllegalStateException.class, () -> registry.getCache("sessions", 60));
+    }
+
+    @Test
+    void skipsValueReadBeforeInvalidation() {
+        NearCacheRegistry registry = registry(null);
+        NearCache<String, String> cache = registry.getCache("users");
+
+        long generation = cache.generation();
+        registry.invalidate("users", "a");
+        cache.putIfCurrent("a", "stale", generation);
+        assertNull(cache.getIfPresent("a"));
+
+        cache.putIfCurrent("a", "fresh", cache.generation());
+        assertEquals("fresh", cache.getIfPresent("a"));
+    }
+
+    @Test
+    void dropsCopiesOnInvalidationFromOtherPod() {
+        RTopic topic = mock(RTopic.class);
+        NearCacheRegistry registry = registry(topic);
+        NearCache<String, String> cache = registry.getCache("users");
+        cache.putIfCurrent("a", "value", cache.generation());
+
+        MessageListener<NearCacheInvalidation> listener = listener(topic);
+        listener.onMessage("near-cache:invalidate", new NearCacheInvalidation("other-pod", "users", List.of("a")));
+
+        assertNull(cache.getIfPresent("a"));
+    }
+
+    @Test
+    void ignoresOwnBroadcast() {
+        RTopic topic = mock(RTopic.class);
+        NearCacheRegistry registry = registry(topic);
+        NearCache<String, String> cache = registry.getCache("users");
+        registry.invalidate("users", "a");
+        ArgumentCaptor<NearCacheInvalidation> sent = ArgumentCaptor.forClass(NearCacheInvalidation.class);
+        verify(topic).publish(sent.capture());
+
+        cache.putIfCurrent("a", "value", cache.generation());
+        listener(topic).onMessage("near-cache:invalidate", sent.getValue());
+
+        assertEquals("value", cache.getIfPresent("a"));
+    }
+
+    @SuppressWarnings("unchecked")
+    private NearCacheRegistry registry(RTopic topic) {
+        ObjectProvider<RedissonClient> redissonClientProvider = mock(ObjectProvider.class);
+        if (topic != null) {
+            RedissonClient redissonClient = mock(RedissonClient.class);
+            when(redissonClient.getTopic(anyString())).thenReturn(topic);
+            when(redissonClientProvider.getIfAvailable()).thenReturn(redissonClient);
+        }
+        NearCacheRegistry registry = new NearCacheRegistry(properties, redissonClientProvider,
+                (ObjectProvider<MeterRegistry>) mock(ObjectProvider.class));
+        registry.init();
+        return registry;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static MessageListener<NearCacheInvalidation> listener(RTopic topic) {
+        ArgumentCaptor<MessageListener<NearCacheInvalidation>> listener =
+                ArgumentCaptor.forClass(MessageListener.class);
+        verify(topic).addListener(eq(NearCacheInvalidation.class), listener.capture());
+        return listener.getValue();
+    }
+}
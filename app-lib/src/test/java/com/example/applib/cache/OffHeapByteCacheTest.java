@@ -0,0 +1,197 @@
+package com.example.applib.cache;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class OffHeapByteCacheTest {
+
+    private static final long HOUR = 3_600_000L;
+
+    @Test
+    void returnsCopiesOfStoredValues() {
+        OffHeapByteCache cache = new OffHeapByteCache(1024, 1, 1024, HOUR);
+        byte[] value = value(100, 1);
+
+        assertTrue(cache.put("a", value));
+        byte[] read = cache.get("a");
+        assertArrayEquals(value, read);
+
+        read[0] = 42;
+        assertArrayEquals(value, cache.get("a"));
+        assertEquals(100, cache.getUsedBytes());
+        assertEquals(1, cache.getEntryCount());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    void replacesValueOfExistingKey() {
+        OffHeapByteCache cache = new OffHeapByteCache(1024, 1, 1024, HOUR);
+        cache.put("a", value(100, 1));
+        cache.put("a", value(50, 2));
+
+        assertArrayEquals(value(50, 2), cache.get("a"));
+        assertEquals(50, cache.getUsedBytes());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    void rejectsValuesOverMaxEntryBytesAndDropsOldValue() {
+        OffHeapByteCache cache = new OffHeapByteCache(1024, 1, 100, HOUR);
+        assertTrue(cache.put("a", value(100, 1)));
+
+        assertFalse(cache.put("a", value(101, 2)));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(1, cache.getRejectionCount());
+    }
+
+    @Test
+    void valueFillingWholeSegmentFits() {
+        OffHeapByteCache cache = new OffHeapByteCache(256, 1, 256, HOUR);
+
+        assertTrue(cache.put("a", value(256, 1)));
+        assertArrayEquals(value(256, 1), cache.get("a"));
+    }
+
+    @Test
+    void evictsOldestEntryWhenFull() {
+        OffHeapByteCache cache = new OffHeapByteCache(1000, 1, 1000, HOUR);
+        for (int i = 0; i < 10; i++) {
+            assertTrue(cache.put("k" + i, value(100, i)));
+        }
+        assertEquals(1000, cache.getUsedBytes());
+
+        assertTrue(cache.put("k10", value(100, 10)));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(10, cache.getEntryCount());
+        assertEquals(1000, cache.getUsedBytes());
+        assertNull(cache.get("k0"));
+        for (int i = 1; i <= 10; i++) {
+            assertArrayEquals(value(100, i), cache.get("k" + i));
+        }
+    }
+
+    @Test
+    void givesReadEntriesASecondChance() {
+        OffHeapByteCache cache = new OffHeapByteCache(1000, 1, 1000, HOUR);
+        for (int i = 0; i < 10; i++) {
+            cache.put("k" + i, value(100, i));
+        }
+        assertNotNull(cache.get("k0"));
+
+        assertTrue(cache.put("k10", value(100, 10)));
+        assertArrayEquals(value(100, 0), cache.get("k0"));
+        assertNull(cache.get("k1"));
+        assertArrayEquals(value(100, 10), cache.get("k10"));
+    }
+
+    @Test
+    void wrapsAroundToStartOfSegment() {
+        OffHeapByteCache cache = new OffHeapByteCache(250, 1, 250, HOUR);
+        cache.put("a", value(100, 1));
+        cache.put("b", value(100, 2));
+
+        // 50 bytes are left at the end, so c goes to the start once a is evicted
+        assertTrue(cache.put("c", value(100, 3)));
+        // and d goes between c and the end once b is evicted
+        assertTrue(cache.put("d", value(100, 4)));
+
+        assertEquals(2, cache.getEvictionCount());
+        assertNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertArrayEquals(value(100, 3), cache.get("c"));
+        assertArrayEquals(value(100, 4), cache.get("d"));
+    }
+
+    @Test
+    void rejectsNewEntryLessFrequentThanVictim() {
+        OffHeapByteCache cache = new OffHeapByteCache(300, 1, 300, HOUR);
+        cache.put("a", value(100, 1));
+        cache.put("b", value(100, 2));
+        cache.put("c", value(100, 3));
+        for (int i = 0; i < 3; i++) {
+            cache.get("a");
+        }
+
+        // a gets its second chance, then b and c make room for d and e
+        assertTrue(cache.put("d", value(100, 4)));
+        assertTrue(cache.put("e", value(100, 5)));
+
+        // a is now the oldest entry, unreferenced but read more often than f
+        assertFalse(cache.put("f", value(100, 6)));
+        assertEquals(1, cache.getRejectionCount());
+        assertArrayEquals(value(100, 1), cache.get("a"));
+        assertNull(cache.get("f"));
+    }
+
+    @Test
+    void expiredEntriesAreMisses() throws InterruptedException {
+        OffHeapByteCache cache = new OffHeapByteCache(1024, 1, 1024, 1);
+        cache.put("a", value(10, 1));
+        Thread.sleep(5);
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getUsedBytes());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void removedSpaceIsReusedOnceReachingTail() {
+        OffHeapByteCache cache = new OffHeapByteCache(200, 1, 200, HOUR);
+        cache.put("a", value(100, 1));
+        cache.put("b", value(100, 2));
+        cache.remove("a");
+        assertEquals(100, cache.getUsedBytes());
+
+        assertTrue(cache.put("c", value(100, 3)));
+        assertEquals(0, cache.getEvictionCount());
+        assertArrayEquals(value(100, 2), cache.get("b"));
+        assertArrayEquals(value(100, 3), cache.get("c"));
+    }
+
+    @Test
+    void removesKeysByPrefix() {
+        OffHeapByteCache cache = new OffHeapByteCache(4096, 4, 1024, HOUR);
+        for (int i = 0; i < 4; i++) {
+            cache.put("a:" + i, value(100, i));
+            cache.put("b:" + i, value(100, i));
+        }
+        cache.removeByPrefix("a:");
+
+        assertEquals(4, cache.getEntryCount());
+        assertEquals(400, cache.getUsedBytes());
+        for (int i = 0; i < 4; i++) {
+            assertNull(cache.get("a:" + i));
+            assertArrayEquals(value(100, i), cache.get("b:" + i));
+        }
+    }
+
+    @Test
+    void clearDropsEverything() {
+        OffHeapByteCache cache = new OffHeapByteCache(4096, 4, 1024, HOUR);
+        for (int i = 0; i < 8; i++) {
+            cache.put("k" + i, value(100, i));
+        }
+        cache.clear();
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getUsedBytes());
+        assertNull(cache.get("k0"));
+        assertTrue(cache.put("k0", value(100, 0)));
+    }
+
+    private static byte[] value(int length, int seed) {
+        byte[] value = new byte[length];
+        Arrays.fill(value, (byte) seed);
+        value[0] = (byte) length;
+        return value;
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.applib.cache;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.IOException;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.redisson.client.codec.StringCodec;
+
+class ThresholdLz4CodecTest {
+
+    private final ThresholdLz4Codec codec = new ThresholdLz4Codec(StringCodec.INSTANCE, 64);
+
+    @Test
+    void keepsValuesBelowThresholdRaw() throws IOException {
+        String value = "a".repeat(63);
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            assertEquals(0, encoded.getByte(0));
+            assertEquals(1 + 63, encoded.readableBytes());
+            assertEquals(value, codec.getValueDecoder().decode(encoded, null));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    void compressesValuesAtThreshold() throws IOException {
+        String value = "a".repeat(64);
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            assertEquals(1, encoded.getByte(0));
+            assertEquals(64, encoded.getInt(1));
+            assertTrue(encoded.readableBytes() < 64);
+            assertEquals(value, codec.getValueDecoder().decode(encoded, null));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    void roundTripsLargeCompressibleValue() throws IOException {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.append("{\"id\":").append(i).append(",\"name\":\"user").append(i).append("\"}");
+        }
+        String value = builder.toString();
+
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            assertEquals(1, encoded.getByte(0));
+            assertTrue(encoded.readableBytes() < value.length() / 2);
+            assertEquals(value, codec.getValueDecoder().decode(encoded, null));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    void storesIncompressibleValuesRaw() throws IOException {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 4096; i++) {
+            builder.append((char) ('!' + random.nextInt(94)));
+        }
+        String value = builder.toString();
+
+        ByteBuf encoded = codec.getValueEncoder().encode(value);
+        try {
+            assertEquals(0, encoded.getByte(0));
+            assertEquals(1 + value.length(), encoded.readableBytes());
+            assertEquals(value, codec.getValueDecoder().decode(encoded, null));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    void leavesMapKeysToInnerCodec() throws IOException {
+        String key = "k".repeat(200);
+        ByteBuf encoded = codec.getMapKeyEncoder().encode(key);
+        try {
+            assertEquals(200, encoded.readableBytes());
+            assertEquals(key, codec.getMapKeyDecoder().decode(encoded, null));
+        } finally {
+            encoded.release();
+        }
+    }
+
+    @Test
+    void rejectsUnknownFlag() {
+        ByteBuf encoded = Unpooled.wrappedBuffer(new byte[] {7, 'a'});
+        assertThrows(IOException.class, () -> codec.getValueDecoder().decode(encoded, null));
+    }
+}
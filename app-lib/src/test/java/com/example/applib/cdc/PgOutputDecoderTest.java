@@ -0,0 +1,162 @@
+package com.example.applib.cdc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class PgOutputDecoderTest {
+
+    private static final int RELATION_ID = 16384;
+
+    private final PgOutputDecoder decoder = new PgOutputDecoder("tenant1");
+    private final List<ChangeEvent> events = new ArrayList<>();
+
+    @Test
+    void decodesInsertWithTypedValuesAndKey() throws IOException {
+        assertFalse(decoder.decode(begin(0x16B3748L, 0, 42), events::add));
+        decoder.decode(relation(), events::add);
+        decoder.decode(insert("7", "first", "t"), events::add);
+
+        assertEquals(1, events.size());
+        ChangeEvent event = events.get(0);
+        assertEquals("tenant1", event.getTenantId());
+        assertEquals(ChangeEvent.Operation.INSERT, event.getOperation());
+        assertEquals("public", event.getSchema());
+        assertEquals("data", event.getTable());
+        assertEquals(42, event.getXid());
+        assertEquals("0/16B3748", event.getLsn());
+        // The PostgreSQL epoch is 2000-01-01
+        assertEquals(946_684_800_000L, event.getCommitTimestamp());
+        assertEquals(Map.of("id", 7L, "name", "first", "active", true), event.getAfter());
+        assertEquals(Map.of("id", 7L), event.getKey());
+        assertNull(event.getBefore());
+    }
+
+    @Test
+    void decodesUpdateWithOldRowAndCommit() throws IOException {
+        decoder.decode(begin(0x100L, 0, 43), events::add);
+        decoder.decode(relation(), events::add);
+        decoder.decode(update(new String[] {"7", "first", "t"}, new String[] {"7", "second", "f"}), events::add);
+        assertTrue(decoder.decode(commit(0x100L, 0x180L), events::add));
+
+        assertEquals(1, events.size());
+        ChangeEvent event = events.get(0);
+        assertEquals(ChangeEvent.Operation.UPDATE, event.getOperation());
+        assertEquals("first", event.getBefore().get("name"));
+        assertEquals("second", event.getAfter().get("name"));
+        assertEquals(false, event.getAfter().get("active"));
+        assertEquals(Map.of("id", 7L), event.getKey());
+        assertEquals(0x180L, decoder.getCommitEndLsn().asLong());
+    }
+
+    @Test
+    void numbersRowChangesWithinTransaction() throws IOException {
+        decoder.decode(begin(0x200L, 0, 44), events::add);
+        decoder.decode(relation(), events::add);
+        decoder.decode(insert("1", "a", "t"), events::add);
+        decoder.decode(insert("2", "b", "t"), events::add);
+
+        assertEquals(0, events.get(0).getSequence());
+        assertEquals(1, events.get(1).getSequence());
+    }
+
+    @Test
+    void rejectsRowChangeForUnknownRelation() throws IOException {
+        decoder.decode(begin(0x300L, 0, 45), events::add);
+
+        assertThrows(IllegalStateException.class, () -> decoder.decode(insert("1", "a", "t"), events::add));
+    }
+
+    private static ByteBuffer begin(long finalLsn, long commitMicros, int xid) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('B');
+        out.writeLong(finalLsn);
+        out.writeLong(commitMicros);
+        out.writeInt(xid);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static ByteBuffer commit(long commitLsn, long endLsn) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('C');
+        out.writeByte(0);
+        out.writeLong(commitLsn);
+        out.writeLong(endLsn);
+        out.writeLong(0);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    // public.data (id int8 key, name text, active bool)
+    private static ByteBuffer relation() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('R');
+        out.writeInt(RELATION_ID);
+        writeString(out, "public");
+        writeString(out, "data");
+        out.writeByte('d');
+        out.writeShort(3);
+        writeColumn(out, true, "id", 20);
+        writeColumn(out, false, "name", 25);
+        writeColumn(out, false, "active", 16);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static ByteBuffer insert(String... values) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('I');
+        out.writeInt(RELATION_ID);
+        out.writeByte('N');
+        writeTuple(out, values);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static ByteBuffer update(String[] oldValues, String[] newValues) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte('U');
+        out.writeInt(RELATION_ID);
+        out.writeByte('O');
+        writeTuple(out, oldValues);
+        out.writeByte('N');
+        writeTuple(out, newValues);
+        return ByteBuffer.wrap(bytes.toByteArray());
+    }
+
+    private static void writeColumn(DataOutputStream out, boolean key, String name, int typeOid) throws IOException {
+        out.writeByte(key ? 1 : 0);
+        writeString(out, name);
+        out.writeInt(typeOid);
+        out.writeInt(-1);
+    }
+
+    private static void writeTuple(DataOutputStream out, String[] values) throws IOException {
+        out.writeShort(values.length);
+        for (String value : values) {
+            byte[] text = value.getBytes(StandardCharsets.UTF_8);
+            out.writeByte('t');
+            out.writeInt(text.length);
+            out.write(text);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.write(value.getBytes(StandardCharsets.UTF_8));
+        out.writeByte(0);
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.applib.transfer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+class TransferEngineTest {
+
+    private static final long PART_SIZE = 4;
+
+    @TempDir
+    Path directory;
+
+    // Lenient like Spring Boot's mapper, which the engine gets injected
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    private final S3AsyncClient client = mock(S3AsyncClient.class);
+    private TransferEngine engine;
+    private Path source;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        engine = new TransferEngine(objectMapper, mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(engine, "partSize", PART_SIZE);
+        ReflectionTestUtils.setField(engine, "maxConcurrency", 2);
+        ReflectionTestUtils.setField(engine, "maxActiveTransfers", 1);
+        ReflectionTestUtils.setField(engine, "tenantBytesPerSecond", 0L);
+        ReflectionTestUtils.setField(engine, "tenantBytesPerSecondOverrides", Map.of());
+        ReflectionTestUtils.setField(engine, "stateDirectory", directory.resolve("state").toString());
+        engine.init();
+
+        source = Files.write(directory.resolve("source"), "0123456789".getBytes());
+        when(client.createMultipartUpload(any(CreateMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CreateMultipartUploadResponse.builder().uploadId("upload").build()));
+        when(client.uploadPart(any(UploadPartRequest.class), any(AsyncRequestBody.class))).thenAnswer(invocation -> {
+            UploadPartRequest request = invocation.getArgument(0);
+            return CompletableFuture.completedFuture(
+                    UploadPartResponse.builder().eTag("\"e" + request.partNumber() + "\"").build());
+        });
+        when(client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class))).thenReturn(
+                CompletableFuture.completedFuture(CompleteMultipartUploadResponse.builder().eTag("\"done\"").build()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        engine.destroy();
+    }
+
+    @Test
+    void plansPartsWithShorterLastPart() {
+        TransferState state = new TransferState();
+        state.setPartSize(PART_SIZE);
+        state.setTotalBytes(10);
+
+        assertEquals(3, state.getPartCount());
+        assertEquals(8, state.partOffset(3));
+        assertEquals(2, state.partLength(3));
+
+        state.setTotalBytes(0);
+        assertEquals(1, state.getPartCount());
+        assertEquals(0, state.partLength(1));
+    }
+
+    @Test
+    void uploadsEveryPartAndCompletes() throws Exception {
+        TransferState state = engine.upload(client, "bucket", "key", source).await();
+
+        assertEquals(TransferState.Status.COMPLETED, state.getStatus());
+        assertEquals("\"done\"", state.getETag());
+        assertEquals(10, state.getTransferredBytes());
+        assertFalse(Files.exists(directory.resolve("state").resolve(state.getId() + ".json")));
+
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(3)).uploadPart(parts.capture(), any(AsyncRequestBody.class));
+        assertEquals(List.of(4L, 4L, 2L), parts.getAllValues().stream()
+                .sorted(Comparator.comparing(UploadPartRequest::partNumber))
+                .map(UploadPartRequest::contentLength)
+                .toList());
+    }
+
+    @Test
+    void resumesWithoutRepeatingFinishedParts() throws Exception {
+        TransferState saved = new TransferState();
+        saved.setId("resumed");
+        saved.setDirection(TransferState.Direction.UPLOAD);
+        saved.setStatus(TransferState.Status.FAILED);
+        saved.setBucket("bucket");
+        saved.setKey("key");
+        saved.setPath(source.toString());
+        saved.setPartSize(PART_SIZE);
+        saved.setTotalBytes(10);
+        saved.setUploadId("upload");
+        saved.getCompletedParts().put(1, "\"e1\"");
+        objectMapper.writeValue(directory.resolve("state").resolve("resumed.json").toFile(), saved);
+
+        TransferState state = engine.resume(client, "resumed").await();
+
+        assertEquals(TransferState.Status.COMPLETED, state.getStatus());
+        verify(client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+        ArgumentCaptor<UploadPartRequest> parts = ArgumentCaptor.forClass(UploadPartRequest.class);
+        verify(client, times(2)).uploadPart(parts.capture(), any(AsyncRequestBody.class));
+        assertFalse(parts.getAllValues().stream().anyMatch(part -> part.partNumber() == 1));
+
+        ArgumentCaptor<CompleteMultipartUploadRequest> complete =
+                ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+        verify(client).completeMultipartUpload(complete.capture());
+        assertEquals(3, complete.getValue().multipartUpload().parts().size());
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.applib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class ByteRangeTest {
+
+    @Test
+    void parsesClosedRange() {
+        ByteRange range = ByteRange.parse("bytes=0-499");
+
+        assertTrue(range.isSatisfiable(1000));
+        assertEquals(0, range.getFirst(1000));
+        assertEquals(499, range.getLast(1000));
+        assertEquals("bytes=0-499", range.toHeaderValue());
+    }
+
+    @Test
+    void clampsLastToObjectSize() {
+        ByteRange range = ByteRange.parse("bytes=500-1999");
+
+        assertEquals(500, range.getFirst(1000));
+        assertEquals(999, range.getLast(1000));
+    }
+
+    @Test
+    void parsesOpenEndedRange() {
+        ByteRange range = ByteRange.parse("bytes=900-");
+
+        assertTrue(range.isSatisfiable(1000));
+        assertEquals(900, range.getFirst(1000));
+        assertEquals(999, range.getLast(1000));
+        assertEquals("bytes=900-", range.toHeaderValue());
+    }
+
+    @Test
+    void parsesSuffixRange() {
+        ByteRange range = ByteRange.parse("bytes=-100");
+
+        assertTrue(range.isSatisfiable(1000));
+        assertEquals(900, range.getFirst(1000));
+        assertEquals(999, range.getLast(1000));
+        assertEquals("bytes=-100", range.toHeaderValue());
+    }
+
+    @Test
+    void suffixLongerThanObjectCoversWholeObject() {
+        ByteRange range = ByteRange.parse("bytes=-5000");
+
+        assertEquals(0, range.getFirst(1000));
+        assertEquals(999, range.getLast(1000));
+    }
+
+    @Test
+    void singleByteRanges() {
+        assertEquals(0, ByteRange.parse("bytes=0-0").getLast(1000));
+        assertEquals(999, ByteRange.parse("bytes=999-").getFirst(1000));
+        assertEquals(999, ByteRange.parse("bytes=-1").getFirst(1000));
+    }
+
+    @Test
+    void rangeStartingAtOrAfterEndIsUnsatisfiable() {
+        assertFalse(ByteRange.parse("bytes=1000-").isSatisfiable(1000));
+        assertFalse(ByteRange.parse("bytes=1000-1999").isSatisfiable(1000));
+        assertTrue(ByteRange.parse("bytes=999-").isSatisfiable(1000));
+    }
+
+    @Test
+    void suffixOfEmptyObjectIsUnsatisfiable() {
+        assertFalse(ByteRange.parse("bytes=-100").isSatisfiable(0));
+        assertFalse(ByteRange.parse("bytes=0-").isSatisfiable(0));
+    }
+
+    @Test
+    void ignoresUnsupportedOrMalformedHeaders() {
+        assertNull(ByteRange.parse(null));
+        assertNull(ByteRange.parse("items=0-10"));
+        assertNull(ByteRange.parse("bytes=0-10,20-30"));
+        assertNull(ByteRange.parse("bytes=10"));
+        assertNull(ByteRange.parse("bytes=-"));
+        assertNull(ByteRange.parse("bytes=-0"));
+        assertNull(ByteRange.parse("bytes=20-10"));
+        assertNull(ByteRange.parse("bytes=a-b"));
+    }
+
+    @Test
+    void unitIsCaseInsensitiveAndSpacesAreIgnored() {
+        ByteRange range = ByteRange.parse("Bytes= 10 - 20 ");
+
+        assertEquals(10, range.getFirst(100));
+        assertEquals(20, range.getLast(100));
+    }
+
+    @Test
+    void ifRangeMatchesStrongEntityTagOnly() {
+        Instant modified = Instant.parse("2024-05-01T10:15:30Z");
+
+        assertTrue(ByteRange.ifRangeMatches(null, "\"abc\"", modified));
+        assertTrue(ByteRange.ifRangeMatches("\"abc\"", "\"abc\"", modified));
+        assertFalse(ByteRange.ifRangeMatches("\"def\"", "\"abc\"", modified));
+        assertFalse(ByteRange.ifRangeMatches("W/\"abc\"", "W/\"abc\"", modified));
+    }
+
+    @Test
+    void ifRangeMatchesDateToTheSecond() {
+        Instant modified = Instant.parse("2024-05-01T10:15:30.250Z");
+
+        assertTrue(ByteRange.ifRangeMatches("Wed, 01 May 2024 10:15:30 GMT", "\"abc\"", modified));
+        assertFalse(ByteRange.ifRangeMatches("Wed, 01 May 2024 10:15:29 GMT", "\"abc\"", modified));
+        assertFalse(ByteRange.ifRangeMatches("not a date", "\"abc\"", modified));
+    }
+}
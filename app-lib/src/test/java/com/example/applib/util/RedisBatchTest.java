@@ -0,0 +1,89 @@
+package com.example.applib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+import com.example.applib.cache.NearCacheRegistry;
+import com.example.applib.cache.RedisCodecRegistry;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.redisson.api.RBatch;
+import org.redisson.api.RBucketAsync;
+import org.redisson.api.RKeysAsync;
+import org.redisson.api.RMapAsync;
+import org.redisson.client.codec.Codec;
+
+class RedisBatchTest {
+
+    private final RBatch rBatch = mock(RBatch.class);
+    private final NearCacheRegistry nearCacheRegistry = mock(NearCacheRegistry.class);
+    private final RedisBatch batch = new RedisBatch(rBatch, mock(RedisCodecRegistry.class), nearCacheRegistry);
+
+    @BeforeEach
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    void setUp() {
+        RMapAsync map = mock(RMapAsync.class);
+        // The mocked codec registry has no codecs
+        when(rBatch.getMap(anyString(), ArgumentMatchers.<Codec>isNull())).thenReturn(map);
+        when(rBatch.getBucket(anyString())).thenReturn(mock(RBucketAsync.class));
+        when(rBatch.getKeys()).thenReturn(mock(RKeysAsync.class));
+    }
+
+    @Test
+    void invalidatesEachWrittenMapOnce() {
+        batch.mapPut("users", "a", 1);
+        batch.mapPut("users", "b", 2);
+        batch.mapRemove("users", "c");
+        batch.mapPutAll("orders", Map.of("x", 1));
+        batch.mapGet("products", "p");
+
+        batch.execute();
+
+        assertEquals(5, batch.size());
+        verify(nearCacheRegistry).invalidateAll("users", Set.of("a", "b", "c"));
+        verify(nearCacheRegistry).invalidateAll("orders", Set.of("x"));
+        verifyNoMoreInteractions(nearCacheRegistry);
+    }
+
+    @Test
+    void invalidatesWholeMapWhenDeleted() {
+        batch.mapPut("users", "a", 1);
+        batch.delete("users");
+
+        batch.execute();
+
+        verify(nearCacheRegistry).invalidateAll(eq("users"), isNull());
+        verifyNoMoreInteractions(nearCacheRegistry);
+    }
+
+    @Test
+    void invalidatesWhenExecutionFails() {
+        when(rBatch.execute()).thenThrow(new IllegalStateException("connection lost"));
+        batch.mapPut("users", "a", 1);
+
+        assertThrows(RuntimeException.class, batch::execute);
+        verify(nearCacheRegistry).invalidateAll("users", Set.of("a"));
+    }
+
+    @Test
+    void invalidatesNothingForReads() {
+        batch.mapGet("users", "a");
+        batch.get("value");
+
+        batch.execute();
+
+        verify(nearCacheRegistry, never()).invalidateAll(anyString(), any());
+    }
+}
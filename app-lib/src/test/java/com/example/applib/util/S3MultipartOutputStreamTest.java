@@ -0,0 +1,123 @@
+package com.example.applib.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectResponse;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+class S3MultipartOutputStreamTest {
+
+    private final S3Client s3Client = mock(S3Client.class);
+
+    @Test
+    void storesSmallDataWithSinglePut() throws Exception {
+        when(s3Client.putObject(any(PutObjectRequest.class), any(RequestBody.class)))
+                .thenReturn(PutObjectResponse.builder().eTag("\"single\"").build());
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+
+        S3UploadResult result;
+        try (S3MultipartOutputStream out = newStream()) {
+            out.write(data);
+            result = out.complete();
+        }
+
+        assertEquals("key", result.getKey());
+        assertEquals("\"single\"", result.getETag());
+        assertEquals(5, result.getSize());
+        assertEquals(1, result.getPartCount());
+        assertEquals(sha256(data), result.getSha256());
+        assertFalse(result.isDeduplicated());
+        verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+    }
+
+    @Test
+    void splitsLargeDataIntoParts() throws Exception {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("\"part\"").build());
+        when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+                .thenReturn(CompleteMultipartUploadResponse.builder().eTag("\"multi\"").build());
+
+        S3UploadResult result;
+        try (S3MultipartOutputStream out = newStream()) {
+            out.write(new byte[S3MultipartOutputStream.MIN_PART_SIZE * 2 + 1]);
+            result = out.complete();
+        }
+
+        assertEquals(3, result.getPartCount());
+        assertEquals(S3MultipartOutputStream.MIN_PART_SIZE * 2L + 1, result.getSize());
+        assertEquals("\"multi\"", result.getETag());
+        verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+        verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    }
+
+    @Test
+    void skipsStoringDataThatExistsAlready() throws Exception {
+        byte[] data = "hello".getBytes(StandardCharsets.UTF_8);
+
+        S3UploadResult result;
+        try (S3MultipartOutputStream out = newStream()) {
+            out.write(data);
+            result = out.complete(checksum -> checksum.equals(sha256(data)) ? "existing" : null);
+        }
+
+        assertTrue(result.isDeduplicated());
+        assertEquals("existing", result.getKey());
+        assertEquals(0, result.getPartCount());
+        verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    }
+
+    @Test
+    void abortsUnfinishedUploadOnClose() throws Exception {
+        when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+                .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+        when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+                .thenReturn(UploadPartResponse.builder().eTag("\"part\"").build());
+
+        S3MultipartOutputStream out = newStream();
+        out.write(new byte[S3MultipartOutputStream.MIN_PART_SIZE]);
+        out.close();
+
+        verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+        verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+        assertThrows(IOException.class, () -> out.write(1));
+    }
+
+    private S3MultipartOutputStream newStream() {
+        return new S3MultipartOutputStream(s3Client, "bucket", "key", "text/plain",
+                S3MultipartOutputStream.MIN_PART_SIZE, 1, Runnable::run);
+    }
+
+    private static String sha256(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
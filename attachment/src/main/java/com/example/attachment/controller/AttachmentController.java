@@ -1,18 +1,51 @@
 package com.example.attachment.controller;
 
-import com.example.applib.service.S3Service;
+import com.example.applib.cache.RowCache;
+import com.example.applib.cache.VersionedRowService;
+import com.example.applib.search.SearchIndexService;
+import com.example.applib.search.SearchResult;
+import com.example.applib.storage.ObjectInfo;
 import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.CursorQueryCallback;
+import com.example.applib.util.S3Util;
+import com.example.applib.util.StoredObject;
+import com.example.applib.web.ArrowResultSetWriter;
+import com.example.applib.web.ObjectResponses;
+import com.example.applib.web.TabularMediaTypes;
+import com.example.attachment.model.DirectUploadRequest;
+import com.example.attachment.service.AttachmentArchiveService;
+import com.example.attachment.service.BlobStoreService;
+import com.example.attachment.service.DerivativeService;
+import com.example.attachment.service.DirectUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/attachments")
@@ -21,21 +54,78 @@ import org.springframework.web.multipart.MultipartFile;
 public class AttachmentController {
 
     private final JdbcTemplate tacJdbcTemplate;
-    private final S3Service s3Service;
+    private final ArrowResultSetWriter arrowResultSetWriter;
+    private final VersionedRowService versionedRowService;
+    private final RowCache rowCache;
+    private final SearchIndexService searchIndexService;
+    private final BlobStoreService blobStoreService;
+    private final DirectUploadService directUploadService;
+    private final AttachmentArchiveService attachmentArchiveService;
+    private final DerivativeService derivativeService;
+    private final S3Util s3Util;
 
-    @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getAttachmentById(@PathVariable String id) {
-        log.info("Getting attachment with ID: {} for tenant: {}", id, TenantContext.getTenantId());
+    @Value("${jdbc.stream-fetch-size:1000}")
+    private int streamFetchSize;
+
+    @Value("${attachments.archive.max-entries:1000}")
+    private int maxArchiveEntries;
+
+    @Value("${attachments.derivatives.cache-max-age-seconds:86400}")
+    private long derivativeCacheMaxAgeSeconds;
+
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchAttachments(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit) {
+        log.info("Searching attachments for tenant: {}", TenantContext.getTenantId());
+
+        if (offset < 0 || limit < 1 || limit > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
 
         try {
-            String sql = "SELECT * FROM attachments WHERE id = ?";
-            List<Map<String, Object>> results = tacJdbcTemplate.queryForList(sql, id);
+            SearchResult result = searchIndexService.search("attachments", query, offset, limit);
+            List<Map<String, Object>> hits = searchIndexService.loadHits(tacJdbcTemplate, "attachments", result);
 
-            if (results.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("query", query);
+            response.put("offset", offset);
+            response.put("totalHits", result.getTotalHits());
+            response.put("totalHitsExact", result.isTotalHitsExact());
+            response.put("hits", hits);
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error searching attachments", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        log.info("Rebuilding attachment search index for tenant: {}", TenantContext.getTenantId());
+
+        try {
+            long rows = searchIndexService.rebuild("attachments", extractor -> tacJdbcTemplate.execute(
+                    new CursorQueryCallback<>("SELECT * FROM attachments", streamFetchSize, null, extractor)));
+            return ResponseEntity.ok(Map.of("table", "attachments", "indexedRows", rows));
+        } catch (Exception e) {
+            log.error("Error rebuilding attachment search index", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 
-            return ResponseEntity.ok(results.get(0));
+    @GetMapping("/{id}")
+    public ResponseEntity<byte[]> getAttachmentById(@PathVariable String id, WebRequest request) {
+        log.info("Getting attachment with ID: {} for tenant: {}", id, TenantContext.getTenantId());
+
+        try {
+            // Answers If-None-Match from the row version and serves hot rows from the row cache
+            return versionedRowService.getRow(tacJdbcTemplate, "attachments", id, request);
+        } catch (ResponseStatusException e) {
+            // 406 for an Accept header without a supported format
+            throw e;
         } catch (Exception e) {
             log.error("Error getting attachment with ID: {}", id, e);
             return ResponseEntity.internalServerError().build();
@@ -57,6 +147,46 @@ public class AttachmentController {
         }
     }
 
+    @GetMapping(produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllAttachmentsAsArrow() {
+        log.info("Streaming all attachments as Arrow for tenant: {}", TenantContext.getTenantId());
+
+        StreamingResponseBody body = arrowResultSetWriter.stream(
+                extractor -> tacJdbcTemplate.query("SELECT * FROM attachments", extractor));
+        return ResponseEntity.ok()
+                .contentType(TabularMediaTypes.ARROW_STREAM)
+                .body(body);
+    }
+
+    /**
+     * Download the files of many attachments as one ZIP archive, built while it is sent.
+     * Files that cannot be found are listed in an {@code errors.txt} entry at the end.
+     */
+    @GetMapping("/archive")
+    public ResponseEntity<StreamingResponseBody> getArchive(@RequestParam List<String> ids) {
+        log.info("Archiving {} attachments for tenant: {}", ids.size(), TenantContext.getTenantId());
+
+        if (ids.isEmpty() || ids.size() > maxArchiveEntries) {
+            return ResponseEntity.badRequest().build();
+        }
+
+        try {
+            List<AttachmentArchiveService.ArchiveEntry> entries = attachmentArchiveService.findEntries(ids);
+            if (entries.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+
+            return ResponseEntity.ok()
+                    .contentType(MediaType.parseMediaType("application/zip"))
+                    .header(HttpHeaders.CONTENT_DISPOSITION,
+                            ContentDisposition.attachment().filename("attachments.zip").build().toString())
+                    .body(attachmentArchiveService.stream(entries));
+        } catch (Exception e) {
+            log.error("Error archiving attachments", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Map<String, Object>> uploadAttachment(
             @RequestPart("file") MultipartFile file,
@@ -70,13 +200,23 @@ public class AttachmentController {
             String contentType = file.getContentType();
             long size = file.getSize();
 
-            // Here you would upload the file to S3 or MinIO
-            // For demonstration purposes, we'll just log the file details
             log.info("File details: name={}, contentType={}, size={}", fileName, contentType, size);
 
+            // The same content uploaded before is referenced instead of stored again
+            ObjectInfo blob;
+            try (InputStream inputStream = file.getInputStream()) {
+                blob = blobStoreService.store(id, inputStream, contentType);
+            }
+
             // Insert attachment metadata into database
-            String sql = "INSERT INTO attachments (id, file_name, content_type, size, metadata) VALUES (?, ?, ?, ?, ?)";
-            tacJdbcTemplate.update(sql, id, fileName, contentType, size, metadata);
+            String sql = "INSERT INTO attachments (id, file_name, content_type, size, metadata, blob_sha256) "
+                    + "VALUES (?, ?, ?, ?, ?, ?)";
+            try {
+                tacJdbcTemplate.update(sql, id, fileName, contentType, size, metadata, blob.getSha256());
+            } catch (Exception e) {
+                blobStoreService.release(id);
+                throw e;
+            }
 
             Map<String, Object> response = new HashMap<>();
             response.put("id", id);
@@ -84,6 +224,10 @@ public class AttachmentController {
             response.put("contentType", contentType);
             response.put("size", size);
             response.put("metadata", metadata);
+            searchIndexService.index("attachments", id, response);
+            derivativeService.requestDerivatives(id, contentType);
+            response.put("sha256", blob.getSha256());
+            response.put("deduplicated", blob.isDeduplicated());
 
             return ResponseEntity.ok(response);
         } catch (Exception e) {
@@ -92,6 +236,181 @@ public class AttachmentController {
         }
     }
 
+    /**
+     * Start an upload that the client sends straight to S3 in parts. The response carries the
+     * upload ID, which becomes the attachment ID, and the part size to split the file by.
+     */
+    @PostMapping("/uploads")
+    public ResponseEntity<Map<String, Object>> startDirectUpload(@RequestBody DirectUploadRequest uploadRequest) {
+        log.info("Starting direct upload for tenant: {}", TenantContext.getTenantId());
+
+        try {
+            return ResponseEntity.ok(directUploadService.start(uploadRequest));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error starting direct upload", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Presign the URLs of a batch of parts; each part is uploaded with a PUT to its URL
+     */
+    @GetMapping("/uploads/{id}/parts")
+    public ResponseEntity<Map<String, Object>> presignUploadParts(
+            @PathVariable String id,
+            @RequestParam(defaultValue = "1") int from,
+            @RequestParam(defaultValue = "100") int count) {
+
+        try {
+            Map<Integer, URL> urls = directUploadService.presignParts(id, from, count);
+            if (urls == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            Map<String, String> urlsByPart = new LinkedHashMap<>();
+            urls.forEach((partNumber, url) -> urlsByPart.put(String.valueOf(partNumber), url.toString()));
+            return ResponseEntity.ok(Map.of("id", id, "urls", urlsByPart));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error presigning parts of upload: {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Complete a direct upload once all parts are uploaded and record the attachment
+     */
+    @PostMapping("/uploads/{id}/complete")
+    public ResponseEntity<Map<String, Object>> completeDirectUpload(@PathVariable String id) {
+        log.info("Completing direct upload {} for tenant: {}", id, TenantContext.getTenantId());
+
+        try {
+            Map<String, Object> attachment = directUploadService.complete(id);
+            if (attachment == null) {
+                return ResponseEntity.notFound().build();
+            }
+            searchIndexService.index("attachments", id, attachment);
+            derivativeService.requestDerivatives(id, (String) attachment.get("contentType"));
+
+            return ResponseEntity.ok(attachment);
+        } catch (IllegalStateException e) {
+            // Parts are missing or do not add up; the client can upload them and complete again
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error completing direct upload: {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/uploads/{id}")
+    public ResponseEntity<Void> abortDirectUpload(@PathVariable String id) {
+        log.info("Aborting direct upload {} for tenant: {}", id, TenantContext.getTenantId());
+
+        try {
+            return directUploadService.abort(id)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        } catch (Exception e) {
+            log.error("Error aborting direct upload: {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * List the generated derivatives of an image attachment; empty while they are generated
+     */
+    @GetMapping("/{id}/derivatives")
+    public ResponseEntity<List<Map<String, Object>>> getDerivatives(@PathVariable String id) {
+        try {
+            List<Map<String, Object>> derivatives = new ArrayList<>();
+            for (DerivativeService.Derivative derivative : derivativeService.list(id)) {
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("kind", derivative.getKind());
+                entry.put("contentType", derivative.getContentType());
+                entry.put("width", derivative.getWidth());
+                entry.put("height", derivative.getHeight());
+                entry.put("size", derivative.getSize());
+                derivatives.add(entry);
+            }
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noCache())
+                    .body(derivatives);
+        } catch (Exception e) {
+            log.error("Error getting derivatives of attachment: {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Get the thumbnail or preview of an image attachment. Clients may cache it and revalidate it
+     * with its ETag, which is answered from the database without reading the object store.
+     */
+    @GetMapping("/{id}/derivatives/{kind}")
+    public void getDerivative(
+            @PathVariable String id,
+            @PathVariable String kind,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
+
+        DerivativeService.Derivative derivative;
+        try {
+            derivative = derivativeService.find(id, kind);
+        } catch (Exception e) {
+            log.error("Error looking up {} of attachment: {}", kind, id, e);
+            response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            return;
+        }
+        if (derivative == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), "No " + kind + " of attachment " + id);
+            return;
+        }
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                CacheControl.maxAge(derivativeCacheMaxAgeSeconds, TimeUnit.SECONDS).cachePrivate().getHeaderValue());
+        if (derivative.getETag() != null
+                && new ServletWebRequest(request, response).checkNotModified(derivative.getETag())) {
+            return;
+        }
+
+        try (StoredObject object = derivativeService.open(derivative)) {
+            ObjectResponses.write(object, request, response);
+        } catch (FileNotFoundException e) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), e.getMessage());
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                log.warn("Error streaming {} of attachment {}: {}", kind, id, e.getMessage());
+                return;
+            }
+            log.error("Error downloading {} of attachment: {}", kind, id, e);
+            response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+    }
+
+    /**
+     * Generate the derivatives of an image attachment again, for example after the sizes changed
+     */
+    @PostMapping("/{id}/derivatives")
+    public ResponseEntity<Void> regenerateDerivatives(@PathVariable String id) {
+        log.info("Regenerating derivatives of attachment {} for tenant: {}", id, TenantContext.getTenantId());
+
+        try {
+            List<String> contentTypes = tacJdbcTemplate.queryForList(
+                    "SELECT content_type FROM attachments WHERE id = ?", String.class, id);
+            if (contentTypes.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            return derivativeService.requestDerivatives(id, contentTypes.get(0))
+                    ? ResponseEntity.accepted().build()
+                    : ResponseEntity.unprocessableEntity().build();
+        } catch (Exception e) {
+            log.error("Error regenerating derivatives of attachment: {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deleteAttachment(@PathVariable String id) {
         log.info("Deleting attachment with ID: {} for tenant: {}", id, TenantContext.getTenantId());
@@ -105,13 +424,24 @@ public class AttachmentController {
                 return ResponseEntity.notFound().build();
             }
 
-            // Here you would delete the file from S3 or MinIO
-            // For demonstration purposes, we'll just log the deletion
             log.info("Deleting file with ID: {}", id);
 
             // Delete attachment metadata from database
             String deleteSql = "DELETE FROM attachments WHERE id = ?";
             tacJdbcTemplate.update(deleteSql, id);
+            rowCache.invalidate("attachments", id);
+            searchIndexService.delete("attachments", id);
+            derivativeService.delete(id);
+
+            // The file itself is deleted once no other attachment refers to its content
+            String sha256 = (String) results.get(0).get("blob_sha256");
+            String s3Key = (String) results.get(0).get("s3_key");
+            if (sha256 != null) {
+                blobStoreService.release(id);
+            } else if (s3Key != null) {
+                // Uploaded directly by the client, so not shared
+                s3Util.deleteObject(s3Key);
+            }
 
             return ResponseEntity.noContent().build();
         } catch (Exception e) {
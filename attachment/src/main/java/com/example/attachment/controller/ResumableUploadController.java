@@ -0,0 +1,150 @@
+package com.example.attachment.controller;
+
+import com.example.applib.search.SearchIndexService;
+import com.example.applib.tenant.TenantContext;
+import com.example.attachment.model.DirectUploadRequest;
+import com.example.attachment.model.ResumableUploadStatus;
+import com.example.attachment.service.DerivativeService;
+import com.example.attachment.service.ResumableUploadService;
+import jakarta.servlet.http.HttpServletRequest;
+import java.io.InputStream;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+/**
+ * Resumable attachment uploads. A client creates an upload, sends the file in chunks with
+ * {@code PATCH} and the chunk's {@code Upload-Offset}, and after a dropped connection asks with
+ * {@code HEAD} where to resume. Chunks may be sent in parallel; the response to the last missing
+ * one carries the recorded attachment.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/uploads")
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.data.redis.enabled", havingValue = "true", matchIfMissing = true)
+public class ResumableUploadController {
+
+    private static final String UPLOAD_OFFSET = "Upload-Offset";
+    private static final String UPLOAD_LENGTH = "Upload-Length";
+    private static final String UPLOAD_CHUNK_SIZE = "Upload-Chunk-Size";
+
+    private final ResumableUploadService resumableUploadService;
+    private final SearchIndexService searchIndexService;
+    private final DerivativeService derivativeService;
+
+    @PostMapping
+    public ResponseEntity<Object> startUpload(@RequestBody DirectUploadRequest uploadRequest) {
+        log.info("Starting resumable upload for tenant: {}", TenantContext.getTenantId());
+
+        try {
+            ResumableUploadStatus upload = resumableUploadService.start(uploadRequest);
+            return ResponseEntity.created(ServletUriComponentsBuilder.fromCurrentRequest()
+                            .path("/{id}")
+                            .buildAndExpand(upload.getId())
+                            .toUri())
+                    .header(UPLOAD_OFFSET, String.valueOf(upload.getOffset()))
+                    .header(UPLOAD_CHUNK_SIZE, String.valueOf(upload.getChunkSize()))
+                    .body(upload);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error starting resumable upload", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Get the offset to resume from in the headers, without a body
+     */
+    @RequestMapping(value = "/{id}", method = RequestMethod.HEAD)
+    public ResponseEntity<Void> getUploadOffset(@PathVariable String id) {
+        ResumableUploadStatus upload = resumableUploadService.getStatus(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .header(UPLOAD_OFFSET, String.valueOf(upload.getOffset()))
+                .header(UPLOAD_LENGTH, String.valueOf(upload.getLength()))
+                .header(UPLOAD_CHUNK_SIZE, String.valueOf(upload.getChunkSize()))
+                .build();
+    }
+
+    /**
+     * Get the progress including the chunks received past a gap, for clients sending in parallel
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<ResumableUploadStatus> getUpload(@PathVariable String id) {
+        ResumableUploadStatus upload = resumableUploadService.getStatus(id);
+        if (upload == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .body(upload);
+    }
+
+    /**
+     * Send the chunk starting at {@code Upload-Offset} as the request body
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<Object> writeChunk(
+            @PathVariable String id,
+            @RequestHeader(UPLOAD_OFFSET) long offset,
+            HttpServletRequest request) {
+
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            return ResponseEntity.status(HttpStatus.LENGTH_REQUIRED).build();
+        }
+
+        try (InputStream inputStream = request.getInputStream()) {
+            ResumableUploadStatus upload = resumableUploadService.writeChunk(id, offset, inputStream, contentLength);
+            if (upload == null) {
+                return ResponseEntity.notFound().build();
+            }
+
+            if (upload.getAttachment() != null) {
+                log.info("Completed resumable upload {} for tenant: {}", id, TenantContext.getTenantId());
+                searchIndexService.index("attachments", id, upload.getAttachment());
+                derivativeService.requestDerivatives(id, (String) upload.getAttachment().get("contentType"));
+                return ResponseEntity.ok()
+                        .header(UPLOAD_OFFSET, String.valueOf(upload.getOffset()))
+                        .body(upload.getAttachment());
+            }
+            return ResponseEntity.noContent()
+                    .header(UPLOAD_OFFSET, String.valueOf(upload.getOffset()))
+                    .build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error writing chunk at {} of resumable upload: {}", offset, id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Object> abortUpload(@PathVariable String id) {
+        log.info("Aborting resumable upload {} for tenant: {}", id, TenantContext.getTenantId());
+
+        try {
+            return resumableUploadService.abort(id)
+                    ? ResponseEntity.noContent().build()
+                    : ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            log.error("Error aborting resumable upload: {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -2,19 +2,53 @@ package com.example.attachment.controller;
 
 import com.example.applib.entity.TurboS3Config;
 import com.example.applib.repository.TurboS3ConfigRepository;
+import com.example.applib.storage.ObjectInfo;
+import com.example.applib.storage.ObjectStore;
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.ByteRange;
+import com.example.applib.util.RangeNotSatisfiableException;
+import com.example.applib.util.S3AsyncUtil;
+import com.example.applib.util.S3DeleteResult;
 import com.example.applib.util.S3Util;
+import com.example.applib.util.StoredObject;
+import com.example.applib.web.ObjectResponses;
+import com.example.attachment.model.PresignRequest;
+import com.example.attachment.service.BlobStoreService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.net.URL;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.fileupload2.core.DiskFileItem;
+import org.apache.commons.fileupload2.core.DiskFileItemFactory;
+import org.apache.commons.fileupload2.core.FileItemInput;
+import org.apache.commons.fileupload2.core.FileItemInputIterator;
+import org.apache.commons.fileupload2.core.FileUploadSizeException;
+import org.apache.commons.fileupload2.jakarta.servlet6.JakartaServletFileUpload;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RestController
@@ -23,7 +57,23 @@ import org.springframework.web.multipart.MultipartFile;
 public class S3Controller {
 
     private final S3Util s3Util;
+    private final ObjectStore objectStore;
+    private final S3AsyncUtil s3AsyncUtil;
+    private final BlobStoreService blobStoreService;
     private final TurboS3ConfigRepository s3ConfigRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${s3.upload.max-file-size-bytes:5368709120}")
+    private long maxFileSize;
+
+    @Value("${s3.download.async-timeout-ms:3600000}")
+    private long asyncDownloadTimeoutMs;
+
+    @Value("${s3.bulk.max-keys:100000}")
+    private int maxBulkKeys;
+
+    @Value("${s3.presign.max-batch-size:1000}")
+    private int maxPresignBatchSize;
 
     @GetMapping("/config")
     public ResponseEntity<List<TurboS3Config>> getS3Config() {
@@ -31,25 +81,52 @@ public class S3Controller {
         return ResponseEntity.ok(s3ConfigList);
     }
 
-    @PostMapping("/upload")
-    public ResponseEntity<Map<String, String>> uploadFile(@RequestParam("file") MultipartFile file) {
+    /**
+     * Stream the "file" part of a multipart request straight into S3. The request body is parsed
+     * as it arrives, so the file is never buffered on disk or held in memory as a whole.
+     */
+    @PostMapping(value = "/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<Map<String, String>> uploadFile(HttpServletRequest request) {
+        if (!JakartaServletFileUpload.isMultipartContent(request)) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Expected a multipart request"
+            ));
+        }
+
         try {
-            // Create a temporary file
-            Path tempFile = Files.createTempFile("upload-", "-" + file.getOriginalFilename());
-            file.transferTo(tempFile.toFile());
+            JakartaServletFileUpload<DiskFileItem, DiskFileItemFactory> upload = new JakartaServletFileUpload<>();
+            upload.setFileSizeMax(maxFileSize);
 
-            // Generate a unique key for the file
-            String keyName = UUID.randomUUID().toString() + "-" + file.getOriginalFilename();
+            FileItemInputIterator items = upload.getItemIterator(request);
+            while (items.hasNext()) {
+                FileItemInput item = items.next();
+                if (item.isFormField() || !"file".equals(item.getFieldName())) {
+                    continue;
+                }
 
-            // Upload the file to S3
-            s3Util.uploadFile(tempFile.toString(), keyName);
+                // Content already stored for the tenant is referenced instead of uploaded again. The
+                // reference belongs to this upload and is given back by deleting with its ID.
+                try (InputStream inputStream = item.getInputStream()) {
+                    String referenceId = UUID.randomUUID().toString();
+                    ObjectInfo result = blobStoreService.store(referenceId, inputStream, item.getContentType());
 
-            // Delete the temporary file
-            Files.delete(tempFile);
+                    return ResponseEntity.ok(Map.of(
+                            "message", "File uploaded successfully",
+                            "keyName", result.getKey(),
+                            "referenceId", referenceId,
+                            "size", String.valueOf(result.getSize()),
+                            "sha256", result.getSha256(),
+                            "deduplicated", String.valueOf(result.isDeduplicated())
+                    ));
+                }
+            }
 
-            return ResponseEntity.ok(Map.of(
-                    "message", "File uploaded successfully",
-                    "keyName", keyName
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Missing file part"
+            ));
+        } catch (FileUploadSizeException e) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(Map.of(
+                    "error", "File exceeds the maximum size of " + maxFileSize + " bytes"
             ));
         } catch (IOException e) {
             log.error("Error uploading file to S3", e);
@@ -59,24 +136,95 @@ public class S3Controller {
         }
     }
 
+    /**
+     * Stream an object straight from the object store to the client. Range and If-Range are
+     * honoured, so clients can fetch parts of an object and resume interrupted downloads.
+     */
     @GetMapping("/download/{keyName}")
-    public ResponseEntity<Map<String, String>> downloadFile(@PathVariable String keyName) {
-        try {
-            // Create a temporary file to download to
-            Path tempFile = Files.createTempFile("download-", "");
+    public void downloadFile(
+            @PathVariable String keyName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            HttpServletRequest request,
+            HttpServletResponse response) throws IOException {
 
-            // Download the file from S3
-            s3Util.downloadFile(keyName, tempFile.toString());
+        try (StoredObject object = objectStore.open(keyName, ByteRange.parse(range), ifRange)) {
+            ObjectResponses.write(object, request, response);
+        } catch (FileNotFoundException e) {
+            response.sendError(HttpStatus.NOT_FOUND.value(), e.getMessage());
+        } catch (RangeNotSatisfiableException e) {
+            ObjectResponses.writeRangeNotSatisfiable(response, e.getTotalLength());
+        } catch (IOException e) {
+            if (response.isCommitted()) {
+                // Usually the client went away mid-download
+                log.warn("Error streaming {} from the {} store: {}", keyName, objectStore.getBackend(), e.getMessage());
+                return;
+            }
+            log.error("Error downloading file from the {} store", objectStore.getBackend(), e);
+            response.sendError(HttpStatus.INTERNAL_SERVER_ERROR.value(), "Error downloading file: " + e.getMessage());
+        }
+    }
 
-            return ResponseEntity.ok(Map.of(
-                    "message", "File downloaded successfully",
-                    "filePath", tempFile.toString()
-            ));
+    /**
+     * Stream an object from S3 to the client without holding a request thread. The request is
+     * put into async mode and the body is copied from the SDK's event loop as the client reads
+     * it, so the number of concurrent downloads is not bounded by the servlet thread pool.
+     * Range and If-Range are honoured as for {@code /download}; the local object cache is not used.
+     */
+    @GetMapping("/stream/{keyName}")
+    public void streamFile(
+            @PathVariable String keyName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) String ifRange,
+            HttpServletRequest request) {
+
+        String tenantId = TenantContext.getTenantId();
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(asyncDownloadTimeoutMs);
+
+        s3AsyncUtil.openObject(keyName, ByteRange.parse(range), ifRange).whenComplete((object, error) -> {
+            if (error == null && !ObjectResponses.acceptsEncoding(object, request)) {
+                // Compressed in the store and the client cannot take it that way: decompress on a
+                // container thread with the blocking path
+                ObjectResponses.discard(object);
+                asyncContext.start(() -> writeDecoded(keyName, tenantId, asyncContext));
+                return;
+            }
+            if (error == null) {
+                ObjectResponses.writeAsync(object, asyncContext);
+                return;
+            }
+
+            HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            if (cause instanceof FileNotFoundException) {
+                response.setStatus(HttpStatus.NOT_FOUND.value());
+            } else if (cause instanceof RangeNotSatisfiableException) {
+                ObjectResponses.writeRangeNotSatisfiable(response, ((RangeNotSatisfiableException) cause).getTotalLength());
+            } else {
+                log.error("Error streaming file from S3", cause);
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+            asyncContext.complete();
+        });
+    }
+
+    private void writeDecoded(String keyName, String tenantId, AsyncContext asyncContext) {
+        HttpServletRequest request = (HttpServletRequest) asyncContext.getRequest();
+        HttpServletResponse response = (HttpServletResponse) asyncContext.getResponse();
+        TenantContext.setTenantId(tenantId);
+        try (StoredObject object = objectStore.open(keyName, null, null)) {
+            ObjectResponses.write(object, request, response);
+        } catch (FileNotFoundException e) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
         } catch (IOException e) {
-            log.error("Error downloading file from S3", e);
-            return ResponseEntity.status(500).body(Map.of(
-                    "error", "Error downloading file: " + e.getMessage()
-            ));
+            log.warn("Error streaming {} from the {} store: {}", keyName, objectStore.getBackend(), e.getMessage());
+            if (!response.isCommitted()) {
+                response.setStatus(HttpStatus.INTERNAL_SERVER_ERROR.value());
+            }
+        } finally {
+            TenantContext.clear();
+            asyncContext.complete();
         }
     }
 
@@ -90,7 +238,7 @@ public class S3Controller {
         if (presignedUrl != null) {
             return ResponseEntity.ok(Map.of(
                     "presignedUrl", presignedUrl.toString(),
-                    "expiresIn", expirationMinutes + " minutes"
+                    "expiresIn", expiresIn(List.of(presignedUrl), expirationMinutes)
             ));
         } else {
             return ResponseEntity.status(500).body(Map.of(
@@ -99,6 +247,59 @@ public class S3Controller {
         }
     }
 
+    /**
+     * Presign many keys in one request. URLs are reused while they are fresh, so the same key
+     * keeps the same URL and browsers can cache what it points to.
+     */
+    @PostMapping("/presign")
+    public ResponseEntity<Map<String, Object>> presign(@RequestBody PresignRequest presignRequest) {
+        List<String> keys = presignRequest.getKeys();
+        if (keys == null || keys.isEmpty()) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "No keys given"
+            ));
+        }
+        if (keys.size() > maxPresignBatchSize) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "At most " + maxPresignBatchSize + " keys can be presigned at once"
+            ));
+        }
+        String operation = presignRequest.getOperation() != null
+                ? presignRequest.getOperation().toUpperCase()
+                : "GET";
+        if (!"GET".equals(operation) && !"PUT".equals(operation)) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "Unsupported operation: " + presignRequest.getOperation()
+            ));
+        }
+
+        int expirationMinutes = presignRequest.getExpirationMinutes();
+        Map<String, URL> presigned = "PUT".equals(operation)
+                ? s3Util.generatePresignedUploadUrls(keys, expirationMinutes)
+                : s3Util.generatePresignedDownloadUrls(keys, expirationMinutes);
+        if (presigned.isEmpty()) {
+            return ResponseEntity.status(500).body(Map.of(
+                    "error", "Error generating pre-signed URLs"
+            ));
+        }
+
+        Map<String, String> urls = new LinkedHashMap<>();
+        List<String> failed = new ArrayList<>();
+        presigned.forEach((key, url) -> {
+            if (url != null) {
+                urls.put(key, url.toString());
+            } else {
+                failed.add(key);
+            }
+        });
+
+        return ResponseEntity.ok(Map.of(
+                "urls", urls,
+                "failed", failed,
+                "expiresIn", expiresIn(presigned.values(), expirationMinutes)
+        ));
+    }
+
     @GetMapping("/presigned-upload/{keyName}")
     public ResponseEntity<Map<String, String>> getPresignedUploadUrl(
             @PathVariable String keyName,
@@ -109,7 +310,7 @@ public class S3Controller {
         if (presignedUrl != null) {
             return ResponseEntity.ok(Map.of(
                     "presignedUrl", presignedUrl.toString(),
-                    "expiresIn", expirationMinutes + " minutes"
+                    "expiresIn", expiresIn(List.of(presignedUrl), expirationMinutes)
             ));
         } else {
             return ResponseEntity.status(500).body(Map.of(
@@ -118,9 +319,53 @@ public class S3Controller {
         }
     }
 
+    /**
+     * Time left until the first of the URLs expires. URLs reused from the presigned URL cache
+     * have less left than the requested lifetime.
+     */
+    private static String expiresIn(Collection<URL> urls, int expirationMinutes) {
+        long now = System.currentTimeMillis();
+        long seconds = expirationMinutes * 60L;
+        for (URL url : urls) {
+            Instant expiry = url != null ? S3Util.presignedUrlExpiry(url) : null;
+            if (expiry != null) {
+                seconds = Math.min(seconds, Math.max(0, (expiry.toEpochMilli() - now) / 1000));
+            }
+        }
+        return seconds + " seconds";
+    }
+
+    /**
+     * Delete an object. A deduplicated file is shared with other uploads, so only the reference
+     * of the upload named by {@code referenceId} is given back; the blob is deleted once no
+     * references are left.
+     */
     @DeleteMapping("/{keyName}")
-    public ResponseEntity<Map<String, String>> deleteFile(@PathVariable String keyName) {
-        boolean deleted = s3Util.deleteObject(keyName);
+    public ResponseEntity<Map<String, String>> deleteFile(@PathVariable String keyName,
+                                                          @RequestParam(required = false) String referenceId) {
+        if (blobStoreService.isBlobKey(keyName)) {
+            if (referenceId == null) {
+                return ResponseEntity.badRequest().body(Map.of(
+                        "error", "Deduplicated files are deleted with the referenceId returned by their upload"
+                ));
+            }
+            if (!blobStoreService.releaseKey(keyName, referenceId)) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of(
+                        "error", "File not found"
+                ));
+            }
+            return ResponseEntity.ok(Map.of(
+                    "message", "File deleted successfully"
+            ));
+        }
+
+        boolean deleted;
+        try {
+            deleted = objectStore.delete(keyName);
+        } catch (IOException e) {
+            log.error("Error deleting file: {}", keyName, e);
+            deleted = false;
+        }
 
         if (deleted) {
             return ResponseEntity.ok(Map.of(
@@ -133,12 +378,115 @@ public class S3Controller {
         }
     }
 
+    /**
+     * Delete many objects at once
+     */
+    @PostMapping("/delete-batch")
+    public ResponseEntity<Map<String, Object>> deleteFiles(@RequestBody List<String> keys) {
+        if (keys.size() > maxBulkKeys) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "At most " + maxBulkKeys + " keys can be deleted at once"
+            ));
+        }
+
+        try {
+            List<String> objectKeys = new ArrayList<>();
+            Map<String, String> errors = new LinkedHashMap<>();
+            for (String key : keys) {
+                if (!blobStoreService.isBlobKey(key)) {
+                    objectKeys.add(key);
+                } else {
+                    // Shared with other uploads, see deleteFile
+                    errors.put(key, "Deduplicated files are deleted one at a time with their referenceId");
+                }
+            }
+
+            S3DeleteResult result = objectStore.delete(objectKeys);
+            errors.putAll(result.getErrors());
+            return ResponseEntity.ok(Map.of(
+                    "deleted", result.getDeleted(),
+                    "errors", errors
+            ));
+        } catch (IOException e) {
+            log.error("Error deleting files from the {} store", objectStore.getBackend(), e);
+            return ResponseEntity.status(500).body(Map.of(
+                    "error", "Error deleting files: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Check which of many objects exist
+     */
+    @PostMapping("/exists-batch")
+    public ResponseEntity<Map<String, Object>> doObjectsExist(@RequestBody List<String> keys) {
+        if (keys.size() > maxBulkKeys) {
+            return ResponseEntity.badRequest().body(Map.of(
+                    "error", "At most " + maxBulkKeys + " keys can be checked at once"
+            ));
+        }
+
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "exists", objectStore.exist(keys)
+            ));
+        } catch (IOException e) {
+            log.error("Error checking if objects exist in the {} store", objectStore.getBackend(), e);
+            return ResponseEntity.status(500).body(Map.of(
+                    "error", "Error checking objects: " + e.getMessage()
+            ));
+        }
+    }
+
+    /**
+     * Stream the objects under a prefix as a JSON array; the listing is read from the store as
+     * the response is written
+     */
+    @GetMapping("/list")
+    public ResponseEntity<StreamingResponseBody> listFiles(@RequestParam(defaultValue = "") String prefix) {
+        Stream<ObjectInfo> objects;
+        try {
+            objects = objectStore.list(prefix);
+        } catch (IOException e) {
+            log.error("Error listing files in the {} store", objectStore.getBackend(), e);
+            return ResponseEntity.status(500).build();
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (objects; JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                generator.writeStartArray();
+                Iterator<ObjectInfo> iterator = objects.iterator();
+                while (iterator.hasNext()) {
+                    ObjectInfo object = iterator.next();
+                    generator.writeStartObject();
+                    generator.writeStringField("key", object.getKey());
+                    generator.writeNumberField("size", object.getSize());
+                    generator.writeStringField("lastModified", String.valueOf(object.getLastModified()));
+                    generator.writeStringField("eTag", object.getETag());
+                    generator.writeEndObject();
+                }
+                generator.writeEndArray();
+            } catch (UncheckedIOException e) {
+                // Headers are already sent, so the client sees a truncated array
+                log.error("Error listing files with prefix: {}", prefix, e);
+                throw new IOException("Error listing files: " + e.getMessage(), e);
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
     @GetMapping("/exists/{keyName}")
     public ResponseEntity<Map<String, Boolean>> doesObjectExist(@PathVariable String keyName) {
-        boolean exists = s3Util.doesObjectExist(keyName);
-
-        return ResponseEntity.ok(Map.of(
-                "exists", exists
-        ));
+        try {
+            return ResponseEntity.ok(Map.of(
+                    "exists", objectStore.exists(keyName)
+            ));
+        } catch (IOException e) {
+            log.error("Error checking if object exists: {}", keyName, e);
+            return ResponseEntity.status(500).build();
+        }
     }
 }
@@ -0,0 +1,23 @@
+package com.example.attachment.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Published once an attachment has been recorded, so derivatives of it can be generated.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AttachmentUploadedEvent {
+
+    /**
+     * Tenant of the attachment, or null for the default tenant
+     */
+    private String tenantId;
+
+    private String attachmentId;
+
+    private String contentType;
+}
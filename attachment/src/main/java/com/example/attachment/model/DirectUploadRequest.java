@@ -0,0 +1,24 @@
+package com.example.attachment.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Attachment to be uploaded by the client in parts, straight to S3 or as resumable chunks.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DirectUploadRequest {
+
+    private String fileName;
+    private String contentType;
+
+    /**
+     * Expected size in bytes, used to choose the part size
+     */
+    private long size;
+
+    private String metadata;
+}
@@ -0,0 +1,24 @@
+package com.example.attachment.model;
+
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Batch of object keys to presign in one call.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PresignRequest {
+
+    private List<String> keys;
+
+    /**
+     * GET for download URLs, PUT for upload URLs
+     */
+    private String operation = "GET";
+
+    private int expirationMinutes = 60;
+}
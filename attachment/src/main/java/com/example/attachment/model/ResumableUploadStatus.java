@@ -0,0 +1,40 @@
+package com.example.attachment.model;
+
+import java.util.List;
+import java.util.Map;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Progress of a resumable upload.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResumableUploadStatus {
+
+    private String id;
+
+    /**
+     * Number of bytes received without a gap from the start, where the client resumes
+     */
+    private long offset;
+
+    private long length;
+
+    /**
+     * Size of every chunk but the last; chunks start at multiples of it
+     */
+    private long chunkSize;
+
+    /**
+     * Numbers of the chunks received so far, from 1, including those past a gap
+     */
+    private List<Integer> receivedChunks;
+
+    /**
+     * The recorded attachment, once the last missing chunk was received
+     */
+    private Map<String, Object> attachment;
+}
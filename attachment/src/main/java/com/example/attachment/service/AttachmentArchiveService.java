@@ -0,0 +1,354 @@
+package com.example.attachment.service;
+
+import com.example.applib.storage.ObjectStore;
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.CompressionCodec;
+import com.example.applib.util.StoredObject;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * ZIP archives of many attachments, built while they are sent.
+ *
+ * <p>The files are opened in the object store a few ahead of the one being written, bounded by
+ * {@code attachments.archive.prefetch}, so waiting for the store overlaps with writing instead of
+ * adding up. Each file is copied straight from the store's stream into the archive and never
+ * lands whole on disk or in memory. Content types that are compressed already are stored
+ * without compression, which keeps the CPU free for those that shrink.
+ *
+ * <p>Entries use data descriptors, as their CRC is only known once they are written, and ZIP64
+ * kicks in by itself for large archives.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AttachmentArchiveService {
+
+    private static final String DEFAULT_TENANT = "default";
+    private static final String ERRORS_ENTRY = "errors.txt";
+    private static final int COPY_BUFFER_BYTES = 64 * 1024;
+
+    // Formats whose data is compressed already; deflating them again costs CPU and gains nothing
+    private static final Set<String> COMPRESSED_TYPES = Set.of(
+            "application/zip", "application/gzip", "application/x-gzip", "application/x-7z-compressed",
+            "application/x-rar-compressed", "application/vnd.rar", "application/x-bzip2", "application/x-xz",
+            "application/zstd", "application/pdf", "application/epub+zip", "application/java-archive");
+    private static final List<String> COMPRESSED_TYPE_PREFIXES = List.of(
+            "image/", "video/", "audio/", "application/vnd.openxmlformats-officedocument.",
+            "application/vnd.oasis.opendocument.");
+    private static final Set<String> UNCOMPRESSED_IMAGE_TYPES = Set.of(
+            "image/svg+xml", "image/bmp", "image/tiff", "image/x-icon", "image/vnd.microsoft.icon");
+
+    private final JdbcTemplate tacJdbcTemplate;
+    private final ObjectStore objectStore;
+
+    @Value("${attachments.archive.prefetch:4}")
+    private int prefetch;
+
+    @Value("${attachments.archive.fetch-threads:32}")
+    private int fetchThreads;
+
+    @Value("${attachments.archive.compression-level:6}")
+    private int compressionLevel;
+
+    // Opens the objects ahead of the writers; each archive bounds its own objects in flight
+    private ExecutorService fetchExecutor;
+
+    @PostConstruct
+    public void init() {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(fetchThreads, fetchThreads,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "archive-fetch-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        fetchExecutor = executor;
+    }
+
+    @PreDestroy
+    public void destroy() {
+        fetchExecutor.shutdownNow();
+    }
+
+    /**
+     * Look up the stored files of attachments of the current tenant
+     *
+     * @param ids Attachment IDs
+     * @return The files in the order of the IDs; IDs without an attachment or a stored file are left out
+     */
+    public List<ArchiveEntry> findEntries(List<String> ids) {
+        List<String> distinctIds = ids.stream().distinct().toList();
+        if (distinctIds.isEmpty()) {
+            return List.of();
+        }
+
+        String sql = "SELECT a.id, a.file_name, a.content_type, COALESCE(b.s3_key, a.s3_key) AS object_key "
+                + "FROM attachments a LEFT JOIN attachment_blobs b "
+                + "ON b.tenant_id = ? AND b.sha256 = a.blob_sha256 "
+                + "WHERE a.id IN (" + String.join(", ", Collections.nCopies(distinctIds.size(), "?")) + ")";
+        List<Object> args = new ArrayList<>(distinctIds.size() + 1);
+        args.add(tenantKey());
+        args.addAll(distinctIds);
+
+        Map<String, ArchiveEntry> entriesById = new LinkedHashMap<>();
+        tacJdbcTemplate.query(sql, rs -> {
+            if (rs.getString("object_key") != null) {
+                entriesById.put(rs.getString("id"), new ArchiveEntry(rs.getString("id"), rs.getString("file_name"),
+                        rs.getString("content_type"), rs.getString("object_key")));
+            }
+        }, args.toArray());
+
+        return distinctIds.stream()
+                .filter(entriesById::containsKey)
+                .map(entriesById::get)
+                .toList();
+    }
+
+    /**
+     * Create a response body that writes the files as a ZIP archive. The body is written on an
+     * MVC async thread, so the caller's tenant is carried over explicitly.
+     *
+     * @param entries Files to archive
+     * @return The response body
+     */
+    public StreamingResponseBody stream(List<ArchiveEntry> entries) {
+        String tenantId = TenantContext.getTenantId();
+
+        return outputStream -> {
+            TenantContext.setTenantId(tenantId);
+            try {
+                write(entries, tenantId, outputStream);
+            } catch (IOException e) {
+                // Usually the client went away mid-download
+                log.warn("Error writing archive of {} attachments for tenant {}: {}", entries.size(), tenantId,
+                        e.getMessage());
+                throw e;
+            } finally {
+                TenantContext.clear();
+            }
+        };
+    }
+
+    private void write(List<ArchiveEntry> entries, String tenantId, OutputStream outputStream) throws IOException {
+        // Send the headers right away instead of after the first file was opened
+        outputStream.flush();
+
+        Deque<Future<StoredObject>> inFlight = new ArrayDeque<>();
+        int next = 0;
+        Set<String> names = new HashSet<>();
+        Map<String, String> errors = new LinkedHashMap<>();
+        byte[] buffer = new byte[COPY_BUFFER_BYTES];
+        long totalBytes = 0;
+
+        try (ZipOutputStream zip = new ZipOutputStream(outputStream, StandardCharsets.UTF_8)) {
+            for (ArchiveEntry entry : entries) {
+                while (next < entries.size() && inFlight.size() < Math.max(prefetch, 1)) {
+                    String key = entries.get(next++).getObjectKey();
+                    inFlight.add(fetchExecutor.submit(() -> open(tenantId, key)));
+                }
+
+                StoredObject object;
+                try {
+                    object = await(inFlight.poll());
+                } catch (FileNotFoundException e) {
+                    errors.put(entry.getId(), "File not found");
+                    continue;
+                }
+
+                try (object; InputStream body = openBody(object)) {
+                    ZipEntry zipEntry = new ZipEntry(uniqueName(entry, names));
+                    if (object.getLastModified() != null) {
+                        zipEntry.setLastModifiedTime(FileTime.from(object.getLastModified()));
+                    }
+                    String contentType = entry.getContentType() != null ? entry.getContentType() : object.getContentType();
+                    zip.setLevel(isCompressed(contentType) ? Deflater.NO_COMPRESSION : compressionLevel);
+                    zip.putNextEntry(zipEntry);
+
+                    int read;
+                    while ((read = body.read(buffer)) != -1) {
+                        zip.write(buffer, 0, read);
+                        totalBytes += read;
+                    }
+                    zip.closeEntry();
+                }
+            }
+
+            if (!errors.isEmpty()) {
+                StringBuilder report = new StringBuilder();
+                errors.forEach((id, error) -> report.append(id).append(": ").append(error).append('\n'));
+                zip.setLevel(compressionLevel);
+                zip.putNextEntry(new ZipEntry(uniqueName(ERRORS_ENTRY, names)));
+                zip.write(report.toString().getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        } finally {
+            // Release the connections of files opened ahead when writing stopped early
+            for (Future<StoredObject> future : inFlight) {
+                closeQuietly(future);
+            }
+        }
+
+        log.info("Streamed archive of {} attachments ({} bytes) for tenant: {}", entries.size() - errors.size(),
+                totalBytes, tenantId);
+    }
+
+    private StoredObject open(String tenantId, String key) throws IOException {
+        TenantContext.setTenantId(tenantId);
+        try {
+            return objectStore.open(key, null, null);
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    private static InputStream openBody(StoredObject object) throws IOException {
+        InputStream stored = object.getBody() != null ? object.getBody() : Files.newInputStream(object.getFile());
+        if (object.getContentEncoding() == null) {
+            return stored;
+        }
+        // Compressed in the store; the archive compresses it again as it sees fit
+        CompressionCodec codec = CompressionCodec.forEncoding(object.getContentEncoding());
+        try {
+            if (codec == null) {
+                throw new IOException("Unknown encoding " + object.getContentEncoding() + " of " + object.getKey());
+            }
+            return codec.decode(stored);
+        } catch (IOException e) {
+            stored.close();
+            throw e;
+        }
+    }
+
+    private static StoredObject await(Future<StoredObject> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening an archived file");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error opening an archived file: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static void closeQuietly(Future<StoredObject> future) {
+        try {
+            future.get().close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            // Failed to open in the first place
+        }
+    }
+
+    /**
+     * Check whether a content type is compressed already, so deflating it would gain nothing
+     *
+     * @param contentType Content type, may be null
+     * @return Whether to store the data as it is
+     */
+    static boolean isCompressed(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        int semicolon = type.indexOf(';');
+        if (semicolon >= 0) {
+            type = type.substring(0, semicolon);
+        }
+        type = type.trim();
+
+        if (COMPRESSED_TYPES.contains(type) || type.endsWith("+zip")) {
+            return true;
+        }
+        if (UNCOMPRESSED_IMAGE_TYPES.contains(type)) {
+            return false;
+        }
+        for (String prefix : COMPRESSED_TYPE_PREFIXES) {
+            if (type.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String uniqueName(ArchiveEntry entry, Set<String> names) {
+        String name = entry.getFileName() != null ? entry.getFileName() : entry.getId();
+        // Entry names are paths, so keep just the file name to stay inside the extraction directory
+        name = name.substring(Math.max(name.lastIndexOf('/'), name.lastIndexOf('\\')) + 1);
+        return uniqueName(name.isBlank() || name.equals("..") ? entry.getId() : name, names);
+    }
+
+    private static String uniqueName(String name, Set<String> names) {
+        if (names.add(name)) {
+            return name;
+        }
+        int dot = name.lastIndexOf('.');
+        String base = dot > 0 ? name.substring(0, dot) : name;
+        String extension = dot > 0 ? name.substring(dot) : "";
+        for (int i = 2; ; i++) {
+            String candidate = base + " (" + i + ")" + extension;
+            if (names.add(candidate)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static String tenantKey() {
+        String tenantId = TenantContext.getTenantId();
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+
+    /**
+     * An attachment and the key of its stored file
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class ArchiveEntry {
+
+        private final String id;
+        private final String fileName;
+        private final String contentType;
+        private final String objectKey;
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.attachment.service;
+
+import com.example.applib.storage.ObjectInfo;
+import com.example.applib.storage.ObjectStore;
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.S3DeleteResult;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Content-addressed, deduplicated storage of attachment files in the {@link ObjectStore}.
+ *
+ * <p>Each distinct content is stored once per tenant, found by its SHA-256 in the
+ * {@code attachment_blobs} table next to {@code attachments}; the blob tables are created by
+ * {@code scripts/init-db.sql}. The hash is computed while the upload streams to the store, so a
+ * duplicate is recognized at the end of the upload and not stored: small files are never sent and
+ * a multipart upload is aborted instead of completed. Hashes
+ * supplied by clients are not trusted, as they would tell anyone which content a tenant holds.
+ *
+ * <p>Every stored attachment or upload holds one reference, recorded with its owner in
+ * {@code attachment_blob_refs}. Only the owner can give its reference back, so a repeated delete
+ * cannot release the references of others. Blobs without references are deleted by
+ * {@link #collectGarbage()} after {@code attachments.blobs.gc-grace-seconds}; an upload of the
+ * same content within that time takes the blob back instead.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class BlobStoreService {
+
+    private static final String BLOB_KEY_PREFIX = "blob-";
+    private static final String DEFAULT_TENANT = "default";
+
+    // The reference of the owner is recorded in the same statement that counts it
+    private static final String ACQUIRE_SQL = "WITH blob AS (UPDATE attachment_blobs SET ref_count = ref_count + 1, "
+            + "updated_at = now() WHERE tenant_id = ? AND sha256 = ? RETURNING tenant_id, sha256, s3_key), "
+            + "ref AS (INSERT INTO attachment_blob_refs (tenant_id, owner_id, sha256) "
+            + "SELECT tenant_id, ?, sha256 FROM blob) "
+            + "SELECT s3_key FROM blob";
+
+    private static final String INSERT_SQL = "WITH blob AS (INSERT INTO attachment_blobs "
+            + "(tenant_id, sha256, s3_key, size, ref_count) VALUES (?, ?, ?, ?, 1) "
+            + "ON CONFLICT (tenant_id, sha256) DO UPDATE SET "
+            + "ref_count = attachment_blobs.ref_count + 1, updated_at = now() RETURNING tenant_id, sha256, s3_key), "
+            + "ref AS (INSERT INTO attachment_blob_refs (tenant_id, owner_id, sha256) "
+            + "SELECT tenant_id, ?, sha256 FROM blob) "
+            + "SELECT s3_key FROM blob";
+
+    // Only a reference that still exists is counted down, so releasing twice is harmless
+    private static final String RELEASE_SQL = "WITH ref AS (DELETE FROM attachment_blob_refs "
+            + "WHERE tenant_id = ? AND owner_id = ? %s RETURNING tenant_id, sha256) "
+            + "UPDATE attachment_blobs b SET ref_count = b.ref_count - 1, updated_at = now() FROM ref "
+            + "WHERE b.tenant_id = ref.tenant_id AND b.sha256 = ref.sha256 AND b.ref_count > 0";
+
+    private static final String OWNED_BLOB_CONDITION = "AND sha256 = (SELECT sha256 FROM attachment_blobs "
+            + "WHERE tenant_id = attachment_blob_refs.tenant_id AND s3_key = ?)";
+
+    // Rows locked by another pod's collection are skipped, and a blob taken back meanwhile is kept
+    private static final String COLLECT_SQL = "DELETE FROM attachment_blobs WHERE (tenant_id, sha256) IN ("
+            + "SELECT tenant_id, sha256 FROM attachment_blobs WHERE ref_count = 0 "
+            + "AND updated_at < now() - make_interval(secs => ?) LIMIT ? FOR UPDATE SKIP LOCKED) "
+            + "AND ref_count = 0 RETURNING tenant_id, sha256, s3_key, size";
+
+    private static final String RESTORE_SQL = "INSERT INTO attachment_blobs (tenant_id, sha256, s3_key, size, ref_count) "
+            + "VALUES (?, ?, ?, ?, 0) ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate tacJdbcTemplate;
+    private final ObjectStore objectStore;
+
+    @Value("${attachments.blobs.gc-grace-seconds:86400}")
+    private long gcGraceSeconds;
+
+    @Value("${attachments.blobs.gc-batch-size:1000}")
+    private int gcBatchSize;
+
+    /**
+     * Store content for the current tenant, reusing the stored blob if the same content exists.
+     * The owner holds one reference to the blob afterwards and gives it back with {@link #release}.
+     *
+     * @param ownerId Owner of the reference, e.g. an attachment ID; one reference per owner
+     * @param inputStream Content to store, not closed
+     * @param contentType Content type, may be null
+     * @return The blob; its key is that of the existing blob when the content was deduplicated
+     * @throws IOException If reading, uploading or recording the blob fails
+     */
+    public ObjectInfo store(String ownerId, InputStream inputStream, String contentType) throws IOException {
+        String tenantId = tenantKey();
+        String keyName = BLOB_KEY_PREFIX + UUID.randomUUID();
+
+        ObjectInfo result = objectStore.put(keyName, contentType, inputStream,
+                sha256 -> acquire(tenantId, sha256, ownerId));
+        if (result.isDeduplicated()) {
+            return result;
+        }
+
+        String storedKey;
+        try {
+            storedKey = tacJdbcTemplate.queryForObject(INSERT_SQL, String.class,
+                    tenantId, result.getSha256(), keyName, result.getSize(), ownerId);
+        } catch (Exception e) {
+            objectStore.delete(keyName);
+            throw new IOException("Failed to record blob " + keyName + ": " + e.getMessage(), e);
+        }
+
+        if (!keyName.equals(storedKey)) {
+            // A concurrent upload of the same content was recorded first
+            log.info("Blob {} duplicates {} uploaded concurrently, deleting it", keyName, storedKey);
+            objectStore.delete(keyName);
+            result.setKey(storedKey);
+            result.setDeduplicated(true);
+        }
+        return result;
+    }
+
+    /**
+     * Give back the reference an owner holds to a blob of the current tenant
+     *
+     * @param ownerId Owner the reference was stored for
+     * @return Whether a reference was released
+     */
+    public boolean release(String ownerId) {
+        return tacJdbcTemplate.update(String.format(RELEASE_SQL, ""), tenantKey(), ownerId) > 0;
+    }
+
+    /**
+     * Give back the reference an owner holds to a blob of the current tenant, provided it is the
+     * blob stored under the given object key
+     *
+     * @param keyName Object key of the blob
+     * @param ownerId Owner the reference was stored for
+     * @return Whether a reference was released
+     */
+    public boolean releaseKey(String keyName, String ownerId) {
+        return tacJdbcTemplate.update(String.format(RELEASE_SQL, OWNED_BLOB_CONDITION),
+                tenantKey(), ownerId, keyName) > 0;
+    }
+
+    /**
+     * Check whether an object key names a deduplicated blob, which must be released rather than deleted
+     *
+     * @param keyName Object key
+     * @return Whether the key belongs to a blob
+     */
+    public boolean isBlobKey(String keyName) {
+        return keyName.startsWith(BLOB_KEY_PREFIX);
+    }
+
+    /**
+     * Delete blobs that have had no references for the grace period, for all tenants
+     */
+    @Scheduled(fixedDelayString = "${attachments.blobs.gc-interval-ms:3600000}")
+    public void collectGarbage() {
+        try {
+            List<Map<String, Object>> rows;
+            do {
+                rows = tacJdbcTemplate.queryForList(COLLECT_SQL, gcGraceSeconds, gcBatchSize);
+                deleteCollected(rows);
+            } while (rows.size() == gcBatchSize);
+        } catch (Exception e) {
+            log.error("Error collecting unreferenced attachment blobs", e);
+        }
+    }
+
+    private String acquire(String tenantId, String sha256, String ownerId) {
+        List<String> keys = tacJdbcTemplate.queryForList(ACQUIRE_SQL, String.class, tenantId, sha256, ownerId);
+        return keys.isEmpty() ? null : keys.get(0);
+    }
+
+    private void deleteCollected(List<Map<String, Object>> rows) {
+        Map<String, List<Map<String, Object>>> rowsByTenant = new LinkedHashMap<>();
+        for (Map<String, Object> row : rows) {
+            rowsByTenant.computeIfAbsent((String) row.get("tenant_id"), id -> new ArrayList<>()).add(row);
+        }
+
+        rowsByTenant.forEach((tenantId, tenantRows) -> {
+            List<String> keys = tenantRows.stream().map(row -> (String) row.get("s3_key")).toList();
+            Map<String, String> errors;
+            try {
+                if (DEFAULT_TENANT.equals(tenantId)) {
+                    TenantContext.clear();
+                } else {
+                    TenantContext.setTenantId(tenantId);
+                }
+                S3DeleteResult result = objectStore.delete(keys);
+                errors = result.getErrors();
+                log.info("Deleted {} unreferenced blobs of tenant {}", result.getDeleted(), tenantId);
+            } catch (Exception e) {
+                log.error("Failed to delete {} unreferenced blobs of tenant {}", keys.size(), tenantId, e);
+                errors = new HashMap<>();
+                for (String key : keys) {
+                    errors.put(key, e.getMessage());
+                }
+            } finally {
+                TenantContext.clear();
+            }
+
+            // Put back what could not be deleted so the next run retries it
+            for (Map<String, Object> row : tenantRows) {
+                if (errors.containsKey((String) row.get("s3_key"))) {
+                    tacJdbcTemplate.update(RESTORE_SQL, tenantId, row.get("sha256"), row.get("s3_key"), row.get("size"));
+                }
+            }
+        });
+    }
+
+    private static String tenantKey() {
+        String tenantId = TenantContext.getTenantId();
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+}
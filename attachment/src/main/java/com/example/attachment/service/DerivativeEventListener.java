@@ -0,0 +1,52 @@
+package com.example.attachment.service;
+
+import com.example.attachment.model.AttachmentUploadedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Consumes upload events from Kafka and queues the generation of their derivatives.
+ *
+ * <p>An event is acknowledged once its work is recorded as pending, so a slow tenant never holds
+ * up a partition and work queued in memory is not lost on a restart: pending work is swept up
+ * again by {@link DerivativeService#sweep()}. An event whose work cannot be recorded is not
+ * acknowledged, so it is delivered again.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "attachments.derivatives.transport", havingValue = "kafka", matchIfMissing = true)
+public class DerivativeEventListener {
+
+    private final DerivativeService derivativeService;
+    private final ObjectMapper objectMapper;
+
+    @KafkaListener(
+            topics = "${attachments.derivatives.topic:attachment-uploaded}",
+            groupId = "${attachments.derivatives.group-id:attachment-derivatives}",
+            autoStartup = "${spring.kafka.enabled:true}")
+    public void onAttachmentUploaded(ConsumerRecord<String, Object> record, Acknowledgment acknowledgment) {
+        AttachmentUploadedEvent event;
+        try {
+            // A JSON string with the string deserializer, a map or the event itself with the JSON one
+            event = record.value() instanceof String
+                    ? objectMapper.readValue((String) record.value(), AttachmentUploadedEvent.class)
+                    : objectMapper.convertValue(record.value(), AttachmentUploadedEvent.class);
+        } catch (Exception e) {
+            log.error("Skipping malformed upload event at offset {} of partition {}", record.offset(),
+                    record.partition(), e);
+            acknowledgment.acknowledge();
+            return;
+        }
+
+        // Left unacknowledged if this throws, so the container redelivers the event
+        derivativeService.enqueue(event);
+        acknowledgment.acknowledge();
+    }
+}
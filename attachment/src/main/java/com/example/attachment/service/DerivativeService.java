@@ -0,0 +1,558 @@
+package com.example.attachment.service;
+
+import com.example.applib.storage.ObjectInfo;
+import com.example.applib.storage.ObjectStore;
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.CompressionCodec;
+import com.example.applib.util.KafkaUtil;
+import com.example.applib.util.StoredObject;
+import com.example.attachment.model.AttachmentUploadedEvent;
+import jakarta.annotation.PostConstruct;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import javax.imageio.ImageIO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+/**
+ * Thumbnails and previews of image attachments, generated after the upload.
+ *
+ * <p>Recording an image attachment publishes an {@link AttachmentUploadedEvent} to Kafka, keyed by
+ * the attachment, and whichever pod consumes it generates the derivatives on the
+ * {@code fileProcessingExecutor}. With {@code attachments.derivatives.transport} set to
+ * {@code local}, or while Kafka is disabled, the uploading pod generates them itself.
+ *
+ * <p>Queued work is kept per tenant and started in turns, one attachment of each tenant with work
+ * at a time, so a tenant uploading thousands of photos delays the others by at most one image per
+ * turn. At most {@code max-concurrency} images are processed at once and at most
+ * {@code max-concurrency-per-tenant} of them of one tenant, which bounds the memory held by decoded
+ * images. The source is decoded only once, subsampled down to the largest derivative, and every
+ * smaller derivative is scaled from the previous one.
+ *
+ * <p>Requested work is recorded in {@code attachment_derivative_jobs} before it is queued and the
+ * row is removed once the derivatives exist, so work lost to a restart, or not queued because the
+ * tenant's queue was full, is not lost: {@link #sweep()} queues rows that were not finished within
+ * {@code attachments.derivatives.claim-timeout-seconds}, up to {@code max-attempts} times.
+ *
+ * <p>Derivatives are stored next to the original in the tenant's bucket and recorded in
+ * {@code attachment_derivatives}, where their entity tags let clients revalidate without the
+ * object store being asked. Both tables are created by {@code scripts/init-db.sql}.
+ */
+@Slf4j
+@Service
+public class DerivativeService {
+
+    public static final String THUMBNAIL = "thumbnail";
+    public static final String PREVIEW = "preview";
+
+    private static final String KEY_PREFIX = "derivative-";
+    private static final String DEFAULT_TENANT = "default";
+
+    private static final String PENDING_SQL = "INSERT INTO attachment_derivative_jobs "
+            + "(tenant_id, attachment_id, content_type) VALUES (?, ?, ?) "
+            + "ON CONFLICT (tenant_id, attachment_id) DO UPDATE SET content_type = EXCLUDED.content_type, "
+            + "attempts = 1, claimed_at = now()";
+
+    private static final String DONE_SQL = "DELETE FROM attachment_derivative_jobs "
+            + "WHERE tenant_id = ? AND attachment_id = ?";
+
+    // Rows claimed by another pod's sweep are skipped
+    private static final String SWEEP_SQL = "UPDATE attachment_derivative_jobs SET attempts = attempts + 1, "
+            + "claimed_at = now() WHERE (tenant_id, attachment_id) IN ("
+            + "SELECT tenant_id, attachment_id FROM attachment_derivative_jobs "
+            + "WHERE claimed_at < now() - make_interval(secs => ?) AND attempts < ? "
+            + "LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING tenant_id, attachment_id, content_type";
+
+    private static final String GIVE_UP_SQL = "DELETE FROM attachment_derivative_jobs WHERE attempts >= ? "
+            + "AND claimed_at < now() - make_interval(secs => ?) RETURNING tenant_id, attachment_id";
+
+    private static final String SOURCE_SQL = "SELECT a.size, COALESCE(b.s3_key, a.s3_key) AS object_key "
+            + "FROM attachments a LEFT JOIN attachment_blobs b ON b.tenant_id = ? AND b.sha256 = a.blob_sha256 "
+            + "WHERE a.id = ?";
+
+    private static final String UPSERT_SQL = "INSERT INTO attachment_derivatives "
+            + "(tenant_id, attachment_id, kind, s3_key, content_type, width, height, size, etag) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (tenant_id, attachment_id, kind) DO UPDATE SET "
+            + "s3_key = EXCLUDED.s3_key, content_type = EXCLUDED.content_type, width = EXCLUDED.width, "
+            + "height = EXCLUDED.height, size = EXCLUDED.size, etag = EXCLUDED.etag, created_at = now()";
+
+    private static final String SELECT_SQL = "SELECT * FROM attachment_derivatives "
+            + "WHERE tenant_id = ? AND attachment_id = ? ORDER BY width";
+
+    private static final String DELETE_SQL = "DELETE FROM attachment_derivatives "
+            + "WHERE tenant_id = ? AND attachment_id = ? RETURNING s3_key";
+
+    private final JdbcTemplate tacJdbcTemplate;
+    private final ObjectStore objectStore;
+    private final Executor fileProcessingExecutor;
+    private final ObjectProvider<KafkaUtil> kafkaUtilProvider;
+
+    @Value("${attachments.derivatives.enabled:true}")
+    private boolean enabled;
+
+    @Value("${attachments.derivatives.transport:kafka}")
+    private String transport;
+
+    @Value("${spring.kafka.enabled:true}")
+    private boolean kafkaEnabled;
+
+    @Value("${attachments.derivatives.topic:attachment-uploaded}")
+    private String topic;
+
+    @Value("${attachments.derivatives.thumbnail-size:256}")
+    private int thumbnailSize;
+
+    @Value("${attachments.derivatives.preview-size:1600}")
+    private int previewSize;
+
+    @Value("${attachments.derivatives.jpeg-quality:0.85}")
+    private float jpegQuality;
+
+    @Value("${attachments.derivatives.max-source-bytes:104857600}")
+    private long maxSourceBytes;
+
+    @Value("${attachments.derivatives.max-source-pixels:100000000}")
+    private long maxSourcePixels;
+
+    @Value("${attachments.derivatives.max-concurrency:4}")
+    private int maxConcurrency;
+
+    @Value("${attachments.derivatives.max-concurrency-per-tenant:2}")
+    private int maxConcurrencyPerTenant;
+
+    @Value("${attachments.derivatives.max-queued-per-tenant:1000}")
+    private int maxQueuedPerTenant;
+
+    @Value("${attachments.derivatives.claim-timeout-seconds:900}")
+    private long claimTimeoutSeconds;
+
+    @Value("${attachments.derivatives.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${attachments.derivatives.sweep-batch-size:100}")
+    private int sweepBatchSize;
+
+    // Derivative sizes by kind, largest first
+    private final Map<String, Integer> sizes = new LinkedHashMap<>();
+
+    // Queued work by tenant key, and the tenants with queued work in the order of their turns
+    private final Map<String, Deque<AttachmentUploadedEvent>> queues = new HashMap<>();
+    private final Deque<String> turns = new ArrayDeque<>();
+    private final Map<String, Integer> runningByTenant = new HashMap<>();
+    private int running;
+
+    public DerivativeService(JdbcTemplate tacJdbcTemplate,
+                             ObjectStore objectStore,
+                             @Qualifier("fileProcessingExecutor") Executor fileProcessingExecutor,
+                             ObjectProvider<KafkaUtil> kafkaUtilProvider) {
+        this.tacJdbcTemplate = tacJdbcTemplate;
+        this.objectStore = objectStore;
+        this.fileProcessingExecutor = fileProcessingExecutor;
+        this.kafkaUtilProvider = kafkaUtilProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (previewSize >= thumbnailSize) {
+            sizes.put(PREVIEW, previewSize);
+            sizes.put(THUMBNAIL, thumbnailSize);
+        } else {
+            sizes.put(THUMBNAIL, thumbnailSize);
+            sizes.put(PREVIEW, previewSize);
+        }
+    }
+
+    /**
+     * Check whether derivatives are generated for a content type
+     *
+     * @param contentType Content type, may be null
+     * @return Whether the type is an image format that can be decoded
+     */
+    public boolean isSupported(String contentType) {
+        if (!enabled || contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        int semicolon = type.indexOf(';');
+        if (semicolon >= 0) {
+            type = type.substring(0, semicolon);
+        }
+        type = type.trim();
+        return type.startsWith("image/") && ImageIO.getImageReadersByMIMEType(type).hasNext();
+    }
+
+    /**
+     * Have the derivatives of an attachment of the current tenant generated, replacing existing ones
+     *
+     * @param attachmentId Attachment ID
+     * @param contentType Content type of the attachment
+     * @return Whether derivatives are generated for the content type
+     */
+    public boolean requestDerivatives(String attachmentId, String contentType) {
+        if (!isSupported(contentType)) {
+            return false;
+        }
+
+        AttachmentUploadedEvent event = new AttachmentUploadedEvent(TenantContext.getTenantId(), attachmentId, contentType);
+        KafkaUtil kafkaUtil = "kafka".equals(transport) && kafkaEnabled ? kafkaUtilProvider.getIfAvailable() : null;
+        if (kafkaUtil == null) {
+            enqueueQuietly(event);
+            return true;
+        }
+
+        kafkaUtil.sendAsync(topic, attachmentId, event).whenComplete((result, e) -> {
+            if (e != null) {
+                log.warn("Failed to publish upload of attachment {}, generating its derivatives here: {}",
+                        attachmentId, e.getMessage());
+                enqueueQuietly(event);
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Record the generation of an attachment's derivatives as pending and queue it behind the
+     * tenant's earlier work. Once this returns the work survives a restart.
+     *
+     * @param event The uploaded attachment
+     * @return Whether the work was queued; false if the tenant has too much work queued already,
+     *         in which case {@link #sweep()} queues it later
+     * @throws org.springframework.dao.DataAccessException If the work cannot be recorded
+     */
+    public boolean enqueue(AttachmentUploadedEvent event) {
+        String tenantKey = event.getTenantId() != null ? event.getTenantId() : DEFAULT_TENANT;
+        tacJdbcTemplate.update(PENDING_SQL, tenantKey, event.getAttachmentId(), event.getContentType());
+        return queue(event);
+    }
+
+    /**
+     * Queue pending work whose pod went away, or that did not fit its tenant's queue, and give up
+     * on work that failed {@code max-attempts} times. Runs shortly after startup and then periodically.
+     */
+    @Scheduled(initialDelayString = "${attachments.derivatives.sweep-initial-delay-ms:30000}",
+            fixedDelayString = "${attachments.derivatives.sweep-interval-ms:300000}")
+    public void sweep() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            for (Map<String, Object> row : tacJdbcTemplate.queryForList(GIVE_UP_SQL, maxAttempts, claimTimeoutSeconds)) {
+                log.warn("Giving up on derivatives of attachment {} for tenant {} after {} attempts",
+                        row.get("attachment_id"), row.get("tenant_id"), maxAttempts);
+            }
+
+            List<Map<String, Object>> rows;
+            do {
+                rows = tacJdbcTemplate.queryForList(SWEEP_SQL, claimTimeoutSeconds, maxAttempts, sweepBatchSize);
+                int queued = 0;
+                for (Map<String, Object> row : rows) {
+                    String tenantId = (String) row.get("tenant_id");
+                    if (queue(new AttachmentUploadedEvent(DEFAULT_TENANT.equals(tenantId) ? null : tenantId,
+                            (String) row.get("attachment_id"), (String) row.get("content_type")))) {
+                        queued++;
+                    }
+                }
+                if (!rows.isEmpty()) {
+                    log.info("Queued {} of {} pending derivative jobs", queued, rows.size());
+                }
+                if (queued < rows.size()) {
+                    // Queues are full, the rest is swept again once its claim times out
+                    return;
+                }
+            } while (rows.size() == sweepBatchSize);
+        } catch (Exception e) {
+            log.error("Error sweeping pending derivative jobs", e);
+        }
+    }
+
+    private void enqueueQuietly(AttachmentUploadedEvent event) {
+        try {
+            enqueue(event);
+        } catch (Exception e) {
+            log.warn("Failed to record derivatives of attachment {} as pending, generating them anyway: {}",
+                    event.getAttachmentId(), e.getMessage());
+            queue(event);
+        }
+    }
+
+    private boolean queue(AttachmentUploadedEvent event) {
+        String tenantKey = event.getTenantId() != null ? event.getTenantId() : DEFAULT_TENANT;
+        synchronized (queues) {
+            Deque<AttachmentUploadedEvent> queue = queues.computeIfAbsent(tenantKey, key -> new ArrayDeque<>());
+            if (queue.size() >= maxQueuedPerTenant) {
+                log.warn("Leaving derivatives of attachment {} pending, tenant {} has {} images queued",
+                        event.getAttachmentId(), tenantKey, queue.size());
+                return false;
+            }
+            if (queue.isEmpty()) {
+                turns.addLast(tenantKey);
+            }
+            queue.addLast(event);
+        }
+        dispatch();
+        return true;
+    }
+
+    /**
+     * Get the derivatives of an attachment of the current tenant
+     *
+     * @param attachmentId Attachment ID
+     * @return The derivatives, smallest first; empty while they are generated
+     */
+    public List<Derivative> list(String attachmentId) {
+        return tacJdbcTemplate.query(SELECT_SQL, (rs, rowNum) -> new Derivative(
+                rs.getString("kind"),
+                rs.getString("s3_key"),
+                rs.getString("content_type"),
+                rs.getInt("width"),
+                rs.getInt("height"),
+                rs.getLong("size"),
+                rs.getString("etag")), tenantKey(), attachmentId);
+    }
+
+    /**
+     * Get one derivative of an attachment of the current tenant
+     *
+     * @param attachmentId Attachment ID
+     * @param kind {@link #THUMBNAIL} or {@link #PREVIEW}
+     * @return The derivative, or null if it does not exist (yet)
+     */
+    public Derivative find(String attachmentId, String kind) {
+        return list(attachmentId).stream()
+                .filter(derivative -> derivative.getKind().equals(kind))
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Open a stored derivative
+     *
+     * @param derivative The derivative
+     * @return The open object; the caller must close it
+     * @throws FileNotFoundException If the object is gone
+     * @throws IOException If the object cannot be read
+     */
+    public StoredObject open(Derivative derivative) throws IOException {
+        return objectStore.open(derivative.getObjectKey(), null, null);
+    }
+
+    /**
+     * Delete the derivatives of an attachment of the current tenant
+     *
+     * @param attachmentId Attachment ID
+     */
+    public void delete(String attachmentId) {
+        List<String> keys = tacJdbcTemplate.queryForList(DELETE_SQL, String.class, tenantKey(), attachmentId);
+        if (keys.isEmpty()) {
+            return;
+        }
+        try {
+            objectStore.delete(keys);
+        } catch (IOException e) {
+            log.warn("Failed to delete derivatives {} of attachment {}: {}", keys, attachmentId, e.getMessage());
+        }
+    }
+
+    /**
+     * Start queued work while there are free slots, taking the tenants in turns
+     */
+    private void dispatch() {
+        while (true) {
+            AttachmentUploadedEvent next = null;
+            synchronized (queues) {
+                // Tenants at their own limit keep their turn for later
+                for (int i = turns.size(); i > 0 && next == null && running < maxConcurrency; i--) {
+                    String tenantKey = turns.pollFirst();
+                    Deque<AttachmentUploadedEvent> queue = queues.get(tenantKey);
+                    if (runningByTenant.getOrDefault(tenantKey, 0) < maxConcurrencyPerTenant) {
+                        next = queue.pollFirst();
+                        runningByTenant.merge(tenantKey, 1, Integer::sum);
+                        running++;
+                    }
+                    if (queue.isEmpty()) {
+                        queues.remove(tenantKey);
+                    } else {
+                        turns.addLast(tenantKey);
+                    }
+                }
+            }
+            if (next == null) {
+                return;
+            }
+
+            AttachmentUploadedEvent event = next;
+            try {
+                fileProcessingExecutor.execute(() -> {
+                    try {
+                        if (generate(event)) {
+                            done(event);
+                        }
+                    } finally {
+                        finished(event);
+                        dispatch();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                log.warn("Leaving derivatives of attachment {} pending, the executor is shut down",
+                        event.getAttachmentId());
+                finished(event);
+                return;
+            }
+        }
+    }
+
+    private void done(AttachmentUploadedEvent event) {
+        String tenantKey = event.getTenantId() != null ? event.getTenantId() : DEFAULT_TENANT;
+        try {
+            tacJdbcTemplate.update(DONE_SQL, tenantKey, event.getAttachmentId());
+        } catch (Exception e) {
+            // The sweep generates them once more
+            log.warn("Failed to clear pending derivatives of attachment {}: {}", event.getAttachmentId(), e.getMessage());
+        }
+    }
+
+    private void finished(AttachmentUploadedEvent event) {
+        String tenantKey = event.getTenantId() != null ? event.getTenantId() : DEFAULT_TENANT;
+        synchronized (queues) {
+            running--;
+            runningByTenant.computeIfPresent(tenantKey, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    /**
+     * Generate the derivatives of an attachment
+     *
+     * @return Whether the work is done, including when there is nothing to generate; false if it
+     *         failed and should be tried again
+     */
+    private boolean generate(AttachmentUploadedEvent event) {
+        String attachmentId = event.getAttachmentId();
+        String tenantId = event.getTenantId();
+        if (tenantId != null) {
+            TenantContext.setTenantId(tenantId);
+        } else {
+            TenantContext.clear();
+        }
+
+        try {
+            List<Map<String, Object>> rows = tacJdbcTemplate.queryForList(SOURCE_SQL, tenantKey(), attachmentId);
+            if (rows.isEmpty() || rows.get(0).get("object_key") == null) {
+                log.debug("Attachment {} is gone, skipping its derivatives", attachmentId);
+                return true;
+            }
+            Number size = (Number) rows.get(0).get("size");
+            if (size != null && size.longValue() > maxSourceBytes) {
+                log.info("Attachment {} of {} bytes is too large for derivatives", attachmentId, size);
+                return true;
+            }
+
+            long start = System.nanoTime();
+            BufferedImage image;
+            try (StoredObject object = objectStore.open((String) rows.get(0).get("object_key"), null, null);
+                 InputStream body = openBody(object)) {
+                image = ImageDerivatives.read(body, sizes.values().iterator().next(), maxSourcePixels);
+            } catch (FileNotFoundException e) {
+                log.debug("File of attachment {} is gone, skipping its derivatives", attachmentId);
+                return true;
+            }
+            if (image == null) {
+                log.info("No image reader for attachment {} of type {}", attachmentId, event.getContentType());
+                return true;
+            }
+
+            boolean alpha = image.getColorModel().hasAlpha();
+            String contentType = alpha ? ImageDerivatives.PNG : ImageDerivatives.JPEG;
+            List<String> keys = new ArrayList<>();
+            for (Map.Entry<String, Integer> entry : sizes.entrySet()) {
+                image = ImageDerivatives.scale(image, entry.getValue(), alpha);
+                ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+                ImageDerivatives.write(image, contentType, jpegQuality, encoded);
+
+                String key = KEY_PREFIX + attachmentId + "-" + entry.getKey();
+                ObjectInfo stored = objectStore.put(key, contentType, new ByteArrayInputStream(encoded.toByteArray()));
+                keys.add(key);
+                tacJdbcTemplate.update(UPSERT_SQL, tenantKey(), attachmentId, entry.getKey(), key, contentType,
+                        image.getWidth(), image.getHeight(), stored.getSize(), stored.getETag());
+            }
+
+            if (tacJdbcTemplate.queryForList(SOURCE_SQL, tenantKey(), attachmentId).isEmpty()) {
+                // Deleted while its derivatives were generated
+                delete(attachmentId);
+                return true;
+            }
+            log.info("Generated derivatives {} of attachment {} for tenant {} in {} ms", keys, attachmentId,
+                    tenantKey(), (System.nanoTime() - start) / 1_000_000);
+            return true;
+        } catch (Exception e) {
+            log.warn("Failed to generate derivatives of attachment {} for tenant {}: {}", attachmentId, tenantKey(),
+                    e.toString());
+            return false;
+        } finally {
+            TenantContext.clear();
+        }
+    }
+
+    private static InputStream openBody(StoredObject object) throws IOException {
+        InputStream stored = object.getBody() != null ? object.getBody() : Files.newInputStream(object.getFile());
+        if (object.getContentEncoding() == null) {
+            return stored;
+        }
+        CompressionCodec codec = CompressionCodec.forEncoding(object.getContentEncoding());
+        try {
+            if (codec == null) {
+                throw new IOException("Unknown encoding " + object.getContentEncoding() + " of " + object.getKey());
+            }
+            return codec.decode(stored);
+        } catch (IOException e) {
+            stored.close();
+            throw e;
+        }
+    }
+
+    private static String tenantKey() {
+        String tenantId = TenantContext.getTenantId();
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+
+    /**
+     * A stored derivative of an attachment
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Derivative {
+
+        private final String kind;
+        private final String objectKey;
+        private final String contentType;
+        private final int width;
+        private final int height;
+        private final long size;
+
+        /**
+         * Entity tag of the stored object, quoted; may be null
+         */
+        private final String eTag;
+    }
+}
@@ -0,0 +1,280 @@
+package com.example.attachment.service;
+
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.S3UploadResult;
+import com.example.applib.util.S3Util;
+import com.example.attachment.model.DirectUploadRequest;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.Part;
+
+/**
+ * Attachment uploads that go from the client straight to S3.
+ *
+ * <p>An upload is started as an S3 multipart upload and the client is handed presigned URLs for
+ * its parts, in batches, so the file never passes through this service and may be as large as S3
+ * allows. Pending uploads are kept in {@code attachment_uploads}, created by
+ * {@code scripts/init-db.sql}; completing one records the attachment in {@code attachments}, once
+ * the parts S3 received are checked to cover the declared size without gaps. Uploads that see
+ * neither a request for part URLs nor completion within
+ * {@code attachments.direct-upload.expiry-seconds} are aborted, so their parts stop costing storage.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DirectUploadService {
+
+    private static final String KEY_PREFIX = "upload-";
+    private static final int EXPIRE_BATCH_SIZE = 1000;
+
+    private static final String INSERT_SQL = "INSERT INTO attachment_uploads "
+            + "(id, tenant_id, upload_id, s3_key, file_name, content_type, metadata, part_size, part_count, size) "
+            + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    // Handing out part URLs shows the client is still uploading
+    private static final String TOUCH_SQL = "UPDATE attachment_uploads SET updated_at = now() "
+            + "WHERE id = ? AND tenant_id = ? RETURNING *";
+
+    // Claiming the row makes sure only one request completes or aborts an upload
+    private static final String CLAIM_SQL = "DELETE FROM attachment_uploads WHERE id = ? AND tenant_id = ? RETURNING *";
+
+    private static final String EXPIRE_SQL = "DELETE FROM attachment_uploads WHERE id IN ("
+            + "SELECT id FROM attachment_uploads WHERE updated_at < now() - make_interval(secs => ?) "
+            + "LIMIT ? FOR UPDATE SKIP LOCKED) RETURNING tenant_id, upload_id, s3_key";
+
+    private final JdbcTemplate tacJdbcTemplate;
+    private final S3Util s3Util;
+
+    @Value("${attachments.direct-upload.part-size-bytes:16777216}")
+    private long partSize;
+
+    @Value("${attachments.direct-upload.max-file-size-bytes:5497558138880}")
+    private long maxFileSize;
+
+    @Value("${attachments.direct-upload.url-expiration-minutes:60}")
+    private int urlExpirationMinutes;
+
+    @Value("${attachments.direct-upload.max-urls-per-request:1000}")
+    private int maxUrlsPerRequest;
+
+    @Value("${attachments.direct-upload.expiry-seconds:86400}")
+    private long expirySeconds;
+
+    /**
+     * Start a direct upload for the current tenant
+     *
+     * @param request The attachment to upload
+     * @return ID of the upload, which becomes the attachment ID, with the part size and part count
+     * @throws IllegalArgumentException If the file is empty or too large
+     * @throws IOException If the upload cannot be started
+     */
+    public Map<String, Object> start(DirectUploadRequest request) throws IOException {
+        if (request.getSize() <= 0 || request.getSize() > maxFileSize) {
+            throw new IllegalArgumentException("File size must be between 1 and " + maxFileSize + " bytes");
+        }
+
+        long chosenPartSize = MultipartUploads.partSize(request.getSize(), partSize);
+        int partCount = (int) MultipartUploads.ceilDiv(request.getSize(), chosenPartSize);
+
+        String id = UUID.randomUUID().toString();
+        String keyName = KEY_PREFIX + id;
+        String uploadId = s3Util.createMultipartUpload(keyName, request.getContentType());
+        try {
+            tacJdbcTemplate.update(INSERT_SQL, id, MultipartUploads.tenantKey(), uploadId, keyName,
+                    request.getFileName(), request.getContentType(), request.getMetadata(), chosenPartSize, partCount,
+                    request.getSize());
+        } catch (Exception e) {
+            s3Util.abortMultipartUpload(keyName, uploadId);
+            throw new IOException("Failed to record upload " + id + ": " + e.getMessage(), e);
+        }
+
+        Map<String, Object> upload = new HashMap<>();
+        upload.put("id", id);
+        upload.put("partSize", chosenPartSize);
+        upload.put("partCount", partCount);
+        upload.put("urlExpirationMinutes", urlExpirationMinutes);
+        return upload;
+    }
+
+    /**
+     * Presign a batch of part URLs of a pending upload
+     *
+     * @param id Upload ID
+     * @param firstPart First part number, from 1
+     * @param count Number of parts, cut off at the last part
+     * @return Pre-signed URL by part number, or null if there is no such upload
+     * @throws IllegalArgumentException If the batch is empty, too large or outside the upload
+     * @throws IOException If signing fails
+     */
+    public Map<Integer, URL> presignParts(String id, int firstPart, int count) throws IOException {
+        List<Map<String, Object>> rows = tacJdbcTemplate.queryForList(TOUCH_SQL, id, MultipartUploads.tenantKey());
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> upload = rows.get(0);
+
+        int partCount = ((Number) upload.get("part_count")).intValue();
+        if (count < 1 || count > maxUrlsPerRequest || firstPart < 1 || firstPart > partCount) {
+            throw new IllegalArgumentException("Request between 1 and " + maxUrlsPerRequest
+                    + " parts starting from a part between 1 and " + partCount);
+        }
+
+        List<Integer> partNumbers = IntStream.rangeClosed(firstPart, Math.min(firstPart + count - 1, partCount))
+                .boxed()
+                .collect(Collectors.toList());
+        return s3Util.generatePresignedPartUrls((String) upload.get("s3_key"), (String) upload.get("upload_id"),
+                partNumbers, urlExpirationMinutes);
+    }
+
+    /**
+     * Complete a pending upload and record the attachment
+     *
+     * @param id Upload ID, which becomes the attachment ID
+     * @return The attachment, or null if there is no such upload
+     * @throws IllegalStateException If parts are missing or do not add up to the declared size; the
+     *         upload stays pending so the client can send them and complete again
+     * @throws IOException If completing fails; the upload can then be completed again
+     */
+    public Map<String, Object> complete(String id) throws IOException {
+        String tenantId = MultipartUploads.tenantKey();
+        List<Map<String, Object>> rows = tacJdbcTemplate.queryForList(CLAIM_SQL, id, tenantId);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> upload = rows.get(0);
+        String keyName = (String) upload.get("s3_key");
+
+        String uploadId = (String) upload.get("upload_id");
+
+        S3UploadResult result;
+        try {
+            Map<Integer, String> partETags = new HashMap<>();
+            long size = checkParts(id, upload, s3Util.listParts(keyName, uploadId), partETags);
+            result = s3Util.completeMultipartUpload(keyName, uploadId, partETags, size);
+        } catch (IOException | IllegalStateException e) {
+            restore(upload);
+            throw e;
+        }
+
+        return MultipartUploads.recordAttachment(tacJdbcTemplate, s3Util, id, keyName, upload.get("file_name"),
+                upload.get("content_type"), result.getSize(), upload.get("metadata"));
+    }
+
+    /**
+     * Abort a pending upload and discard its parts
+     *
+     * @param id Upload ID
+     * @return Whether there was such an upload
+     * @throws IOException If aborting fails; the upload can then be aborted again
+     */
+    public boolean abort(String id) throws IOException {
+        List<Map<String, Object>> rows = tacJdbcTemplate.queryForList(CLAIM_SQL, id, MultipartUploads.tenantKey());
+        if (rows.isEmpty()) {
+            return false;
+        }
+        Map<String, Object> upload = rows.get(0);
+        try {
+            s3Util.abortMultipartUpload((String) upload.get("s3_key"), (String) upload.get("upload_id"));
+        } catch (IOException e) {
+            restore(upload);
+            throw e;
+        }
+        return true;
+    }
+
+    /**
+     * Abort uploads of all tenants that were left pending for too long
+     */
+    @Scheduled(fixedDelayString = "${attachments.direct-upload.cleanup-interval-ms:3600000}")
+    public void abortExpired() {
+        try {
+            List<Map<String, Object>> rows;
+            do {
+                rows = tacJdbcTemplate.queryForList(EXPIRE_SQL, expirySeconds, EXPIRE_BATCH_SIZE);
+                for (Map<String, Object> row : rows) {
+                    String tenantId = (String) row.get("tenant_id");
+                    try {
+                        if (MultipartUploads.DEFAULT_TENANT.equals(tenantId)) {
+                            TenantContext.clear();
+                        } else {
+                            TenantContext.setTenantId(tenantId);
+                        }
+                        s3Util.abortMultipartUpload((String) row.get("s3_key"), (String) row.get("upload_id"));
+                    } catch (Exception e) {
+                        // The bucket's lifecycle rule for incomplete uploads is the safety net
+                        log.warn("Failed to abort expired upload of {} for tenant {}: {}",
+                                row.get("s3_key"), tenantId, e.getMessage());
+                    } finally {
+                        TenantContext.clear();
+                    }
+                }
+            } while (rows.size() == EXPIRE_BATCH_SIZE);
+        } catch (Exception e) {
+            log.error("Error aborting expired direct uploads", e);
+        }
+    }
+
+    /**
+     * Check that the parts are numbered 1 to the part count without gaps, that every part but the
+     * last has the part size and that together they have the declared size
+     *
+     * @return Size of the file
+     */
+    private static long checkParts(String id, Map<String, Object> upload, List<Part> parts,
+                                   Map<Integer, String> partETags) {
+        int partCount = ((Number) upload.get("part_count")).intValue();
+        long partSize = ((Number) upload.get("part_size")).longValue();
+        Number declaredSize = (Number) upload.get("size");
+
+        long size = 0;
+        for (Part part : parts) {
+            int partNumber = part.partNumber();
+            if (partNumber < 1 || partNumber > partCount) {
+                throw new IllegalStateException("Upload " + id + " has part " + partNumber + " beyond its "
+                        + partCount + " parts");
+            }
+            if (partNumber < partCount && part.size() != partSize) {
+                throw new IllegalStateException("Part " + partNumber + " of upload " + id + " has "
+                        + part.size() + " bytes instead of " + partSize);
+            }
+            partETags.put(partNumber, part.eTag());
+            size += part.size();
+        }
+        if (partETags.size() != partCount) {
+            int missing = IntStream.rangeClosed(1, partCount)
+                    .filter(partNumber -> !partETags.containsKey(partNumber))
+                    .findFirst()
+                    .orElse(partCount);
+            throw new IllegalStateException("Upload " + id + " has " + partETags.size() + " of " + partCount
+                    + " parts, part " + missing + " is missing");
+        }
+        if (declaredSize != null && size != declaredSize.longValue()) {
+            throw new IllegalStateException("Parts of upload " + id + " add up to " + size + " bytes instead of "
+                    + declaredSize);
+        }
+        return size;
+    }
+
+    private void restore(Map<String, Object> upload) {
+        try {
+            tacJdbcTemplate.update(INSERT_SQL, upload.get("id"), upload.get("tenant_id"), upload.get("upload_id"),
+                    upload.get("s3_key"), upload.get("file_name"), upload.get("content_type"), upload.get("metadata"),
+                    upload.get("part_size"), upload.get("part_count"), upload.get("size"));
+        } catch (Exception e) {
+            log.error("Failed to restore pending upload {}", upload.get("id"), e);
+        }
+    }
+
+}
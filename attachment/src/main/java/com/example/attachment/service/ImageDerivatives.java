@@ -0,0 +1,145 @@
+package com.example.attachment.service;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Iterator;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * Decoding, scaling and encoding of image derivatives with bounded memory.
+ *
+ * <p>The source is decoded with subsampling, so only about every n-th pixel of every n-th row is
+ * kept and a photo of many megapixels never exists in memory at full size. Its dimensions are
+ * read from the header first, which rejects decompression bombs before any pixel is decoded.
+ */
+final class ImageDerivatives {
+
+    static final String JPEG = "image/jpeg";
+    static final String PNG = "image/png";
+
+    private ImageDerivatives() {
+    }
+
+    /**
+     * Decode the first image of a stream, subsampled to no less than a size
+     *
+     * @param inputStream Encoded image, not closed
+     * @param minEdge Smallest longer edge to keep; the image is decoded at full size if it is smaller
+     * @param maxPixels Largest number of source pixels to accept
+     * @return The decoded image, or null if the format is not supported
+     * @throws IOException If the image is corrupt or too large
+     */
+    static BufferedImage read(InputStream inputStream, int minEdge, long maxPixels) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(inputStream)) {
+            if (input == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+
+            ImageReader reader = readers.next();
+            try {
+                // Forward only and without metadata, so the stream is not cached behind the reader
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    throw new IOException("Image of " + width + "x" + height + " pixels exceeds the limit of "
+                            + maxPixels);
+                }
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.max(1, Math.max(width, height) / Math.max(minEdge, 1));
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Scale an image down so its longer edge fits a size, halving in steps for a smooth result
+     *
+     * @param image Source image
+     * @param maxEdge Longest edge of the result
+     * @param alpha Whether to keep transparency
+     * @return The scaled image, or the source converted to the target type if it is small enough
+     */
+    static BufferedImage scale(BufferedImage image, int maxEdge, boolean alpha) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        double factor = Math.min(1.0, (double) maxEdge / Math.max(width, height));
+        int targetWidth = Math.max(1, (int) Math.round(width * factor));
+        int targetHeight = Math.max(1, (int) Math.round(height * factor));
+
+        BufferedImage current = image;
+        do {
+            // Bilinear filtering only looks at neighbouring pixels, so never shrink by more than half at once
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height,
+                    alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                if (!alpha) {
+                    // Transparent areas of the source become white instead of black
+                    graphics.setColor(Color.WHITE);
+                    graphics.fillRect(0, 0, width, height);
+                }
+                graphics.drawImage(current, 0, 0, width, height, null);
+            } finally {
+                graphics.dispose();
+            }
+            current = next;
+        } while (width > targetWidth || height > targetHeight);
+        return current;
+    }
+
+    /**
+     * Encode an image as JPEG or PNG
+     *
+     * @param image The image
+     * @param contentType {@link #JPEG} or {@link #PNG}
+     * @param jpegQuality JPEG quality between 0 and 1
+     * @param outputStream Where to write the image, not closed
+     * @throws IOException If encoding fails
+     */
+    static void write(BufferedImage image, String contentType, float jpegQuality, OutputStream outputStream)
+            throws IOException {
+        Iterator<ImageWriter> writers = ImageIO.getImageWritersByMIMEType(contentType);
+        if (!writers.hasNext()) {
+            throw new IOException("No image writer for " + contentType);
+        }
+
+        ImageWriter writer = writers.next();
+        try (ImageOutputStream output = ImageIO.createImageOutputStream(outputStream)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            if (JPEG.equals(contentType)) {
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(jpegQuality);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+            }
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.attachment.service;
+
+import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.S3Util;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Part sizing and attachment records shared by the uploads that go through S3 multipart uploads,
+ * {@link DirectUploadService} and {@link ResumableUploadService}.
+ */
+final class MultipartUploads {
+
+    static final String DEFAULT_TENANT = "default";
+
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+    private static final long PART_SIZE_STEP = 1024 * 1024;
+    private static final int MAX_PARTS = 10_000;
+
+    // A request that took over a stale completion may find the attachment recorded already
+    private static final String INSERT_ATTACHMENT_SQL = "INSERT INTO attachments "
+            + "(id, file_name, content_type, size, metadata, s3_key) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private MultipartUploads() {
+    }
+
+    /**
+     * Choose the part size of an upload. Parts are grown for files that would otherwise need more
+     * than S3's 10000 parts, and rounded up to whole MiB.
+     *
+     * @param fileSize Size of the file
+     * @param preferredPartSize Configured part size
+     * @return The part size, at least S3's minimum of 5 MiB
+     */
+    static long partSize(long fileSize, long preferredPartSize) {
+        long partSize = Math.max(Math.max(preferredPartSize, MIN_PART_SIZE), ceilDiv(fileSize, MAX_PARTS));
+        return ceilDiv(partSize, PART_SIZE_STEP) * PART_SIZE_STEP;
+    }
+
+    static long ceilDiv(long dividend, long divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+
+    static String tenantKey() {
+        String tenantId = TenantContext.getTenantId();
+        return tenantId != null ? tenantId : DEFAULT_TENANT;
+    }
+
+    /**
+     * Record the attachment of a completed upload, deleting the object if that fails
+     *
+     * @param tacJdbcTemplate Template of the database holding the attachments
+     * @param s3Util Store holding the object
+     * @param id Upload ID, which becomes the attachment ID
+     * @param keyName Key of the completed object
+     * @param fileName File name, may be null
+     * @param contentType Content type, may be null
+     * @param size Size of the completed object
+     * @param metadata Metadata, may be null
+     * @return The attachment
+     * @throws IOException If the attachment cannot be recorded
+     */
+    static Map<String, Object> recordAttachment(JdbcTemplate tacJdbcTemplate, S3Util s3Util, String id,
+                                                String keyName, Object fileName, Object contentType, long size,
+                                                Object metadata) throws IOException {
+        try {
+            tacJdbcTemplate.update(INSERT_ATTACHMENT_SQL, id, fileName, contentType, size, metadata, keyName);
+        } catch (Exception e) {
+            s3Util.deleteObject(keyName);
+            throw new IOException("Failed to record attachment " + id + ": " + e.getMessage(), e);
+        }
+
+        Map<String, Object> attachment = new HashMap<>();
+        attachment.put("id", id);
+        attachment.put("fileName", fileName);
+        attachment.put("contentType", contentType);
+        attachment.put("size", size);
+        attachment.put("metadata", metadata);
+        return attachment;
+    }
+}
@@ -0,0 +1,293 @@
+package com.example.attachment.service;
+
+import com.example.applib.util.RedisUtil;
+import com.example.applib.util.S3UploadResult;
+import com.example.applib.util.S3Util;
+import com.example.attachment.model.DirectUploadRequest;
+import com.example.attachment.model.ResumableUploadStatus;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMap;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+/**
+ * Attachment uploads in chunks that survive dropped connections, after the tus protocol.
+ *
+ * <p>Every chunk becomes one part of an S3 multipart upload, so chunks start at multiples of the
+ * chunk size and may arrive in any order and in parallel. Which chunks arrived, with their part
+ * ETags, is kept in a Redis map per upload that expires after
+ * {@code attachments.resumable-upload.expiry-seconds} without a chunk. A client that lost its
+ * connection asks for the resume offset, the bytes received without a gap, and sends only what
+ * follows. The request that delivers the last missing chunk puts the parts together in order
+ * and records the attachment. It marks the upload as completing with a timestamp; a mark older
+ * than {@code attachments.resumable-upload.completing-timeout-seconds}, left by a pod that died
+ * while completing, is taken over by the next chunk sent or cleared by an abort.
+ *
+ * <p>Parts of uploads that expire are removed by the bucket's lifecycle rule for incomplete
+ * multipart uploads.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "spring.data.redis.enabled", havingValue = "true", matchIfMissing = true)
+public class ResumableUploadService {
+
+    private static final String KEY_PREFIX = "resumable-";
+    private static final String STATE_PREFIX = "resumable-uploads:";
+
+    // Fields of the state map; each received chunk adds CHUNK_FIELD + its number with the part's ETag
+    private static final String UPLOAD_ID_FIELD = "uploadId";
+    private static final String S3_KEY_FIELD = "s3Key";
+    private static final String LENGTH_FIELD = "length";
+    private static final String CHUNK_SIZE_FIELD = "chunkSize";
+    private static final String FILE_NAME_FIELD = "fileName";
+    private static final String CONTENT_TYPE_FIELD = "contentType";
+    private static final String METADATA_FIELD = "metadata";
+    private static final String COMPLETING_FIELD = "completing";
+    private static final String CHUNK_FIELD = "chunk:";
+
+    private final JdbcTemplate tacJdbcTemplate;
+    private final RedisUtil redisUtil;
+    private final S3Util s3Util;
+
+    @Value("${attachments.resumable-upload.chunk-size-bytes:8388608}")
+    private long chunkSize;
+
+    @Value("${attachments.resumable-upload.max-file-size-bytes:5497558138880}")
+    private long maxFileSize;
+
+    @Value("${attachments.resumable-upload.expiry-seconds:86400}")
+    private long expirySeconds;
+
+    @Value("${attachments.resumable-upload.completing-timeout-seconds:600}")
+    private long completingTimeoutSeconds;
+
+    /**
+     * Start a resumable upload for the current tenant
+     *
+     * @param request The attachment to upload; its size is the exact length of the upload
+     * @return The upload, with nothing received yet
+     * @throws IllegalArgumentException If the file is empty or too large
+     * @throws IOException If the upload cannot be started
+     */
+    public ResumableUploadStatus start(DirectUploadRequest request) throws IOException {
+        if (request.getSize() <= 0 || request.getSize() > maxFileSize) {
+            throw new IllegalArgumentException("File size must be between 1 and " + maxFileSize + " bytes");
+        }
+
+        long chosenChunkSize = MultipartUploads.partSize(request.getSize(), chunkSize);
+
+        String id = UUID.randomUUID().toString();
+        String keyName = KEY_PREFIX + id;
+        String uploadId = s3Util.createMultipartUpload(keyName, request.getContentType());
+
+        Map<String, String> fields = new HashMap<>();
+        fields.put(UPLOAD_ID_FIELD, uploadId);
+        fields.put(S3_KEY_FIELD, keyName);
+        fields.put(LENGTH_FIELD, String.valueOf(request.getSize()));
+        fields.put(CHUNK_SIZE_FIELD, String.valueOf(chosenChunkSize));
+        putIfNotNull(fields, FILE_NAME_FIELD, request.getFileName());
+        putIfNotNull(fields, CONTENT_TYPE_FIELD, request.getContentType());
+        putIfNotNull(fields, METADATA_FIELD, request.getMetadata());
+        try {
+            RMap<String, String> state = state(id);
+            state.putAll(fields);
+            state.expire(Duration.ofSeconds(expirySeconds));
+        } catch (Exception e) {
+            s3Util.abortMultipartUpload(keyName, uploadId);
+            throw new IOException("Failed to record upload " + id + ": " + e.getMessage(), e);
+        }
+
+        log.info("Started resumable upload {} of {} bytes in chunks of {}", id, request.getSize(), chosenChunkSize);
+        return new ResumableUploadStatus(id, 0, request.getSize(), chosenChunkSize, List.of(), null);
+    }
+
+    /**
+     * Get the progress of an upload of the current tenant
+     *
+     * @param id Upload ID
+     * @return The progress, or null if there is no such upload
+     */
+    public ResumableUploadStatus getStatus(String id) {
+        Map<String, String> fields = state(id).readAllMap();
+        return fields.containsKey(UPLOAD_ID_FIELD) ? toStatus(id, fields, null) : null;
+    }
+
+    /**
+     * Store one chunk of an upload. Sending a chunk again replaces it, so a chunk whose response
+     * got lost can simply be retried.
+     *
+     * @param id Upload ID
+     * @param offset Offset of the chunk in the file, a multiple of the chunk size
+     * @param data Data of the chunk, not closed
+     * @param contentLength Length of the chunk: the chunk size, or what is left for the last chunk
+     * @return The progress, with the attachment once this was the last missing chunk, or null if
+     *         there is no such upload
+     * @throws IllegalArgumentException If the chunk does not line up with the chunks of the upload
+     * @throws IOException If storing the chunk or completing the upload fails; the chunk can be sent again
+     */
+    public ResumableUploadStatus writeChunk(String id, long offset, InputStream data, long contentLength)
+            throws IOException {
+        RMap<String, String> state = state(id);
+        Map<String, String> fields = state.readAllMap();
+        if (!fields.containsKey(UPLOAD_ID_FIELD)) {
+            return null;
+        }
+
+        long length = Long.parseLong(fields.get(LENGTH_FIELD));
+        long uploadChunkSize = Long.parseLong(fields.get(CHUNK_SIZE_FIELD));
+        if (offset < 0 || offset >= length || offset % uploadChunkSize != 0) {
+            throw new IllegalArgumentException("Chunks must start at a multiple of " + uploadChunkSize
+                    + " below " + length);
+        }
+        long expectedLength = Math.min(uploadChunkSize, length - offset);
+        if (contentLength != expectedLength) {
+            throw new IllegalArgumentException("The chunk at " + offset + " must be " + expectedLength + " bytes");
+        }
+
+        int chunkNumber = (int) (offset / uploadChunkSize) + 1;
+        String eTag = s3Util.uploadPart(fields.get(S3_KEY_FIELD), fields.get(UPLOAD_ID_FIELD), chunkNumber, data,
+                contentLength);
+
+        // Refresh the expiry after writing, so a chunk that raced the end of the upload cannot
+        // leave a map behind that never expires
+        state.fastPut(CHUNK_FIELD + chunkNumber, eTag);
+        state.expire(Duration.ofSeconds(expirySeconds));
+        fields = state.readAllMap();
+        if (!fields.containsKey(UPLOAD_ID_FIELD)) {
+            // Completed or aborted by another request meanwhile
+            return null;
+        }
+
+        int chunkCount = (int) MultipartUploads.ceilDiv(length, uploadChunkSize);
+        Map<Integer, String> partETags = partETags(fields);
+        if (partETags.size() < chunkCount) {
+            return toStatus(id, fields, null);
+        }
+        String claim = claimCompletion(id, state);
+        if (claim == null) {
+            return toStatus(id, fields, null);
+        }
+        return toStatus(id, fields, complete(id, state, fields, partETags, length, claim));
+    }
+
+    /**
+     * Abort an upload and discard its chunks
+     *
+     * @param id Upload ID
+     * @return Whether there was such an upload
+     * @throws IllegalStateException If the upload is being completed and the mark is not stale
+     * @throws IOException If the parts cannot be discarded; they then expire with the bucket's lifecycle rule
+     */
+    public boolean abort(String id) throws IOException {
+        RMap<String, String> state = state(id);
+        Map<String, String> fields = state.readAllMap();
+        if (!fields.containsKey(UPLOAD_ID_FIELD)) {
+            return false;
+        }
+        String completing = fields.get(COMPLETING_FIELD);
+        if (completing != null && !isStale(completing)) {
+            throw new IllegalStateException("Upload " + id + " is being completed");
+        }
+
+        // Only one request gets to delete the state
+        if (!state.delete()) {
+            return false;
+        }
+        s3Util.abortMultipartUpload(fields.get(S3_KEY_FIELD), fields.get(UPLOAD_ID_FIELD));
+        log.info("Aborted resumable upload {}", id);
+        return true;
+    }
+
+    /**
+     * Mark an upload as completing, taking over a stale mark
+     *
+     * @return The mark, to release it with, or null if another request is completing the upload
+     */
+    private String claimCompletion(String id, RMap<String, String> state) {
+        String claim = System.currentTimeMillis() + " " + UUID.randomUUID();
+        if (state.fastPutIfAbsent(COMPLETING_FIELD, claim)) {
+            return claim;
+        }
+        String current = state.get(COMPLETING_FIELD);
+        if (current == null || !isStale(current) || !state.replace(COMPLETING_FIELD, current, claim)) {
+            return null;
+        }
+        log.warn("Taking over completion of resumable upload {}, marked at {}", id, current.split(" ", 2)[0]);
+        return claim;
+    }
+
+    private boolean isStale(String claim) {
+        long markedAt = Long.parseLong(claim.split(" ", 2)[0]);
+        return System.currentTimeMillis() - markedAt > completingTimeoutSeconds * 1000;
+    }
+
+    private Map<String, Object> complete(String id, RMap<String, String> state, Map<String, String> fields,
+                                         Map<Integer, String> partETags, long length, String claim)
+            throws IOException {
+        String keyName = fields.get(S3_KEY_FIELD);
+        S3UploadResult result;
+        try {
+            result = s3Util.completeMultipartUpload(keyName, fields.get(UPLOAD_ID_FIELD), partETags, length);
+        } catch (IOException e) {
+            // Let the next chunk sent, which may be a retry of the last one, try again
+            state.remove(COMPLETING_FIELD, claim);
+            throw e;
+        }
+        state.delete();
+
+        Map<String, Object> attachment = MultipartUploads.recordAttachment(tacJdbcTemplate, s3Util, id, keyName,
+                fields.get(FILE_NAME_FIELD), fields.get(CONTENT_TYPE_FIELD), result.getSize(),
+                fields.get(METADATA_FIELD));
+        log.info("Completed resumable upload {} of {} bytes", id, result.getSize());
+        return attachment;
+    }
+
+    private static ResumableUploadStatus toStatus(String id, Map<String, String> fields,
+                                                  Map<String, Object> attachment) {
+        long length = Long.parseLong(fields.get(LENGTH_FIELD));
+        long uploadChunkSize = Long.parseLong(fields.get(CHUNK_SIZE_FIELD));
+        List<Integer> receivedChunks = new ArrayList<>(partETags(fields).keySet());
+
+        // Chunks are numbered from 1, so the gap-free ones are those whose number matches their position
+        int contiguous = 0;
+        while (contiguous < receivedChunks.size() && receivedChunks.get(contiguous) == contiguous + 1) {
+            contiguous++;
+        }
+        long offset = Math.min(contiguous * uploadChunkSize, length);
+        return new ResumableUploadStatus(id, offset, length, uploadChunkSize, receivedChunks, attachment);
+    }
+
+    private static Map<Integer, String> partETags(Map<String, String> fields) {
+        Map<Integer, String> partETags = new TreeMap<>();
+        fields.forEach((field, value) -> {
+            if (field.startsWith(CHUNK_FIELD)) {
+                partETags.put(Integer.parseInt(field.substring(CHUNK_FIELD.length())), value);
+            }
+        });
+        return partETags;
+    }
+
+    private RMap<String, String> state(String id) {
+        return redisUtil.getMap(STATE_PREFIX + MultipartUploads.tenantKey() + ":" + id);
+    }
+
+    private static void putIfNotNull(Map<String, String> fields, String field, String value) {
+        if (value != null) {
+            fields.put(field, value);
+        }
+    }
+
+}
@@ -0,0 +1,127 @@
+package com.example.attachment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.applib.storage.ObjectInfo;
+import com.example.applib.storage.ObjectStore;
+import com.example.applib.util.S3DeleteResult;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class BlobStoreServiceTest {
+
+    private static final String SHA256 = "2cf24dba5fb0a30e26e83b2ac5b9e29e1b161e5c1fa7425e73043362938b9824";
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final ObjectStore objectStore = mock(ObjectStore.class);
+    private final BlobStoreService blobStoreService = new BlobStoreService(jdbcTemplate, objectStore);
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws IOException {
+        ReflectionTestUtils.setField(blobStoreService, "gcBatchSize", 1000);
+        // Like the real stores: the lookup decides whether the content is stored
+        when(objectStore.put(anyString(), any(), any(InputStream.class), any(Function.class)))
+                .thenAnswer(invocation -> {
+                    String existingKey = ((Function<String, String>) invocation.getArgument(3)).apply(SHA256);
+                    String key = existingKey != null ? existingKey : invocation.getArgument(0);
+                    return new ObjectInfo(key, 5, null, null, SHA256, existingKey != null);
+                });
+    }
+
+    @Test
+    void recordsNewContent() throws IOException {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(anyString(), eq(String.class), any(Object[].class)))
+                .thenAnswer(invocation -> invocation.getArgument(4));
+
+        ObjectInfo blob = blobStoreService.store("attachment-1", content(), "text/plain");
+
+        assertTrue(blobStoreService.isBlobKey(blob.getKey()));
+        assertFalse(blob.isDeduplicated());
+        verify(jdbcTemplate).queryForObject(anyString(), eq(String.class),
+                eq("default"), eq(SHA256), eq(blob.getKey()), eq(5L), eq("attachment-1"));
+        verify(objectStore, never()).delete(anyString());
+    }
+
+    @Test
+    void reusesExistingBlobWithoutRecordingIt() throws IOException {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("blob-existing"));
+
+        ObjectInfo blob = blobStoreService.store("attachment-2", content(), "text/plain");
+
+        assertEquals("blob-existing", blob.getKey());
+        assertTrue(blob.isDeduplicated());
+        verify(jdbcTemplate).queryForList(anyString(), eq(String.class), eq("default"), eq(SHA256), eq("attachment-2"));
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(String.class), any(Object[].class));
+    }
+
+    @Test
+    void dropsCopyOfContentStoredConcurrently() throws IOException {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(anyString(), eq(String.class), any(Object[].class)))
+                .thenReturn("blob-concurrent");
+
+        ObjectInfo blob = blobStoreService.store("attachment-3", content(), "text/plain");
+
+        assertEquals("blob-concurrent", blob.getKey());
+        assertTrue(blob.isDeduplicated());
+        ArgumentCaptor<String> deleted = ArgumentCaptor.forClass(String.class);
+        verify(objectStore).delete(deleted.capture());
+        assertTrue(blobStoreService.isBlobKey(deleted.getValue()));
+        assertFalse(deleted.getValue().equals("blob-concurrent"));
+    }
+
+    @Test
+    void deletesObjectWhenRecordingFails() throws IOException {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(anyString(), eq(String.class), any(Object[].class)))
+                .thenThrow(new DataIntegrityViolationException("down"));
+
+        assertThrows(IOException.class, () -> blobStoreService.store("attachment-4", content(), "text/plain"));
+        verify(objectStore).delete(startsWith("blob-"));
+    }
+
+    @Test
+    void restoresCollectedBlobsThatCouldNotBeDeleted() throws IOException {
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM attachment_blobs"), any(Object[].class)))
+                .thenReturn(List.of(
+                        Map.of("tenant_id", "tenant1", "sha256", "a", "s3_key", "blob-a", "size", 1L),
+                        Map.of("tenant_id", "tenant1", "sha256", "b", "s3_key", "blob-b", "size", 2L)));
+        when(objectStore.delete(anyList())).thenReturn(new S3DeleteResult(1, Map.of("blob-b", "AccessDenied")));
+
+        blobStoreService.collectGarbage();
+
+        verify(objectStore).delete(List.of("blob-a", "blob-b"));
+        verify(jdbcTemplate).update(startsWith("INSERT INTO attachment_blobs"),
+                eq("tenant1"), eq("b"), eq("blob-b"), eq(2L));
+        verify(jdbcTemplate, never()).update(anyString(), eq("tenant1"), eq("a"), eq("blob-a"), eq(1L));
+    }
+
+    private static InputStream content() {
+        return new ByteArrayInputStream("hello".getBytes());
+    }
+}
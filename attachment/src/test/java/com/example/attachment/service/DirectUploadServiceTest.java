@@ -0,0 +1,117 @@
+package com.example.attachment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.applib.util.S3UploadResult;
+import com.example.applib.util.S3Util;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import software.amazon.awssdk.services.s3.model.Part;
+
+class DirectUploadServiceTest {
+
+    private static final long PART_SIZE = 5L * 1024 * 1024;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final S3Util s3Util = mock(S3Util.class);
+    private final DirectUploadService directUploadService = new DirectUploadService(jdbcTemplate, s3Util);
+
+    @Test
+    void completesUploadWhosePartsCoverDeclaredSize() throws IOException {
+        claim(PART_SIZE + 3);
+        parts(part(2, 3), part(1, PART_SIZE));
+        when(s3Util.completeMultipartUpload(anyString(), anyString(), anyMap(), anyLong()))
+                .thenReturn(new S3UploadResult("bucket", "upload-u1", "\"done\"", PART_SIZE + 3, null, 2, false));
+
+        Map<String, Object> attachment = directUploadService.complete("u1");
+
+        assertEquals("u1", attachment.get("id"));
+        assertEquals(PART_SIZE + 3, attachment.get("size"));
+        verify(s3Util).completeMultipartUpload("upload-u1", "s3-upload", Map.of(1, "\"e1\"", 2, "\"e2\""),
+                PART_SIZE + 3);
+        verify(jdbcTemplate).update(startsWith("INSERT INTO attachments"),
+                eq("u1"), eq("file.bin"), any(), eq(PART_SIZE + 3), any(), eq("upload-u1"));
+    }
+
+    @Test
+    void keepsUploadPendingWhenPartIsMissing() throws IOException {
+        claim(PART_SIZE + 3);
+        parts(part(1, PART_SIZE));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class, () -> directUploadService.complete("u1"));
+
+        assertTrue(e.getMessage().contains("part 2 is missing"));
+        verifyRestoredAndNotCompleted();
+    }
+
+    @Test
+    void rejectsShortPartBeforeLastPart() throws IOException {
+        claim(PART_SIZE + 3);
+        parts(part(1, PART_SIZE - 1), part(2, 4));
+
+        assertThrows(IllegalStateException.class, () -> directUploadService.complete("u1"));
+        verifyRestoredAndNotCompleted();
+    }
+
+    @Test
+    void rejectsPartsThatMissDeclaredSize() throws IOException {
+        claim(PART_SIZE + 3);
+        parts(part(1, PART_SIZE), part(2, 2));
+
+        assertThrows(IllegalStateException.class, () -> directUploadService.complete("u1"));
+        verifyRestoredAndNotCompleted();
+    }
+
+    @Test
+    void returnsNullForUnknownUpload() throws IOException {
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM attachment_uploads"), any(Object[].class)))
+                .thenReturn(List.of());
+
+        assertNull(directUploadService.complete("u1"));
+    }
+
+    private void claim(long size) {
+        Map<String, Object> upload = new HashMap<>();
+        upload.put("id", "u1");
+        upload.put("tenant_id", "default");
+        upload.put("upload_id", "s3-upload");
+        upload.put("s3_key", "upload-u1");
+        upload.put("file_name", "file.bin");
+        upload.put("content_type", "application/octet-stream");
+        upload.put("part_size", PART_SIZE);
+        upload.put("part_count", 2);
+        upload.put("size", size);
+        when(jdbcTemplate.queryForList(startsWith("DELETE FROM attachment_uploads"), any(Object[].class)))
+                .thenReturn(List.of(upload));
+    }
+
+    private void parts(Part... parts) throws IOException {
+        when(s3Util.listParts("upload-u1", "s3-upload")).thenReturn(List.of(parts));
+    }
+
+    private void verifyRestoredAndNotCompleted() throws IOException {
+        verify(jdbcTemplate).update(startsWith("INSERT INTO attachment_uploads"), any(Object[].class));
+        verify(s3Util, never()).completeMultipartUpload(anyString(), anyString(), anyMap(), anyLong());
+    }
+
+    private static Part part(int partNumber, long size) {
+        return Part.builder().partNumber(partNumber).size(size).eTag("\"e" + partNumber + "\"").build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.attachment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.jupiter.api.Test;
+
+class ImageDerivativesTest {
+
+    @Test
+    void subsamplesWhileDecoding() throws IOException {
+        BufferedImage image = ImageDerivatives.read(png(400, 200), 100, Long.MAX_VALUE);
+
+        assertEquals(100, image.getWidth());
+        assertEquals(50, image.getHeight());
+    }
+
+    @Test
+    void decodesSmallImageAtFullSize() throws IOException {
+        BufferedImage image = ImageDerivatives.read(png(40, 20), 100, Long.MAX_VALUE);
+
+        assertEquals(40, image.getWidth());
+        assertEquals(20, image.getHeight());
+    }
+
+    @Test
+    void rejectsImageWithTooManyPixels() {
+        assertThrows(IOException.class, () -> ImageDerivatives.read(png(400, 200), 100, 400 * 200 - 1));
+    }
+
+    @Test
+    void returnsNullForUnsupportedFormat() throws IOException {
+        assertNull(ImageDerivatives.read(new ByteArrayInputStream("not an image".getBytes()), 100, Long.MAX_VALUE));
+    }
+
+    @Test
+    void scalesLongerEdgeToFit() {
+        BufferedImage scaled = ImageDerivatives.scale(image(1000, 250), 100, false);
+
+        assertEquals(100, scaled.getWidth());
+        assertEquals(25, scaled.getHeight());
+        assertEquals(BufferedImage.TYPE_INT_RGB, scaled.getType());
+    }
+
+    @Test
+    void fillsTransparencyWithWhiteWithoutAlpha() {
+        BufferedImage transparent = new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB);
+
+        BufferedImage scaled = ImageDerivatives.scale(transparent, 10, false);
+
+        assertEquals(Color.WHITE.getRGB(), scaled.getRGB(5, 5));
+    }
+
+    @Test
+    void encodesJpegThatDecodesAgain() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageDerivatives.write(image(64, 32), ImageDerivatives.JPEG, 0.8f, output);
+
+        BufferedImage decoded = ImageDerivatives.read(new ByteArrayInputStream(output.toByteArray()), 64,
+                Long.MAX_VALUE);
+        assertNotNull(decoded);
+        assertEquals(64, decoded.getWidth());
+        assertEquals(32, decoded.getHeight());
+    }
+
+    private static InputStream png(int width, int height) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageDerivatives.write(image(width, height), ImageDerivatives.PNG, 1, output);
+        return new ByteArrayInputStream(output.toByteArray());
+    }
+
+    private static BufferedImage image(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        try {
+            graphics.setColor(Color.BLUE);
+            graphics.fillRect(0, 0, width / 2, height);
+        } finally {
+            graphics.dispose();
+        }
+        return image;
+    }
+}
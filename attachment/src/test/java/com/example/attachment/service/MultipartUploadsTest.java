@@ -0,0 +1,64 @@
+package com.example.attachment.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.example.applib.util.S3Util;
+import java.io.IOException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+class MultipartUploadsTest {
+
+    private static final long MIB = 1024 * 1024;
+
+    @Test
+    void usesPreferredPartSizeWhenPartsSuffice() {
+        assertEquals(16 * MIB, MultipartUploads.partSize(100 * MIB, 16 * MIB));
+    }
+
+    @Test
+    void raisesPartSizeToMinimum() {
+        assertEquals(5 * MIB, MultipartUploads.partSize(10, MIB));
+    }
+
+    @Test
+    void growsPartsToStayWithinPartLimit() {
+        long fileSize = 200_000 * MIB;
+        long partSize = MultipartUploads.partSize(fileSize, 16 * MIB);
+
+        assertEquals(20 * MIB, partSize);
+        assertTrue(MultipartUploads.ceilDiv(fileSize, partSize) <= 10_000);
+    }
+
+    @Test
+    void roundsPartSizeUpToWholeMib() {
+        assertEquals(6 * MIB, MultipartUploads.partSize(5 * MIB + 1, 5 * MIB + 1));
+    }
+
+    @Test
+    void ceilDivRoundsUp() {
+        assertEquals(3, MultipartUploads.ceilDiv(10, 4));
+        assertEquals(2, MultipartUploads.ceilDiv(8, 4));
+        assertEquals(0, MultipartUploads.ceilDiv(0, 4));
+    }
+
+    @Test
+    void deletesObjectWhenAttachmentCannotBeRecorded() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        S3Util s3Util = mock(S3Util.class);
+        when(jdbcTemplate.update(anyString(), any(Object[].class)))
+                .thenThrow(new DataIntegrityViolationException("down"));
+
+        assertThrows(IOException.class, () -> MultipartUploads.recordAttachment(jdbcTemplate, s3Util, "u1",
+                "upload-u1", "file.bin", "text/plain", 10, null));
+        verify(s3Util).deleteObject("upload-u1");
+    }
+}
@@ -3,9 +3,13 @@ package com.example.data;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.cloud.openfeign.EnableFeignClients;
+import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableFeignClients
+@EnableScheduling
+@ComponentScan(basePackages = {"com.example.data", "com.example.applib"})
 public class DataApplication {
 
     public static void main(String[] args) {
@@ -1,15 +1,27 @@
 package com.example.data.controller;
 
+import com.example.applib.cache.VersionedRowService;
+import com.example.applib.search.SearchIndexService;
+import com.example.applib.search.SearchResult;
 import com.example.applib.tenant.TenantContext;
+import com.example.applib.web.ArrowResultSetWriter;
+import com.example.applib.web.JsonResultSetWriter;
+import com.example.applib.web.ResultSetQuery;
+import com.example.applib.web.TabularMediaTypes;
+import com.example.data.service.JdbcTemplateService;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/data")
@@ -18,41 +30,85 @@ import org.springframework.web.bind.annotation.*;
 public class DataController {
 
     private final JdbcTemplate tacJdbcTemplate;
-
-    @GetMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> getDataById(@PathVariable String id) {
-        log.info("Getting data with ID: {} for tenant: {}", id, TenantContext.getTenantId());
+    private final JdbcTemplateService jdbcTemplateService;
+    private final JsonResultSetWriter jsonResultSetWriter;
+    private final ArrowResultSetWriter arrowResultSetWriter;
+    private final VersionedRowService versionedRowService;
+    private final SearchIndexService searchIndexService;
+
+    @GetMapping("/search")
+    public ResponseEntity<Map<String, Object>> searchData(
+            @RequestParam("q") String query,
+            @RequestParam(defaultValue = "0") int offset,
+            @RequestParam(defaultValue = "20") int limit) {
+        log.info("Searching data for tenant: {}", TenantContext.getTenantId());
+
+        if (offset < 0 || limit < 1 || limit > 1000) {
+            return ResponseEntity.badRequest().build();
+        }
 
         try {
-            String sql = "SELECT * FROM data WHERE id = ?";
-            List<Map<String, Object>> results = tacJdbcTemplate.queryForList(sql, id);
+            SearchResult result = searchIndexService.search("data", query, offset, limit);
+            List<Map<String, Object>> hits = searchIndexService.loadHits(tacJdbcTemplate, "data", result);
 
-            if (results.isEmpty()) {
-                return ResponseEntity.notFound().build();
-            }
+            Map<String, Object> response = new HashMap<>();
+            response.put("query", query);
+            response.put("offset", offset);
+            response.put("totalHits", result.getTotalHits());
+            response.put("totalHitsExact", result.isTotalHitsExact());
+            response.put("hits", hits);
 
-            return ResponseEntity.ok(results.get(0));
+            return ResponseEntity.ok(response);
         } catch (Exception e) {
-            log.error("Error getting data with ID: {}", id, e);
+            log.error("Error searching data", e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
-    @GetMapping
-    public ResponseEntity<List<Map<String, Object>>> getAllData() {
-        log.info("Getting all data for tenant: {}", TenantContext.getTenantId());
+    @PostMapping("/search/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSearchIndex() {
+        log.info("Rebuilding data search index for tenant: {}", TenantContext.getTenantId());
 
         try {
-            String sql = "SELECT * FROM data";
-            List<Map<String, Object>> results = tacJdbcTemplate.queryForList(sql);
+            long rows = searchIndexService.rebuild("data", allDataQuery());
+            return ResponseEntity.ok(Map.of("table", "data", "indexedRows", rows));
+        } catch (Exception e) {
+            log.error("Error rebuilding data search index", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 
-            return ResponseEntity.ok(results);
+    @GetMapping("/{id}")
+    public ResponseEntity<byte[]> getDataById(@PathVariable String id, WebRequest request) {
+        log.info("Getting data with ID: {} for tenant: {}", id, TenantContext.getTenantId());
+
+        try {
+            // Answers If-None-Match from the row version and serves hot rows from the row cache
+            return versionedRowService.getRow(tacJdbcTemplate, "data", id, request);
+        } catch (ResponseStatusException e) {
+            // 406 for an Accept header without a supported format
+            throw e;
         } catch (Exception e) {
-            log.error("Error getting all data", e);
+            log.error("Error getting data with ID: {}", id, e);
             return ResponseEntity.internalServerError().build();
         }
     }
 
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> getAllData(
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("Getting all data for tenant: {}", TenantContext.getTenantId());
+
+        return jsonResultSetWriter.toResponse(allDataQuery(), accept);
+    }
+
+    @GetMapping(produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> getAllDataAsArrow() {
+        log.info("Streaming all data as Arrow for tenant: {}", TenantContext.getTenantId());
+
+        return arrowResultSetWriter.toResponse(allDataQuery());
+    }
+
     @PostMapping
     public ResponseEntity<Map<String, Object>> createData(@RequestBody Map<String, Object> data) {
         log.info("Creating data for tenant: {}", TenantContext.getTenantId());
@@ -79,6 +135,7 @@ public class DataController {
             String sql = String.format("INSERT INTO data (%s) VALUES (%s)", columns, values);
 
             tacJdbcTemplate.update(sql, params.values().toArray());
+            searchIndexService.index("data", id, data);
 
             return ResponseEntity.ok(data);
         } catch (Exception e) {
@@ -86,4 +143,8 @@ public class DataController {
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    private ResultSetQuery allDataQuery() {
+        return extractor -> jdbcTemplateService.streamQuery("tac", "SELECT * FROM data", extractor);
+    }
 }
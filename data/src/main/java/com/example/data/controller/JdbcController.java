@@ -1,13 +1,19 @@
 package com.example.data.controller;
 
+import com.example.applib.cache.RowCache;
 import com.example.applib.tenant.TenantContext;
+import com.example.applib.web.ArrowResultSetWriter;
+import com.example.applib.web.JsonResultSetWriter;
+import com.example.applib.web.ResultSetQuery;
+import com.example.applib.web.TabularMediaTypes;
 import com.example.data.service.JdbcTemplateService;
-import java.util.List;
 import java.util.Map;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @Slf4j
 @RestController
@@ -16,66 +22,76 @@ import org.springframework.web.bind.annotation.*;
 public class JdbcController {
 
     private final JdbcTemplateService jdbcTemplateService;
+    private final JsonResultSetWriter jsonResultSetWriter;
+    private final ArrowResultSetWriter arrowResultSetWriter;
+    private final RowCache rowCache;
 
     @GetMapping("/master")
-    public ResponseEntity<List<Map<String, Object>>> queryMaster(@RequestParam String sql) {
-        try {
-            List<Map<String, Object>> results = jdbcTemplateService.queryMaster(sql);
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            log.error("Error executing query on master database", e);
-            return ResponseEntity.status(500).build();
-        }
+    public ResponseEntity<StreamingResponseBody> queryMaster(
+            @RequestParam String sql,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return jsonResultSetWriter.toResponse(databaseQuery("master", sql), accept);
     }
 
     @GetMapping("/tac")
-    public ResponseEntity<List<Map<String, Object>>> queryTac(@RequestParam String sql) {
-        try {
-            List<Map<String, Object>> results = jdbcTemplateService.queryTac(sql);
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            log.error("Error executing query on TAC database", e);
-            return ResponseEntity.status(500).build();
-        }
+    public ResponseEntity<StreamingResponseBody> queryTac(
+            @RequestParam String sql,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return jsonResultSetWriter.toResponse(databaseQuery("tac", sql), accept);
     }
 
     @GetMapping("/flex")
-    public ResponseEntity<List<Map<String, Object>>> queryFlex(@RequestParam String sql) {
-        try {
-            List<Map<String, Object>> results = jdbcTemplateService.queryFlex(sql);
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            log.error("Error executing query on FLEX database", e);
-            return ResponseEntity.status(500).build();
-        }
+    public ResponseEntity<StreamingResponseBody> queryFlex(
+            @RequestParam String sql,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return jsonResultSetWriter.toResponse(databaseQuery("flex", sql), accept);
     }
 
     @GetMapping("/read")
-    public ResponseEntity<List<Map<String, Object>>> queryRead(@RequestParam String sql) {
-        try {
-            List<Map<String, Object>> results = jdbcTemplateService.queryRead(sql);
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            log.error("Error executing query on READ database", e);
-            return ResponseEntity.status(500).build();
-        }
+    public ResponseEntity<StreamingResponseBody> queryRead(
+            @RequestParam String sql,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return jsonResultSetWriter.toResponse(databaseQuery("read", sql), accept);
     }
 
     @GetMapping("/appstore")
-    public ResponseEntity<List<Map<String, Object>>> queryAppstore(@RequestParam String sql) {
-        try {
-            List<Map<String, Object>> results = jdbcTemplateService.queryAppstore(sql);
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            log.error("Error executing query on APPSTORE database", e);
-            return ResponseEntity.status(500).build();
-        }
+    public ResponseEntity<StreamingResponseBody> queryAppstore(
+            @RequestParam String sql,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return jsonResultSetWriter.toResponse(databaseQuery("appstore", sql), accept);
+    }
+
+    @GetMapping(value = "/master", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryMasterAsArrow(@RequestParam String sql) {
+        return arrowResultSetWriter.toResponse(databaseQuery("master", sql));
+    }
+
+    @GetMapping(value = "/tac", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryTacAsArrow(@RequestParam String sql) {
+        return arrowResultSetWriter.toResponse(databaseQuery("tac", sql));
+    }
+
+    @GetMapping(value = "/flex", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryFlexAsArrow(@RequestParam String sql) {
+        return arrowResultSetWriter.toResponse(databaseQuery("flex", sql));
+    }
+
+    @GetMapping(value = "/read", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryReadAsArrow(@RequestParam String sql) {
+        return arrowResultSetWriter.toResponse(databaseQuery("read", sql));
+    }
+
+    @GetMapping(value = "/appstore", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryAppstoreAsArrow(@RequestParam String sql) {
+        return arrowResultSetWriter.toResponse(databaseQuery("appstore", sql));
     }
 
     @PostMapping("/tac")
     public ResponseEntity<Map<String, Integer>> updateTac(@RequestParam String sql) {
         try {
             int rowsAffected = jdbcTemplateService.updateTac(sql);
+            // Arbitrary SQL, so the affected rows of the tenant are unknown
+            rowCache.invalidateTenant(TenantContext.getTenantId());
             return ResponseEntity.ok(Map.of("rowsAffected", rowsAffected));
         } catch (Exception e) {
             log.error("Error executing update on TAC database", e);
@@ -87,6 +103,7 @@ public class JdbcController {
     public ResponseEntity<Map<String, Integer>> updateFlex(@RequestParam String sql) {
         try {
             int rowsAffected = jdbcTemplateService.updateFlex(sql);
+            rowCache.invalidateTenant(TenantContext.getTenantId());
             return ResponseEntity.ok(Map.of("rowsAffected", rowsAffected));
         } catch (Exception e) {
             log.error("Error executing update on FLEX database", e);
@@ -95,16 +112,18 @@ public class JdbcController {
     }
 
     @GetMapping("/tenant/{tenantId}")
-    public ResponseEntity<List<Map<String, Object>>> queryForTenant(
+    public ResponseEntity<StreamingResponseBody> queryForTenant(
+            @PathVariable String tenantId,
+            @RequestParam String sql,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return jsonResultSetWriter.toResponse(tenantQuery(tenantId, sql), accept);
+    }
+
+    @GetMapping(value = "/tenant/{tenantId}", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> queryForTenantAsArrow(
             @PathVariable String tenantId,
             @RequestParam String sql) {
-        try {
-            List<Map<String, Object>> results = jdbcTemplateService.queryForTenant(tenantId, sql);
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            log.error("Error executing query for tenant: {}", tenantId, e);
-            return ResponseEntity.status(500).build();
-        }
+        return arrowResultSetWriter.toResponse(tenantQuery(tenantId, sql));
     }
 
     @PostMapping("/tenant/{tenantId}")
@@ -113,6 +132,7 @@ public class JdbcController {
             @RequestParam String sql) {
         try {
             int rowsAffected = jdbcTemplateService.updateForTenant(tenantId, sql);
+            rowCache.invalidateTenant(tenantId);
             return ResponseEntity.ok(Map.of("rowsAffected", rowsAffected));
         } catch (Exception e) {
             log.error("Error executing update for tenant: {}", tenantId, e);
@@ -125,4 +145,12 @@ public class JdbcController {
         String tenantId = TenantContext.getTenantId();
         return ResponseEntity.ok(Map.of("tenantId", tenantId != null ? tenantId : "none"));
     }
+
+    private ResultSetQuery databaseQuery(String database, String sql) {
+        return extractor -> jdbcTemplateService.streamQuery(database, sql, extractor);
+    }
+
+    private ResultSetQuery tenantQuery(String tenantId, String sql) {
+        return extractor -> jdbcTemplateService.streamQueryForTenant(tenantId, sql, extractor);
+    }
 }
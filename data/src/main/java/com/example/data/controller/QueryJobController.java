@@ -0,0 +1,126 @@
+package com.example.data.controller;
+
+import com.example.data.model.QueryJob;
+import com.example.data.service.QueryJobService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * Asynchronous counterpart of {@link JdbcController} for long-running queries.
+ * Submitting returns a job ID immediately; results are paged or streamed once the job completes.
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api/jdbc/jobs")
+@RequiredArgsConstructor
+public class QueryJobController {
+
+    private final QueryJobService queryJobService;
+
+    @PostMapping("/{database}")
+    public ResponseEntity<QueryJob> submit(@PathVariable String database, @RequestParam String sql) {
+        return submitJob(database, null, sql);
+    }
+
+    @PostMapping("/tenant/{tenantId}")
+    public ResponseEntity<QueryJob> submitForTenant(@PathVariable String tenantId, @RequestParam String sql) {
+        return submitJob("tac", tenantId, sql);
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<QueryJob> getJob(@PathVariable String jobId) {
+        return queryJobService.getJob(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/{jobId}/results")
+    public ResponseEntity<Map<String, Object>> getResults(
+            @PathVariable String jobId,
+            @RequestParam(defaultValue = "0") long offset,
+            @RequestParam(defaultValue = "1000") int limit) {
+        Optional<QueryJob> job = queryJobService.getJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.get().getStatus() != QueryJob.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(Map.of("status", job.get().getStatus()));
+        }
+        String unavailable = queryJobService.getResultsUnavailableReason(job.get());
+        if (unavailable != null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("status", job.get().getStatus(), "error", unavailable));
+        }
+
+        try {
+            List<Map<String, Object>> rows = queryJobService.readPage(job.get(), offset, limit);
+
+            Map<String, Object> response = new HashMap<>();
+            response.put("jobId", jobId);
+            response.put("offset", offset);
+            response.put("rowCount", job.get().getRowCount());
+            response.put("columns", job.get().getColumns());
+            response.put("rows", rows);
+            response.put("hasMore", offset + rows.size() < job.get().getRowCount());
+
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Error reading results of query job: {}", jobId, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+
+    @GetMapping("/{jobId}/stream")
+    public ResponseEntity<?> streamResults(@PathVariable String jobId) {
+        Optional<QueryJob> job = queryJobService.getJob(jobId);
+        if (job.isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.get().getStatus() != QueryJob.Status.COMPLETED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        // Checked up front, as the status cannot change once streaming has started
+        String unavailable = queryJobService.getResultsUnavailableReason(job.get());
+        if (unavailable != null) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("status", job.get().getStatus(), "error", unavailable));
+        }
+
+        StreamingResponseBody body = outputStream -> queryJobService.writeResults(job.get(), outputStream);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body);
+    }
+
+    @DeleteMapping("/{jobId}")
+    public ResponseEntity<QueryJob> cancel(@PathVariable String jobId) {
+        return queryJobService.cancel(jobId)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    private ResponseEntity<QueryJob> submitJob(String database, String tenantId, String sql) {
+        try {
+            return ResponseEntity.accepted().body(queryJobService.submit(database, tenantId, sql));
+        } catch (IllegalArgumentException e) {
+            log.warn("Rejected query job: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (TaskRejectedException e) {
+            log.warn("Query job executor is saturated, rejecting job on database: {}", database);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            log.error("Error submitting query job on database: {}", database, e);
+            return ResponseEntity.status(500).build();
+        }
+    }
+}
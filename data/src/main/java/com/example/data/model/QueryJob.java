@@ -0,0 +1,70 @@
+package com.example.data.model;
+
+import java.io.Serializable;
+import java.util.List;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * State of an asynchronous query job as kept in the job registry.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryJob implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+
+    private String database;
+
+    private String tenantId;
+
+    private String sql;
+
+    private Status status;
+
+    /**
+     * Host name of the pod that owns the execution.
+     */
+    private String node;
+
+    private long submittedAt;
+
+    private long startedAt;
+
+    private long completedAt;
+
+    private long rowCount;
+
+    private long spillBytes;
+
+    private List<String> columns;
+
+    /**
+     * Local spill file, only meaningful on the owning node.
+     */
+    private String spillPath;
+
+    /**
+     * S3 key of the spill file once it has been uploaded.
+     */
+    private String spillKey;
+
+    private String error;
+
+    public boolean isFinished() {
+        return status == Status.COMPLETED || status == Status.FAILED || status == Status.CANCELLED;
+    }
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        CANCEL_REQUESTED,
+        COMPLETED,
+        FAILED,
+        CANCELLED
+    }
+}
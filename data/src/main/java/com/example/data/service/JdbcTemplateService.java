@@ -1,12 +1,18 @@
 package com.example.data.service;
 
 import com.example.applib.tenant.TenantContext;
+import com.example.applib.util.CursorQueryCallback;
+import java.sql.Statement;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.function.Consumer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
 import org.springframework.stereotype.Service;
 
 @Slf4j
@@ -29,6 +35,9 @@ public class JdbcTemplateService {
     @Qualifier("appstoreJdbcTemplate")
     private final JdbcTemplate appstoreJdbcTemplate;
 
+    @Value("${jdbc.stream-fetch-size:1000}")
+    private int streamFetchSize;
+
     /**
      * Execute a query on the master database
      *
@@ -149,6 +158,18 @@ public class JdbcTemplateService {
         }
     }
 
+    /**
+     * Execute a streaming query for a specific tenant using the default fetch size
+     *
+     * @param tenantId Tenant ID
+     * @param sql SQL query
+     * @param extractor Consumes the result set
+     * @return Extractor result
+     */
+    public <T> T streamQueryForTenant(String tenantId, String sql, ResultSetExtractor<T> extractor) {
+        return streamQueryForTenant(tenantId, sql, streamFetchSize, null, extractor);
+    }
+
     /**
      * Execute an update for a specific tenant
      *
@@ -169,4 +190,71 @@ public class JdbcTemplateService {
             TenantContext.clear();
         }
     }
+
+    /**
+     * Resolve the JDBC template for a logical database name
+     *
+     * @param database One of master, tac, flex, read or appstore
+     * @return JDBC template
+     */
+    public JdbcTemplate getJdbcTemplate(String database) {
+        return switch (database.toLowerCase(Locale.ROOT)) {
+            case "master" -> masterJdbcTemplate;
+            case "tac" -> tacJdbcTemplate;
+            case "flex" -> flexJdbcTemplate;
+            case "read" -> readJdbcTemplate;
+            case "appstore" -> appstoreJdbcTemplate;
+            default -> throw new IllegalArgumentException("Unknown database: " + database);
+        };
+    }
+
+    /**
+     * Execute a query through a server-side cursor so the result is never held in memory
+     *
+     * @param database Logical database name
+     * @param sql SQL query
+     * @param fetchSize Number of rows fetched per round trip
+     * @param statementConsumer Receives the statement before execution, e.g. to cancel it later
+     * @param extractor Consumes the result set
+     * @return Extractor result
+     */
+    public <T> T streamQuery(String database, String sql, int fetchSize,
+                             Consumer<Statement> statementConsumer, ResultSetExtractor<T> extractor) {
+        return getJdbcTemplate(database).execute(new CursorQueryCallback<>(sql, fetchSize, statementConsumer, extractor));
+    }
+
+    /**
+     * Execute a query through a server-side cursor using the default fetch size
+     *
+     * @param database Logical database name
+     * @param sql SQL query
+     * @param extractor Consumes the result set
+     * @return Extractor result
+     */
+    public <T> T streamQuery(String database, String sql, ResultSetExtractor<T> extractor) {
+        return streamQuery(database, sql, streamFetchSize, null, extractor);
+    }
+
+    /**
+     * Execute a streaming query for a specific tenant
+     *
+     * @param tenantId Tenant ID
+     * @param sql SQL query
+     * @param fetchSize Number of rows fetched per round trip
+     * @param statementConsumer Receives the statement before execution
+     * @param extractor Consumes the result set
+     * @return Extractor result
+     */
+    public <T> T streamQueryForTenant(String tenantId, String sql, int fetchSize,
+                                      Consumer<Statement> statementConsumer, ResultSetExtractor<T> extractor) {
+        // Set the tenant context
+        TenantContext.setTenantId(tenantId);
+
+        try {
+            return streamQuery("tac", sql, fetchSize, statementConsumer, extractor);
+        } finally {
+            // Clear the tenant context
+            TenantContext.clear();
+        }
+    }
 }
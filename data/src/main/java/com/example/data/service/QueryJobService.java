@@ -0,0 +1,503 @@
+package com.example.data.service;
+
+import com.example.applib.util.RedisUtil;
+import com.example.applib.util.S3Util;
+import com.example.data.model.QueryJob;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RMapCache;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+/**
+ * Runs ad-hoc queries as background jobs and spills their results to disk.
+ *
+ * <p>Jobs execute on the bounded {@code queryJobExecutor}. Rows are streamed through a
+ * server-side cursor into a {@link ResultSpillWriter} file, which is optionally uploaded
+ * to S3 so that any pod can serve the results. Job state lives in a Redis map cache when
+ * Redis is available, so it survives pod restarts; otherwise it is kept in memory.
+ *
+ * <p>Spill objects in S3 are removed by the owning pod when its local copy expires. Add a
+ * lifecycle rule on the {@code query-jobs/} prefix to catch objects left by pods that died.
+ */
+@Slf4j
+@Service
+public class QueryJobService {
+
+    private static final String REGISTRY_NAME = "query-jobs";
+    private static final String SPILL_KEY_PREFIX = "query-jobs/";
+    private static final String SPILL_SUFFIX = ".qjs";
+    private static final int CANCEL_CHECK_INTERVAL = 10_000;
+    private static final int STREAM_FLUSH_INTERVAL = 1_000;
+
+    private final JdbcTemplateService jdbcTemplateService;
+    private final ThreadPoolTaskExecutor queryJobExecutor;
+    private final S3Util s3Util;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<RedisUtil> redisUtilProvider;
+
+    private final Map<String, RunningJob> runningJobs = new ConcurrentHashMap<>();
+    private final Map<String, QueryJob> localRegistry = new ConcurrentHashMap<>();
+    private RMapCache<String, QueryJob> redisRegistry;
+    private String node;
+
+    @Value("${query-jobs.spill-directory:${java.io.tmpdir}/query-jobs}")
+    private String spillDirectory;
+
+    @Value("${query-jobs.spill-to-s3:false}")
+    private boolean spillToS3;
+
+    @Value("${query-jobs.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${query-jobs.retention-minutes:60}")
+    private long retentionMinutes;
+
+    @Value("${query-jobs.max-page-size:10000}")
+    private int maxPageSize;
+
+    public QueryJobService(JdbcTemplateService jdbcTemplateService,
+                           @Qualifier("queryJobExecutor") ThreadPoolTaskExecutor queryJobExecutor,
+                           S3Util s3Util,
+                           ObjectMapper objectMapper,
+                           ObjectProvider<RedisUtil> redisUtilProvider) {
+        this.jdbcTemplateService = jdbcTemplateService;
+        this.queryJobExecutor = queryJobExecutor;
+        this.s3Util = s3Util;
+        this.objectMapper = objectMapper;
+        this.redisUtilProvider = redisUtilProvider;
+    }
+
+    @PostConstruct
+    public void init() {
+        node = resolveNodeName();
+
+        RedisUtil redisUtil = redisUtilProvider.getIfAvailable();
+        if (redisUtil != null) {
+            redisRegistry = redisUtil.getMapCache(REGISTRY_NAME, TimeUnit.MINUTES.toSeconds(retentionMinutes));
+            failInterruptedJobs();
+        } else {
+            log.warn("Redis is not available, query job registry will not survive restarts");
+        }
+    }
+
+    /**
+     * Submit a query for background execution
+     *
+     * @param database Logical database name
+     * @param tenantId Tenant ID, or null to run without a tenant context
+     * @param sql SQL query
+     * @return The queued job
+     * @throws IllegalArgumentException If the database name is unknown
+     * @throws TaskRejectedException If the executor is saturated
+     */
+    public QueryJob submit(String database, String tenantId, String sql) {
+        // Fail fast on unknown database names
+        jdbcTemplateService.getJdbcTemplate(database);
+
+        QueryJob job = new QueryJob();
+        job.setId(UUID.randomUUID().toString());
+        job.setDatabase(database);
+        job.setTenantId(tenantId);
+        job.setSql(sql);
+        job.setStatus(QueryJob.Status.QUEUED);
+        job.setNode(node);
+        job.setSubmittedAt(System.currentTimeMillis());
+        save(job);
+
+        RunningJob running = new RunningJob();
+        runningJobs.put(job.getId(), running);
+        try {
+            running.future = queryJobExecutor.submit(() -> execute(job, running));
+        } catch (TaskRejectedException e) {
+            runningJobs.remove(job.getId());
+            remove(job.getId());
+            throw e;
+        }
+
+        log.info("Submitted query job {} on database {} for tenant {}", job.getId(), database, tenantId);
+        return job;
+    }
+
+    /**
+     * Get a job by ID
+     *
+     * @param jobId Job ID
+     * @return The job, if known
+     */
+    public Optional<QueryJob> getJob(String jobId) {
+        return Optional.ofNullable(redisRegistry != null ? redisRegistry.get(jobId) : localRegistry.get(jobId));
+    }
+
+    /**
+     * Cancel a job. Jobs owned by another pod are flagged and stop at their next check.
+     *
+     * @param jobId Job ID
+     * @return The job after the cancellation request, if known
+     */
+    public Optional<QueryJob> cancel(String jobId) {
+        Optional<QueryJob> optionalJob = getJob(jobId);
+        if (optionalJob.isEmpty() || optionalJob.get().isFinished()) {
+            return optionalJob;
+        }
+
+        QueryJob job = optionalJob.get();
+        RunningJob running = runningJobs.get(jobId);
+
+        if (running == null) {
+            job.setStatus(QueryJob.Status.CANCEL_REQUESTED);
+            save(job);
+            return Optional.of(job);
+        }
+
+        if (running.started.compareAndSet(false, true)) {
+            // Still waiting in the executor queue, it will never run
+            running.cancelled = true;
+            if (running.future != null) {
+                running.future.cancel(false);
+            }
+            runningJobs.remove(jobId);
+            job.setStatus(QueryJob.Status.CANCELLED);
+            job.setCompletedAt(System.currentTimeMillis());
+            save(job);
+            return Optional.of(job);
+        }
+
+        // Recorded before interrupting, so status polls and other pods see the request
+        synchronized (running) {
+            if (!running.finished) {
+                job.setStatus(QueryJob.Status.CANCEL_REQUESTED);
+                save(job);
+            }
+        }
+        running.cancel();
+        return getJob(jobId);
+    }
+
+    /**
+     * Read a page of results from a completed job
+     *
+     * @param job Completed job
+     * @param offset Number of rows to skip
+     * @param limit Maximum number of rows to return
+     * @return Rows of the page
+     * @throws IOException If the spill file cannot be read
+     */
+    public List<Map<String, Object>> readPage(QueryJob job, long offset, int limit) throws IOException {
+        int pageSize = Math.min(Math.max(limit, 0), maxPageSize);
+        List<Map<String, Object>> rows = new ArrayList<>(Math.min(pageSize, 1024));
+
+        // Starts at the indexed row nearest the offset rather than reading all rows before it
+        try (ResultSpillReader reader = openResults(job, offset)) {
+            Map<String, Object> row;
+            while (rows.size() < pageSize && (row = reader.nextRow()) != null) {
+                rows.add(row);
+            }
+        }
+
+        return rows;
+    }
+
+    /**
+     * Write all results of a completed job as a JSON array
+     *
+     * @param job Completed job
+     * @param outputStream Target stream, left open
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeResults(QueryJob job, OutputStream outputStream) throws IOException {
+        try (ResultSpillReader reader = openResults(job, 0);
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            generator.writeStartArray();
+
+            long written = 0;
+            Map<String, Object> row;
+            while ((row = reader.nextRow()) != null) {
+                generator.writeObject(row);
+                if (++written % STREAM_FLUSH_INTERVAL == 0) {
+                    generator.flush();
+                }
+            }
+
+            generator.writeEndArray();
+            generator.flush();
+        }
+    }
+
+    private void execute(QueryJob job, RunningJob running) {
+        if (!running.started.compareAndSet(false, true)) {
+            return;
+        }
+
+        Path spillFile = spillPath(job.getId());
+        job.setStatus(QueryJob.Status.RUNNING);
+        job.setStartedAt(System.currentTimeMillis());
+        save(job);
+
+        try {
+            Files.createDirectories(spillFile.getParent());
+
+            try (ResultSpillWriter writer = new ResultSpillWriter(spillFile)) {
+                ResultSetExtractor<Void> extractor = rs -> {
+                    try {
+                        writer.writeHeader(rs.getMetaData());
+                        while (rs.next()) {
+                            writer.writeRow(rs);
+                            if (writer.getRowCount() % CANCEL_CHECK_INTERVAL == 0) {
+                                checkCancelled(job.getId(), running);
+                            }
+                        }
+                        writer.finish();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                    return null;
+                };
+
+                if (job.getTenantId() != null) {
+                    jdbcTemplateService.streamQueryForTenant(job.getTenantId(), job.getSql(), fetchSize,
+                            running::setStatement, extractor);
+                } else {
+                    jdbcTemplateService.streamQuery(job.getDatabase(), job.getSql(), fetchSize,
+                            running::setStatement, extractor);
+                }
+
+                job.setColumns(writer.getColumns());
+                job.setRowCount(writer.getRowCount());
+                job.setSpillBytes(writer.getBytesWritten());
+            }
+
+            job.setSpillPath(spillFile.toString());
+            if (spillToS3) {
+                String key = SPILL_KEY_PREFIX + job.getId() + SPILL_SUFFIX;
+                s3Util.uploadFile(spillFile.toString(), key);
+                job.setSpillKey(key);
+            }
+
+            job.setStatus(QueryJob.Status.COMPLETED);
+            log.info("Query job {} completed with {} rows ({} bytes spilled)",
+                    job.getId(), job.getRowCount(), job.getSpillBytes());
+        } catch (Exception e) {
+            deleteQuietly(spillFile);
+            if (running.cancelled) {
+                job.setStatus(QueryJob.Status.CANCELLED);
+                log.info("Query job {} cancelled", job.getId());
+            } else {
+                job.setStatus(QueryJob.Status.FAILED);
+                job.setError(e.getMessage());
+                log.error("Query job {} failed", job.getId(), e);
+            }
+        } finally {
+            job.setCompletedAt(System.currentTimeMillis());
+            synchronized (running) {
+                // Never overwritten by a cancellation request arriving after the outcome
+                running.finished = true;
+                save(job);
+            }
+            runningJobs.remove(job.getId());
+            // Clear a pending interrupt from a cancellation so the pool thread is reusable
+            Thread.interrupted();
+        }
+    }
+
+    private void checkCancelled(String jobId, RunningJob running) {
+        if (!running.cancelled) {
+            Optional<QueryJob> current = getJob(jobId);
+            if (current.isPresent() && current.get().getStatus() == QueryJob.Status.CANCEL_REQUESTED) {
+                running.cancelled = true;
+            }
+        }
+
+        if (running.cancelled) {
+            throw new CancellationException("Query job " + jobId + " was cancelled");
+        }
+    }
+
+    /**
+     * Check whether this pod can read the results of a completed job
+     *
+     * @param job Completed job
+     * @return Null if the results are readable here, otherwise why they are not
+     */
+    public String getResultsUnavailableReason(QueryJob job) {
+        if (job.getSpillKey() != null || Files.exists(spillPath(job.getId()))) {
+            return null;
+        }
+        if (node.equals(job.getNode())) {
+            return "Results of job " + job.getId() + " have expired";
+        }
+        return "Results of job " + job.getId() + " are only available on " + job.getNode()
+                + "; set query-jobs.spill-to-s3 to read them from any pod";
+    }
+
+    private ResultSpillReader openResults(QueryJob job, long firstRow) throws IOException {
+        Path local = spillPath(job.getId());
+        if (Files.exists(local)) {
+            return new ResultSpillReader(local, firstRow);
+        }
+
+        if (job.getSpillKey() == null) {
+            throw new IllegalStateException("Results of job " + job.getId() + " are only available on " + job.getNode());
+        }
+
+        // Download under a unique name so concurrent readers never see a partial file
+        Files.createDirectories(local.getParent());
+        Path download = local.resolveSibling(local.getFileName() + "." + UUID.randomUUID() + ".part");
+        try {
+            s3Util.downloadFile(job.getSpillKey(), download.toString());
+            Files.move(download, local, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            deleteQuietly(download);
+        }
+
+        return new ResultSpillReader(local, firstRow);
+    }
+
+    /**
+     * Remove expired spill files and finished jobs from the in-memory registry.
+     */
+    @Scheduled(fixedDelayString = "${query-jobs.cleanup-interval-ms:300000}")
+    public void cleanup() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(retentionMinutes);
+
+        localRegistry.values().removeIf(job -> job.isFinished() && job.getCompletedAt() < cutoff);
+
+        Path directory = Paths.get(spillDirectory);
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+
+        try (Stream<Path> files = Files.list(directory)) {
+            files.filter(file -> isOlderThan(file, cutoff)).forEach(file -> {
+                String fileName = file.getFileName().toString();
+                if (spillToS3 && fileName.endsWith(SPILL_SUFFIX)) {
+                    String jobId = fileName.substring(0, fileName.length() - SPILL_SUFFIX.length());
+                    s3Util.deleteObject(SPILL_KEY_PREFIX + jobId + SPILL_SUFFIX);
+                }
+                deleteQuietly(file);
+            });
+        } catch (IOException e) {
+            log.error("Error cleaning up query job spill directory: {}", directory, e);
+        }
+    }
+
+    private void failInterruptedJobs() {
+        try {
+            for (QueryJob job : redisRegistry.readAllValues()) {
+                if (node.equals(job.getNode()) && !job.isFinished()) {
+                    log.warn("Marking query job {} as failed, it was interrupted by a restart", job.getId());
+                    job.setStatus(QueryJob.Status.FAILED);
+                    job.setError("Interrupted by service restart");
+                    job.setCompletedAt(System.currentTimeMillis());
+                    save(job);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Error recovering query job registry", e);
+        }
+    }
+
+    private void save(QueryJob job) {
+        if (redisRegistry != null) {
+            redisRegistry.fastPut(job.getId(), job, retentionMinutes, TimeUnit.MINUTES);
+        } else {
+            localRegistry.put(job.getId(), job);
+        }
+    }
+
+    private void remove(String jobId) {
+        if (redisRegistry != null) {
+            redisRegistry.fastRemove(jobId);
+        } else {
+            localRegistry.remove(jobId);
+        }
+    }
+
+    private Path spillPath(String jobId) {
+        return Paths.get(spillDirectory, jobId + SPILL_SUFFIX);
+    }
+
+    private static boolean isOlderThan(Path file, long cutoff) {
+        try {
+            return Files.getLastModifiedTime(file).toMillis() < cutoff;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete file: {}", file, e);
+        }
+    }
+
+    private static String resolveNodeName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (IOException e) {
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    /**
+     * Local handle on a job executing in this JVM.
+     */
+    private static class RunningJob {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private volatile boolean cancelled;
+        private boolean finished;
+        private volatile Future<?> future;
+        private volatile Statement statement;
+
+        void setStatement(Statement statement) {
+            this.statement = statement;
+        }
+
+        void cancel() {
+            cancelled = true;
+            Statement current = statement;
+            if (current != null) {
+                try {
+                    current.cancel();
+                } catch (SQLException e) {
+                    log.warn("Could not cancel running statement", e);
+                }
+            }
+            if (future != null) {
+                future.cancel(true);
+            }
+        }
+    }
+}
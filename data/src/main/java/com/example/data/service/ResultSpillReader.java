@@ -0,0 +1,255 @@
+package com.example.data.service;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads rows back from a spill file produced by {@link ResultSpillWriter}.
+ *
+ * <p>Values are materialized as the same Java types {@code JdbcTemplate.queryForList}
+ * would have produced, so serialized output matches the synchronous endpoints.
+ */
+public class ResultSpillReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private DataInputStream in;
+    private final List<String> columns;
+    private boolean exhausted;
+
+    public ResultSpillReader(Path file) throws IOException {
+        this(Files.newInputStream(file));
+    }
+
+    /**
+     * Open a spill file positioned on a row, found through the row index at the end of the file
+     *
+     * @param file The spill file
+     * @param firstRow Number of rows to skip
+     * @throws IOException If the file cannot be read or is not a spill file
+     */
+    public ResultSpillReader(Path file, long firstRow) throws IOException {
+        this(Files.newByteChannel(file), firstRow);
+    }
+
+    private ResultSpillReader(SeekableByteChannel channel, long firstRow) throws IOException {
+        this(Channels.newInputStream(channel));
+        try {
+            long indexed = Math.min(firstRow / ResultSpillWriter.INDEX_INTERVAL, Integer.MAX_VALUE);
+            long offset = indexed > 0 ? rowOffset(channel, (int) indexed) : -1;
+            if (offset >= 0) {
+                channel.position(offset);
+                in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE));
+                skipRows(firstRow - indexed * ResultSpillWriter.INDEX_INTERVAL);
+            } else {
+                skipRows(firstRow);
+            }
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    public ResultSpillReader(InputStream inputStream) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(inputStream, BUFFER_SIZE));
+
+        if (in.readInt() != ResultSpillWriter.MAGIC) {
+            in.close();
+            throw new IOException("Not a query result spill file");
+        }
+
+        int columnCount = readVarInt();
+        List<String> names = new ArrayList<>(columnCount);
+        for (int i = 0; i < columnCount; i++) {
+            names.add(readString());
+        }
+        this.columns = Collections.unmodifiableList(names);
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Read the next row.
+     *
+     * @return Column label to value, or null when there are no more rows
+     * @throws IOException If an I/O error occurs or the file is truncated
+     */
+    public Map<String, Object> nextRow() throws IOException {
+        if (!advance()) {
+            return null;
+        }
+
+        Map<String, Object> row = new LinkedHashMap<>(columns.size() * 2);
+        for (String column : columns) {
+            row.put(column, readValue());
+        }
+        return row;
+    }
+
+    /**
+     * Skip rows without materializing their values.
+     *
+     * @param count Number of rows to skip
+     * @return Number of rows actually skipped
+     * @throws IOException If an I/O error occurs
+     */
+    public long skipRows(long count) throws IOException {
+        long skipped = 0;
+        while (skipped < count && advance()) {
+            for (int i = 0; i < columns.size(); i++) {
+                skipValue();
+            }
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * Look up the offset of an indexed row
+     *
+     * @return The file offset, or -1 if there are fewer rows or the file has no index
+     */
+    private static long rowOffset(SeekableByteChannel channel, int entry) throws IOException {
+        long size = channel.size();
+        if (size < 2 * Integer.BYTES) {
+            return -1;
+        }
+        // Restored for the stream reading on from the header when the row is not indexed
+        long position = channel.position();
+        try {
+            ByteBuffer trailer = readFully(channel, size - 2 * Integer.BYTES, 2 * Integer.BYTES);
+            int indexSize = trailer.getInt();
+            if (trailer.getInt() != ResultSpillWriter.INDEX_MAGIC || entry >= indexSize) {
+                return -1;
+            }
+            long indexStart = size - 2 * Integer.BYTES - (long) indexSize * Long.BYTES;
+            return readFully(channel, indexStart + (long) entry * Long.BYTES, Long.BYTES).getLong();
+        } finally {
+            channel.position(position);
+        }
+    }
+
+    private static ByteBuffer readFully(SeekableByteChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        channel.position(position);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Truncated spill file");
+            }
+        }
+        return buffer.flip();
+    }
+
+    private boolean advance() throws IOException {
+        if (exhausted) {
+            return false;
+        }
+
+        byte marker = in.readByte();
+        if (marker == ResultSpillWriter.END_OF_ROWS) {
+            exhausted = true;
+            return false;
+        }
+        if (marker != ResultSpillWriter.ROW) {
+            throw new IOException("Corrupt spill file: unexpected row marker " + marker);
+        }
+        return true;
+    }
+
+    private Object readValue() throws IOException {
+        byte tag = in.readByte();
+        return switch (tag) {
+            case ResultSpillWriter.TAG_NULL -> null;
+            case ResultSpillWriter.TAG_INT -> (int) readVarLong();
+            case ResultSpillWriter.TAG_LONG -> readVarLong();
+            case ResultSpillWriter.TAG_DOUBLE -> in.readDouble();
+            case ResultSpillWriter.TAG_STRING -> readString();
+            case ResultSpillWriter.TAG_TRUE -> Boolean.TRUE;
+            case ResultSpillWriter.TAG_FALSE -> Boolean.FALSE;
+            case ResultSpillWriter.TAG_BYTES -> readBytes();
+            case ResultSpillWriter.TAG_DECIMAL -> new BigDecimal(readString());
+            case ResultSpillWriter.TAG_TIMESTAMP -> {
+                Timestamp timestamp = new Timestamp(readVarLong());
+                timestamp.setNanos(readVarInt());
+                yield timestamp;
+            }
+            case ResultSpillWriter.TAG_DATE -> Date.valueOf(LocalDate.ofEpochDay(readVarLong()));
+            default -> throw new IOException("Corrupt spill file: unknown value tag " + tag);
+        };
+    }
+
+    private void skipValue() throws IOException {
+        byte tag = in.readByte();
+        switch (tag) {
+            case ResultSpillWriter.TAG_NULL, ResultSpillWriter.TAG_TRUE, ResultSpillWriter.TAG_FALSE -> {
+                // No payload
+            }
+            case ResultSpillWriter.TAG_INT, ResultSpillWriter.TAG_LONG, ResultSpillWriter.TAG_DATE -> readVarLong();
+            case ResultSpillWriter.TAG_DOUBLE -> in.skipNBytes(Double.BYTES);
+            case ResultSpillWriter.TAG_STRING, ResultSpillWriter.TAG_BYTES, ResultSpillWriter.TAG_DECIMAL ->
+                    in.skipNBytes(readVarInt());
+            case ResultSpillWriter.TAG_TIMESTAMP -> {
+                readVarLong();
+                readVarLong();
+            }
+            default -> throw new IOException("Corrupt spill file: unknown value tag " + tag);
+        }
+    }
+
+    private byte[] readBytes() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private String readString() throws IOException {
+        return new String(readBytes(), StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() throws IOException {
+        return (int) readVarLong();
+    }
+
+    private long readVarLong() throws IOException {
+        long result = 0;
+        int shift = 0;
+        while (shift < 64) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated spill file");
+            }
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return (result >>> 1) ^ -(result & 1);
+            }
+            shift += 7;
+        }
+        throw new IOException("Corrupt spill file: varint too long");
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
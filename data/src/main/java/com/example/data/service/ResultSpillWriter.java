@@ -0,0 +1,256 @@
+package com.example.data.service;
+
+import com.google.common.io.CountingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.springframework.jdbc.support.JdbcUtils;
+
+/**
+ * Writes JDBC rows to a compact binary spill file.
+ *
+ * <p>Layout: magic, column count, column labels, then one row marker per row followed by
+ * a tag byte and a type-specific payload per column. Integers use zig-zag varints and
+ * strings are length-prefixed UTF-8. The rows end with {@link #END_OF_ROWS}, followed by a
+ * row index: the file offset of every {@link #INDEX_INTERVAL}th row as a long, the number of
+ * offsets and {@link #INDEX_MAGIC}, so a reader can start at any row without reading those
+ * before it.
+ */
+public class ResultSpillWriter implements Closeable {
+
+    static final int MAGIC = 0x514A5331; // "QJS1"
+    static final int INDEX_MAGIC = 0x514A5349; // "QJSI"
+    static final int INDEX_INTERVAL = 1024;
+
+    static final byte ROW = 1;
+    static final byte END_OF_ROWS = 0;
+
+    static final byte TAG_NULL = 0;
+    static final byte TAG_LONG = 1;
+    static final byte TAG_DOUBLE = 2;
+    static final byte TAG_STRING = 3;
+    static final byte TAG_TRUE = 4;
+    static final byte TAG_FALSE = 5;
+    static final byte TAG_BYTES = 6;
+    static final byte TAG_DECIMAL = 7;
+    static final byte TAG_TIMESTAMP = 8;
+    static final byte TAG_DATE = 9;
+    static final byte TAG_INT = 10;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final CountingOutputStream counter;
+    private final DataOutputStream out;
+    private int[] columnTypes;
+    private List<String> columns;
+    private long[] rowOffsets = new long[16];
+    private int indexSize;
+    private long rowCount;
+    private long bytesWritten;
+
+    public ResultSpillWriter(Path file) throws IOException {
+        this(Files.newOutputStream(file));
+    }
+
+    public ResultSpillWriter(OutputStream outputStream) {
+        // Counted before buffering, so the count is the offset of the next byte written
+        this.counter = new CountingOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+        this.out = new DataOutputStream(counter);
+    }
+
+    /**
+     * Write the header from the result set metadata. Must be called before the first row.
+     *
+     * @param metaData Result set metadata
+     * @throws SQLException If the metadata cannot be read
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeHeader(ResultSetMetaData metaData) throws SQLException, IOException {
+        int columnCount = metaData.getColumnCount();
+        columnTypes = new int[columnCount];
+        columns = new ArrayList<>(columnCount);
+
+        out.writeInt(MAGIC);
+        writeVarInt(columnCount);
+        for (int i = 1; i <= columnCount; i++) {
+            String label = JdbcUtils.lookupColumnName(metaData, i);
+            columns.add(label);
+            columnTypes[i - 1] = metaData.getColumnType(i);
+            writeString(label);
+        }
+    }
+
+    /**
+     * Write the current row of the result set.
+     *
+     * @param rs Result set positioned on a row
+     * @throws SQLException If a column cannot be read
+     * @throws IOException If an I/O error occurs
+     */
+    public void writeRow(ResultSet rs) throws SQLException, IOException {
+        if (rowCount % INDEX_INTERVAL == 0) {
+            if (indexSize == rowOffsets.length) {
+                rowOffsets = Arrays.copyOf(rowOffsets, indexSize * 2);
+            }
+            rowOffsets[indexSize++] = counter.getCount();
+        }
+        out.writeByte(ROW);
+        for (int i = 0; i < columnTypes.length; i++) {
+            writeColumn(rs, i + 1, columnTypes[i]);
+        }
+        rowCount++;
+    }
+
+    private void writeColumn(ResultSet rs, int index, int sqlType) throws SQLException, IOException {
+        switch (sqlType) {
+            case Types.TINYINT, Types.SMALLINT, Types.INTEGER -> {
+                int value = rs.getInt(index);
+                if (rs.wasNull()) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_INT);
+                    writeVarLong(value);
+                }
+            }
+            case Types.BIGINT -> {
+                long value = rs.getLong(index);
+                if (rs.wasNull()) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_LONG);
+                    writeVarLong(value);
+                }
+            }
+            case Types.REAL, Types.FLOAT, Types.DOUBLE -> {
+                double value = rs.getDouble(index);
+                if (rs.wasNull()) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_DOUBLE);
+                    out.writeDouble(value);
+                }
+            }
+            case Types.NUMERIC, Types.DECIMAL -> {
+                BigDecimal value = rs.getBigDecimal(index);
+                if (value == null) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_DECIMAL);
+                    writeString(value.toPlainString());
+                }
+            }
+            case Types.BOOLEAN, Types.BIT -> {
+                boolean value = rs.getBoolean(index);
+                out.writeByte(rs.wasNull() ? TAG_NULL : value ? TAG_TRUE : TAG_FALSE);
+            }
+            case Types.BINARY, Types.VARBINARY, Types.LONGVARBINARY -> {
+                byte[] value = rs.getBytes(index);
+                if (value == null) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_BYTES);
+                    writeVarInt(value.length);
+                    out.write(value);
+                }
+            }
+            case Types.TIMESTAMP, Types.TIMESTAMP_WITH_TIMEZONE -> {
+                Timestamp value = rs.getTimestamp(index);
+                if (value == null) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_TIMESTAMP);
+                    writeVarLong(value.getTime());
+                    writeVarInt(value.getNanos());
+                }
+            }
+            case Types.DATE -> {
+                Date value = rs.getDate(index);
+                if (value == null) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_DATE);
+                    writeVarLong(value.toLocalDate().toEpochDay());
+                }
+            }
+            default -> {
+                String value = rs.getString(index);
+                if (value == null) {
+                    out.writeByte(TAG_NULL);
+                } else {
+                    out.writeByte(TAG_STRING);
+                    writeString(value);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write the end marker and the row index, and flush. The writer must still be closed afterwards.
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void finish() throws IOException {
+        out.writeByte(END_OF_ROWS);
+        for (int i = 0; i < indexSize; i++) {
+            out.writeLong(rowOffsets[i]);
+        }
+        out.writeInt(indexSize);
+        out.writeInt(INDEX_MAGIC);
+        out.flush();
+        bytesWritten = counter.getCount();
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Number of bytes written, known once {@link #finish()} has been called.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        writeVarLong(value);
+    }
+
+    private void writeVarLong(long value) throws IOException {
+        long zigZag = (value << 1) ^ (value >> 63);
+        while ((zigZag & ~0x7FL) != 0) {
+            out.writeByte((int) ((zigZag & 0x7F) | 0x80));
+            zigZag >>>= 7;
+        }
+        out.writeByte((int) zigZag);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.data.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ResultSpillRoundTripTest {
+
+    private static final String[] COLUMNS = {
+        "id", "small", "amount", "price", "active", "payload", "created_at", "day", "name"
+    };
+    private static final int[] TYPES = {
+        Types.BIGINT, Types.INTEGER, Types.DOUBLE, Types.NUMERIC, Types.BOOLEAN,
+        Types.VARBINARY, Types.TIMESTAMP, Types.DATE, Types.VARCHAR
+    };
+
+    @Test
+    void readsBackWhatWasWritten() throws Exception {
+        Timestamp created = Timestamp.valueOf("2024-03-01 12:34:56.123456789");
+        Object[][] rows = {
+            {Long.MAX_VALUE, Integer.MIN_VALUE, 1.5d, new BigDecimal("12345678901234567890.0001"), true,
+                new byte[] {1, 2, 3}, created, Date.valueOf("1969-12-31"), "Z\u00fcrich \u2713"},
+            {-1L, 0, -0.25d, new BigDecimal("-0.5"), false, new byte[0], new Timestamp(0), Date.valueOf("2024-02-29"), ""},
+            {null, null, null, null, null, null, null, null, null}
+        };
+
+        byte[] spill = write(rows);
+
+        try (ResultSpillReader reader = new ResultSpillReader(new ByteArrayInputStream(spill))) {
+            assertEquals(List.of(COLUMNS), reader.getColumns());
+
+            Map<String, Object> first = reader.nextRow();
+            assertEquals(Long.MAX_VALUE, first.get("id"));
+            assertEquals(Integer.MIN_VALUE, first.get("small"));
+            assertEquals(1.5d, first.get("amount"));
+            assertEquals(new BigDecimal("12345678901234567890.0001"), first.get("price"));
+            assertEquals(Boolean.TRUE, first.get("active"));
+            assertArrayEquals(new byte[] {1, 2, 3}, (byte[]) first.get("payload"));
+            assertEquals(created, first.get("created_at"));
+            assertEquals(Date.valueOf("1969-12-31"), first.get("day"));
+            assertEquals("Z\u00fcrich \u2713", first.get("name"));
+
+            Map<String, Object> second = reader.nextRow();
+            assertEquals(-1L, second.get("id"));
+            assertEquals(0, second.get("small"));
+            assertEquals(Boolean.FALSE, second.get("active"));
+            assertArrayEquals(new byte[0], (byte[]) second.get("payload"));
+            assertEquals(new Timestamp(0), second.get("created_at"));
+            assertEquals(Date.valueOf("2024-02-29"), second.get("day"));
+            assertEquals("", second.get("name"));
+
+            Map<String, Object> third = reader.nextRow();
+            assertEquals(COLUMNS.length, third.size());
+            for (String column : COLUMNS) {
+                assertNull(third.get(column), column);
+            }
+
+            assertNull(reader.nextRow());
+            assertNull(reader.nextRow());
+        }
+    }
+
+    @Test
+    void skipsRowsWithoutReadingThem() throws Exception {
+        Object[][] rows = new Object[5][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] {(long) i, i, i * 0.5d, BigDecimal.valueOf(i), i % 2 == 0,
+                new byte[i], new Timestamp(i * 1000L), Date.valueOf("2024-01-01"), "row" + i};
+        }
+        byte[] spill = write(rows);
+
+        try (ResultSpillReader reader = new ResultSpillReader(new ByteArrayInputStream(spill))) {
+            assertEquals(3, reader.skipRows(3));
+            assertEquals(3L, reader.nextRow().get("id"));
+            assertEquals(1, reader.skipRows(10));
+            assertNull(reader.nextRow());
+        }
+    }
+
+    @Test
+    void startsAtRowThroughIndex(@TempDir Path directory) throws Exception {
+        Object[][] rows = new Object[3 * ResultSpillWriter.INDEX_INTERVAL + 5][];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = new Object[] {(long) i, i, null, null, null, null, null, null, "row" + i};
+        }
+        Path file = directory.resolve("results.qjs");
+        Files.write(file, write(rows));
+
+        for (long firstRow : new long[] {0, 1023, 1024, 2500}) {
+            try (ResultSpillReader reader = new ResultSpillReader(file, firstRow)) {
+                assertEquals(List.of(COLUMNS), reader.getColumns());
+                assertEquals(firstRow, reader.nextRow().get("id"));
+                assertEquals("row" + (firstRow + 1), reader.nextRow().get("name"));
+            }
+        }
+        try (ResultSpillReader reader = new ResultSpillReader(file, rows.length - 1)) {
+            assertEquals(rows.length - 1L, reader.nextRow().get("id"));
+            assertNull(reader.nextRow());
+        }
+        try (ResultSpillReader reader = new ResultSpillReader(file, rows.length + 10_000L)) {
+            assertNull(reader.nextRow());
+        }
+    }
+
+    @Test
+    void countsBytesWritten() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultSpillWriter writer = new ResultSpillWriter(out)) {
+            writer.writeHeader(metaData());
+            ResultSet rs = resultSet(new Object[][] {{1L, 1, 1d, BigDecimal.ONE, true, new byte[10], null, null, "x"}});
+            rs.next();
+            writer.writeRow(rs);
+            writer.finish();
+
+            assertEquals(1, writer.getRowCount());
+            assertEquals(out.size(), writer.getBytesWritten());
+        }
+    }
+
+    @Test
+    void rejectsOtherFiles() {
+        assertThrows(IOException.class, () -> new ResultSpillReader(new ByteArrayInputStream(new byte[] {1, 2, 3, 4})));
+    }
+
+    @Test
+    void failsOnTruncatedFile() throws Exception {
+        byte[] spill = write(new Object[][] {{1L, 1, 1d, BigDecimal.ONE, true, new byte[3], null, null, "truncated"}});
+
+        try (ResultSpillReader reader = new ResultSpillReader(new ByteArrayInputStream(Arrays.copyOf(spill, spill.length - 4)))) {
+            assertThrows(IOException.class, reader::nextRow);
+        }
+    }
+
+    private static byte[] write(Object[][] rows) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ResultSpillWriter writer = new ResultSpillWriter(out)) {
+            writer.writeHeader(metaData());
+            ResultSet rs = resultSet(rows);
+            while (rs.next()) {
+                writer.writeRow(rs);
+            }
+            writer.finish();
+        }
+        return out.toByteArray();
+    }
+
+    private static ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[] {ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> COLUMNS.length;
+                    case "getColumnLabel", "getColumnName" -> COLUMNS[(int) args[0] - 1];
+                    case "getColumnType" -> TYPES[(int) args[0] - 1];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Result set over the given rows supporting the getters the writer uses
+     */
+    private static ResultSet resultSet(Object[][] rows) {
+        int[] position = {-1};
+        boolean[] wasNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] {ResultSet.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("next")) {
+                        return ++position[0] < rows.length;
+                    }
+                    if (method.getName().equals("wasNull")) {
+                        return wasNull[0];
+                    }
+                    Object value = rows[position[0]][(int) args[0] - 1];
+                    wasNull[0] = value == null;
+                    return switch (method.getName()) {
+                        case "getLong" -> value == null ? 0L : value;
+                        case "getInt" -> value == null ? 0 : value;
+                        case "getDouble" -> value == null ? 0d : value;
+                        case "getBoolean" -> value != null && (Boolean) value;
+                        case "getBigDecimal", "getBytes", "getTimestamp", "getDate", "getString" -> value;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
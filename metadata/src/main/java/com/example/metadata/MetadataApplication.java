@@ -10,8 +10,10 @@ import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
 @ComponentScan(basePackages = {
     "com.example.metadata",
     "com.example.applib.service",
+    "com.example.applib.cache",
     "com.example.applib.config",
-    "com.example.applib.tenant"
+    "com.example.applib.tenant",
+    "com.example.applib.web"
 })
 @EntityScan(basePackages = {
     "com.example.metadata",
@@ -3,11 +3,14 @@ package com.example.metadata.controller;
 import com.example.applib.tenant.MasterTenant;
 import com.example.applib.tenant.MasterTenantRepository;
 import com.example.applib.tenant.TenantJdbcService;
+import com.example.applib.web.ArrowResultSetWriter;
+import com.example.applib.web.JsonResultSetWriter;
+import com.example.applib.web.TabularMediaTypes;
 import java.util.List;
-import java.util.Map;
 import java.util.Optional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,8 +18,10 @@ import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Controller for tenant operations.
@@ -29,6 +34,8 @@ public class TenantController {
 
     private final MasterTenantRepository masterTenantRepository;
     private final TenantJdbcService tenantJdbcService;
+    private final JsonResultSetWriter jsonResultSetWriter;
+    private final ArrowResultSetWriter arrowResultSetWriter;
 
     /**
      * Gets all tenants.
@@ -89,16 +96,23 @@ public class TenantController {
     }
 
     /**
-     * Executes a SQL query for a specific tenant.
+     * Executes a SQL query for a specific tenant, streaming rows as they are read.
      */
     @PostMapping("/{tenantId}/query")
-    public ResponseEntity<List<Map<String, Object>>> executeQuery(@PathVariable String tenantId, @RequestBody String sql) {
-        try {
-            List<Map<String, Object>> results = tenantJdbcService.queryForList(tenantId, sql);
-            return ResponseEntity.ok(results);
-        } catch (Exception e) {
-            log.error("Error executing query for tenant {}: {}", tenantId, e.getMessage(), e);
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public ResponseEntity<StreamingResponseBody> executeQuery(
+            @PathVariable String tenantId,
+            @RequestBody String sql,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return jsonResultSetWriter.toResponse(
+                extractor -> tenantJdbcService.streamQuery(tenantId, sql, extractor), accept);
+    }
+
+    /**
+     * Executes a SQL query for a specific tenant and streams the result as Apache Arrow.
+     */
+    @PostMapping(value = "/{tenantId}/query", produces = TabularMediaTypes.ARROW_STREAM_VALUE)
+    public ResponseEntity<StreamingResponseBody> executeQueryAsArrow(@PathVariable String tenantId, @RequestBody String sql) {
+        return arrowResultSetWriter.toResponse(
+                extractor -> tenantJdbcService.streamQuery(tenantId, sql, extractor));
     }
 }
@@ -55,3 +55,143 @@ CREATE DATABASE tenant2_db;
 CREATE DATABASE tenant2_flex;
 CREATE DATABASE tenant2_read;
 
+-- Attachment storage tables, in every tenant database. The attachments table itself is created
+-- with the tenant database; the columns the attachment service adds to it are added here.
+\connect tenant1_db
+
+-- Deduplicated attachment content, one row per distinct SHA-256 of a tenant
+CREATE TABLE IF NOT EXISTS attachment_blobs (
+    tenant_id varchar(30) NOT NULL,
+    sha256 char(64) NOT NULL,
+    s3_key varchar(1024) NOT NULL,
+    size bigint NOT NULL,
+    ref_count bigint NOT NULL DEFAULT 0,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    updated_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, sha256)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS attachment_blobs_s3_key ON attachment_blobs (tenant_id, s3_key);
+CREATE INDEX IF NOT EXISTS attachment_blobs_unreferenced ON attachment_blobs (updated_at) WHERE ref_count = 0;
+
+-- One reference per owner, e.g. an attachment or a pending upload
+CREATE TABLE IF NOT EXISTS attachment_blob_refs (
+    tenant_id varchar(30) NOT NULL,
+    owner_id varchar(64) NOT NULL,
+    sha256 char(64) NOT NULL,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, owner_id)
+);
+
+ALTER TABLE IF EXISTS attachments ADD COLUMN IF NOT EXISTS blob_sha256 char(64);
+
+-- Pending direct uploads; expired by updated_at, which each request for part URLs advances
+CREATE TABLE IF NOT EXISTS attachment_uploads (
+    id varchar(36) PRIMARY KEY,
+    tenant_id varchar(30) NOT NULL,
+    upload_id varchar(1024) NOT NULL,
+    s3_key varchar(1024) NOT NULL,
+    file_name varchar(1024),
+    content_type varchar(255),
+    metadata text,
+    part_size bigint NOT NULL,
+    part_count int NOT NULL,
+    size bigint,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    updated_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS attachment_uploads_updated_at ON attachment_uploads (updated_at);
+
+ALTER TABLE IF EXISTS attachments ADD COLUMN IF NOT EXISTS s3_key varchar(1024);
+
+-- Thumbnails and previews of image attachments
+CREATE TABLE IF NOT EXISTS attachment_derivatives (
+    tenant_id varchar(30) NOT NULL,
+    attachment_id varchar(36) NOT NULL,
+    kind varchar(30) NOT NULL,
+    s3_key varchar(1024) NOT NULL,
+    content_type varchar(255) NOT NULL,
+    width int NOT NULL,
+    height int NOT NULL,
+    size bigint NOT NULL,
+    etag varchar(255),
+    created_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, attachment_id, kind)
+);
+
+-- Derivative work not yet done, swept up again once its claim times out
+CREATE TABLE IF NOT EXISTS attachment_derivative_jobs (
+    tenant_id varchar(30) NOT NULL,
+    attachment_id varchar(36) NOT NULL,
+    content_type varchar(255),
+    attempts int NOT NULL DEFAULT 1,
+    claimed_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, attachment_id)
+);
+CREATE INDEX IF NOT EXISTS attachment_derivative_jobs_claimed_at ON attachment_derivative_jobs (claimed_at);
+
+\connect tenant2_db
+
+CREATE TABLE IF NOT EXISTS attachment_blobs (
+    tenant_id varchar(30) NOT NULL,
+    sha256 char(64) NOT NULL,
+    s3_key varchar(1024) NOT NULL,
+    size bigint NOT NULL,
+    ref_count bigint NOT NULL DEFAULT 0,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    updated_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, sha256)
+);
+CREATE UNIQUE INDEX IF NOT EXISTS attachment_blobs_s3_key ON attachment_blobs (tenant_id, s3_key);
+CREATE INDEX IF NOT EXISTS attachment_blobs_unreferenced ON attachment_blobs (updated_at) WHERE ref_count = 0;
+
+CREATE TABLE IF NOT EXISTS attachment_blob_refs (
+    tenant_id varchar(30) NOT NULL,
+    owner_id varchar(64) NOT NULL,
+    sha256 char(64) NOT NULL,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, owner_id)
+);
+
+ALTER TABLE IF EXISTS attachments ADD COLUMN IF NOT EXISTS blob_sha256 char(64);
+
+CREATE TABLE IF NOT EXISTS attachment_uploads (
+    id varchar(36) PRIMARY KEY,
+    tenant_id varchar(30) NOT NULL,
+    upload_id varchar(1024) NOT NULL,
+    s3_key varchar(1024) NOT NULL,
+    file_name varchar(1024),
+    content_type varchar(255),
+    metadata text,
+    part_size bigint NOT NULL,
+    part_count int NOT NULL,
+    size bigint,
+    created_at timestamptz NOT NULL DEFAULT now(),
+    updated_at timestamptz NOT NULL DEFAULT now()
+);
+CREATE INDEX IF NOT EXISTS attachment_uploads_updated_at ON attachment_uploads (updated_at);
+
+ALTER TABLE IF EXISTS attachments ADD COLUMN IF NOT EXISTS s3_key varchar(1024);
+
+CREATE TABLE IF NOT EXISTS attachment_derivatives (
+    tenant_id varchar(30) NOT NULL,
+    attachment_id varchar(36) NOT NULL,
+    kind varchar(30) NOT NULL,
+    s3_key varchar(1024) NOT NULL,
+    content_type varchar(255) NOT NULL,
+    width int NOT NULL,
+    height int NOT NULL,
+    size bigint NOT NULL,
+    etag varchar(255),
+    created_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, attachment_id, kind)
+);
+
+CREATE TABLE IF NOT EXISTS attachment_derivative_jobs (
+    tenant_id varchar(30) NOT NULL,
+    attachment_id varchar(36) NOT NULL,
+    content_type varchar(255),
+    attempts int NOT NULL DEFAULT 1,
+    claimed_at timestamptz NOT NULL DEFAULT now(),
+    PRIMARY KEY (tenant_id, attachment_id)
+);
+CREATE INDEX IF NOT EXISTS attachment_derivative_jobs_claimed_at ON attachment_derivative_jobs (claimed_at);
@@ -17,6 +17,9 @@ import org.springframework.transaction.annotation.Transactional;
 @Service
 public class UserService {
 
+    // Renamed when the encoding of cached users changed, entries of the old name cannot be read
+    private static final String USERS_CACHE = "users-v2";
+
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final PasswordEncoder passwordEncoder;
@@ -31,19 +34,19 @@ public class UserService {
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "users", key = "#id")
+    @Cacheable(value = USERS_CACHE, key = "#id")
     public Optional<User> findById(Long id) {
         return userRepository.findById(id);
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "users", key = "#username")
+    @Cacheable(value = USERS_CACHE, key = "#username")
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
 
     @Transactional(readOnly = true)
-    @Cacheable(value = "users", key = "#email")
+    @Cacheable(value = USERS_CACHE, key = "#email")
     public Optional<User> findByEmail(String email) {
         return userRepository.findByEmail(email);
     }
@@ -54,7 +57,7 @@ public class UserService {
     }
 
     @Transactional
-    @CacheEvict(value = "users", allEntries = true)
+    @CacheEvict(value = USERS_CACHE, allEntries = true)
     public User save(User user) {
         if (user.getId() == null) {
             // New user, encode password
@@ -70,7 +73,7 @@ public class UserService {
     }
 
     @Transactional
-    @CacheEvict(value = "users", key = "#id")
+    @CacheEvict(value = USERS_CACHE, key = "#id")
     public void deleteById(Long id) {
         userRepository.deleteById(id);
     }